@@ -0,0 +1,112 @@
+package ee.cyber.cdoc2.server.benchmark;
+
+import ee.cyber.cdoc2.server.generated.model.Capsule;
+import ee.cyber.cdoc2.shared.crypto.ECKeys;
+import ee.cyber.cdoc2.shared.crypto.EllipticCurve;
+import ee.cyber.cdoc2.shared.crypto.RsaUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.SecureRandom;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+
+
+/**
+ * Client (recipient) certificates from {@code keys} directory, one for each capsule type and RSA key size.
+ * Certificates are copied to benchmarks classpath {@code /keys} during build.
+ */
+public enum ClientKey {
+    ECC_SECP256R1("ecc/ecc-256-client-certificate.pem", Capsule.CapsuleTypeEnum.ECC_SECP256R1),
+    ECC_SECP384R1("ca_certs/client-certificate.pem", Capsule.CapsuleTypeEnum.ECC_SECP384R1),
+    ECC_SECP521R1("ecc/ecc-521-client-certificate.pem", Capsule.CapsuleTypeEnum.ECC_SECP521R1),
+    RSA_2048("rsa/client-rsa-2048-cert.pem", Capsule.CapsuleTypeEnum.RSA),
+    RSA_4096("rsa/client-rsa-4096-cert.pem", Capsule.CapsuleTypeEnum.RSA),
+    RSA_8192("rsa/client-rsa-8192-cert.pem", Capsule.CapsuleTypeEnum.RSA),
+    RSA_16384("rsa/client-rsa-16384-cert.pem", Capsule.CapsuleTypeEnum.RSA);
+
+    private static final BigInteger RSA_PUBLIC_EXPONENT = BigInteger.valueOf(65537);
+
+    private final String path;
+    private final Capsule.CapsuleTypeEnum capsuleType;
+
+    ClientKey(String path, Capsule.CapsuleTypeEnum capsuleType) {
+        this.path = path;
+        this.capsuleType = capsuleType;
+    }
+
+    public Capsule.CapsuleTypeEnum getCapsuleType() {
+        return this.capsuleType;
+    }
+
+    public X509Certificate loadCertificate() {
+        try (InputStream in = ClientKey.class.getResourceAsStream("/keys/" + this.path)) {
+            if (in == null) {
+                throw new IllegalStateException("Certificate /keys/" + this.path + " not found from classpath");
+            }
+            return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Capsule for the client certificate recipient, that passes put-server capsule validation
+     */
+    public Capsule createCapsule(X509Certificate certificate) throws GeneralSecurityException {
+        return createCapsule(certificate, encodeRecipient(certificate));
+    }
+
+    /**
+     * Capsule of the same type for other (randomly generated) recipient
+     */
+    public Capsule createCapsuleForOtherRecipient(X509Certificate certificate) throws GeneralSecurityException {
+        if (this.capsuleType == Capsule.CapsuleTypeEnum.RSA) {
+            // generating 16384-bit RSA key takes minutes, recipient is not used for crypto in server
+            int bits = ((RSAPublicKey) certificate.getPublicKey()).getModulus().bitLength();
+            BigInteger modulus = new BigInteger(bits, new SecureRandom()).setBit(bits - 1).setBit(0);
+            RSAPublicKey other = (RSAPublicKey) KeyFactory.getInstance("RSA")
+                .generatePublic(new RSAPublicKeySpec(modulus, RSA_PUBLIC_EXPONENT));
+            return createCapsule(certificate, RsaUtils.encodeRsaPubKey(other));
+        }
+        EllipticCurve curve = EllipticCurve.forPubKey(certificate.getPublicKey());
+        return createCapsule(certificate, ECKeys.encodeEcPubKeyForTls(
+            curve, (ECPublicKey) ECKeys.generateEcKeyPair(curve).getPublic()
+        ));
+    }
+
+    private byte[] encodeRecipient(X509Certificate certificate) throws GeneralSecurityException {
+        if (this.capsuleType == Capsule.CapsuleTypeEnum.RSA) {
+            return RsaUtils.encodeRsaPubKey((RSAPublicKey) certificate.getPublicKey());
+        }
+        return ECKeys.encodeEcPubKeyForTls((ECPublicKey) certificate.getPublicKey());
+    }
+
+    private Capsule createCapsule(X509Certificate certificate, byte[] recipientId) throws GeneralSecurityException {
+        byte[] ephemeralKeyMaterial;
+        if (this.capsuleType == Capsule.CapsuleTypeEnum.RSA) {
+            // RSA capsule payload is KEK encrypted with recipient key, same length as modulus
+            int bits = ((RSAPublicKey) certificate.getPublicKey()).getModulus().bitLength();
+            ephemeralKeyMaterial = new byte[(bits + 7) / 8];
+            new SecureRandom().nextBytes(ephemeralKeyMaterial);
+        } else {
+            EllipticCurve curve = EllipticCurve.forPubKey(certificate.getPublicKey());
+            ephemeralKeyMaterial = ECKeys.encodeEcPubKeyForTls(
+                curve, (ECPublicKey) ECKeys.generateEcKeyPair(curve).getPublic()
+            );
+        }
+        return new Capsule()
+            .capsuleType(this.capsuleType)
+            .recipientId(recipientId)
+            .ephemeralKeyMaterial(ephemeralKeyMaterial);
+    }
+}
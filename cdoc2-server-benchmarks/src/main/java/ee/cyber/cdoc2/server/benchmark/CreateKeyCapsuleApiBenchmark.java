@@ -0,0 +1,91 @@
+package ee.cyber.cdoc2.server.benchmark;
+
+import ee.cyber.cdoc2.server.api.CreateKeyCapsuleApi;
+import ee.cyber.cdoc2.server.config.KeyCapsuleConfigProperties;
+import ee.cyber.cdoc2.server.generated.model.Capsule;
+
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.context.request.ServletWebRequest;
+
+
+/**
+ * {@link CreateKeyCapsuleApi#createCapsule(Capsule, LocalDateTime)} handler cost without TLS and database:
+ * capsule validation, transaction id generation and building Location header.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CreateKeyCapsuleApiBenchmark {
+
+    private static final String TRANSACTION_ID = "KC0192b8f4a5c67d3e8f0a1b2c3d4e5f60";
+
+    @Param({"ECC_SECP256R1", "ECC_SECP384R1", "ECC_SECP521R1", "RSA_2048", "RSA_4096", "RSA_8192", "RSA_16384"})
+    public ClientKey clientKey;
+
+    private InMemoryKeyCapsuleStore store;
+    private CreateKeyCapsuleApi api;
+    private Capsule capsule;
+    private LocalDateTime expiryTime;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        MockServletContext servletContext = new MockServletContext();
+        MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "POST", "/key-capsules");
+
+        this.store = new InMemoryKeyCapsuleStore();
+        this.api = new CreateKeyCapsuleApi(
+            new ServletWebRequest(request),
+            new KeyCapsuleConfigProperties("P1095D", "P1825D"),
+            this.store,
+            servletContext
+        );
+        this.capsule = this.clientKey.createCapsule(this.clientKey.loadCertificate());
+        this.expiryTime = LocalDateTime.now().plusDays(30);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearStore() {
+        this.store.clear();
+    }
+
+    @Benchmark
+    public ResponseEntity<Void> createCapsule() {
+        return this.api.createCapsule(this.capsule, null);
+    }
+
+    @Benchmark
+    public ResponseEntity<Void> createCapsuleWithExpiryTime() {
+        return this.api.createCapsule(this.capsule, this.expiryTime);
+    }
+
+    /**
+     * Location header alone
+     */
+    @Benchmark
+    public URI getResourceLocation() {
+        return this.api.getResourceLocation(TRANSACTION_ID);
+    }
+}
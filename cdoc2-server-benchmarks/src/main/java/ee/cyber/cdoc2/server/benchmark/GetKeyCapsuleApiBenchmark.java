@@ -0,0 +1,104 @@
+package ee.cyber.cdoc2.server.benchmark;
+
+import ee.cyber.cdoc2.server.api.ClientIdentityCache;
+import ee.cyber.cdoc2.server.api.GetKeyCapsuleApi;
+import ee.cyber.cdoc2.server.generated.model.Capsule;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.TransactionId;
+
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+
+/**
+ * {@link GetKeyCapsuleApi#getCapsuleByTransactionId(String)} handler cost without TLS and database: client
+ * identity from certificate, transaction id parsing, recipient check and response DTO.
+ * <p>
+ * {@code recipientMatch=false} requests capsule created for other recipient of the same type (404 response).
+ * {@code tlsSessionReused=false} requests have no TLS session id, so client identity is calculated
+ * from certificate for every request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GetKeyCapsuleApiBenchmark {
+
+    private static final String SSL_SESSION_ID_ATTRIBUTE = "jakarta.servlet.request.ssl_session_id";
+    private static final String X509_CERTIFICATE_ATTRIBUTE = "jakarta.servlet.request.X509Certificate";
+
+    @Param({"ECC_SECP256R1", "ECC_SECP384R1", "ECC_SECP521R1", "RSA_2048", "RSA_4096", "RSA_8192", "RSA_16384"})
+    public ClientKey clientKey;
+
+    @Param({"true", "false"})
+    public boolean recipientMatch;
+
+    @Param({"true", "false"})
+    public boolean tlsSessionReused;
+
+    private GetKeyCapsuleApi api;
+    private String transactionId;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        X509Certificate certificate = this.clientKey.loadCertificate();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/key-capsules");
+        request.setAttribute(X509_CERTIFICATE_ATTRIBUTE, new X509Certificate[] {certificate});
+        if (this.tlsSessionReused) {
+            request.setAttribute(SSL_SESSION_ID_ATTRIBUTE, "8f0659982eb50829662a9ee5d4ae87a0");
+        }
+
+        InMemoryKeyCapsuleStore store = new InMemoryKeyCapsuleStore();
+        Capsule capsule = this.recipientMatch
+            ? this.clientKey.createCapsule(certificate)
+            : this.clientKey.createCapsuleForOtherRecipient(certificate);
+        KeyCapsuleDb saved = store.save(new KeyCapsuleDb()
+            .setCapsuleType(toDbCapsuleType(capsule))
+            .setRecipient(capsule.getRecipientId())
+            .setPayload(capsule.getEphemeralKeyMaterial())
+            .setExpiryTime(Instant.now().plus(30, ChronoUnit.DAYS))
+            .setExpiryTimeAdjusted(false)
+        );
+        this.transactionId = TransactionId.toApiForm(saved.getTransactionId());
+
+        this.api = new GetKeyCapsuleApi(
+            new ServletWebRequest(request), store, new ClientIdentityCache()
+        );
+    }
+
+    @Benchmark
+    public ResponseEntity<Capsule> getCapsuleByTransactionId() {
+        return this.api.getCapsuleByTransactionId(this.transactionId);
+    }
+
+    private KeyCapsuleDb.CapsuleType toDbCapsuleType(Capsule capsule) {
+        return switch (capsule.getCapsuleType()) {
+            case ECC_SECP256R1 -> KeyCapsuleDb.CapsuleType.SECP256R1;
+            case ECC_SECP384R1 -> KeyCapsuleDb.CapsuleType.SECP384R1;
+            case ECC_SECP521R1 -> KeyCapsuleDb.CapsuleType.SECP521R1;
+            case RSA -> KeyCapsuleDb.CapsuleType.RSA;
+            default -> throw new IllegalArgumentException("Unknown capsule type: " + capsule.getCapsuleType());
+        };
+    }
+}
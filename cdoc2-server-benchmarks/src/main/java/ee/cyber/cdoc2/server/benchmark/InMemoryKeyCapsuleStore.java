@@ -0,0 +1,66 @@
+package ee.cyber.cdoc2.server.benchmark;
+
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRecord;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleWriter;
+import ee.cyber.cdoc2.server.model.db.TransactionId;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * {@link KeyCapsuleWriter} and {@link KeyCapsuleReader} backed by {@link ConcurrentHashMap}, so that handler
+ * benchmarks don't measure database. {@link #save(KeyCapsuleDb)} fills transaction id and recipient fingerprint
+ * as {@code @PrePersist} of {@link KeyCapsuleDb} does.
+ */
+public class InMemoryKeyCapsuleStore implements KeyCapsuleWriter, KeyCapsuleReader {
+
+    private final Map<UUID, KeyCapsuleDb> capsules = new ConcurrentHashMap<>();
+
+    @Override
+    public KeyCapsuleDb save(KeyCapsuleDb capsule) {
+        try {
+            capsule.setTransactionId(TransactionId.generate());
+            capsule.setRecipientFingerprint(KeyCapsuleDb.recipientFingerprint(capsule.getRecipient()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        this.capsules.put(capsule.getTransactionId(), capsule);
+        return capsule;
+    }
+
+    @Override
+    public List<KeyCapsuleDb> saveAll(List<KeyCapsuleDb> capsules) {
+        return capsules.stream().map(this::save).toList();
+    }
+
+    @Override
+    public Optional<KeyCapsuleRecord> findByTransactionIdAndRecipientFingerprint(
+        UUID transactionId,
+        byte[] recipientFingerprint
+    ) {
+        return Optional.ofNullable(this.capsules.get(transactionId))
+            .filter(capsule -> Arrays.equals(capsule.getRecipientFingerprint(), recipientFingerprint))
+            .map(capsule -> new KeyCapsuleRecord(
+                capsule.getRecipient(),
+                capsule.getPayload(),
+                capsule.getCapsuleType(),
+                capsule.getExpiryTime(),
+                Boolean.TRUE.equals(capsule.getExpiryTimeAdjusted())
+            ));
+    }
+
+    /**
+     * Remove all capsules
+     */
+    public void clear() {
+        this.capsules.clear();
+    }
+}
@@ -0,0 +1,133 @@
+package ee.cyber.cdoc2.server.benchmark;
+
+import ee.cyber.cdoc2.server.config.KeyCapsuleReadConfigProperties;
+import ee.cyber.cdoc2.server.model.db.JdbcKeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.JpaKeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRecord;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRepository;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+
+/**
+ * Key capsule lookup by transaction id and recipient fingerprint through {@link JdbcKeyCapsuleReader} and
+ * {@link JpaKeyCapsuleReader} (get-server {@code key-capsule.read.path}). Unlike handler benchmarks, this one
+ * needs a PostgreSQL database with CDOC2 schema, by default {@code jdbc:postgresql://localhost/cdoc2}
+ * (user {@code postgres}, password {@code secret}). Use other database with JMH arguments
+ * {@code -jvmArgsAppend "-Dspring.datasource.url=... -Dspring.datasource.username=..."}.
+ * <p>
+ * Measured time includes database round trips, allocation ({@code -prof gc}) includes JDBC driver and
+ * connection pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyCapsuleReadPathBenchmark {
+
+    // SECP384R1 recipient (TLS encoded public key) and payload size
+    private static final int KEY_LENGTH = 97;
+
+    @Param({"JDBC", "JPA"})
+    public KeyCapsuleReadConfigProperties.Path readPath;
+
+    private ConfigurableApplicationContext context;
+    private KeyCapsuleRepository repository;
+    private KeyCapsuleReader reader;
+    private UUID transactionId;
+    private byte[] recipientFingerprint;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        this.context = new SpringApplicationBuilder(DbConfiguration.class)
+            .web(WebApplicationType.NONE)
+            .properties(Map.of(
+                "spring.datasource.url", "jdbc:postgresql://localhost/cdoc2",
+                "spring.datasource.username", "postgres",
+                "spring.datasource.password", "secret",
+                "spring.jpa.open-in-view", "false"
+            ))
+            .run();
+        this.repository = this.context.getBean(KeyCapsuleRepository.class);
+        this.reader = switch (this.readPath) {
+            case JDBC -> new JdbcKeyCapsuleReader(this.context.getBean(DataSource.class));
+            case JPA -> new JpaKeyCapsuleReader(this.repository);
+        };
+
+        SecureRandom random = new SecureRandom();
+        byte[] recipient = new byte[KEY_LENGTH];
+        byte[] payload = new byte[KEY_LENGTH];
+        random.nextBytes(recipient);
+        random.nextBytes(payload);
+
+        KeyCapsuleDb saved = this.repository.save(new KeyCapsuleDb()
+            .setCapsuleType(KeyCapsuleDb.CapsuleType.SECP384R1)
+            .setRecipient(recipient)
+            .setPayload(payload)
+            .setExpiryTime(Instant.now().plus(30, ChronoUnit.DAYS))
+            .setExpiryTimeAdjusted(false)
+        );
+        this.transactionId = saved.getTransactionId();
+        this.recipientFingerprint = KeyCapsuleDb.recipientFingerprint(recipient);
+
+        if (this.reader.findByTransactionIdAndRecipientFingerprint(this.transactionId, this.recipientFingerprint)
+            .isEmpty()) {
+            throw new IllegalStateException("Saved capsule not found by " + this.readPath);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.repository.deleteById(this.transactionId);
+        this.context.close();
+    }
+
+    @Benchmark
+    public Optional<KeyCapsuleRecord> findByTransactionIdAndRecipientFingerprint() {
+        return this.reader.findByTransactionIdAndRecipientFingerprint(this.transactionId, this.recipientFingerprint);
+    }
+
+    /**
+     * Data source and key capsule JPA repository, without put-server and get-server components
+     */
+    @Configuration
+    @EnableAutoConfiguration
+    @EnableJpaAuditing
+    @EntityScan(basePackageClasses = KeyCapsuleDb.class)
+    @EnableJpaRepositories(basePackageClasses = KeyCapsuleRepository.class)
+    static class DbConfiguration {
+    }
+}
@@ -0,0 +1,147 @@
+package ee.cyber.cdoc2.server.benchmark;
+
+import ee.cyber.cdoc2.server.model.db.JdbcKeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRepository;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+
+/**
+ * Burst of concurrent key capsule lookups, each request in its own task, run on platform threads (fixed pool of
+ * 200 threads, Tomcat default {@code server.tomcat.threads.max}) or on virtual threads
+ * ({@code spring.threads.virtual.enabled=true}). Measured time is time to complete all lookups of the burst,
+ * with both thread types lookups wait for the same database connection pool. Needs Java 21 and database like
+ * {@link KeyCapsuleReadPathBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VirtualThreadDbBenchmark {
+
+    /** Threads running the requests */
+    public enum Threads {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    private static final int KEY_LENGTH = 97;
+    private static final int PLATFORM_THREADS = 200;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public Threads threads;
+
+    @Param({"1000"})
+    public int concurrentRequests;
+
+    @Param({"10"})
+    public int dbPoolSize;
+
+    private ConfigurableApplicationContext context;
+    private KeyCapsuleRepository repository;
+    private KeyCapsuleReader reader;
+    private ExecutorService platformExecutor;
+    private AsyncTaskExecutor executor;
+    private UUID transactionId;
+    private byte[] recipientFingerprint;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        this.context = new SpringApplicationBuilder(KeyCapsuleReadPathBenchmark.DbConfiguration.class)
+            .web(WebApplicationType.NONE)
+            .properties(Map.of(
+                "spring.datasource.url", "jdbc:postgresql://localhost/cdoc2",
+                "spring.datasource.username", "postgres",
+                "spring.datasource.password", "secret",
+                "spring.datasource.hikari.maximum-pool-size", String.valueOf(this.dbPoolSize),
+                "spring.jpa.open-in-view", "false"
+            ))
+            .run();
+        this.repository = this.context.getBean(KeyCapsuleRepository.class);
+        this.reader = new JdbcKeyCapsuleReader(this.context.getBean(DataSource.class));
+        this.executor = switch (this.threads) {
+            case PLATFORM -> {
+                this.platformExecutor = Executors.newFixedThreadPool(PLATFORM_THREADS);
+                yield new TaskExecutorAdapter(this.platformExecutor);
+            }
+            case VIRTUAL -> new VirtualThreadTaskExecutor("benchmark-");
+        };
+
+        SecureRandom random = new SecureRandom();
+        byte[] recipient = new byte[KEY_LENGTH];
+        byte[] payload = new byte[KEY_LENGTH];
+        random.nextBytes(recipient);
+        random.nextBytes(payload);
+
+        KeyCapsuleDb saved = this.repository.save(new KeyCapsuleDb()
+            .setCapsuleType(KeyCapsuleDb.CapsuleType.SECP384R1)
+            .setRecipient(recipient)
+            .setPayload(payload)
+            .setExpiryTime(Instant.now().plus(30, ChronoUnit.DAYS))
+            .setExpiryTimeAdjusted(false)
+        );
+        this.transactionId = saved.getTransactionId();
+        this.recipientFingerprint = KeyCapsuleDb.recipientFingerprint(recipient);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (this.platformExecutor != null) {
+            this.platformExecutor.shutdownNow();
+        }
+        this.repository.deleteById(this.transactionId);
+        this.context.close();
+    }
+
+    @Benchmark
+    public int concurrentLookups() throws Exception {
+        List<Future<Boolean>> lookups = new ArrayList<>(this.concurrentRequests);
+        for (int i = 0; i < this.concurrentRequests; i++) {
+            lookups.add(this.executor.submit(() -> this.reader.findByTransactionIdAndRecipientFingerprint(
+                this.transactionId, this.recipientFingerprint
+            ).isPresent()));
+        }
+        int found = 0;
+        for (Future<Boolean> lookup : lookups) {
+            if (lookup.get()) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,216 @@
+package ee.cyber.cdoc2.server.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.net.ssl.SSLSocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Keep-alive connections to get-server that stay idle during the load test, as connections of client applications
+ * waiting between requests. Each connection is opened with identity TLS context, makes one
+ * {@code GET /key-capsules/{transactionId}} request and is then left open. Shows how much memory and threads the
+ * server spends on idle connections and how many of them it keeps open.
+ * <p>
+ * Requests are written directly to {@link SSLSocket}, as {@link java.net.http.HttpClient} pools its connections
+ * and doesn't let the test decide how many of them are kept open.
+ */
+final class IdleConnections implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(IdleConnections.class);
+
+    private static final int OPEN_THREADS = 16;
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+
+    private final List<SSLSocket> sockets;
+
+    private IdleConnections(List<SSLSocket> sockets) {
+        this.sockets = sockets;
+    }
+
+    /**
+     * Open connections, identities are used in turns
+     * @param count number of connections
+     * @param getServerUrl get-server base url
+     * @param identities TLS identities
+     */
+    static IdleConnections open(int count, URI getServerUrl, List<TlsIdentity> identities)
+        throws InterruptedException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(OPEN_THREADS);
+        try {
+            List<Future<SSLSocket>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                TlsIdentity identity = identities.get(i % identities.size());
+                futures.add(executor.submit(() -> connect(getServerUrl, identity)));
+            }
+
+            List<SSLSocket> sockets = new ArrayList<>(count);
+            int failed = 0;
+            for (Future<SSLSocket> future : futures) {
+                try {
+                    sockets.add(future.get());
+                } catch (ExecutionException e) {
+                    failed++;
+                    log.debug("Idle connection failed", e.getCause());
+                }
+            }
+            System.out.printf("Idle connections: opened %d, failed %d%n", sockets.size(), failed);
+            return new IdleConnections(sockets);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Print number of connections not closed by the server
+     */
+    void report() {
+        int open = 0;
+        for (SSLSocket socket : this.sockets) {
+            if (isOpen(socket)) {
+                open++;
+            }
+        }
+        System.out.printf("Idle connections: %d of %d still open%n", open, this.sockets.size());
+    }
+
+    @Override
+    public void close() {
+        for (SSLSocket socket : this.sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.trace("Closing idle connection failed", e);
+            }
+        }
+    }
+
+    private static SSLSocket connect(URI url, TlsIdentity identity) throws IOException {
+        String host = url.getHost();
+        int port = (url.getPort() != -1) ? url.getPort() : 443;
+        SSLSocket socket = (SSLSocket) identity.sslContext().getSocketFactory().createSocket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            socket.startHandshake();
+
+            String transactionId = identity.randomTransactionId();
+            if (transactionId == null) {
+                // not found response keeps the connection open as well
+                transactionId = "KC" + UUID.randomUUID().toString().replace("-", "");
+            }
+            URI capsuleUrl = LoadTest.resolve(url, "/key-capsules/" + transactionId);
+            String request = "GET " + capsuleUrl.getRawPath() + " HTTP/1.1\r\n"
+                + "Host: " + host + ":" + port + "\r\n"
+                + "Accept: application/json\r\n"
+                + "\r\n";
+            OutputStream out = socket.getOutputStream();
+            out.write(request.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            readResponse(new BufferedInputStream(socket.getInputStream()));
+            return socket;
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read response status line, headers and body, so that nothing is left unread on the connection
+     */
+    private static void readResponse(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        if (!statusLine.startsWith("HTTP/1.1 ")) {
+            throw new IOException("Unexpected response: " + statusLine);
+        }
+        long contentLength = 0;
+        boolean chunked = false;
+        for (String header = readLine(in); !header.isEmpty(); header = readLine(in)) {
+            String lower = header.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("content-length:")) {
+                contentLength = Long.parseLong(lower.substring("content-length:".length()).trim());
+            } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                chunked = true;
+            } else if (lower.startsWith("connection:") && lower.contains("close")) {
+                throw new IOException("Server closes connection: " + statusLine);
+            }
+        }
+
+        if (!chunked) {
+            skip(in, contentLength);
+            return;
+        }
+        for (long size = chunkSize(readLine(in)); size > 0; size = chunkSize(readLine(in))) {
+            skip(in, size);
+            readLine(in);
+        }
+        // trailers
+        String trailer;
+        do {
+            trailer = readLine(in);
+        } while (!trailer.isEmpty());
+    }
+
+    private static long chunkSize(String line) {
+        int extension = line.indexOf(';');
+        return Long.parseLong((extension != -1) ? line.substring(0, extension).trim() : line.trim(), 16);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                throw new EOFException("Connection closed");
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static void skip(InputStream in, long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            if (in.read() == -1) {
+                throw new EOFException("Connection closed");
+            }
+            remaining--;
+        }
+    }
+
+    private static boolean isOpen(SSLSocket socket) {
+        if (socket.isClosed()) {
+            return false;
+        }
+        try {
+            socket.setSoTimeout(1);
+            // server has nothing to send on idle connection, end of stream means it was closed
+            return socket.getInputStream().read() != -1;
+        } catch (SocketTimeoutException e) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package ee.cyber.cdoc2.server.loadtest;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+
+/**
+ * Latency histograms, error and throughput counters for each request type. Latency is measured from intended
+ * request start time (arrival time), not from actual send time, so that queueing in client or server is included
+ * (no coordinated omission).
+ */
+final class LoadStats {
+
+    /** Request types */
+    enum Operation {
+        POST,
+        GET
+    }
+
+    // 1 µs .. 1 min, 3 significant digits
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double NANOS_IN_MILLI = 1_000_000.0;
+
+    private final Map<Operation, OperationStats> operations = new EnumMap<>(Operation.class);
+    private final LongAdder dropped = new LongAdder();
+    private final HistogramLogWriter logWriter;
+    private long startMillis;
+    private long lastIntervalNanos;
+
+    LoadStats(Path histogramLog) throws FileNotFoundException {
+        for (Operation op : Operation.values()) {
+            this.operations.put(op, new OperationStats());
+        }
+        this.logWriter = (histogramLog != null) ? new HistogramLogWriter(histogramLog.toFile()) : null;
+    }
+
+    /**
+     * Start measurement, values recorded before are discarded
+     */
+    synchronized void start() {
+        this.startMillis = System.currentTimeMillis();
+        this.lastIntervalNanos = System.nanoTime();
+        for (OperationStats stats : this.operations.values()) {
+            stats.recorder.reset();
+        }
+        if (this.logWriter != null) {
+            this.logWriter.outputLogFormatVersion();
+            this.logWriter.outputStartTime(this.startMillis);
+            this.logWriter.setBaseTime(this.startMillis);
+            this.logWriter.outputLegend();
+        }
+    }
+
+    void recordSuccess(Operation op, long latencyNanos) {
+        OperationStats stats = this.operations.get(op);
+        stats.recorder.recordValue(Math.min(latencyNanos, MAX_LATENCY_NANOS));
+        stats.ok.increment();
+    }
+
+    /**
+     * @param error HTTP status code or exception class name
+     */
+    void recordError(Operation op, long latencyNanos, String error) {
+        OperationStats stats = this.operations.get(op);
+        stats.recorder.recordValue(Math.min(latencyNanos, MAX_LATENCY_NANOS));
+        stats.errors.computeIfAbsent(error, e -> new LongAdder()).increment();
+    }
+
+    /**
+     * Request was not sent, because max in-flight requests limit was reached
+     */
+    void recordDropped() {
+        this.dropped.increment();
+    }
+
+    /**
+     * Print interval report and add interval histograms to totals
+     */
+    synchronized void reportInterval(PrintStream out, int inFlight) {
+        long now = System.nanoTime();
+        double seconds = (now - this.lastIntervalNanos) / 1e9;
+        this.lastIntervalNanos = now;
+
+        double elapsed = (System.currentTimeMillis() - this.startMillis) / 1e3;
+        StringBuilder line = new StringBuilder(String.format("%7.1fs", elapsed));
+        for (Map.Entry<Operation, OperationStats> e : this.operations.entrySet()) {
+            OperationStats stats = e.getValue();
+            Histogram interval = stats.recorder.getIntervalHistogram(stats.recycled);
+            stats.total.add(interval);
+            if (this.logWriter != null) {
+                interval.setTag(e.getKey().name());
+                this.logWriter.outputIntervalHistogram(interval);
+            }
+            stats.recycled = interval;
+
+            line.append(String.format(" | %s %8.1f req/s p50 %8.2f p99 %8.2f max %8.2f ms",
+                e.getKey(), interval.getTotalCount() / seconds,
+                interval.getValueAtPercentile(50) / NANOS_IN_MILLI,
+                interval.getValueAtPercentile(99) / NANOS_IN_MILLI,
+                interval.getMaxValue() / NANOS_IN_MILLI));
+        }
+        line.append(String.format(" | errors %d dropped %d in-flight %d", errorCount(), this.dropped.sum(), inFlight));
+        out.println(line);
+    }
+
+    /**
+     * Print summary for the whole test
+     * @param out print stream
+     * @param seconds test duration in seconds
+     * @return error rate, errors and dropped requests divided by all requests
+     */
+    synchronized double reportSummary(PrintStream out, double seconds) {
+        long requests = this.dropped.sum();
+        long failed = this.dropped.sum();
+
+        out.println();
+        out.printf("Summary (%.1f s)%n", seconds);
+        for (Map.Entry<Operation, OperationStats> e : this.operations.entrySet()) {
+            OperationStats stats = e.getValue();
+            Histogram total = stats.total;
+            long ok = stats.ok.sum();
+            long errors = stats.errors.values().stream().mapToLong(LongAdder::sum).sum();
+            requests += ok + errors;
+            failed += errors;
+
+            out.printf("%s: %d requests, %.1f req/s, %d errors (%.3f%%)%n",
+                e.getKey(), ok + errors, ok / seconds, errors, percent(errors, ok + errors));
+            if (total.getTotalCount() > 0) {
+                out.printf("  latency ms: min %.2f p50 %.2f p90 %.2f p99 %.2f p99.9 %.2f max %.2f%n",
+                    total.getMinValue() / NANOS_IN_MILLI,
+                    total.getValueAtPercentile(50) / NANOS_IN_MILLI,
+                    total.getValueAtPercentile(90) / NANOS_IN_MILLI,
+                    total.getValueAtPercentile(99) / NANOS_IN_MILLI,
+                    total.getValueAtPercentile(99.9) / NANOS_IN_MILLI,
+                    total.getMaxValue() / NANOS_IN_MILLI);
+            }
+            if (errors > 0) {
+                Map<String, Long> byError = new TreeMap<>();
+                stats.errors.forEach((error, count) -> byError.put(error, count.sum()));
+                out.printf("  errors: %s%n", byError);
+            }
+        }
+        out.printf("dropped (max in-flight reached): %d%n", this.dropped.sum());
+
+        double errorRate = (requests == 0) ? 0 : (double) failed / requests;
+        out.printf("error rate: %.3f%%%n", errorRate * 100);
+
+        if (this.logWriter != null) {
+            this.logWriter.close();
+        }
+        return errorRate;
+    }
+
+    /**
+     * Print full latency percentile distribution (HdrHistogram format) for each request type
+     */
+    synchronized void printDistribution(PrintStream out) {
+        for (Map.Entry<Operation, OperationStats> e : this.operations.entrySet()) {
+            if (e.getValue().total.getTotalCount() > 0) {
+                out.println();
+                out.println(e.getKey() + " latency distribution (ms):");
+                e.getValue().total.outputPercentileDistribution(out, NANOS_IN_MILLI);
+            }
+        }
+    }
+
+    private long errorCount() {
+        long errors = 0;
+        for (OperationStats stats : this.operations.values()) {
+            for (LongAdder count : stats.errors.values()) {
+                errors += count.sum();
+            }
+        }
+        return errors;
+    }
+
+    private static double percent(long part, long total) {
+        return (total == 0) ? 0 : part * 100.0 / total;
+    }
+
+    private static final class OperationStats {
+        private final Recorder recorder = new Recorder(MAX_LATENCY_NANOS, SIGNIFICANT_DIGITS);
+        private final Histogram total = new Histogram(MAX_LATENCY_NANOS, SIGNIFICANT_DIGITS);
+        private final LongAdder ok = new LongAdder();
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        private Histogram recycled;
+    }
+}
@@ -0,0 +1,323 @@
+package ee.cyber.cdoc2.server.loadtest;
+
+import java.io.FileNotFoundException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Open-model load generator for put-server ({@code POST /key-capsules}) and get-server
+ * ({@code GET /key-capsules/{transactionId}}).
+ * <p>
+ * Requests are started at configured arrival rate independent of response times (open model), so that
+ * server saturation shows as growing latency, in-flight requests and errors instead of lower request rate.
+ * GET requests are made by the identity the capsule was created for, POST requests are made for random recipient
+ * of random configured capsule type.
+ */
+public final class LoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final String KEY_CAPSULES_PATH = "/key-capsules";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LoadTestConfig config;
+    private final List<TlsIdentity> identities;
+    private final Map<String, List<Target>> targetsByType;
+    private final List<String> capsuleTypes;
+    private final LoadStats stats;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong arrivals = new AtomicLong();
+
+    /**
+     * POST request recipient
+     * @param recipient capsule recipient
+     * @param owner identity that can GET capsules of this recipient, {@code null} for recipient certificates
+     */
+    private record Target(Recipient recipient, TlsIdentity owner) {
+    }
+
+    private LoadTest(LoadTestConfig config, List<TlsIdentity> identities, List<Recipient> certRecipients)
+        throws FileNotFoundException {
+
+        this.config = config;
+        this.identities = identities;
+        this.stats = new LoadStats(config.histogramLog());
+
+        this.targetsByType = new HashMap<>();
+        for (TlsIdentity identity : identities) {
+            addTarget(new Target(identity.recipient(), identity));
+        }
+        for (Recipient recipient : certRecipients) {
+            addTarget(new Target(recipient, null));
+        }
+        this.capsuleTypes = new ArrayList<>();
+        for (String type : config.capsuleTypes()) {
+            if (this.targetsByType.containsKey(type)) {
+                this.capsuleTypes.add(type);
+            } else {
+                log.warn("No key store or recipient certificate for capsule type {}, skipped", type);
+            }
+        }
+        if (this.capsuleTypes.isEmpty() && config.getRatio() < 1) {
+            throw new IllegalArgumentException("No recipients for capsule types " + config.capsuleTypes());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config;
+        try {
+            config = LoadTestConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadTestConfig.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2),
+            daemonThreads("http-client")
+        );
+        KeyStore trustStore = TlsIdentity.loadKeyStore(config.trustStore(), "JKS", config.trustStorePassword());
+        List<TlsIdentity> identities = TlsIdentity.create(
+            config.identities(), config.keyStores(), trustStore, executor
+        );
+        List<Recipient> certRecipients = new ArrayList<>();
+        for (Path cert : config.recipientCerts()) {
+            certRecipients.add(Recipient.load(cert));
+        }
+
+        double errorRate = new LoadTest(config, identities, certRecipients).run();
+        executor.shutdownNow();
+        System.exit(errorRate > config.maxErrorRate() ? 1 : 0);
+    }
+
+    /**
+     * Run prefill and load test
+     * @return error rate
+     */
+    private double run() throws InterruptedException {
+        System.out.printf("Load test: %s, rate %.1f req/s (ramp-up %ds), duration %ds, GET ratio %.2f, "
+                + "%d identities, capsule types %s%n",
+            this.config.arrival(), this.config.rate(), this.config.rampUp().toSeconds(),
+            this.config.duration().toSeconds(), this.config.getRatio(), this.identities.size(), this.capsuleTypes);
+
+        prefill();
+        IdleConnections idleConnections = (this.config.idleConnections() > 0)
+            ? IdleConnections.open(this.config.idleConnections(), this.config.getServerUrl(), this.identities)
+            : null;
+        this.stats.start();
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(daemonThreads("reporter"));
+        long reportMillis = this.config.reportInterval().toMillis();
+        reporter.scheduleAtFixedRate(
+            () -> this.stats.reportInterval(System.out, this.inFlight.get()),
+            reportMillis, reportMillis, TimeUnit.MILLISECONDS
+        );
+
+        long start = System.nanoTime();
+        generateArrivals(start);
+        drain();
+        reporter.shutdownNow();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        this.stats.reportInterval(System.out, this.inFlight.get());
+        double errorRate = this.stats.reportSummary(System.out, seconds);
+        this.stats.printDistribution(System.out);
+        if (idleConnections != null) {
+            idleConnections.report();
+            idleConnections.close();
+        }
+        return errorRate;
+    }
+
+    /**
+     * Create capsules for each identity, so that GET requests have capsules to fetch from the start
+     */
+    private void prefill() {
+        if (this.config.getRatio() == 0 || this.config.prefill() == 0) {
+            return;
+        }
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (TlsIdentity identity : this.identities) {
+            CompletableFuture<?> chain = CompletableFuture.completedFuture(null);
+            for (int i = 0; i < this.config.prefill(); i++) {
+                chain = chain.thenCompose(v -> sendPost(identity, new Target(identity.recipient(), identity))
+                    .thenAccept(response -> {
+                        if (response.statusCode() != 201) {
+                            log.warn("Prefill POST failed for {}: HTTP {}", identity.name(), response.statusCode());
+                        }
+                    }));
+            }
+            futures.add(chain);
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        System.out.printf("Prefill: created %d capsules for each identity%n", this.config.prefill());
+    }
+
+    /**
+     * Start requests at intended arrival times until test end. If generator falls behind, requests are started
+     * immediately and their latency is still measured from intended start time.
+     */
+    private void generateArrivals(long start) {
+        long rampUpNanos = this.config.rampUp().toNanos();
+        long end = start + rampUpNanos + this.config.duration().toNanos();
+        long next = start;
+
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            dispatch(next);
+            next += interArrivalNanos(currentRate(next - start, rampUpNanos));
+        }
+    }
+
+    private double currentRate(long elapsedNanos, long rampUpNanos) {
+        double rate = this.config.rate();
+        if (elapsedNanos >= rampUpNanos) {
+            return rate;
+        }
+        // start ramp up from at least 1 req/s, otherwise first arrival would never come
+        return Math.max(rate * elapsedNanos / rampUpNanos, Math.min(rate, 1.0));
+    }
+
+    private long interArrivalNanos(double rate) {
+        double meanNanos = 1e9 / rate;
+        if (this.config.arrival() == LoadTestConfig.Arrival.CONSTANT) {
+            return Math.max(1, (long) meanNanos);
+        }
+        // exponentially distributed inter-arrival times give Poisson arrivals
+        return Math.max(1, (long) (-Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * meanNanos));
+    }
+
+    private void dispatch(long intendedStart) {
+        if (this.inFlight.incrementAndGet() > this.config.maxInFlight()) {
+            this.inFlight.decrementAndGet();
+            this.stats.recordDropped();
+            return;
+        }
+
+        long n = this.arrivals.getAndIncrement();
+        TlsIdentity identity = this.identities.get((int) (n % this.identities.size()));
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+        String transactionId = (rnd.nextDouble() < this.config.getRatio()) ? identity.randomTransactionId() : null;
+        if (transactionId != null) {
+            sendGet(identity, transactionId).whenComplete((response, ex) ->
+                complete(LoadStats.Operation.GET, intendedStart, 200, response, ex)
+            );
+        } else if (!this.capsuleTypes.isEmpty()) {
+            List<Target> targets = this.targetsByType.get(this.capsuleTypes.get(rnd.nextInt(this.capsuleTypes.size())));
+            sendPost(identity, targets.get(rnd.nextInt(targets.size()))).whenComplete((response, ex) ->
+                complete(LoadStats.Operation.POST, intendedStart, 201, response, ex)
+            );
+        } else {
+            // GET only test, identity doesn't have capsules
+            this.inFlight.decrementAndGet();
+            this.stats.recordError(LoadStats.Operation.GET, 0, "no capsule for identity");
+        }
+    }
+
+    private void complete(
+        LoadStats.Operation op,
+        long intendedStart,
+        int expectedStatus,
+        HttpResponse<?> response,
+        Throwable ex
+    ) {
+        long latency = System.nanoTime() - intendedStart;
+        this.inFlight.decrementAndGet();
+        if (ex != null) {
+            Throwable cause = (ex.getCause() != null) ? ex.getCause() : ex;
+            this.stats.recordError(op, latency, cause.getClass().getSimpleName());
+        } else if (response.statusCode() != expectedStatus) {
+            this.stats.recordError(op, latency, "HTTP " + response.statusCode());
+        } else {
+            this.stats.recordSuccess(op, latency);
+        }
+    }
+
+    private CompletableFuture<HttpResponse<Void>> sendPost(TlsIdentity client, Target target) {
+        HttpRequest request = HttpRequest.newBuilder(resolve(this.config.putServerUrl(), KEY_CAPSULES_PATH))
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(target.recipient().capsuleJson()))
+            .build();
+        return client.httpClient().sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .thenApply(response -> {
+                if (response.statusCode() == 201 && target.owner() != null) {
+                    // Location: /key-capsules/KC9b7036de0c9fce889850c4bbb1e23482
+                    response.headers().firstValue("Location").ifPresent(location ->
+                        target.owner().addTransactionId(location.substring(location.lastIndexOf('/') + 1))
+                    );
+                }
+                return response;
+            });
+    }
+
+    private CompletableFuture<HttpResponse<Void>> sendGet(TlsIdentity client, String transactionId) {
+        HttpRequest request = HttpRequest.newBuilder(
+                resolve(this.config.getServerUrl(), KEY_CAPSULES_PATH + "/" + transactionId)
+            )
+            .timeout(REQUEST_TIMEOUT)
+            .header("Accept", "application/json")
+            .GET()
+            .build();
+        return client.httpClient().sendAsync(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    private void drain() throws InterruptedException {
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (this.inFlight.get() > 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        if (this.inFlight.get() > 0) {
+            log.warn("{} requests still in flight after {}s", this.inFlight.get(), DRAIN_TIMEOUT.toSeconds());
+        }
+    }
+
+    private void addTarget(Target target) {
+        this.targetsByType.computeIfAbsent(target.recipient().capsuleType(), t -> new ArrayList<>()).add(target);
+    }
+
+    static URI resolve(URI base, String path) {
+        String baseStr = base.toString();
+        return URI.create(baseStr.endsWith("/") ? baseStr.substring(0, baseStr.length() - 1) + path : baseStr + path);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,205 @@
+package ee.cyber.cdoc2.server.loadtest;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Load test configuration, parsed from {@code --name=value} command line options. See {@link #USAGE}.
+ *
+ * @param putServerUrl put-server base URL
+ * @param getServerUrl get-server base URL
+ * @param rate target arrival rate (requests per second), reached after {@code rampUp}
+ * @param rampUp duration of linear arrival rate increase from 0 to {@code rate}
+ * @param duration test duration after ramp up
+ * @param arrival inter-arrival distribution
+ * @param getRatio share of GET requests [0..1], rest are POST requests
+ * @param identities number of TLS client identities (separate TLS clients with own TLS sessions)
+ * @param keyStores PKCS12 key stores for client identities, used round-robin
+ * @param trustStore trust store for server certificate
+ * @param trustStorePassword trust store password
+ * @param recipientCerts additional recipient certificates for POST requests (no GET for them)
+ * @param capsuleTypes capsule types for POST requests
+ * @param prefill capsules created for each identity before test, so that GET has something to fetch
+ * @param maxInFlight max concurrent requests, requests arriving above that are counted as dropped
+ * @param idleConnections keep-alive connections to get-server opened before the test and left idle during it
+ * @param reportInterval interval for printing intermediate results
+ * @param histogramLog file for HdrHistogram interval log, {@code null} if not written
+ * @param maxErrorRate exit with non-zero code, when error rate [0..1] is above it
+ */
+public record LoadTestConfig(
+    URI putServerUrl,
+    URI getServerUrl,
+    double rate,
+    Duration rampUp,
+    Duration duration,
+    Arrival arrival,
+    double getRatio,
+    int identities,
+    List<KeyStoreRef> keyStores,
+    Path trustStore,
+    char[] trustStorePassword,
+    List<Path> recipientCerts,
+    List<String> capsuleTypes,
+    int prefill,
+    int maxInFlight,
+    int idleConnections,
+    Duration reportInterval,
+    Path histogramLog,
+    double maxErrorRate
+) {
+
+    /**
+     * Inter-arrival time distribution. {@code POISSON} (exponential inter-arrival times) models independent
+     * clients, {@code CONSTANT} sends requests at fixed intervals.
+     */
+    public enum Arrival {
+        CONSTANT,
+        POISSON
+    }
+
+    /**
+     * PKCS12 key store with client key and certificate
+     */
+    public record KeyStoreRef(Path path, char[] password) {
+        static KeyStoreRef parse(String value, Path keysDir) {
+            int sep = value.lastIndexOf(':');
+            if (sep <= 0) {
+                throw new IllegalArgumentException("Key store must be given as <path>:<password>: " + value);
+            }
+            return new KeyStoreRef(keysDir.resolve(value.substring(0, sep)), value.substring(sep + 1).toCharArray());
+        }
+    }
+
+    static final String USAGE = """
+        Usage: java -jar load-test.jar [--option=value ...]
+
+          --put-url=https://localhost:8443     put-server URL
+          --get-url=https://localhost:8444     get-server URL
+          --rate=100                           target arrival rate, requests per second (open model)
+          --ramp-up=0                          seconds to increase arrival rate linearly from 0 to rate
+          --duration=60                        test duration in seconds (after ramp up)
+          --arrival=poisson                    inter-arrival times: poisson or constant
+          --get-ratio=0.8                      share of GET requests, rest are POST
+          --identities=10                      TLS client identities (own TLS client and sessions each)
+          --keys-dir=keys                      directory for relative key store and certificate paths
+          --key-stores=cdoc2client.p12:passwd,rsa/client-rsa-2048.p12:passwd
+                                               client PKCS12 key stores (path:password), used round-robin
+          --trust-store=clienttruststore.jks   trust store for server certificate
+          --trust-store-password=passwd
+          --recipient-certs=ecc/ecc-256-client-certificate.pem,ecc/ecc-521-client-certificate.pem,\
+        rsa/client-rsa-4096-cert.pem
+                                               additional recipients for POST (capsule types without key store)
+          --capsule-types=ecc_secp256r1,ecc_secp384r1,ecc_secp521r1,rsa
+                                               capsule types for POST
+          --prefill=10                         capsules created for each identity before test
+          --max-in-flight=10000                concurrent requests limit, requests above it are dropped
+          --idle-connections=0                 get-server keep-alive connections kept idle during the test
+          --report-interval=10                 seconds between intermediate reports
+          --histogram-log=                     HdrHistogram interval log file (optional)
+          --max-error-rate=1.0                 exit code 1, when error rate is higher
+        """;
+
+    private static final String DEFAULT_KEY_STORES = "cdoc2client.p12:passwd,rsa/client-rsa-2048.p12:passwd";
+    private static final String DEFAULT_RECIPIENT_CERTS =
+        "ecc/ecc-256-client-certificate.pem,ecc/ecc-521-client-certificate.pem,rsa/client-rsa-4096-cert.pem";
+    private static final String DEFAULT_CAPSULE_TYPES = "ecc_secp256r1,ecc_secp384r1,ecc_secp521r1,rsa";
+
+    /**
+     * Parse configuration from command line arguments
+     * @throws IllegalArgumentException if argument is unknown or invalid
+     */
+    public static LoadTestConfig parse(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        Path keysDir = Path.of(take(opts, "keys-dir", defaultKeysDir()));
+        LoadTestConfig config = new LoadTestConfig(
+            URI.create(take(opts, "put-url", "https://localhost:8443")),
+            URI.create(take(opts, "get-url", "https://localhost:8444")),
+            Double.parseDouble(take(opts, "rate", "100")),
+            Duration.ofSeconds(Long.parseLong(take(opts, "ramp-up", "0"))),
+            Duration.ofSeconds(Long.parseLong(take(opts, "duration", "60"))),
+            Arrival.valueOf(take(opts, "arrival", "poisson").toUpperCase()),
+            Double.parseDouble(take(opts, "get-ratio", "0.8")),
+            Integer.parseInt(take(opts, "identities", "10")),
+            split(take(opts, "key-stores", DEFAULT_KEY_STORES)).stream()
+                .map(ks -> KeyStoreRef.parse(ks, keysDir))
+                .toList(),
+            keysDir.resolve(take(opts, "trust-store", "clienttruststore.jks")),
+            take(opts, "trust-store-password", "passwd").toCharArray(),
+            split(take(opts, "recipient-certs", DEFAULT_RECIPIENT_CERTS)).stream()
+                .map(keysDir::resolve)
+                .toList(),
+            split(take(opts, "capsule-types", DEFAULT_CAPSULE_TYPES)),
+            Integer.parseInt(take(opts, "prefill", "10")),
+            Integer.parseInt(take(opts, "max-in-flight", "10000")),
+            Integer.parseInt(take(opts, "idle-connections", "0")),
+            Duration.ofSeconds(Long.parseLong(take(opts, "report-interval", "10"))),
+            toPath(take(opts, "histogram-log", "")),
+            Double.parseDouble(take(opts, "max-error-rate", "1.0"))
+        );
+        if (!opts.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + opts.keySet());
+        }
+        config.validate();
+        return config;
+    }
+
+    private void validate() {
+        if (this.rate <= 0) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+        if (this.getRatio < 0 || this.getRatio > 1) {
+            throw new IllegalArgumentException("get-ratio must be in range [0..1]");
+        }
+        if (this.identities < 1 || this.keyStores.isEmpty()) {
+            throw new IllegalArgumentException("At least one identity and key store is required");
+        }
+        if (this.capsuleTypes.isEmpty() && this.getRatio < 1) {
+            throw new IllegalArgumentException("capsule-types is required for POST requests");
+        }
+        if (this.maxInFlight < 1) {
+            throw new IllegalArgumentException("max-in-flight must be positive");
+        }
+        if (this.idleConnections < 0) {
+            throw new IllegalArgumentException("idle-connections must not be negative");
+        }
+    }
+
+    private static String defaultKeysDir() {
+        // run from repository root or from cdoc2-server-load-test directory
+        return Files.isDirectory(Path.of("keys")) ? "keys" : "../keys";
+    }
+
+    private static String take(Map<String, String> opts, String name, String defaultValue) {
+        String value = opts.remove(name);
+        return (value != null) ? value : defaultValue;
+    }
+
+    private static Path toPath(String value) {
+        return value.isEmpty() ? null : Path.of(value);
+    }
+
+    private static List<String> split(String value) {
+        List<String> values = new ArrayList<>();
+        Arrays.stream(value.split(","))
+            .map(String::trim)
+            .filter(s -> !s.isEmpty())
+            .forEach(values::add);
+        return values;
+    }
+}
@@ -0,0 +1,76 @@
+package ee.cyber.cdoc2.server.loadtest;
+
+import ee.cyber.cdoc2.shared.crypto.ECKeys;
+import ee.cyber.cdoc2.shared.crypto.EllipticCurve;
+import ee.cyber.cdoc2.shared.crypto.RsaUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Capsule recipient (public key from certificate) and capsule request body for it
+ *
+ * @param name recipient name for reports
+ * @param capsuleType capsule type as in API, example {@code ecc_secp384r1}
+ * @param recipientId recipient public key encoded for capsule (TLS encoded EC or DER encoded RSA public key)
+ * @param ephemeralKeys pre-generated ephemeral key materials, request bodies use random one of them
+ */
+record Recipient(String name, String capsuleType, byte[] recipientId, byte[][] ephemeralKeys) {
+
+    // EC key generation is slower than capsule creation on server, generate once
+    private static final int EPHEMERAL_KEYS = 16;
+
+    static Recipient of(X509Certificate certificate, String name) throws GeneralSecurityException {
+        PublicKey publicKey = certificate.getPublicKey();
+        byte[][] ephemeralKeys = new byte[EPHEMERAL_KEYS][];
+        if (publicKey instanceof RSAPublicKey rsaPublicKey) {
+            // RSA capsule ephemeral key material is KEK encrypted with recipient key, modulus length
+            int modulusBytes = (rsaPublicKey.getModulus().bitLength() + 7) / 8;
+            for (int i = 0; i < EPHEMERAL_KEYS; i++) {
+                ephemeralKeys[i] = new byte[modulusBytes];
+                ThreadLocalRandom.current().nextBytes(ephemeralKeys[i]);
+            }
+            return new Recipient(name, "rsa", RsaUtils.encodeRsaPubKey(rsaPublicKey), ephemeralKeys);
+        }
+
+        ECPublicKey ecPublicKey = (ECPublicKey) publicKey;
+        EllipticCurve curve = EllipticCurve.forPubKey(ecPublicKey);
+        for (int i = 0; i < EPHEMERAL_KEYS; i++) {
+            ephemeralKeys[i] = ECKeys.encodeEcPubKeyForTls(
+                curve, (ECPublicKey) ECKeys.generateEcKeyPair(curve).getPublic()
+            );
+        }
+        return new Recipient(
+            name, "ecc_" + curve.getName(), ECKeys.encodeEcPubKeyForTls(curve, ecPublicKey), ephemeralKeys
+        );
+    }
+
+    static Recipient load(Path certificatePem) throws GeneralSecurityException, IOException {
+        try (InputStream in = Files.newInputStream(certificatePem)) {
+            X509Certificate cert = (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(in);
+            return of(cert, certificatePem.getFileName().toString());
+        }
+    }
+
+    /**
+     * @return JSON request body for {@code POST /key-capsules}
+     */
+    String capsuleJson() {
+        Base64.Encoder b64 = Base64.getEncoder();
+        byte[] ephemeralKey = this.ephemeralKeys[ThreadLocalRandom.current().nextInt(this.ephemeralKeys.length)];
+        return "{\"recipient_id\":\"" + b64.encodeToString(this.recipientId)
+            + "\",\"ephemeral_key_material\":\"" + b64.encodeToString(ephemeralKey)
+            + "\",\"capsule_type\":\"" + this.capsuleType + "\"}";
+    }
+}
@@ -0,0 +1,136 @@
+package ee.cyber.cdoc2.server.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+
+/**
+ * TLS client identity. Each identity has its own {@link SSLContext} and {@link HttpClient}, so it has its own
+ * connections and TLS sessions, as separate client application would have. Identities created from the same
+ * key store share the certificate.
+ * <p>
+ * Transaction ids of capsules created for identity certificate are kept in fixed size ring, GET requests are made
+ * for random transaction id from the ring.
+ */
+final class TlsIdentity {
+
+    private static final int MAX_TRANSACTION_IDS = 1024;
+
+    private final String name;
+    private final SSLContext sslContext;
+    private final HttpClient httpClient;
+    private final Recipient recipient;
+    private final AtomicReferenceArray<String> transactionIds = new AtomicReferenceArray<>(MAX_TRANSACTION_IDS);
+    private final AtomicLong transactionIdCount = new AtomicLong();
+
+    private TlsIdentity(String name, SSLContext sslContext, HttpClient httpClient, Recipient recipient) {
+        this.name = name;
+        this.sslContext = sslContext;
+        this.httpClient = httpClient;
+        this.recipient = recipient;
+    }
+
+    /**
+     * Create identities, key stores are used round-robin
+     * @param count number of identities
+     * @param keyStores client key stores
+     * @param trustStore trust store for server certificate
+     * @param executor executor for HTTP client async tasks, shared by all identities
+     */
+    static List<TlsIdentity> create(
+        int count,
+        List<LoadTestConfig.KeyStoreRef> keyStores,
+        KeyStore trustStore,
+        Executor executor
+    ) throws GeneralSecurityException, IOException {
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(trustStore);
+
+        List<KeyStore> loaded = new ArrayList<>();
+        List<Recipient> recipients = new ArrayList<>();
+        for (LoadTestConfig.KeyStoreRef ref : keyStores) {
+            KeyStore keyStore = loadKeyStore(ref.path(), "PKCS12", ref.password());
+            X509Certificate cert = (X509Certificate) keyStore.getCertificate(keyStore.aliases().nextElement());
+            loaded.add(keyStore);
+            recipients.add(Recipient.of(cert, ref.path().getFileName().toString()));
+        }
+
+        List<TlsIdentity> identities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int ksIndex = i % keyStores.size();
+            KeyStore keyStore = loaded.get(ksIndex);
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(keyStore, keyStores.get(ksIndex).password());
+
+            SSLContext sslContext = SSLContext.getInstance("TLSv1.3");
+            sslContext.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+
+            HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .sslContext(sslContext)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(executor)
+                .build();
+
+            Recipient recipient = recipients.get(ksIndex);
+            identities.add(new TlsIdentity(recipient.name() + "#" + i, sslContext, httpClient, recipient));
+        }
+        return identities;
+    }
+
+    static KeyStore loadKeyStore(Path path, String type, char[] password) throws GeneralSecurityException, IOException {
+        KeyStore keyStore = KeyStore.getInstance(type);
+        try (InputStream in = Files.newInputStream(path)) {
+            keyStore.load(in, password);
+        }
+        return keyStore;
+    }
+
+    String name() {
+        return this.name;
+    }
+
+    SSLContext sslContext() {
+        return this.sslContext;
+    }
+
+    HttpClient httpClient() {
+        return this.httpClient;
+    }
+
+    Recipient recipient() {
+        return this.recipient;
+    }
+
+    void addTransactionId(String transactionId) {
+        long n = this.transactionIdCount.getAndIncrement();
+        this.transactionIds.set((int) (n % MAX_TRANSACTION_IDS), transactionId);
+    }
+
+    /**
+     * @return random transaction id of capsule created for this identity or {@code null} if there are none yet
+     */
+    String randomTransactionId() {
+        int available = (int) Math.min(this.transactionIdCount.get(), MAX_TRANSACTION_IDS);
+        if (available == 0) {
+            return null;
+        }
+        return this.transactionIds.get(ThreadLocalRandom.current().nextInt(available));
+    }
+}
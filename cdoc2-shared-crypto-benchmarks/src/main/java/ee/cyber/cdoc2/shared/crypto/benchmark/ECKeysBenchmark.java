@@ -0,0 +1,102 @@
+package ee.cyber.cdoc2.shared.crypto.benchmark;
+
+import ee.cyber.cdoc2.shared.crypto.ECKeys;
+import ee.cyber.cdoc2.shared.crypto.EllipticCurve;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * {@link ECKeys} TLS encoding, decoding and validation for each supported curve
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ECKeysBenchmark {
+
+    @Param({"SECP256R1", "SECP384R1", "SECP521R1"})
+    public EllipticCurve curve;
+
+    private ECPublicKey publicKey;
+    // same curve, but ECParameterSpec instance created by other provider
+    private ECPublicKey bcPublicKey;
+    private byte[] tlsEncoded;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        this.publicKey = (ECPublicKey) ECKeys.generateEcKeyPair(this.curve).getPublic();
+        this.tlsEncoded = ECKeys.encodeEcPubKeyForTls(this.curve, this.publicKey);
+
+        KeyPairGenerator bcGenerator = KeyPairGenerator.getInstance("EC", new BouncyCastleProvider());
+        bcGenerator.initialize(new ECGenParameterSpec(this.curve.getName()));
+        this.bcPublicKey = (ECPublicKey) bcGenerator.generateKeyPair().getPublic();
+    }
+
+    @Benchmark
+    public ECPublicKey decodeEcPublicKeyFromTls() throws GeneralSecurityException {
+        return ECKeys.decodeEcPublicKeyFromTls(this.curve, this.tlsEncoded);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ECPublicKey decodeEcPublicKeyFromTlsMultiThreaded() throws GeneralSecurityException {
+        return ECKeys.decodeEcPublicKeyFromTls(this.curve, this.tlsEncoded);
+    }
+
+    @Benchmark
+    public org.bouncycastle.math.ec.ECPoint decodeEcPointFromTls() throws GeneralSecurityException {
+        return ECKeys.decodeEcPointFromTls(this.curve, this.tlsEncoded);
+    }
+
+    @Benchmark
+    public byte[] encodeEcPubKeyForTls() {
+        return ECKeys.encodeEcPubKeyForTls(this.curve, this.publicKey);
+    }
+
+    @Benchmark
+    public byte[] encodeEcPubKeyForTlsCurveLookup() throws GeneralSecurityException {
+        return ECKeys.encodeEcPubKeyForTls(this.publicKey);
+    }
+
+    @Benchmark
+    public boolean isValidPublicKey() throws GeneralSecurityException {
+        return ECKeys.isValidPublicKey(this.curve, this.publicKey);
+    }
+
+    @Benchmark
+    public String getCurveOid() throws GeneralSecurityException {
+        return ECKeys.getCurveOid(this.publicKey);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String getCurveOidMultiThreaded() throws GeneralSecurityException {
+        return ECKeys.getCurveOid(this.publicKey);
+    }
+
+    @Benchmark
+    public EllipticCurve getCurveOtherProviderKey() throws GeneralSecurityException {
+        return ECKeys.getCurve(this.bcPublicKey);
+    }
+}
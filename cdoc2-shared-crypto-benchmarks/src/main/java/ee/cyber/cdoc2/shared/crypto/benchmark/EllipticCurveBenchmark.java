@@ -0,0 +1,76 @@
+package ee.cyber.cdoc2.shared.crypto.benchmark;
+
+import ee.cyber.cdoc2.shared.crypto.ECKeys;
+import ee.cyber.cdoc2.shared.crypto.EllipticCurve;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * {@link EllipticCurve} lookups by name, OID, value and public key
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EllipticCurveBenchmark {
+
+    @Param({"SECP256R1", "SECP384R1", "SECP521R1"})
+    public EllipticCurve curve;
+
+    private String name;
+    private String upperCaseName;
+    private String oid;
+    private byte value;
+    private PublicKey publicKey;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        this.name = this.curve.getName();
+        this.upperCaseName = this.curve.name();
+        this.oid = this.curve.getOid();
+        this.value = this.curve.getValue();
+        this.publicKey = ECKeys.generateEcKeyPair(this.curve).getPublic();
+    }
+
+    @Benchmark
+    public EllipticCurve forName() throws GeneralSecurityException {
+        return EllipticCurve.forName(this.name);
+    }
+
+    @Benchmark
+    public EllipticCurve forNameUpperCase() throws GeneralSecurityException {
+        return EllipticCurve.forName(this.upperCaseName);
+    }
+
+    @Benchmark
+    public EllipticCurve forOid() throws GeneralSecurityException {
+        return EllipticCurve.forOid(this.oid);
+    }
+
+    @Benchmark
+    public EllipticCurve forValue() throws GeneralSecurityException {
+        return EllipticCurve.forValue(this.value);
+    }
+
+    @Benchmark
+    public EllipticCurve forPubKey() throws GeneralSecurityException {
+        return EllipticCurve.forPubKey(this.publicKey);
+    }
+}
@@ -0,0 +1,79 @@
+package ee.cyber.cdoc2.shared.crypto.benchmark;
+
+import ee.cyber.cdoc2.shared.crypto.RsaUtils;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.SecureRandom;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * {@link RsaUtils} RSAPublicKey DER encoding and decoding for RSA key sizes
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RsaUtilsBenchmark {
+
+    private static final BigInteger PUBLIC_EXPONENT = BigInteger.valueOf(65537);
+
+    @Param({"2048", "3072", "4096", "8192", "16384"})
+    public int keySize;
+
+    private RSAPublicKey publicKey;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        // Encoding and decoding don't depend on modulus factorization. Generating real 16384-bit
+        // key takes minutes, so random odd modulus of keySize bits is used instead.
+        BigInteger modulus = new BigInteger(this.keySize, new SecureRandom())
+            .setBit(this.keySize - 1)
+            .setBit(0);
+        this.publicKey = (RSAPublicKey) KeyFactory.getInstance("RSA")
+            .generatePublic(new RSAPublicKeySpec(modulus, PUBLIC_EXPONENT));
+        this.encoded = RsaUtils.encodeRsaPubKey(this.publicKey);
+    }
+
+    @Benchmark
+    public byte[] encodeRsaPubKey() {
+        return RsaUtils.encodeRsaPubKey(this.publicKey);
+    }
+
+    @Benchmark
+    public RSAPublicKey decodeRsaPubKey() throws IOException, GeneralSecurityException {
+        return RsaUtils.decodeRsaPubKey(this.encoded);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public RSAPublicKey decodeRsaPubKeyMultiThreaded() throws IOException, GeneralSecurityException {
+        return RsaUtils.decodeRsaPubKey(this.encoded);
+    }
+
+    @Benchmark
+    public RSAPublicKeySpec decodeRsaPubKeySpec() throws IOException, GeneralSecurityException {
+        return RsaUtils.decodeRsaPubKeySpec(this.encoded);
+    }
+}
@@ -0,0 +1,79 @@
+package ee.cyber.cdoc2.shared.crypto.benchmark;
+
+import ee.cyber.cdoc2.shared.crypto.Crypto;
+import ee.cyber.cdoc2.shared.crypto.SecureRandomPool;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Generating 16 random bytes (size of transaction id) with shared {@link Crypto#getSecureRandom()} and with
+ * {@link SecureRandomPool}. Multi-threaded variants show lock contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecureRandomBenchmark {
+
+    private static final int TRANSACTION_ID_BYTES = 16;
+
+    @State(Scope.Thread)
+    public static class Bytes {
+        final byte[] bytes = new byte[TRANSACTION_ID_BYTES];
+    }
+
+    @State(Scope.Benchmark)
+    public static class Pool {
+        @Param({"PREDICTION_RESISTANCE", "PERIODIC", "NONE"})
+        public SecureRandomPool.ReseedPolicy reseedPolicy;
+
+        SecureRandomPool pool;
+
+        @Setup
+        public void setup() throws NoSuchAlgorithmException {
+            this.pool = new SecureRandomPool(Runtime.getRuntime().availableProcessors(), this.reseedPolicy, 1024);
+        }
+    }
+
+    @Benchmark
+    public byte[] sharedSecureRandom(Bytes state) throws NoSuchAlgorithmException {
+        Crypto.getSecureRandom().nextBytes(state.bytes);
+        return state.bytes;
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] sharedSecureRandomMultiThreaded(Bytes state) throws NoSuchAlgorithmException {
+        Crypto.getSecureRandom().nextBytes(state.bytes);
+        return state.bytes;
+    }
+
+    @Benchmark
+    public byte[] pool(Pool pool, Bytes state) {
+        pool.pool.nextBytes(state.bytes);
+        return state.bytes;
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] poolMultiThreaded(Pool pool, Bytes state) {
+        pool.pool.nextBytes(state.bytes);
+        return state.bytes;
+    }
+}
@@ -4,6 +4,7 @@ import java.security.DrbgParameters;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.SecureRandom;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,16 +13,61 @@ public final class Crypto {
 
     private static final Logger log = LoggerFactory.getLogger(Crypto.class);
 
-    private static SecureRandom secureRandomInstance = null;
+    // lazy initialization lock. Not synchronized, so that virtual threads waiting for initialization don't pin
+    // their carrier threads
+    private static final ReentrantLock INIT_LOCK = new ReentrantLock();
+
+    private static volatile SecureRandom secureRandomInstance = null;
+
+    private static volatile SecureRandomPool secureRandomPool = null;
 
     private Crypto() { }
 
-    public static synchronized SecureRandom getSecureRandom() throws NoSuchAlgorithmException {
-        if (secureRandomInstance == null) {
-            secureRandomInstance = createSecureRandom();
+    public static SecureRandom getSecureRandom() throws NoSuchAlgorithmException {
+        SecureRandom secureRandom = secureRandomInstance;
+        if (secureRandom == null) {
+            INIT_LOCK.lock();
+            try {
+                secureRandom = secureRandomInstance;
+                if (secureRandom == null) {
+                    secureRandom = createSecureRandom();
+                    secureRandomInstance = secureRandom;
+                }
+            } finally {
+                INIT_LOCK.unlock();
+            }
+        }
+        return secureRandom;
+    }
+
+    /**
+     * Get shared {@link SecureRandomPool}. Unlike {@link #getSecureRandom()}, concurrent callers don't serialize
+     * on a single instance. If pool is not configured with {@link #setSecureRandomPool(SecureRandomPool)}, then
+     * {@link SecureRandomPool#createDefault()} is used.
+     */
+    public static SecureRandomPool getSecureRandomPool() throws NoSuchAlgorithmException {
+        SecureRandomPool pool = secureRandomPool;
+        if (pool == null) {
+            INIT_LOCK.lock();
+            try {
+                pool = secureRandomPool;
+                if (pool == null) {
+                    pool = SecureRandomPool.createDefault();
+                    secureRandomPool = pool;
+                }
+            } finally {
+                INIT_LOCK.unlock();
+            }
         }
+        return pool;
+    }
 
-        return secureRandomInstance;
+    /**
+     * Replace shared {@link SecureRandomPool}, should be called during application startup
+     * @param pool configured pool
+     */
+    public static void setSecureRandomPool(SecureRandomPool pool) {
+        secureRandomPool = pool;
     }
 
     private static SecureRandom createSecureRandom() throws NoSuchAlgorithmException {
@@ -16,11 +16,9 @@ import java.security.interfaces.ECKey;
 import java.security.interfaces.ECPrivateKey;
 import java.security.interfaces.ECPublicKey;
 import java.security.spec.ECGenParameterSpec;
-import java.security.spec.ECParameterSpec;
 import java.security.spec.ECPoint;
 import java.security.spec.ECPublicKeySpec;
 import java.security.spec.InvalidParameterSpecException;
-import java.util.Arrays;
 import java.util.HexFormat;
 import java.util.Objects;
 
@@ -67,8 +65,7 @@ public final class ECKeys {
         if (ECPoint.POINT_INFINITY.equals(ecPublicKey.getW())) {
             throw new IllegalArgumentException("Cannot encode infinity ECPoint");
         }
-        EllipticCurve curve = EllipticCurve.forOid(getCurveOid(ecPublicKey));
-        return encodeEcPubKeyForTls(curve, ecPublicKey);
+        return encodeEcPubKeyForTls(getCurve(ecPublicKey), ecPublicKey);
     }
 
     /**
@@ -80,19 +77,18 @@ public final class ECKeys {
     @SuppressWarnings("checkstyle:LineLength")
     public static byte[] encodeEcPubKeyForTls(EllipticCurve curve, ECPublicKey ecPublicKey) {
         int keyLength = curve.getKeyLength();
-        byte[] xBytes = toUnsignedByteArray(ecPublicKey.getW().getAffineX(), keyLength);
-        byte[] yBytes = toUnsignedByteArray(ecPublicKey.getW().getAffineY(), keyLength);
 
         //CHECKSTYLE:OFF
         //EC pubKey in TLS 1.3 format
         //https://datatracker.ietf.org/doc/html/rfc8446#section-4.2.8.2
         //https://github.com/bcgit/bc-java/blob/526b5846653100fc521c1a68c02dbe9df3347a29/core/src/main/java/org/bouncycastle/math/ec/ECCurve.java#L410
         //CHECKSTYLE:ON
-        byte[] tlsPubKey = new byte[1 + xBytes.length + yBytes.length];
+        byte[] tlsPubKey = new byte[1 + 2 * keyLength];
         tlsPubKey[0] = 0x04; // uncompressed
 
-        System.arraycopy(xBytes, 0, tlsPubKey, 1, xBytes.length);
-        System.arraycopy(yBytes, 0, tlsPubKey, 1 + xBytes.length, yBytes.length);
+        // write coordinates directly into result, no intermediate fixed length arrays
+        writeUnsigned(ecPublicKey.getW().getAffineX(), tlsPubKey, 1, keyLength);
+        writeUnsigned(ecPublicKey.getW().getAffineY(), tlsPubKey, 1 + keyLength, keyLength);
 
         return tlsPubKey;
     }
@@ -103,8 +99,8 @@ public final class ECKeys {
 
     public static ECPublicKey decodeEcPublicKeyFromTls(EllipticCurve curve, ByteBuffer encoded)
         throws GeneralSecurityException {
-        return decodeEcPublicKeyFromTls(curve,
-            Arrays.copyOfRange(encoded.array(), encoded.position(), encoded.limit()));
+        return toEcPublicKey(curve, decodeEcPointFromTls(curve, encoded.array(),
+            encoded.arrayOffset() + encoded.position(), encoded.remaining()));
     }
 
     /**
@@ -116,13 +112,40 @@ public final class ECKeys {
      */
     public static ECPublicKey decodeEcPublicKeyFromTls(EllipticCurve curve, byte[] encoded)
         throws GeneralSecurityException {
-        ECPublicKey ecPublicKey = decodeRawTlsBytes(encoded, curve);
-        if (!isValidPublicKey(curve, ecPublicKey)) {
-            throw new InvalidKeyException(
-                "Not a valid " + curve.getName() + " EC public key: "
-                    + HexFormat.of().formatHex(encoded));
-        }
-        return ecPublicKey;
+        return toEcPublicKey(curve, decodeEcPointFromTls(curve, encoded));
+    }
+
+    /**
+     * Decode and validate EC public key point from TLS 1.3 format
+     * https://datatracker.ietf.org/doc/html/rfc8446#section-4.2.8.2 without creating JCA {@link ECPublicKey}.
+     * Performs length, encoding, coordinate range and point-on-curve checks. Use this, when only validity of
+     * the key is required, {@link #toEcPublicKey(EllipticCurve, org.bouncycastle.math.ec.ECPoint)} converts
+     * the point to {@link ECPublicKey} when it is needed.
+     * @param curve the expected elliptic curve
+     * @param encoded EC public key octets encoded as in TLS 1.3 format
+     * @return validated and normalized point on {@code curve}
+     * @throws InvalidKeyException if encoded bytes are not a valid public key on {@code curve}
+     */
+    public static org.bouncycastle.math.ec.ECPoint decodeEcPointFromTls(EllipticCurve curve, byte[] encoded)
+        throws InvalidKeyException {
+        Objects.requireNonNull(encoded, "Cannot decode null EC public key");
+        return decodeEcPointFromTls(curve, encoded, 0, encoded.length);
+    }
+
+    /**
+     * Convert validated EC point (see {@link #decodeEcPointFromTls(EllipticCurve, byte[])}) to JCA
+     * {@link ECPublicKey}. Uses precomputed {@link EllipticCurve#getParameterSpec()} for the curve.
+     * @param curve the elliptic curve of the point
+     * @param point normalized point on {@code curve}
+     * @return ECPublicKey for the point
+     * @throws GeneralSecurityException if JCA key creation fails
+     */
+    public static ECPublicKey toEcPublicKey(EllipticCurve curve, org.bouncycastle.math.ec.ECPoint point)
+        throws GeneralSecurityException {
+        ECPoint w = new ECPoint(point.getAffineXCoord().toBigInteger(), point.getAffineYCoord().toBigInteger());
+        return (ECPublicKey) KeyFactory
+            .getInstance(KeyAlgorithm.Algorithm.EC.name())
+            .generatePublic(new ECPublicKeySpec(w, curve.getParameterSpec()));
     }
 
     // -------------------------------------------------------------------------
@@ -143,8 +166,8 @@ public final class ECKeys {
             log.debug("EC pub key is infinity");
             return false;
         }
-        if (getCurve(ecPublicKey) != curve) {
-            log.debug("EC pub key curve OID {} is not {}", getCurveOid(ecPublicKey), curve.getName());
+        if (EllipticCurveRegistry.forParameterSpec(ecPublicKey.getParams()) != curve) {
+            log.debug("EC pub key curve is not {}", curve.getName());
             return false;
         }
 
@@ -179,19 +202,26 @@ public final class ECKeys {
     }
 
     /**
-     * Returns the {@link EllipticCurve} for the given key.
+     * Returns the {@link EllipticCurve} for the given key. Curve is resolved from key parameters without
+     * JCA provider lookups.
      */
     public static EllipticCurve getCurve(ECKey key) throws GeneralSecurityException {
-        return EllipticCurve.forOid(getCurveOid(key));
+        return EllipticCurve.forParameterSpec(key.getParams());
     }
 
     /**
      * Returns the OID string of the curve used by the given key.
      * In practice SunEC and BC both return the OID form (e.g. {@code "1.3.132.0.34"})
      * rather than the human-readable name.
+     * Supported curves are resolved without JCA provider lookups, SunEC is only queried for other curves.
      */
     public static String getCurveOid(ECKey key)
         throws NoSuchAlgorithmException, InvalidParameterSpecException, NoSuchProviderException {
+        EllipticCurve curve = EllipticCurveRegistry.forParameterSpec(key.getParams());
+        if (curve != null) {
+            return curve.getOid();
+        }
+
         AlgorithmParameters params =
             AlgorithmParameters.getInstance(KeyAlgorithm.Algorithm.EC.name(), "SunEC");
         params.init(key.getParams());
@@ -240,51 +270,64 @@ public final class ECKeys {
     // Private helpers
     // -------------------------------------------------------------------------
 
-    private static ECPublicKey decodeRawTlsBytes(byte[] encoded, EllipticCurve curve)
-        throws GeneralSecurityException {
-        int expectedLength = curve.getKeyLength();
-        String encodedHex = HexFormat.of().formatHex(encoded);
+    private static org.bouncycastle.math.ec.ECPoint decodeEcPointFromTls(
+        EllipticCurve curve, byte[] encoded, int offset, int length
+    ) throws InvalidKeyException {
+        int keyLength = curve.getKeyLength();
 
-        if (encoded.length != 2 * expectedLength + 1) {
-            log.error("Invalid pubKey len {}, expected {}, encoded: {}", encoded.length, (2 * expectedLength + 1),
-                encodedHex);
-            throw new IllegalArgumentException("Incorrect length for uncompressed encoding");
+        // hex encoding of the key is created only when the key is invalid and the error is logged
+        if (length != curve.getTlsEncodedKeyLength()) {
+            log.error("Invalid pubKey len {}, expected {}, encoded: {}", length, curve.getTlsEncodedKeyLength(),
+                toHex(encoded, offset, length));
+            throw new InvalidKeyException("Incorrect length for uncompressed encoding");
         }
 
-        if (encoded[0] != 0x04) {
-            log.error("Illegal EC pub key encoding. Encoded: {}", encodedHex);
-            throw new IllegalArgumentException("Invalid encoding");
+        if (encoded[offset] != 0x04) {
+            log.error("Illegal EC pub key encoding. Encoded: {}", toHex(encoded, offset, length));
+            throw new InvalidKeyException("Invalid encoding");
         }
 
-        BigInteger x = new BigInteger(1, Arrays.copyOfRange(encoded, 1, expectedLength + 1));
-        BigInteger y = new BigInteger(1, Arrays.copyOfRange(encoded, expectedLength + 1, encoded.length));
+        BigInteger x = new BigInteger(1, encoded, offset + 1, keyLength);
+        BigInteger y = new BigInteger(1, encoded, offset + 1 + keyLength, keyLength);
 
-        AlgorithmParameters params = AlgorithmParameters.getInstance(KeyAlgorithm.Algorithm.EC.name());
-        params.init(new ECGenParameterSpec(curve.getName()));
-        ECParameterSpec ecParameters = params.getParameterSpec(ECParameterSpec.class);
+        // BC field elements reject coordinates outside of field with IllegalArgumentException, check before
+        BigInteger p = curve.getFieldPrime();
+        if (x.compareTo(p) >= 0 || y.compareTo(p) >= 0) {
+            throw new InvalidKeyException(invalidKeyMessage(curve, encoded, offset, length));
+        }
 
-        return (ECPublicKey) KeyFactory
-            .getInstance(KeyAlgorithm.Algorithm.EC.name())
-            .generatePublic(new ECPublicKeySpec(new ECPoint(x, y), ecParameters));
+        // point-on-curve validation by BouncyCastle
+        // https://neilmadden.blog/2017/05/17/so-how-do-you-validate-nist-ecdh-public-keys/
+        org.bouncycastle.math.ec.ECPoint ecPoint = curve.getBcCurve().createPoint(x, y);
+        if (!ecPoint.isValid()) {
+            log.debug("EC pub key is not on {} curve", curve.getName());
+            throw new InvalidKeyException(invalidKeyMessage(curve, encoded, offset, length));
+        }
+        return ecPoint;
     }
 
-    private static byte[] toUnsignedByteArray(BigInteger bigInteger, int len) {
+    private static String invalidKeyMessage(EllipticCurve curve, byte[] encoded, int offset, int length) {
+        return "Not a valid " + curve.getName() + " EC public key: " + toHex(encoded, offset, length);
+    }
+
+    private static String toHex(byte[] bytes, int offset, int length) {
+        return HexFormat.of().formatHex(bytes, offset, offset + length);
+    }
+
+    /**
+     * Write non-negative {@code bigInteger} into {@code dst} as fixed length unsigned big-endian number
+     * (left-padded with zeros)
+     */
+    private static void writeUnsigned(BigInteger bigInteger, byte[] dst, int dstOffset, int len) {
         Objects.requireNonNull(bigInteger, "Cannot convert null bigInteger to byte[]");
         //https://stackoverflow.com/questions/4407779/biginteger-to-byte
         byte[] array = bigInteger.toByteArray();
-        if ((array[0] == 0) && (array.length == len + 1)) {
-            return Arrays.copyOfRange(array, 1, array.length);
-        } else if (array.length < len) {
-            byte[] padded = new byte[len];
-            System.arraycopy(array, 0, padded, len - array.length, array.length);
-            return padded;
-        } else {
-            if ((array.length != len) && (log.isWarnEnabled())) {
-                log.warn("Expected EC key to be {} bytes, but was {}. bigInteger: {}",
-                    len, array.length, bigInteger.toString(16));
-            }
-            return array;
+        int srcOffset = (array.length > 1 && array[0] == 0) ? 1 : 0;
+        int srcLen = array.length - srcOffset;
+        if (srcLen > len) {
+            throw new IllegalArgumentException("Expected EC key to be " + len + " bytes, but was " + srcLen);
         }
+        System.arraycopy(array, srcOffset, dst, dstOffset + len - srcLen, srcLen);
     }
 
     private static boolean isEcKeyAlgorithm(String privateAlgorithm, String publicAlgorithm) {
@@ -1,12 +1,16 @@
 package ee.cyber.cdoc2.shared.crypto;
 
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PublicKey;
 import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
 import java.security.spec.InvalidParameterSpecException;
-import java.util.Locale;
 
 import org.bouncycastle.math.ec.ECCurve;
 import org.bouncycastle.math.ec.custom.sec.SecP256R1Curve;
@@ -17,6 +21,8 @@ import org.bouncycastle.math.ec.custom.sec.SecP521R1Curve;
 /**
  * Elliptic curve enums mapped to known elliptic curve names, OIDs, key lengths,
  * and their BouncyCastle curve instances for point validation.
+ * JCA {@link ECParameterSpec} and field prime are resolved once per curve when the enum is initialized,
+ * so that key decoding doesn't need to go through {@link AlgorithmParameters} for every key.
  */
 public enum EllipticCurve {
 
@@ -55,12 +61,18 @@ public enum EllipticCurve {
     private final ECCurve bcCurve;
     private final byte value;
 
+    // precomputed per curve parameters, null for UNKNOWN
+    private final ECParameterSpec parameterSpec;
+    private final BigInteger fieldPrime;
+
     EllipticCurve(String name, String oid, int keyLengthBytes, ECCurve bcCurve, byte value) {
         this.name = name;
         this.oid = oid;
         this.keyLengthBytes = keyLengthBytes;
         this.bcCurve = bcCurve;
         this.value = value;
+        this.parameterSpec = (name != null) ? lookupParameterSpec(name) : null;
+        this.fieldPrime = (bcCurve != null) ? bcCurve.getField().getCharacteristic() : null;
     }
 
     public String getName() {
@@ -95,14 +107,39 @@ public enum EllipticCurve {
         return bcCurve;
     }
 
-    public static EllipticCurve forOid(String oid) throws NoSuchAlgorithmException {
-        for (EllipticCurve curve : values()) {
-            if (curve != UNKNOWN && curve.oid.equals(oid)) {
-                return curve;
-            }
+    /**
+     * JCA EC domain parameters for the curve, used to create {@link ECPublicKey} instances.
+     */
+    public ECParameterSpec getParameterSpec() {
+        if (this == UNKNOWN) {
+            throw new IllegalStateException("getParameterSpec() not supported for UNKNOWN curve");
+        }
+        return parameterSpec;
+    }
+
+    /**
+     * Prime p of the curve field. Valid affine coordinates are in range [0, p-1].
+     */
+    public BigInteger getFieldPrime() {
+        if (this == UNKNOWN) {
+            throw new IllegalStateException("getFieldPrime() not supported for UNKNOWN curve");
         }
+        return fieldPrime;
+    }
 
-        throw new NoSuchAlgorithmException("Unknown EC curve OID: " + oid);
+    /**
+     * Length of the public key encoded in TLS 1.3 uncompressed format (0x04 || x || y).
+     */
+    public int getTlsEncodedKeyLength() {
+        return 2 * getKeyLength() + 1;
+    }
+
+    public static EllipticCurve forOid(String oid) throws NoSuchAlgorithmException {
+        EllipticCurve curve = EllipticCurveRegistry.forOid(oid);
+        if (curve == null) {
+            throw new NoSuchAlgorithmException("Unknown EC curve OID: " + oid);
+        }
+        return curve;
     }
 
     public static EllipticCurve forValue(byte value) throws NoSuchAlgorithmException {
@@ -115,12 +152,25 @@ public enum EllipticCurve {
     }
 
     public static EllipticCurve forName(String name) throws NoSuchAlgorithmException {
-        for (EllipticCurve curve : values()) {
-            if (curve != UNKNOWN && curve.name.equals(name.toLowerCase(Locale.ROOT))) {
-                return curve;
-            }
+        EllipticCurve curve = EllipticCurveRegistry.forName(name);
+        if (curve == null) {
+            throw new NoSuchAlgorithmException("Unknown EC curve name: " + name);
         }
-        throw new NoSuchAlgorithmException("Unknown EC curve name: " + name);
+        return curve;
+    }
+
+    /**
+     * Find supported curve for EC domain parameters. Doesn't use JCA provider lookups.
+     * @param params EC domain parameters, usually from {@link java.security.interfaces.ECKey#getParams()}
+     * @return EllipticCurve
+     * @throws NoSuchAlgorithmException if EC curve is not supported
+     */
+    public static EllipticCurve forParameterSpec(ECParameterSpec params) throws NoSuchAlgorithmException {
+        EllipticCurve curve = EllipticCurveRegistry.forParameterSpec(params);
+        if (curve == null) {
+            throw new NoSuchAlgorithmException("Unknown EC curve parameters");
+        }
+        return curve;
     }
 
     /**
@@ -135,10 +185,20 @@ public enum EllipticCurve {
         InvalidParameterSpecException, NoSuchProviderException, InvalidKeyException {
 
         if (publicKey instanceof ECPublicKey ecPublicKey) {
-            return forOid(ECKeys.getCurveOid(ecPublicKey));
+            return forParameterSpec(ecPublicKey.getParams());
         } else {
             throw new InvalidKeyException("Unsupported key algorithm " + publicKey.getAlgorithm());
         }
     }
 
+    private static ECParameterSpec lookupParameterSpec(String curveName) {
+        try {
+            AlgorithmParameters params = AlgorithmParameters.getInstance(KeyAlgorithm.Algorithm.EC.name());
+            params.init(new ECGenParameterSpec(curveName));
+            return params.getParameterSpec(ECParameterSpec.class);
+        } catch (GeneralSecurityException gse) {
+            throw new IllegalStateException("EC curve " + curveName + " not supported by JCA providers", gse);
+        }
+    }
+
 }
@@ -0,0 +1,107 @@
+package ee.cyber.cdoc2.shared.crypto;
+
+import java.security.spec.ECField;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECParameterSpec;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Resolves supported {@link EllipticCurve} by name, OID or {@link ECParameterSpec} without JCA provider lookups.
+ * <p>
+ * {@link ECParameterSpec} doesn't override {@code equals}, so parameter spec lookup is first done by identity
+ * (SunEC keys share a single {@link ECParameterSpec} instance per named curve) and on miss by comparing curve
+ * domain parameters. Parameter specs resolved by structure are cached by identity, cache is cleared when full as
+ * some providers create new {@link ECParameterSpec} instance for each key (specs still in use are cached again
+ * on next lookup).
+ */
+final class EllipticCurveRegistry {
+
+    static final int MAX_CACHED_PARAMETER_SPECS = 64;
+
+    private static final Map<String, EllipticCurve> BY_NAME = new HashMap<>();
+    private static final Map<String, EllipticCurve> BY_OID = new HashMap<>();
+    private static final Map<ECParameterSpec, EllipticCurve> BY_PARAMETER_SPEC = new HashMap<>();
+    private static final Map<ECParameterSpec, EllipticCurve> RESOLVED_PARAMETER_SPECS = new ConcurrentHashMap<>();
+
+    static {
+        for (EllipticCurve curve : EllipticCurve.values()) {
+            if (curve != EllipticCurve.UNKNOWN) {
+                BY_NAME.put(curve.getName(), curve);
+                BY_NAME.put(curve.getName().toUpperCase(Locale.ROOT), curve);
+                BY_OID.put(curve.getOid(), curve);
+                BY_PARAMETER_SPEC.put(curve.getParameterSpec(), curve);
+            }
+        }
+    }
+
+    private EllipticCurveRegistry() { }
+
+    /**
+     * @return curve for name (case-insensitive) or {@code null} if curve is not supported
+     */
+    static EllipticCurve forName(String name) {
+        if (name == null) {
+            return null;
+        }
+        EllipticCurve curve = BY_NAME.get(name);
+        return (curve != null) ? curve : BY_NAME.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return curve for OID or {@code null} if curve is not supported
+     */
+    static EllipticCurve forOid(String oid) {
+        return (oid != null) ? BY_OID.get(oid) : null;
+    }
+
+    /**
+     * @return curve with domain parameters {@code spec} or {@code null} if curve is not supported
+     */
+    static EllipticCurve forParameterSpec(ECParameterSpec spec) {
+        if (spec == null) {
+            return null;
+        }
+
+        EllipticCurve cached = BY_PARAMETER_SPEC.get(spec);
+        if (cached == null) {
+            cached = RESOLVED_PARAMETER_SPECS.get(spec);
+        }
+        if (cached != null) {
+            return cached;
+        }
+
+        for (EllipticCurve curve : EllipticCurve.values()) {
+            if (curve != EllipticCurve.UNKNOWN && sameDomainParameters(curve.getParameterSpec(), spec)) {
+                if (RESOLVED_PARAMETER_SPECS.size() >= MAX_CACHED_PARAMETER_SPECS) {
+                    RESOLVED_PARAMETER_SPECS.clear();
+                }
+                RESOLVED_PARAMETER_SPECS.put(spec, curve);
+                return curve;
+            }
+        }
+        return null;
+    }
+
+    static int cachedParameterSpecCount() {
+        return RESOLVED_PARAMETER_SPECS.size();
+    }
+
+    private static boolean sameDomainParameters(ECParameterSpec known, ECParameterSpec other) {
+        // field prime differs for all supported curves and is checked first
+        return isPrimeField(other.getCurve().getField(), known)
+            && known.getOrder().equals(other.getOrder())
+            && known.getCofactor() == other.getCofactor()
+            && known.getCurve().getA().equals(other.getCurve().getA())
+            && known.getCurve().getB().equals(other.getCurve().getB())
+            && known.getGenerator().equals(other.getGenerator());
+    }
+
+    private static boolean isPrimeField(ECField field, ECParameterSpec known) {
+        return field instanceof ECFieldFp fp
+            && ((ECFieldFp) known.getCurve().getField()).getP().equals(fp.getP());
+    }
+}
@@ -1,19 +1,34 @@
 package ee.cyber.cdoc2.shared.crypto;
 
-import org.bouncycastle.asn1.ASN1EncodableVector;
-import org.bouncycastle.asn1.ASN1Integer;
-import org.bouncycastle.asn1.ASN1Primitive;
-import org.bouncycastle.asn1.ASN1Sequence;
-import org.bouncycastle.asn1.DERSequence;
-
 import java.io.IOException;
+import java.math.BigInteger;
 import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
 import java.security.interfaces.RSAPublicKey;
+import java.security.spec.InvalidKeySpecException;
 import java.security.spec.RSAPublicKeySpec;
 import java.util.Objects;
 
 public final class RsaUtils {
+
+    /** Max RSA modulus size, same as max modulus size accepted by SunRsaSign provider */
+    public static final int MAX_MODULUS_BITS = 16384;
+
+    /** Min RSA modulus size, smaller keys are not accepted as capsule recipients */
+    public static final int MIN_MODULUS_BITS = 2048;
+
+    /** Max RSA public exponent size, same as SunRsaSign provider allows for moduli larger than 3072 bits */
+    public static final int MAX_EXPONENT_BITS = 64;
+
+    private static final int DER_SEQUENCE = 0x30;
+    private static final int DER_INTEGER = 0x02;
+
+    // modulus and exponent with sign byte
+    private static final int MAX_MODULUS_LEN = MAX_MODULUS_BITS / 8 + 1;
+    private static final int MAX_EXPONENT_LEN = MAX_EXPONENT_BITS / 8 + 1;
+    // SEQUENCE(3 byte length) + INTEGER(3 byte length) modulus + INTEGER(2 byte length) exponent
+    private static final int MAX_ENCODED_LEN = 4 + 4 + MAX_MODULUS_LEN + 2 + MAX_EXPONENT_LEN;
+
     private RsaUtils() { }
 
     /**
@@ -30,16 +45,21 @@ public final class RsaUtils {
     public static byte[] encodeRsaPubKey(RSAPublicKey rsaPublicKey) {
         Objects.requireNonNull(rsaPublicKey);
 
-        ASN1EncodableVector v = new ASN1EncodableVector(2);
-        v.add(new ASN1Integer(rsaPublicKey.getModulus()));
-        v.add(new ASN1Integer(rsaPublicKey.getPublicExponent()));
-        DERSequence derSequence = new DERSequence(v);
-        try {
-            return derSequence.getEncoded();
-        } catch (IOException io) {
-            // getEncoded uses internally ByteArrayOutputStream that shouldn't throw IOException
-            throw new IllegalStateException("Failed to encode rsaPublicKey", io);
-        }
+        // two's complement big-endian is the DER INTEGER content
+        byte[] mod = rsaPublicKey.getModulus().toByteArray();
+        byte[] exp = rsaPublicKey.getPublicExponent().toByteArray();
+
+        int modTlvLen = 1 + derLengthSize(mod.length) + mod.length;
+        int expTlvLen = 1 + derLengthSize(exp.length) + exp.length;
+        int contentLen = modTlvLen + expTlvLen;
+
+        byte[] encoded = new byte[1 + derLengthSize(contentLen) + contentLen];
+        int pos = writeDerHeader(encoded, 0, DER_SEQUENCE, contentLen);
+        pos = writeDerHeader(encoded, pos, DER_INTEGER, mod.length);
+        System.arraycopy(mod, 0, encoded, pos, mod.length);
+        pos = writeDerHeader(encoded, pos + mod.length, DER_INTEGER, exp.length);
+        System.arraycopy(exp, 0, encoded, pos, exp.length);
+        return encoded;
     }
 
     /**
@@ -58,20 +78,160 @@ public final class RsaUtils {
      * see RsaTest.java for examples
      */
     public static RSAPublicKey decodeRsaPubKey(byte[] asn1Data) throws IOException, GeneralSecurityException {
+        RSAPublicKeySpec spec = decodeRsaPubKeySpec(asn1Data);
+        KeyFactory keyFactory = KeyFactory.getInstance(KeyAlgorithm.Algorithm.RSA.name());
+        return (RSAPublicKey) keyFactory.generatePublic(spec);
+    }
 
-        ASN1Primitive p = ASN1Primitive.fromByteArray(asn1Data);
-        ASN1Sequence asn1Sequence = ASN1Sequence.getInstance(p);
+    /**
+     * Decode and validate DER encoded RSAPublicKey structure (see {@link #decodeRsaPubKey(byte[])}) without
+     * creating {@link RSAPublicKey}. Input is parsed in place, oversized input and integers are rejected before
+     * any allocation. Modulus must be {@value #MIN_MODULUS_BITS}..{@value #MAX_MODULUS_BITS} bits and public
+     * exponent at most {@value #MAX_EXPONENT_BITS} bits.
+     * @param asn1Data DER encoded RSAPublicKey
+     * @return modulus and public exponent
+     * @throws IOException if {@code asn1Data} is not DER encoded RSAPublicKey
+     * @throws InvalidKeySpecException if modulus or public exponent is not valid
+     */
+    public static RSAPublicKeySpec decodeRsaPubKeySpec(byte[] asn1Data) throws IOException, InvalidKeySpecException {
+        Objects.requireNonNull(asn1Data);
+        if (asn1Data.length > MAX_ENCODED_LEN) {
+            throw new IOException("RSAPublicKey too long: " + asn1Data.length);
+        }
 
-        if (asn1Sequence.size() != 2) {
-            throw new IOException("Bad sequence size: " + asn1Sequence.size());
+        DerReader reader = new DerReader(asn1Data);
+        int seqLen = reader.readHeader(DER_SEQUENCE);
+        if (seqLen != reader.remaining()) {
+            throw new IOException("Bad RSAPublicKey sequence length");
         }
 
-        ASN1Integer mod = ASN1Integer.getInstance(asn1Sequence.getObjectAt(0));
-        ASN1Integer exp = ASN1Integer.getInstance(asn1Sequence.getObjectAt(1));
+        int modLen = reader.readHeader(DER_INTEGER);
+        if (modLen > MAX_MODULUS_LEN) {
+            throw new InvalidKeySpecException("RSA modulus too long: " + modLen + " bytes");
+        }
+        BigInteger modulus = reader.readPositiveInteger(modLen);
 
-        RSAPublicKeySpec spec = new RSAPublicKeySpec(mod.getPositiveValue(), exp.getPositiveValue());
-        KeyFactory keyFactory = KeyFactory.getInstance(KeyAlgorithm.Algorithm.RSA.name());
-        return (RSAPublicKey) keyFactory.generatePublic(spec);
+        int expLen = reader.readHeader(DER_INTEGER);
+        if (expLen > MAX_EXPONENT_LEN) {
+            throw new InvalidKeySpecException("RSA public exponent too long: " + expLen + " bytes");
+        }
+        BigInteger exponent = reader.readPositiveInteger(expLen);
+
+        if (reader.remaining() != 0) {
+            throw new IOException("Bad sequence size: extra data after RSAPublicKey");
+        }
+
+        if (modulus.bitLength() > MAX_MODULUS_BITS) {
+            throw new InvalidKeySpecException("RSA modulus too long: " + modulus.bitLength() + " bits");
+        }
+        if (modulus.bitLength() < MIN_MODULUS_BITS) {
+            throw new InvalidKeySpecException("RSA modulus too short: " + modulus.bitLength() + " bits");
+        }
+        if (exponent.bitLength() > MAX_EXPONENT_BITS) {
+            throw new InvalidKeySpecException("RSA public exponent too long: " + exponent.bitLength() + " bits");
+        }
+        if (!modulus.testBit(0)) {
+            throw new InvalidKeySpecException("Invalid RSA modulus");
+        }
+        if (!exponent.testBit(0) || exponent.bitLength() < 2) {
+            throw new InvalidKeySpecException("Invalid RSA public exponent");
+        }
+        return new RSAPublicKeySpec(modulus, exponent);
+    }
+
+    private static int derLengthSize(int len) {
+        if (len < 0x80) {
+            return 1;
+        } else if (len <= 0xFF) {
+            return 2;
+        } else if (len <= 0xFFFF) {
+            return 3;
+        } else if (len <= 0xFFFFFF) {
+            return 4;
+        }
+        return 5;
+    }
+
+    private static int writeDerHeader(byte[] dst, int pos, int tag, int len) {
+        dst[pos++] = (byte) tag;
+        int lenSize = derLengthSize(len);
+        if (lenSize == 1) {
+            dst[pos++] = (byte) len;
+        } else {
+            dst[pos++] = (byte) (0x80 | (lenSize - 1));
+            for (int shift = (lenSize - 2) * 8; shift >= 0; shift -= 8) {
+                dst[pos++] = (byte) (len >>> shift);
+            }
+        }
+        return pos;
     }
 
+    /**
+     * Minimal DER reader for RSAPublicKey. Accepts only definite, minimally encoded lengths
+     * (at most 2 length bytes) that fit in the input.
+     */
+    private static final class DerReader {
+        private final byte[] data;
+        private int pos;
+
+        DerReader(byte[] data) {
+            this.data = data;
+        }
+
+        int remaining() {
+            return this.data.length - this.pos;
+        }
+
+        /**
+         * Read tag and length
+         * @return content length
+         */
+        int readHeader(int expectedTag) throws IOException {
+            if (remaining() < 2) {
+                throw new IOException("Unexpected end of RSAPublicKey");
+            }
+            int tag = this.data[this.pos++] & 0xFF;
+            if (tag != expectedTag) {
+                throw new IOException("Unexpected DER tag 0x" + Integer.toHexString(tag));
+            }
+
+            int len = this.data[this.pos++] & 0xFF;
+            if (len > 0x80) {
+                int lenBytes = len & 0x7F;
+                if (lenBytes > 2 || remaining() < lenBytes) {
+                    throw new IOException("Unsupported DER length");
+                }
+                len = 0;
+                for (int i = 0; i < lenBytes; i++) {
+                    len = (len << 8) | (this.data[this.pos++] & 0xFF);
+                }
+                if (len < 0x80 || (lenBytes == 2 && len <= 0xFF)) {
+                    throw new IOException("Non-minimal DER length");
+                }
+            } else if (len == 0x80) {
+                throw new IOException("Indefinite length is not allowed in DER");
+            }
+
+            if (len > remaining()) {
+                throw new IOException("DER length exceeds input");
+            }
+            return len;
+        }
+
+        BigInteger readPositiveInteger(int len) throws IOException {
+            if (len == 0) {
+                throw new IOException("Empty DER integer");
+            }
+            byte first = this.data[this.pos];
+            if (first < 0) {
+                throw new IOException("Negative DER integer");
+            }
+            if (len > 1 && first == 0 && this.data[this.pos + 1] >= 0) {
+                throw new IOException("Non-minimal DER integer");
+            }
+            BigInteger value = new BigInteger(1, this.data, this.pos, len);
+            this.pos += len;
+            return value;
+        }
+    }
 }
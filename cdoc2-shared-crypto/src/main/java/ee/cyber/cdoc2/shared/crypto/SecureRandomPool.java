@@ -0,0 +1,178 @@
+package ee.cyber.cdoc2.shared.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Pool of independently seeded DRBG {@link SecureRandom} instances. Threads are striped over pool instances by
+ * thread id, so that concurrent callers don't serialize on a single {@link SecureRandom} instance.
+ * <p>
+ * Pool collects statistics about random bytes generation (see {@link #stats()}), that can be exposed as metrics.
+ */
+public final class SecureRandomPool {
+
+    private static final Logger log = LoggerFactory.getLogger(SecureRandomPool.class);
+
+    private static final int DRBG_STRENGTH = 256;
+    private static final String PERSONALIZATION_STRING = "CDOC2";
+
+    /**
+     * DRBG reseed policy
+     */
+    public enum ReseedPolicy {
+        /**
+         * Prediction resistance, DRBG is reseeded from entropy source before each generate request.
+         * Slowest, DRBG behaviour before pool was introduced.
+         */
+        PREDICTION_RESISTANCE,
+        /**
+         * DRBG is explicitly reseeded from entropy source after every {@code reseedInterval} generate requests
+         */
+        PERIODIC,
+        /**
+         * DRBG is not explicitly reseeded, DRBG mechanism reseeds itself when its internal reseed counter
+         * is exhausted
+         */
+        NONE
+    }
+
+    /**
+     * Snapshot of pool statistics
+     * @param generateCount number of generate requests
+     * @param generateNanos total time spent on generate requests, including time waiting for pool instance lock
+     * @param contendedCount number of generate requests that had to wait for another thread using the same
+     *                       pool instance
+     * @param reseedCount number of explicit reseeds (only with {@link ReseedPolicy#PERIODIC})
+     */
+    public record Stats(long generateCount, long generateNanos, long contendedCount, long reseedCount) {
+    }
+
+    private final Stripe[] stripes;
+    private final ReseedPolicy reseedPolicy;
+    private final long reseedInterval;
+
+    private final LongAdder generateCount = new LongAdder();
+    private final LongAdder generateNanos = new LongAdder();
+    private final LongAdder contendedCount = new LongAdder();
+    private final LongAdder reseedCount = new LongAdder();
+
+    /**
+     * @param size number of DRBG instances in the pool
+     * @param reseedPolicy DRBG reseed policy
+     * @param reseedInterval number of generate requests between reseeds for {@link ReseedPolicy#PERIODIC},
+     *                       ignored for other policies
+     * @throws NoSuchAlgorithmException if DRBG is not available
+     */
+    public SecureRandomPool(int size, ReseedPolicy reseedPolicy, long reseedInterval)
+        throws NoSuchAlgorithmException {
+
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + size);
+        }
+        if (reseedPolicy == ReseedPolicy.PERIODIC && reseedInterval < 1) {
+            throw new IllegalArgumentException("Reseed interval must be positive: " + reseedInterval);
+        }
+
+        this.reseedPolicy = reseedPolicy;
+        this.reseedInterval = reseedInterval;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe(createDrbg(reseedPolicy, i));
+        }
+        log.info("Initialized SecureRandom pool(size={}, reseedPolicy={})", size, reseedPolicy);
+    }
+
+    /**
+     * Create pool with DRBG instance for each available processor and prediction resistance
+     */
+    public static SecureRandomPool createDefault() throws NoSuchAlgorithmException {
+        return new SecureRandomPool(
+            Runtime.getRuntime().availableProcessors(), ReseedPolicy.PREDICTION_RESISTANCE, 0
+        );
+    }
+
+    /**
+     * Fill {@code bytes} with random bytes from pool instance selected for the current thread
+     * @param bytes array to be filled in with random bytes
+     */
+    public void nextBytes(byte[] bytes) {
+        long start = System.nanoTime();
+        Stripe stripe = this.stripes[stripeIndex()];
+
+        if (!stripe.lock.tryLock()) {
+            this.contendedCount.increment();
+            stripe.lock.lock();
+        }
+        try {
+            if (this.reseedPolicy == ReseedPolicy.PERIODIC && ++stripe.requestsSinceReseed >= this.reseedInterval) {
+                stripe.drbg.reseed();
+                stripe.requestsSinceReseed = 0;
+                this.reseedCount.increment();
+            }
+            stripe.drbg.nextBytes(bytes);
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        this.generateCount.increment();
+        this.generateNanos.add(System.nanoTime() - start);
+    }
+
+    public int size() {
+        return this.stripes.length;
+    }
+
+    public ReseedPolicy getReseedPolicy() {
+        return this.reseedPolicy;
+    }
+
+    public Stats stats() {
+        return new Stats(
+            this.generateCount.sum(),
+            this.generateNanos.sum(),
+            this.contendedCount.sum(),
+            this.reseedCount.sum()
+        );
+    }
+
+    private int stripeIndex() {
+        if (this.stripes.length == 1) {
+            return 0;
+        }
+        // spread sequential thread ids
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return Math.floorMod((int) (h ^ (h >>> 32)), this.stripes.length);
+    }
+
+    private static SecureRandom createDrbg(ReseedPolicy reseedPolicy, int index) throws NoSuchAlgorithmException {
+        DrbgParameters.Capability capability = switch (reseedPolicy) {
+            case PREDICTION_RESISTANCE -> DrbgParameters.Capability.PR_AND_RESEED;
+            case PERIODIC -> DrbgParameters.Capability.RESEED_ONLY;
+            case NONE -> DrbgParameters.Capability.NONE;
+        };
+        // instances are seeded independently from entropy source, personalization string separates them further
+        byte[] personalization = (PERSONALIZATION_STRING + index).getBytes(StandardCharsets.US_ASCII);
+        return SecureRandom.getInstance(
+            "DRBG", DrbgParameters.instantiation(DRBG_STRENGTH, capability, personalization)
+        );
+    }
+
+    private static final class Stripe {
+        private final SecureRandom drbg;
+        private final ReentrantLock lock = new ReentrantLock();
+        // guarded by lock
+        private long requestsSinceReseed;
+
+        private Stripe(SecureRandom drbg) {
+            this.drbg = drbg;
+        }
+    }
+}
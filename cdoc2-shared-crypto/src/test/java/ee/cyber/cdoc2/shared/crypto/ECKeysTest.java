@@ -0,0 +1,126 @@
+package ee.cyber.cdoc2.shared.crypto;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class ECKeysTest {
+
+    private static final EllipticCurve[] CURVES =
+        {EllipticCurve.SECP256R1, EllipticCurve.SECP384R1, EllipticCurve.SECP521R1};
+
+    @Test
+    void shouldEncodeAndDecodePublicKey() throws Exception {
+        for (EllipticCurve curve : CURVES) {
+            ECPublicKey publicKey = (ECPublicKey) ECKeys.generateEcKeyPair(curve).getPublic();
+
+            byte[] encoded = ECKeys.encodeEcPubKeyForTls(publicKey);
+            assertEquals(curve.getTlsEncodedKeyLength(), encoded.length);
+            assertEquals(0x04, encoded[0]);
+            assertArrayEquals(encoded, ECKeys.encodeEcPubKeyForTls(curve, publicKey));
+
+            ECPublicKey decoded = ECKeys.decodeEcPublicKeyFromTls(curve, encoded);
+            assertEquals(publicKey.getW(), decoded.getW());
+            assertSame(curve, ECKeys.getCurve(decoded));
+            assertEquals(curve.getOid(), ECKeys.getCurveOid(decoded));
+            assertTrue(ECKeys.isValidPublicKey(curve, decoded));
+            assertTrue(ECKeys.isSupported(decoded));
+
+            var point = ECKeys.decodeEcPointFromTls(curve, encoded);
+            assertEquals(publicKey.getW().getAffineX(), point.getAffineXCoord().toBigInteger());
+            assertEquals(publicKey.getW().getAffineY(), point.getAffineYCoord().toBigInteger());
+            assertEquals(publicKey.getW(), ECKeys.toEcPublicKey(curve, point).getW());
+        }
+    }
+
+    @Test
+    void shouldDecodePublicKeyFromBufferSlice() throws Exception {
+        EllipticCurve curve = EllipticCurve.SECP384R1;
+        ECPublicKey publicKey = (ECPublicKey) ECKeys.generateEcKeyPair(curve).getPublic();
+        byte[] encoded = ECKeys.encodeEcPubKeyForTls(publicKey);
+
+        byte[] padded = new byte[encoded.length + 10];
+        System.arraycopy(encoded, 0, padded, 3, encoded.length);
+        ByteBuffer slice = ByteBuffer.wrap(padded, 1, encoded.length + 2).slice();
+        slice.position(2);
+
+        assertEquals(publicKey.getW(), ECKeys.decodeEcPublicKeyFromTls(curve, slice).getW());
+    }
+
+    @Test
+    void shouldRejectInvalidPublicKey() throws Exception {
+        EllipticCurve curve = EllipticCurve.SECP384R1;
+        ECPublicKey publicKey = (ECPublicKey) ECKeys.generateEcKeyPair(curve).getPublic();
+        byte[] encoded = ECKeys.encodeEcPubKeyForTls(publicKey);
+        int keyLength = curve.getKeyLength();
+
+        // wrong length, wrong curve
+        assertThrows(InvalidKeyException.class,
+            () -> ECKeys.decodeEcPointFromTls(curve, Arrays.copyOf(encoded, encoded.length - 1)));
+        assertThrows(InvalidKeyException.class,
+            () -> ECKeys.decodeEcPointFromTls(curve, Arrays.copyOf(encoded, encoded.length + 1)));
+        assertThrows(InvalidKeyException.class, () -> ECKeys.decodeEcPointFromTls(curve, new byte[0]));
+        assertThrows(InvalidKeyException.class,
+            () -> ECKeys.decodeEcPublicKeyFromTls(EllipticCurve.SECP256R1, encoded));
+        assertThrows(NullPointerException.class, () -> ECKeys.decodeEcPointFromTls(curve, null));
+
+        // compressed encoding
+        byte[] compressed = encoded.clone();
+        compressed[0] = 0x02;
+        assertThrows(InvalidKeyException.class, () -> ECKeys.decodeEcPointFromTls(curve, compressed));
+
+        // coordinate not in field
+        byte[] xOutOfField = encoded.clone();
+        Arrays.fill(xOutOfField, 1, 1 + keyLength, (byte) 0xFF);
+        assertThrows(InvalidKeyException.class, () -> ECKeys.decodeEcPointFromTls(curve, xOutOfField));
+        byte[] yIsPrime = encoded.clone();
+        writeUnsigned(curve.getFieldPrime(), yIsPrime, 1 + keyLength, keyLength);
+        assertThrows(InvalidKeyException.class, () -> ECKeys.decodeEcPointFromTls(curve, yIsPrime));
+
+        // point not on curve
+        byte[] notOnCurve = encoded.clone();
+        notOnCurve[notOnCurve.length - 1] ^= 0x01;
+        assertThrows(InvalidKeyException.class, () -> ECKeys.decodeEcPointFromTls(curve, notOnCurve));
+
+        // point at infinity is not encodable in uncompressed form, all zero coordinates are not on curve
+        byte[] zero = new byte[encoded.length];
+        zero[0] = 0x04;
+        assertThrows(InvalidKeyException.class, () -> ECKeys.decodeEcPointFromTls(curve, zero));
+    }
+
+    @Test
+    void shouldValidateKeyPairCurve() throws Exception {
+        KeyPair keyPair = ECKeys.generateEcKeyPair(EllipticCurve.SECP384R1);
+        ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+
+        assertTrue(ECKeys.isECKeyPairForCurve(EllipticCurve.SECP384R1, keyPair));
+        assertFalse(ECKeys.isECKeyPairForCurve(EllipticCurve.SECP256R1, keyPair));
+        assertFalse(ECKeys.isValidPublicKey(EllipticCurve.SECP256R1, publicKey));
+        assertFalse(ECKeys.isValidPublicKey(EllipticCurve.SECP384R1, null));
+
+        KeyPair derived = ECKeys.deriveECPubKeyFromPrivKey((ECPrivateKey) keyPair.getPrivate());
+        assertEquals(publicKey.getW(), ((ECPublicKey) derived.getPublic()).getW());
+    }
+
+    private static void writeUnsigned(BigInteger value, byte[] dst, int offset, int length) {
+        byte[] bytes = value.toByteArray();
+        int srcOffset = (bytes.length > length) ? bytes.length - length : 0;
+        int srcLength = bytes.length - srcOffset;
+        Arrays.fill(dst, offset, offset + length, (byte) 0);
+        System.arraycopy(bytes, srcOffset, dst, offset + length - srcLength, srcLength);
+    }
+}
@@ -0,0 +1,122 @@
+package ee.cyber.cdoc2.shared.crypto;
+
+import java.math.BigInteger;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECFieldF2m;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class EllipticCurveRegistryTest {
+
+    private static final EllipticCurve[] CURVES =
+        {EllipticCurve.SECP256R1, EllipticCurve.SECP384R1, EllipticCurve.SECP521R1};
+
+    @Test
+    void shouldFindCurveByName() throws Exception {
+        for (EllipticCurve curve : CURVES) {
+            assertSame(curve, EllipticCurveRegistry.forName(curve.getName()));
+            assertSame(curve, EllipticCurveRegistry.forName(curve.getName().toUpperCase(Locale.ROOT)));
+            assertSame(curve, EllipticCurveRegistry.forName("Secp" + curve.getName().substring(4)));
+            assertSame(curve, EllipticCurve.forName(curve.getName()));
+        }
+
+        assertNull(EllipticCurveRegistry.forName("secp256k1"));
+        assertNull(EllipticCurveRegistry.forName(""));
+        assertNull(EllipticCurveRegistry.forName(null));
+        assertThrows(NoSuchAlgorithmException.class, () -> EllipticCurve.forName("secp256k1"));
+        assertThrows(NoSuchAlgorithmException.class, () -> EllipticCurve.forName(null));
+    }
+
+    @Test
+    void shouldFindCurveByOid() throws Exception {
+        assertSame(EllipticCurve.SECP256R1, EllipticCurveRegistry.forOid("1.2.840.10045.3.1.7"));
+        assertSame(EllipticCurve.SECP384R1, EllipticCurveRegistry.forOid("1.3.132.0.34"));
+        assertSame(EllipticCurve.SECP521R1, EllipticCurve.forOid("1.3.132.0.35"));
+
+        // secp256k1
+        assertNull(EllipticCurveRegistry.forOid("1.3.132.0.10"));
+        assertNull(EllipticCurveRegistry.forOid(null));
+        assertThrows(NoSuchAlgorithmException.class, () -> EllipticCurve.forOid("1.3.132.0.10"));
+    }
+
+    @Test
+    void shouldFindCurveByParameterSpec() throws Exception {
+        for (EllipticCurve curve : CURVES) {
+            assertSame(curve, EllipticCurveRegistry.forParameterSpec(curve.getParameterSpec()));
+
+            // key generated by JCA provider
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec(curve.getName()));
+            ECPublicKey publicKey = (ECPublicKey) generator.generateKeyPair().getPublic();
+            assertSame(curve, EllipticCurveRegistry.forParameterSpec(publicKey.getParams()));
+
+            // equal domain parameters in different instance
+            ECParameterSpec copy = copy(curve.getParameterSpec());
+            assertNotSame(curve.getParameterSpec(), copy);
+            assertSame(curve, EllipticCurveRegistry.forParameterSpec(copy));
+            assertSame(curve, EllipticCurve.forParameterSpec(copy));
+        }
+    }
+
+    @Test
+    void shouldNotFindUnsupportedParameterSpec() {
+        ECParameterSpec spec = EllipticCurve.SECP384R1.getParameterSpec();
+
+        ECParameterSpec otherOrder = new ECParameterSpec(spec.getCurve(), spec.getGenerator(),
+            spec.getOrder().add(BigInteger.TWO), spec.getCofactor());
+        assertNull(EllipticCurveRegistry.forParameterSpec(otherOrder));
+
+        ECParameterSpec otherGenerator = new ECParameterSpec(spec.getCurve(),
+            new ECPoint(spec.getGenerator().getAffineX(), BigInteger.ONE), spec.getOrder(), spec.getCofactor());
+        assertNull(EllipticCurveRegistry.forParameterSpec(otherGenerator));
+
+        // sect163k1 binary field curve
+        ECParameterSpec binaryField = new ECParameterSpec(
+            new java.security.spec.EllipticCurve(new ECFieldF2m(163, new int[] {7, 6, 3}),
+                BigInteger.ONE, BigInteger.ONE),
+            new ECPoint(BigInteger.ONE, BigInteger.ONE), spec.getOrder(), 2);
+        assertNull(EllipticCurveRegistry.forParameterSpec(binaryField));
+
+        assertNull(EllipticCurveRegistry.forParameterSpec(null));
+        assertThrows(NoSuchAlgorithmException.class, () -> EllipticCurve.forParameterSpec(otherOrder));
+    }
+
+    @Test
+    void shouldBoundParameterSpecCache() {
+        ECParameterSpec spec = EllipticCurve.SECP256R1.getParameterSpec();
+        int max = EllipticCurveRegistry.MAX_CACHED_PARAMETER_SPECS;
+
+        for (int i = 0; i < 2 * max && EllipticCurveRegistry.cachedParameterSpecCount() < max; i++) {
+            assertSame(EllipticCurve.SECP256R1, EllipticCurveRegistry.forParameterSpec(copy(spec)));
+        }
+        assertEquals(max, EllipticCurveRegistry.cachedParameterSpecCount());
+
+        // full cache is cleared, new parameter specs are still cached
+        ECParameterSpec copy = copy(spec);
+        assertSame(EllipticCurve.SECP256R1, EllipticCurveRegistry.forParameterSpec(copy));
+        assertEquals(1, EllipticCurveRegistry.cachedParameterSpecCount());
+        assertSame(EllipticCurve.SECP256R1, EllipticCurveRegistry.forParameterSpec(copy));
+        assertEquals(1, EllipticCurveRegistry.cachedParameterSpecCount());
+
+        // built-in parameter specs are not evicted
+        assertSame(EllipticCurve.SECP256R1, EllipticCurveRegistry.forParameterSpec(spec));
+        assertEquals(1, EllipticCurveRegistry.cachedParameterSpecCount());
+    }
+
+    private static ECParameterSpec copy(ECParameterSpec spec) {
+        return new ECParameterSpec(spec.getCurve(), spec.getGenerator(), spec.getOrder(), spec.getCofactor());
+    }
+}
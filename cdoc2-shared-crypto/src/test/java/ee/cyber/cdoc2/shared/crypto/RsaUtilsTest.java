@@ -0,0 +1,178 @@
+package ee.cyber.cdoc2.shared.crypto;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class RsaUtilsTest {
+
+    private static final BigInteger F4 = BigInteger.valueOf(65537);
+
+    private static RSAPublicKey publicKey;
+
+    @BeforeAll
+    static void generateKey() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        publicKey = (RSAPublicKey) generator.generateKeyPair().getPublic();
+    }
+
+    @Test
+    void shouldEncodeAndDecodeRsaPublicKey() throws Exception {
+        byte[] encoded = RsaUtils.encodeRsaPubKey(publicKey);
+
+        // SEQUENCE and modulus INTEGER use long form lengths
+        assertEquals(0x30, encoded[0]);
+        assertEquals((byte) 0x82, encoded[1]);
+
+        RSAPublicKeySpec spec = RsaUtils.decodeRsaPubKeySpec(encoded);
+        assertEquals(publicKey.getModulus(), spec.getModulus());
+        assertEquals(publicKey.getPublicExponent(), spec.getPublicExponent());
+        assertEquals(publicKey, RsaUtils.decodeRsaPubKey(encoded));
+        assertArrayEquals(encoded, RsaUtils.encodeRsaPubKey(RsaUtils.decodeRsaPubKey(encoded)));
+    }
+
+    @Test
+    void shouldRejectMalformedDer() {
+        byte[] encoded = RsaUtils.encodeRsaPubKey(publicKey);
+
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(new byte[0]));
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(new byte[] {0x30}));
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(new byte[] {0x30, 0x00}));
+        // not a SEQUENCE
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(replace(encoded, 0, 0x31)));
+        // modulus is not an INTEGER
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(replace(encoded, 4, 0x04)));
+        // truncated
+        assertThrows(IOException.class,
+            () -> RsaUtils.decodeRsaPubKeySpec(Arrays.copyOf(encoded, encoded.length - 1)));
+        // empty, negative and non-minimal integers
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(hex("3005020002010f")));
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(hex("3006020180020103")));
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(hex("300702020001020103")));
+    }
+
+    @Test
+    void shouldRejectTrailingBytes() {
+        byte[] encoded = RsaUtils.encodeRsaPubKey(publicKey);
+
+        // after SEQUENCE
+        byte[] trailing = Arrays.copyOf(encoded, encoded.length + 1);
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(trailing));
+
+        // inside SEQUENCE, after public exponent
+        int contentLen = ((encoded[2] & 0xFF) << 8 | (encoded[3] & 0xFF)) + 3;
+        byte[] extraElement = Arrays.copyOf(encoded, encoded.length + 3);
+        extraElement[2] = (byte) (contentLen >>> 8);
+        extraElement[3] = (byte) contentLen;
+        extraElement[encoded.length] = 0x02;
+        extraElement[encoded.length + 1] = 0x01;
+        extraElement[encoded.length + 2] = 0x01;
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(extraElement));
+    }
+
+    @Test
+    void shouldRejectBadLongFormLengths() {
+        // indefinite length
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(hex("3080020101020103")));
+        // non-minimal long form: 1 and 2 length bytes for lengths that fit in shorter form
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(hex("308106020101020103")));
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(hex("30820006020101020103")));
+        // more than 2 length bytes
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(hex("3083000006020101020103")));
+        // length longer than input
+        assertThrows(IOException.class, () -> RsaUtils.decodeRsaPubKeySpec(hex("308201000201010201")));
+    }
+
+    @Test
+    void shouldCheckModulusSize() {
+        BigInteger tooSmall = BigInteger.ONE.shiftLeft(RsaUtils.MIN_MODULUS_BITS - 2).setBit(0);
+        assertThrows(InvalidKeySpecException.class, () -> RsaUtils.decodeRsaPubKeySpec(encode(tooSmall, F4)));
+
+        BigInteger smallest = BigInteger.ONE.shiftLeft(RsaUtils.MIN_MODULUS_BITS - 1).setBit(0);
+        assertDoesNotThrow(() -> RsaUtils.decodeRsaPubKeySpec(encode(smallest, F4)));
+
+        BigInteger largest = BigInteger.ONE.shiftLeft(RsaUtils.MAX_MODULUS_BITS).subtract(BigInteger.ONE);
+        assertDoesNotThrow(() -> RsaUtils.decodeRsaPubKeySpec(encode(largest, F4)));
+
+        BigInteger tooLarge = BigInteger.ONE.shiftLeft(RsaUtils.MAX_MODULUS_BITS).setBit(0);
+        assertThrows(InvalidKeySpecException.class, () -> RsaUtils.decodeRsaPubKeySpec(encode(tooLarge, F4)));
+
+        BigInteger even = smallest.clearBit(0).setBit(1);
+        assertThrows(InvalidKeySpecException.class, () -> RsaUtils.decodeRsaPubKeySpec(encode(even, F4)));
+    }
+
+    @Test
+    void shouldCheckPublicExponent() {
+        BigInteger modulus = publicKey.getModulus();
+
+        BigInteger largest = BigInteger.ONE.shiftLeft(RsaUtils.MAX_EXPONENT_BITS).subtract(BigInteger.ONE);
+        assertDoesNotThrow(() -> RsaUtils.decodeRsaPubKeySpec(encode(modulus, largest)));
+
+        BigInteger tooLong = BigInteger.ONE.shiftLeft(RsaUtils.MAX_EXPONENT_BITS).setBit(0);
+        assertThrows(InvalidKeySpecException.class, () -> RsaUtils.decodeRsaPubKeySpec(encode(modulus, tooLong)));
+
+        BigInteger longerThanModulus = modulus.shiftLeft(1).setBit(0);
+        assertThrows(InvalidKeySpecException.class,
+            () -> RsaUtils.decodeRsaPubKeySpec(encode(modulus, longerThanModulus)));
+
+        assertThrows(InvalidKeySpecException.class,
+            () -> RsaUtils.decodeRsaPubKeySpec(encode(modulus, BigInteger.ONE)));
+        assertThrows(InvalidKeySpecException.class,
+            () -> RsaUtils.decodeRsaPubKeySpec(encode(modulus, BigInteger.valueOf(65536))));
+    }
+
+    private static byte[] encode(BigInteger modulus, BigInteger exponent) {
+        // KeyFactory refuses to create keys with invalid parameters
+        return RsaUtils.encodeRsaPubKey(new RSAPublicKey() {
+            @Override
+            public BigInteger getModulus() {
+                return modulus;
+            }
+
+            @Override
+            public BigInteger getPublicExponent() {
+                return exponent;
+            }
+
+            @Override
+            public String getAlgorithm() {
+                return "RSA";
+            }
+
+            @Override
+            public String getFormat() {
+                return null;
+            }
+
+            @Override
+            public byte[] getEncoded() {
+                return null;
+            }
+        });
+    }
+
+    private static byte[] replace(byte[] data, int index, int value) {
+        byte[] copy = data.clone();
+        copy[index] = (byte) value;
+        return copy;
+    }
+
+    private static byte[] hex(String hex) {
+        return HexFormat.of().parseHex(hex);
+    }
+}
@@ -0,0 +1,91 @@
+package ee.cyber.cdoc2.server.reactive;
+
+import ee.cyber.cdoc2.server.api.ClientIdentityCache;
+
+import java.util.HexFormat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.handler.ssl.SslHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.autoconfigure.metrics.MeterRegistryCustomizer;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.boot.web.server.Ssl;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+
+/**
+ * Key capsule get-server on WebFlux (Reactor Netty) and R2DBC. Serves {@code GET /key-capsules/{transactionId}}
+ * the same way as servlet based get-server, without a thread per request or per connection.
+ */
+@SpringBootApplication(exclude = {
+    // cdoc2-server-db brings JDBC and JPA, capsules are read with R2DBC
+    DataSourceAutoConfiguration.class,
+    HibernateJpaAutoConfiguration.class
+})
+@Slf4j
+public class Cdoc2ReactiveGetServerApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(Cdoc2ReactiveGetServerApplication.class, args);
+        log.info("CDOC2 key capsule reactive get-server is running.");
+    }
+
+    @Bean
+    MeterRegistryCustomizer<MeterRegistry> metricsCommonTags() {
+        // 'application' tag for all metrics
+        return registry -> registry.config().commonTags("application", "cdoc2-get-server-reactive");
+    }
+
+    @Bean
+    ClientIdentityCache clientIdentityCache() {
+        return new ClientIdentityCache();
+    }
+
+    /**
+     * Removes client identity of TLS session from {@link ClientIdentityCache}, when TLS connection is closed.
+     * Session id is formatted the same way as {@code SslInfo.getSessionId()}.
+     */
+    @Bean
+    NettyServerCustomizer clientIdentityCacheEviction(ClientIdentityCache clientIdentityCache) {
+        return httpServer -> httpServer.doOnConnection(connection -> {
+            SslHandler sslHandler = connection.channel().pipeline().get(SslHandler.class);
+            if (sslHandler == null) {
+                return;
+            }
+            sslHandler.handshakeFuture().addListener(handshake -> {
+                byte[] sessionId = sslHandler.engine().getSession().getId();
+                if (handshake.isSuccess() && sessionId != null && sessionId.length > 0) {
+                    String sslSessionId = HexFormat.of().formatHex(sessionId);
+                    connection.onDispose(() -> clientIdentityCache.evict(sslSessionId));
+                }
+            });
+        });
+    }
+
+    @Bean
+    ReactiveKeyCapsuleReader keyCapsuleReader(DatabaseClient databaseClient) {
+        return new R2dbcKeyCapsuleReader(databaseClient);
+    }
+
+    /**
+     * Checks that the application is configured with mutual TLS, same as get-server.
+     * @param event the context
+     * @throws IllegalStateException when mutual TLS is not configured
+     */
+    @EventListener
+    public static void checkMutualTlsConfigured(ContextRefreshedEvent event) {
+        var env = event.getApplicationContext().getEnvironment();
+        var clientAuth = env.getRequiredProperty("server.ssl.client-auth");
+
+        if (Ssl.ClientAuth.NEED != Ssl.ClientAuth.valueOf(clientAuth.toUpperCase())) {
+            throw new IllegalStateException("TLS client authentication not enabled");
+        }
+    }
+}
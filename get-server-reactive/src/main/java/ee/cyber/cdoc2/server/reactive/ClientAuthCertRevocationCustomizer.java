@@ -0,0 +1,102 @@
+package ee.cyber.cdoc2.server.reactive;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.CertPathBuilder;
+import java.security.cert.PKIXBuilderParameters;
+import java.security.cert.PKIXRevocationChecker;
+import java.security.cert.X509CertSelector;
+import java.util.Map;
+import javax.net.ssl.CertPathTrustManagerParameters;
+import javax.net.ssl.TrustManagerFactory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ssl.SslBundle;
+import org.springframework.boot.ssl.SslManagerBundle;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.embedded.netty.SslServerCustomizer;
+import org.springframework.boot.web.server.Ssl;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.server.WebServerSslBundle;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Configure client authentication certificate revocation checking for mutual TLS, same as get-server
+ * {@code ClientAuthCertRevocationCustomizer} does for Tomcat.
+ * <p>
+ * Client certificate chain is validated with {@link PKIXRevocationChecker}: OCSP responder from certificate
+ * AuthorityInfoAccess extension, CRL distribution points as fallback. Certificate which revocation status can't
+ * be determined is rejected. Server fails to start, when revocation checking can't be configured.
+ */
+@Component
+@Slf4j
+public class ClientAuthCertRevocationCustomizer
+    implements WebServerFactoryCustomizer<NettyReactiveWebServerFactory>, Ordered {
+
+    //spring properties
+    @Value("${cdoc2.ssl.client-auth.revocation-checks.enabled:true}")
+    private boolean revocationCheckEnabled;
+
+    @Override
+    public void customize(NettyReactiveWebServerFactory factory) {
+        log.debug("cdoc2.ssl.client-auth.revocation-checks.enabled={}", revocationCheckEnabled);
+        if (!revocationCheckEnabled) {
+            log.warn("Client certificate revocation checking is disabled");
+            return;
+        }
+        if (!Ssl.isEnabled(factory.getSsl())) {
+            throw new IllegalStateException("TLS not enabled, client certificate revocation can't be checked");
+        }
+
+        log.info("Enabling OCSP revocation check for client certificates");
+        SslBundle sslBundle = WebServerSslBundle.get(factory.getSsl(), factory.getSslBundles());
+        SslManagerBundle managers = SslManagerBundle.of(
+            sslBundle.getManagers().getKeyManagerFactory(),
+            revocationCheckingTrustManagerFactory(sslBundle.getStores().getTrustStore())
+        );
+        SslBundle revocationChecking = SslBundle.of(
+            sslBundle.getStores(), sslBundle.getKey(), sslBundle.getOptions(), sslBundle.getProtocol(), managers
+        );
+
+        // server customizers are applied after Boot's own TLS configuration, this replaces its SSL provider
+        factory.addServerCustomizers(new SslServerCustomizer(
+            factory.getHttp2(), factory.getSsl().getClientAuth(), revocationChecking, Map.of()
+        ));
+    }
+
+    @Override
+    public int getOrder() {
+        // after ReactiveWebServerFactoryCustomizer has configured server.ssl properties
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    /**
+     * Create trust manager factory that checks revocation of client certificate chain
+     * @param trustStore trust store with CA certificates of client certificates
+     * @return PKIX trust manager factory with revocation checking enabled
+     * @throws IllegalStateException if trust store is missing or trust manager can't be created
+     */
+    static TrustManagerFactory revocationCheckingTrustManagerFactory(KeyStore trustStore) {
+        if (trustStore == null) {
+            throw new IllegalStateException("server.ssl.trust-store is required for client certificate "
+                + "revocation checking");
+        }
+        try {
+            PKIXRevocationChecker revocationChecker =
+                (PKIXRevocationChecker) CertPathBuilder.getInstance("PKIX").getRevocationChecker();
+
+            PKIXBuilderParameters params = new PKIXBuilderParameters(trustStore, new X509CertSelector());
+            params.setRevocationEnabled(true);
+            params.addCertPathChecker(revocationChecker);
+
+            TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance("PKIX");
+            trustManagerFactory.init(new CertPathTrustManagerParameters(params));
+            return trustManagerFactory;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to configure client certificate revocation checking", e);
+        }
+    }
+}
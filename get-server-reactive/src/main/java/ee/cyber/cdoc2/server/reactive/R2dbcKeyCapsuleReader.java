@@ -0,0 +1,60 @@
+package ee.cyber.cdoc2.server.reactive;
+
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRecord;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+
+/**
+ * {@link ReactiveKeyCapsuleReader} that runs the same query as
+ * {@link ee.cyber.cdoc2.server.model.db.JdbcKeyCapsuleReader} over R2DBC connection pool.
+ */
+public class R2dbcKeyCapsuleReader implements ReactiveKeyCapsuleReader {
+
+    // same conditions as JdbcKeyCapsuleReader, with named parameters. Each name is used once, so that it is
+    // expanded to exactly one bind marker
+    static final String SELECT_BY_TRANSACTION_ID_AND_RECIPIENT_FINGERPRINT =
+        "SELECT recipient, payload, capsule_type, expiry_time, expiry_time_adjusted FROM cdoc2_capsule"
+            + " WHERE transaction_id = :transactionId"
+            + " AND recipient_fingerprint = :recipientFingerprint"
+            + " AND cdoc2_capsule_partition_key(transaction_id, created_at)"
+            + " IN (cdoc2_capsule_partition_key(:partitionTransactionId), '-infinity')";
+
+    private final DatabaseClient databaseClient;
+
+    public R2dbcKeyCapsuleReader(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<KeyCapsuleRecord> findByTransactionIdAndRecipientFingerprint(
+        UUID transactionId,
+        byte[] recipientFingerprint
+    ) {
+        return this.databaseClient.sql(SELECT_BY_TRANSACTION_ID_AND_RECIPIENT_FINGERPRINT)
+            .bind("transactionId", transactionId)
+            .bind("recipientFingerprint", recipientFingerprint)
+            .bind("partitionTransactionId", transactionId)
+            .map(R2dbcKeyCapsuleReader::toRecord)
+            .first();
+    }
+
+    private static KeyCapsuleRecord toRecord(Readable row) {
+        // expiry_time is timestamp without time zone, Hibernate stores Instant there as UTC date-time
+        LocalDateTime expiryTime = row.get("expiry_time", LocalDateTime.class);
+        return new KeyCapsuleRecord(
+            row.get("recipient", byte[].class),
+            row.get("payload", byte[].class),
+            KeyCapsuleDb.CapsuleType.valueOf(row.get("capsule_type", String.class)),
+            (expiryTime != null) ? expiryTime.toInstant(ZoneOffset.UTC) : null,
+            Boolean.TRUE.equals(row.get("expiry_time_adjusted", Boolean.class))
+        );
+    }
+}
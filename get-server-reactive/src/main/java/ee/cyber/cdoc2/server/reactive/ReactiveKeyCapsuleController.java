@@ -0,0 +1,110 @@
+package ee.cyber.cdoc2.server.reactive;
+
+import ee.cyber.cdoc2.server.Constants;
+import ee.cyber.cdoc2.server.api.CapsuleMapper;
+import ee.cyber.cdoc2.server.api.ClientIdentity;
+import ee.cyber.cdoc2.server.api.ClientIdentityCache;
+import ee.cyber.cdoc2.server.generated.model.Capsule;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRecord;
+import ee.cyber.cdoc2.server.model.db.TransactionId;
+
+import java.security.cert.X509Certificate;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.UUID;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.SslInfo;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+
+/**
+ * Key capsule API on WebFlux. Responses are the same as get-server {@code GetKeyCapsuleApi} responses:
+ * 401 without client certificate, 404 when capsule doesn't exist or client certificate is not capsule recipient,
+ * otherwise capsule with {@code x-expiry-time} and {@code x-expiry-time-adjusted} headers.
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+public class ReactiveKeyCapsuleController {
+
+    private final ReactiveKeyCapsuleReader capsuleReader;
+    private final ClientIdentityCache clientIdentityCache;
+
+    @GetMapping(path = "/key-capsules/{transactionId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Capsule>> getCapsuleByTransactionId(
+        @PathVariable String transactionId,
+        ServerHttpRequest request
+    ) {
+        var clientIdentityOpt = getClientIdentity(request);
+        if (clientIdentityOpt.isEmpty()) {
+            return Mono.just(new ResponseEntity<>(HttpStatus.UNAUTHORIZED));
+        }
+        var clientIdentity = clientIdentityOpt.get();
+        if (!clientIdentity.isSupported()) {
+            log.info("Unsupported client certificate public key (algorithm={})",
+                clientIdentity.certificate().getPublicKey().getAlgorithm());
+            return Mono.just(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+        }
+
+        Optional<UUID> idOpt = TransactionId.parse(transactionId);
+        if (idOpt.isEmpty()) {
+            log.info("Invalid transactionId {}", transactionId);
+            return Mono.just(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+        }
+
+        return this.capsuleReader.findByTransactionIdAndRecipientFingerprint(
+                idOpt.get(), clientIdentity.recipientFingerprint()
+            )
+            .map(capsule -> toResponse(transactionId, clientIdentity, capsule))
+            .switchIfEmpty(Mono.fromSupplier(() -> {
+                log.info("Capsule(transactionId={}) not found for client certificate", transactionId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }));
+    }
+
+    @PostMapping("/key-capsules")
+    public Mono<ResponseEntity<Void>> createCapsule() {
+        log.error("createCapsule() operation not supported on key capsule get server");
+        return Mono.just(new ResponseEntity<>(HttpStatus.METHOD_NOT_ALLOWED));
+    }
+
+    private static ResponseEntity<Capsule> toResponse(
+        String transactionId,
+        ClientIdentity clientIdentity,
+        KeyCapsuleRecord capsule
+    ) {
+        if (!clientIdentity.isRecipient(capsule)) {
+            log.info("Client certificate does not match capsule(transactionId={}) recipient", transactionId);
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        log.info("Found capsule(transaction={}) for client certificate", transactionId);
+        return ResponseEntity.ok()
+            //return expiry-time as in RFC3339, example  2025-03-18T14:23:45.123Z
+            .header(Constants.X_EXPIRY_TIME_HEADER, DateTimeFormatter.ISO_INSTANT.format(capsule.expiryTime()))
+            .header(Constants.X_EXPIRY_TIME_ADJUSTED, String.valueOf(capsule.expiryTimeAdjusted()))
+            .body(CapsuleMapper.toDto(capsule));
+    }
+
+    private Optional<ClientIdentity> getClientIdentity(ServerHttpRequest request) {
+        SslInfo sslInfo = request.getSslInfo();
+        X509Certificate[] certs = (sslInfo != null) ? sslInfo.getPeerCertificates() : null;
+        if (certs == null || certs.length == 0) {
+            log.info("No client certificate in http request");
+            return Optional.empty();
+        }
+
+        var clientIdentity = this.clientIdentityCache.get(sslInfo.getSessionId(), certs[0]);
+        log.info("Got client certificate(subject='{}')", clientIdentity.subjectWithoutCN());
+        return Optional.of(clientIdentity);
+    }
+}
@@ -0,0 +1,25 @@
+package ee.cyber.cdoc2.server.reactive;
+
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRecord;
+
+import java.util.UUID;
+
+import reactor.core.publisher.Mono;
+
+
+/**
+ * Non-blocking read path for returning key capsule to recipient, counterpart of
+ * {@link ee.cyber.cdoc2.server.model.db.KeyCapsuleReader}
+ */
+public interface ReactiveKeyCapsuleReader {
+
+    /**
+     * Find capsule by transaction id and recipient fingerprint. Caller must verify recipient of the returned
+     * capsule.
+     * @param transactionId capsule transaction id
+     * @param recipientFingerprint {@link KeyCapsuleDb#recipientFingerprint(byte[])} of recipient
+     * @return capsule or empty, if capsule doesn't exist or recipient doesn't match
+     */
+    Mono<KeyCapsuleRecord> findByTransactionIdAndRecipientFingerprint(UUID transactionId, byte[] recipientFingerprint);
+}
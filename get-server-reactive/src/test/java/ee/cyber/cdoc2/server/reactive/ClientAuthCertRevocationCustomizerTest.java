@@ -0,0 +1,89 @@
+package ee.cyber.cdoc2.server.reactive;
+
+import ee.cyber.cdoc2.shared.crypto.ECKeys;
+import ee.cyber.cdoc2.shared.crypto.EllipticCurve;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class ClientAuthCertRevocationCustomizerTest {
+
+    private static final String AUTH_TYPE = "ECDHE_ECDSA";
+
+    private static KeyStore trustStore;
+    private static X509Certificate[] clientChain;
+
+    @BeforeAll
+    static void createCertificates() throws Exception {
+        KeyPair caKeyPair = ECKeys.generateEcKeyPair(EllipticCurve.SECP384R1);
+        KeyPair clientKeyPair = ECKeys.generateEcKeyPair(EllipticCurve.SECP384R1);
+        X509Certificate caCert = certificate("CN=Test CA", caKeyPair, "CN=Test CA", caKeyPair, true);
+        // no AuthorityInfoAccess and CRL distribution points, revocation status can't be determined
+        X509Certificate clientCert = certificate("CN=Test Client", clientKeyPair, "CN=Test CA", caKeyPair, false);
+
+        trustStore = KeyStore.getInstance("PKCS12");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("ca", caCert);
+        clientChain = new X509Certificate[] {clientCert, caCert};
+    }
+
+    @Test
+    void shouldRejectCertificateWithUnknownRevocationStatus() throws Exception {
+        TrustManagerFactory withoutRevocation = TrustManagerFactory.getInstance("PKIX");
+        withoutRevocation.init(trustStore);
+        assertDoesNotThrow(() -> trustManager(withoutRevocation).checkClientTrusted(clientChain, AUTH_TYPE));
+
+        TrustManagerFactory withRevocation =
+            ClientAuthCertRevocationCustomizer.revocationCheckingTrustManagerFactory(trustStore);
+        assertThrows(CertificateException.class,
+            () -> trustManager(withRevocation).checkClientTrusted(clientChain, AUTH_TYPE));
+    }
+
+    @Test
+    void shouldRequireTrustStore() {
+        assertThrows(IllegalStateException.class,
+            () -> ClientAuthCertRevocationCustomizer.revocationCheckingTrustManagerFactory(null));
+    }
+
+    private static X509TrustManager trustManager(TrustManagerFactory factory) {
+        return (X509TrustManager) factory.getTrustManagers()[0];
+    }
+
+    private static X509Certificate certificate(
+        String subject, KeyPair subjectKeyPair, String issuer, KeyPair issuerKeyPair, boolean ca
+    ) throws Exception {
+        Instant now = Instant.now();
+        var builder = new JcaX509v3CertificateBuilder(
+            new X500Name(issuer),
+            BigInteger.valueOf(now.toEpochMilli()),
+            Date.from(now.minus(1, ChronoUnit.HOURS)),
+            Date.from(now.plus(1, ChronoUnit.DAYS)),
+            new X500Name(subject),
+            subjectKeyPair.getPublic()
+        );
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(ca));
+        var signer = new JcaContentSignerBuilder("SHA384withECDSA").build(issuerKeyPair.getPrivate());
+        return new JcaX509CertificateConverter().getCertificate(builder.build(signer));
+    }
+}
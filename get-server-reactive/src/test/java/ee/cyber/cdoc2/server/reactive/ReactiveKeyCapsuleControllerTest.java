@@ -0,0 +1,121 @@
+package ee.cyber.cdoc2.server.reactive;
+
+import ee.cyber.cdoc2.server.Constants;
+import ee.cyber.cdoc2.server.api.ClientIdentityCache;
+import ee.cyber.cdoc2.server.generated.model.Capsule;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRecord;
+import ee.cyber.cdoc2.server.model.db.TransactionId;
+import ee.cyber.cdoc2.shared.crypto.ECKeys;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.SslInfo;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+class ReactiveKeyCapsuleControllerTest {
+
+    private static X509Certificate clientCertificate;
+    private static byte[] recipient;
+
+    private final String transactionId = TransactionId.toApiForm(UUID.randomUUID());
+    private final Instant expiryTime = Instant.now().plus(30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeAll
+    static void loadClientCertificate() throws Exception {
+        // EC secp384r1 client certificate, trusted by get-server
+        try (InputStream in = Files.newInputStream(Path.of("../keys/ca_certs/client-certificate.pem"))) {
+            clientCertificate = (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(in);
+        }
+        ECPublicKey publicKey = (ECPublicKey) clientCertificate.getPublicKey();
+        recipient = ECKeys.encodeEcPubKeyForTls(ECKeys.getCurve(publicKey), publicKey);
+    }
+
+    @Test
+    void shouldReturnCapsuleOfClientCertificate() {
+        var controller = controller((id, fingerprint) -> Mono.just(capsule(KeyCapsuleDb.CapsuleType.SECP384R1)));
+
+        ResponseEntity<Capsule> response = get(controller, request(clientCertificate));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Capsule.CapsuleTypeEnum.ECC_SECP384R1, response.getBody().getCapsuleType());
+        assertArrayEquals(recipient, response.getBody().getRecipientId());
+        assertEquals(this.expiryTime.toString(),
+            response.getHeaders().getFirst(Constants.X_EXPIRY_TIME_HEADER));
+        assertEquals("false", response.getHeaders().getFirst(Constants.X_EXPIRY_TIME_ADJUSTED));
+    }
+
+    @Test
+    void shouldNotReturnCapsuleOfOtherRecipient() {
+        // same recipient key, but capsule type doesn't match client key curve
+        var controller = controller((id, fingerprint) -> Mono.just(capsule(KeyCapsuleDb.CapsuleType.SECP521R1)));
+        assertEquals(HttpStatus.NOT_FOUND, get(controller, request(clientCertificate)).getStatusCode());
+
+        var notFoundController = controller((id, fingerprint) -> Mono.empty());
+        assertEquals(HttpStatus.NOT_FOUND, get(notFoundController, request(clientCertificate)).getStatusCode());
+    }
+
+    @Test
+    void shouldRequireClientCertificate() {
+        AtomicInteger lookups = new AtomicInteger();
+        var controller = controller((id, fingerprint) -> {
+            lookups.incrementAndGet();
+            return Mono.empty();
+        });
+
+        ServerHttpRequest noCertificate = MockServerHttpRequest.get("/key-capsules/" + this.transactionId).build();
+        assertEquals(HttpStatus.UNAUTHORIZED, get(controller, noCertificate).getStatusCode());
+
+        ResponseEntity<Capsule> invalidId = controller.getCapsuleByTransactionId("KC01", request(clientCertificate))
+            .block();
+        assertEquals(HttpStatus.NOT_FOUND, invalidId.getStatusCode());
+        assertEquals(0, lookups.get());
+    }
+
+    private ResponseEntity<Capsule> get(ReactiveKeyCapsuleController controller, ServerHttpRequest request) {
+        return controller.getCapsuleByTransactionId(this.transactionId, request).block();
+    }
+
+    private KeyCapsuleRecord capsule(KeyCapsuleDb.CapsuleType type) {
+        return new KeyCapsuleRecord(recipient, new byte[] {1, 2, 3}, type, this.expiryTime, false);
+    }
+
+    private ServerHttpRequest request(X509Certificate certificate) {
+        SslInfo sslInfo = new SslInfo() {
+            @Override
+            public String getSessionId() {
+                return "0123456789abcdef";
+            }
+
+            @Override
+            public X509Certificate[] getPeerCertificates() {
+                return new X509Certificate[] {certificate};
+            }
+        };
+        var builder = MockServerHttpRequest.get("/key-capsules/" + this.transactionId);
+        builder.sslInfo(sslInfo);
+        return builder.build();
+    }
+
+    private static ReactiveKeyCapsuleController controller(ReactiveKeyCapsuleReader reader) {
+        return new ReactiveKeyCapsuleController(reader, new ClientIdentityCache());
+    }
+}
@@ -1,6 +1,7 @@
 package ee.cyber.cdoc2.server;
 
 import io.micrometer.core.instrument.MeterRegistry;
+import javax.sql.DataSource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
@@ -16,8 +17,18 @@ import org.springframework.context.event.EventListener;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import ee.cyber.cdoc2.server.api.ClientIdentityCache;
+import ee.cyber.cdoc2.server.config.AccessLogConfigProperties;
+import ee.cyber.cdoc2.server.config.CapsulePartitionConfigProperties;
 import ee.cyber.cdoc2.server.config.ConfigProperties;
+import ee.cyber.cdoc2.server.config.DbBulkheadConfigProperties;
 import ee.cyber.cdoc2.server.config.DbConnectionConfigProperties;
+import ee.cyber.cdoc2.server.config.ExpiredCapsuleCleanUpConfigProperties;
+import ee.cyber.cdoc2.server.config.KeyCapsuleReadConfigProperties;
+import ee.cyber.cdoc2.server.model.db.JdbcKeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.JpaKeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRepository;
 
 
 @SpringBootApplication
@@ -26,8 +37,13 @@ import ee.cyber.cdoc2.server.config.DbConnectionConfigProperties;
 @Slf4j
 @RequiredArgsConstructor
 @EnableConfigurationProperties({
+    AccessLogConfigProperties.class,
+    CapsulePartitionConfigProperties.class,
     ConfigProperties.class,
-    DbConnectionConfigProperties.class
+    DbBulkheadConfigProperties.class,
+    DbConnectionConfigProperties.class,
+    ExpiredCapsuleCleanUpConfigProperties.class,
+    KeyCapsuleReadConfigProperties.class
 })
 @EnableScheduling
 public class Cdoc2GetServerApplication {
@@ -50,6 +66,33 @@ public class Cdoc2GetServerApplication {
         );
     }
 
+    @Bean
+    ClientIdentityCache clientIdentityCache() {
+        return new ClientIdentityCache();
+    }
+
+    @Bean
+    KeyCapsuleReader keyCapsuleReader(
+        KeyCapsuleReadConfigProperties config,
+        KeyCapsuleRepository capsuleRepository,
+        DataSource dataSource,
+        MeterRegistry meterRegistry
+    ) {
+        log.info("Using {} key capsule read path", config.path());
+        KeyCapsuleReader reader = switch (config.path()) {
+            case JDBC -> new JdbcKeyCapsuleReader(dataSource);
+            case JPA -> new JpaKeyCapsuleReader(capsuleRepository);
+        };
+        if (config.primary() == null && config.replicas().isEmpty()) {
+            return reader;
+        }
+
+        log.info("Routing key capsule reads to {} read replicas", config.replicas().size());
+        var routingReader = ReplicaRoutingKeyCapsuleReader.create(config, reader);
+        routingReader.bindTo(meterRegistry);
+        return routingReader;
+    }
+
     /**
      * Checks that the application is configured with mutual TLS.
      * @param event the context
@@ -3,7 +3,6 @@ package ee.cyber.cdoc2.server;
 import java.security.Security;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.catalina.connector.Connector;
-import org.apache.coyote.http11.Http11NioProtocol;
 import org.apache.tomcat.util.net.SSLHostConfig;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
@@ -46,8 +45,8 @@ public class ClientAuthCertRevocationCustomizer implements TomcatConnectorCustom
             //OCSP checks are done by
             //sun.security.provider.certpath.OCSP class
 
-            Http11NioProtocol protocol = (Http11NioProtocol) connector.getProtocolHandler();
-            SSLHostConfig[] sslConfigs = protocol.findSslHostConfigs();
+            // SSL host configs of the connector, also used for HTTP/2 connections negotiated with ALPN
+            SSLHostConfig[] sslConfigs = connector.findSslHostConfigs();
             for (SSLHostConfig sslHostConfig : sslConfigs) {
                 //https://tomcat.apache.org/tomcat-10.1-doc/config/http.html#SSL_Support_-_SSLHostConfig
                 sslHostConfig.setRevocationEnabled(true);
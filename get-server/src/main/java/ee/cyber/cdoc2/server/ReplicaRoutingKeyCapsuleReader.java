@@ -0,0 +1,342 @@
+package ee.cyber.cdoc2.server;
+
+import ee.cyber.cdoc2.server.config.KeyCapsuleReadConfigProperties;
+import ee.cyber.cdoc2.server.model.db.JdbcKeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRecord;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+
+/**
+ * Sends key capsule lookups to read replicas and retries them on primary, when capsule is not found on replica
+ * (capsule may have been created after the last change replayed on replica). Capsule is readable right after it
+ * was created, no matter how far behind replicas are.
+ * <p>
+ * Replicas are used in turns and are always read with {@link JdbcKeyCapsuleReader#excludingExpired(DataSource)}.
+ * Replica is skipped while its replication lag is not known or is bigger than
+ * {@code key-capsule.read.max-replica-lag}, lag is checked every {@code key-capsule.read.replica-lag-check-interval}.
+ * Lag is not known while replica is not streaming WAL from primary or hasn't received anything from primary
+ * within {@code key-capsule.read.replica-receive-timeout}. Lookups failing on replica are retried on primary.
+ * <p>
+ * Capsule that doesn't exist (unknown, deleted or expired transaction id) is not found on replica either, so its
+ * lookup costs a replica and a primary query. Such lookups are counted by {@code cdoc2.db.replica.primary.misses},
+ * their share of {@code cdoc2.db.replica.fallbacks{reason=not_found}} is primary load that replicas don't remove.
+ */
+@Slf4j
+public class ReplicaRoutingKeyCapsuleReader implements KeyCapsuleReader, MeterBinder, AutoCloseable {
+
+    /** Fallback to primary reasons, metric tag values */
+    enum Fallback {
+        /** no replica with known and small enough lag */
+        NO_REPLICA,
+        /** capsule not found on replica */
+        NOT_FOUND,
+        /** replica lookup failed */
+        ERROR
+    }
+
+    // 0 when database is not a replica or replica has replayed all received WAL, otherwise time since last
+    // replayed transaction. NULL when WAL receiver is not streaming or hasn't received any message (WAL or
+    // keepalive) from primary within the timeout (parameter, milliseconds), as then received WAL may be far behind
+    // primary. NULL also when replica hasn't replayed anything yet. Replica user needs pg_read_all_stats (or
+    // pg_monitor) role to see WAL receiver status
+    static final String REPLICA_LAG_MILLIS_QUERY = "SELECT CASE"
+        + " WHEN NOT pg_is_in_recovery() THEN 0"
+        + " WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming'"
+        + " AND last_msg_receipt_time > now() - ? * interval '1 millisecond') THEN NULL"
+        + " WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+        + " ELSE CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS BIGINT)"
+        + " END";
+
+    static final long LAG_UNKNOWN = -1;
+
+    private final KeyCapsuleReader primary;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final List<AutoCloseable> resources;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryMisses = new LongAdder();
+    private final LongAdder[] fallbacks = new LongAdder[Fallback.values().length];
+
+    ReplicaRoutingKeyCapsuleReader(
+        KeyCapsuleReader primary,
+        List<Replica> replicas,
+        Duration maxLag,
+        List<AutoCloseable> resources
+    ) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagMillis = maxLag.toMillis();
+        this.resources = List.copyOf(resources);
+        for (int i = 0; i < this.fallbacks.length; i++) {
+            this.fallbacks[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Create reader with connection pools for primary (optional) and replicas
+     * @param config read configuration
+     * @param applicationPrimary primary reader, used when {@code config.primary()} is not set
+     */
+    static ReplicaRoutingKeyCapsuleReader create(
+        KeyCapsuleReadConfigProperties config,
+        KeyCapsuleReader applicationPrimary
+    ) {
+        List<AutoCloseable> resources = new ArrayList<>();
+        KeyCapsuleReader primary = applicationPrimary;
+        if (config.primary() != null && config.path() == KeyCapsuleReadConfigProperties.Path.JPA) {
+            log.warn("key-capsule.read.primary is used only with JDBC read path, using application data source");
+        } else if (config.primary() != null) {
+            HikariDataSource dataSource = readOnlyDataSource("cdoc2-read-primary", config.primary());
+            resources.add(dataSource);
+            primary = new JdbcKeyCapsuleReader(dataSource);
+        }
+
+        List<Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < config.replicas().size(); i++) {
+            String name = "cdoc2-read-replica-" + i;
+            HikariDataSource dataSource = readOnlyDataSource(name, config.replicas().get(i));
+            resources.add(dataSource);
+            replicas.add(new Replica(
+                name,
+                JdbcKeyCapsuleReader.excludingExpired(dataSource),
+                lagProbe(dataSource, config.replicaReceiveTimeout())
+            ));
+        }
+        return new ReplicaRoutingKeyCapsuleReader(primary, replicas, config.maxReplicaLag(), resources);
+    }
+
+    @Override
+    public Optional<KeyCapsuleRecord> findByTransactionIdAndRecipientFingerprint(
+        UUID transactionId,
+        byte[] recipientFingerprint
+    ) {
+        Replica replica = nextAvailableReplica();
+        if (replica == null) {
+            return fromPrimary(Fallback.NO_REPLICA, transactionId, recipientFingerprint);
+        }
+
+        try {
+            Optional<KeyCapsuleRecord> capsule = replica.reader.findByTransactionIdAndRecipientFingerprint(
+                transactionId, recipientFingerprint
+            );
+            if (capsule.isPresent()) {
+                this.replicaReads.increment();
+                return capsule;
+            }
+            Optional<KeyCapsuleRecord> fromPrimary = fromPrimary(Fallback.NOT_FOUND, transactionId,
+                recipientFingerprint);
+            if (fromPrimary.isEmpty()) {
+                this.primaryMisses.increment();
+            }
+            return fromPrimary;
+        } catch (DataAccessException e) {
+            log.warn("Key capsule lookup on {} failed: {}", replica.name, e.toString());
+            return fromPrimary(Fallback.ERROR, transactionId, recipientFingerprint);
+        }
+    }
+
+    @Override
+    public Map<UUID, KeyCapsuleRecord> findAllByTransactionIdsAndRecipientFingerprint(
+        Collection<UUID> transactionIds,
+        byte[] recipientFingerprint
+    ) {
+        Replica replica = nextAvailableReplica();
+        if (replica == null) {
+            this.fallbacks[Fallback.NO_REPLICA.ordinal()].increment();
+            return this.primary.findAllByTransactionIdsAndRecipientFingerprint(transactionIds, recipientFingerprint);
+        }
+
+        Map<UUID, KeyCapsuleRecord> capsules;
+        try {
+            capsules = replica.reader.findAllByTransactionIdsAndRecipientFingerprint(
+                transactionIds, recipientFingerprint
+            );
+        } catch (DataAccessException e) {
+            log.warn("Key capsules lookup on {} failed: {}", replica.name, e.toString());
+            this.fallbacks[Fallback.ERROR.ordinal()].increment();
+            return this.primary.findAllByTransactionIdsAndRecipientFingerprint(transactionIds, recipientFingerprint);
+        }
+        // only capsules not found on replica are looked up from primary
+        List<UUID> notFound = transactionIds.stream().filter(id -> !capsules.containsKey(id)).toList();
+        if (notFound.isEmpty()) {
+            this.replicaReads.increment();
+            return capsules;
+        }
+        this.fallbacks[Fallback.NOT_FOUND.ordinal()].increment();
+        Map<UUID, KeyCapsuleRecord> fromPrimary = this.primary.findAllByTransactionIdsAndRecipientFingerprint(
+            notFound, recipientFingerprint
+        );
+        if (fromPrimary.size() < notFound.size()) {
+            this.primaryMisses.increment();
+        }
+        Map<UUID, KeyCapsuleRecord> result = new LinkedHashMap<>();
+        for (UUID transactionId : transactionIds) {
+            KeyCapsuleRecord capsule = capsules.getOrDefault(transactionId, fromPrimary.get(transactionId));
+            if (capsule != null) {
+                result.put(transactionId, capsule);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Update replication lag of replicas
+     */
+    @Scheduled(fixedDelayString = "${key-capsule.read.replica-lag-check-interval:5s}")
+    public void checkReplicaLag() {
+        for (Replica replica : this.replicas) {
+            long lag = LAG_UNKNOWN;
+            try {
+                lag = replica.lagProbe.getAsLong();
+            } catch (DataAccessException e) {
+                log.warn("Replication lag check on {} failed: {}", replica.name, e.toString());
+            }
+            if (!isAvailable(lag) && isAvailable(replica.lagMillis)) {
+                log.warn("Not using {} for reads, replication lag {} ms", replica.name, lag);
+            } else if (isAvailable(lag) && !isAvailable(replica.lagMillis)) {
+                log.info("Using {} for reads, replication lag {} ms", replica.name, lag);
+            }
+            replica.lagMillis = lag;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Replica replica : this.replicas) {
+            Gauge.builder("cdoc2.db.replica.lag", replica, r -> r.lagMillis)
+                .tag("replica", replica.name)
+                .baseUnit("milliseconds")
+                .description("Read replica replication lag, -1 if unknown")
+                .register(registry);
+        }
+
+        FunctionCounter.builder("cdoc2.db.replica.reads", this.replicaReads, LongAdder::sum)
+            .description("Key capsule lookups served by read replica")
+            .register(registry);
+
+        for (Fallback reason : Fallback.values()) {
+            FunctionCounter.builder("cdoc2.db.replica.fallbacks", this.fallbacks[reason.ordinal()], LongAdder::sum)
+                .tag("reason", reason.name().toLowerCase())
+                .description("Key capsule lookups sent to primary")
+                .register(registry);
+        }
+
+        FunctionCounter.builder("cdoc2.db.replica.primary.misses", this.primaryMisses, LongAdder::sum)
+            .description("Key capsule lookups not found on replica that were not found on primary either")
+            .register(registry);
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (AutoCloseable resource : this.resources) {
+            resource.close();
+        }
+    }
+
+    long fallbackCount(Fallback reason) {
+        return this.fallbacks[reason.ordinal()].sum();
+    }
+
+    long replicaReadCount() {
+        return this.replicaReads.sum();
+    }
+
+    long primaryMissCount() {
+        return this.primaryMisses.sum();
+    }
+
+    List<AutoCloseable> resources() {
+        return this.resources;
+    }
+
+    private Optional<KeyCapsuleRecord> fromPrimary(
+        Fallback reason,
+        UUID transactionId,
+        byte[] recipientFingerprint
+    ) {
+        this.fallbacks[reason.ordinal()].increment();
+        return this.primary.findByTransactionIdAndRecipientFingerprint(transactionId, recipientFingerprint);
+    }
+
+    private Replica nextAvailableReplica() {
+        int count = this.replicas.size();
+        int start = Math.floorMod(this.nextReplica.getAndIncrement(), Math.max(count, 1));
+        for (int i = 0; i < count; i++) {
+            Replica replica = this.replicas.get((start + i) % count);
+            if (isAvailable(replica.lagMillis)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private boolean isAvailable(long lagMillis) {
+        return lagMillis != LAG_UNKNOWN && lagMillis <= this.maxLagMillis;
+    }
+
+    private static HikariDataSource readOnlyDataSource(String poolName, KeyCapsuleReadConfigProperties.Connection c) {
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setPoolName(poolName);
+        hikariConfig.setJdbcUrl(c.url());
+        hikariConfig.setUsername(c.username());
+        hikariConfig.setPassword(c.password());
+        hikariConfig.setMaximumPoolSize(c.maxPoolSize());
+        hikariConfig.setConnectionTimeout(c.connectionTimeout().toMillis());
+        hikariConfig.setReadOnly(true);
+        // by default pgjdbc makes only explicit transactions read-only, "always" also auto-commit statements
+        hikariConfig.addDataSourceProperty("readOnlyMode", "always");
+        // don't fail startup, when database is not available
+        hikariConfig.setInitializationFailTimeout(-1);
+        return new HikariDataSource(hikariConfig);
+    }
+
+    private static LongSupplier lagProbe(DataSource dataSource, Duration receiveTimeout) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        long receiveTimeoutMillis = receiveTimeout.toMillis();
+        return () -> {
+            Long lag = jdbcTemplate.queryForObject(REPLICA_LAG_MILLIS_QUERY, Long.class, receiveTimeoutMillis);
+            return (lag != null) ? Math.max(0, lag) : LAG_UNKNOWN;
+        };
+    }
+
+    /**
+     * Read replica
+     */
+    static final class Replica {
+        private final String name;
+        private final KeyCapsuleReader reader;
+        private final LongSupplier lagProbe;
+        private volatile long lagMillis = LAG_UNKNOWN;
+
+        Replica(String name, KeyCapsuleReader reader, LongSupplier lagProbe) {
+            this.name = name;
+            this.reader = reader;
+            this.lagProbe = lagProbe;
+        }
+    }
+}
@@ -1,32 +1,28 @@
 package ee.cyber.cdoc2.server.api;
 
+import ee.cyber.cdoc2.server.CapsuleTypeObservationConvention;
 import ee.cyber.cdoc2.server.Constants;
-import ee.cyber.cdoc2.shared.crypto.ECKeys;
-import ee.cyber.cdoc2.shared.crypto.EllipticCurve;
-import ee.cyber.cdoc2.shared.crypto.RsaUtils;
-import ee.cyber.cdoc2.shared.crypto.KeyAlgorithm;
-import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
-import ee.cyber.cdoc2.server.model.db.KeyCapsuleRepository;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRecord;
+import ee.cyber.cdoc2.server.model.db.TransactionId;
 import ee.cyber.cdoc2.server.generated.model.Capsule;
 import ee.cyber.cdoc2.server.generated.api.KeyCapsulesApi;
 import ee.cyber.cdoc2.server.generated.api.KeyCapsulesApiDelegate;
 
 
-import java.security.GeneralSecurityException;
-import java.security.PublicKey;
 import java.security.cert.X509Certificate;
-import java.security.interfaces.ECPublicKey;
-import java.security.interfaces.RSAPublicKey;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import javax.naming.InvalidNameException;
-import javax.naming.ldap.LdapName;
-import javax.naming.ldap.Rdn;
-import javax.security.auth.x500.X500Principal;
+import java.util.Set;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -35,8 +31,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.context.request.NativeWebRequest;
 
-import static ee.cyber.cdoc2.shared.crypto.ECKeys.getCurve;
-
 
 /**
  * Implements API for getting CDOC2 key capsules {@link KeyCapsulesApi}
@@ -46,8 +40,12 @@ import static ee.cyber.cdoc2.shared.crypto.ECKeys.getCurve;
 @RequiredArgsConstructor
 public class GetKeyCapsuleApi implements KeyCapsulesApiDelegate {
 
+    /** Servlet request attribute for TLS session id (hex) */
+    static final String SSL_SESSION_ID_ATTRIBUTE = "jakarta.servlet.request.ssl_session_id";
+
     private final NativeWebRequest nativeWebRequest;
-    private final KeyCapsuleRepository capsuleRepository;
+    private final KeyCapsuleReader capsuleReader;
+    private final ClientIdentityCache clientIdentityCache;
 
     @Override
     public Optional<NativeWebRequest> getRequest() {
@@ -56,88 +54,102 @@ public class GetKeyCapsuleApi implements KeyCapsulesApiDelegate {
 
     @Override
     public ResponseEntity<Capsule> getCapsuleByTransactionId(String transactionId) {
-        var clientCertOpt = this.getClientCertFromRequest();
-        if (clientCertOpt.isEmpty()) {
+        var clientIdentityOpt = this.getClientIdentityFromRequest();
+        if (clientIdentityOpt.isEmpty()) {
             return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
         }
-        var clientCert = clientCertOpt.get();
-        PublicKey clientPubKey = clientCert.getPublicKey();
+        var clientIdentity = clientIdentityOpt.get();
+        if (!clientIdentity.isSupported()) {
+            log.info("Unsupported client certificate public key (algorithm={})",
+                clientIdentity.certificate().getPublicKey().getAlgorithm());
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        Optional<UUID> idOpt = TransactionId.parse(transactionId);
+        if (idOpt.isEmpty()) {
+            log.info("Invalid transactionId {}", transactionId);
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
 
-        Optional<KeyCapsuleDb> capsuleDbOpt = this.capsuleRepository.findById(transactionId);
-        if (capsuleDbOpt.isEmpty()) {
-            log.debug("Capsule with transactionId {} not found", transactionId);
+        Optional<KeyCapsuleRecord> capsuleOpt = this.capsuleReader.findByTransactionIdAndRecipientFingerprint(
+            idOpt.get(), clientIdentity.recipientFingerprint()
+        );
+        if (capsuleOpt.isEmpty()) {
+            log.info("Capsule(transactionId={}) not found for client certificate", transactionId);
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
 
-        var capsule = capsuleDbOpt.get();
-        if (isRecipient(clientPubKey, capsule)) {
+        var capsule = capsuleOpt.get();
+        if (clientIdentity.isRecipient(capsule)) {
+            CapsuleTypeObservationConvention.setCapsuleType(this.nativeWebRequest, capsule.capsuleType());
             log.info("Found capsule(transaction={}) for client certificate", transactionId);
             return ResponseEntity.ok()
                 //return expiry-time as in RFC3339, example  2025-03-18T14:23:45.123Z
-                .header(Constants.X_EXPIRY_TIME_HEADER, DateTimeFormatter.ISO_INSTANT.format(capsule.getExpiryTime()))
-                .header(Constants.X_EXPIRY_TIME_ADJUSTED, String.valueOf(capsule.getExpiryTimeAdjusted()))
-                .body(toDto(capsule));
+                .header(Constants.X_EXPIRY_TIME_HEADER, DateTimeFormatter.ISO_INSTANT.format(capsule.expiryTime()))
+                .header(Constants.X_EXPIRY_TIME_ADJUSTED, String.valueOf(capsule.expiryTimeAdjusted()))
+                .body(CapsuleMapper.toDto(capsule));
         } else {
             log.info("Client certificate does not match capsule(transactionId={}) recipient", transactionId);
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
     }
 
-    @Override
-    public ResponseEntity<Void> createCapsule(Capsule capsule, LocalDateTime xExpiryTime) {
-        log.error("createCapsule() operation not supported on key capsule get server");
-        return new ResponseEntity<>(HttpStatus.METHOD_NOT_ALLOWED);
-    }
-
-    private static boolean isRecipient(PublicKey publicKey, KeyCapsuleDb capsule) {
-        try {
-            if (KeyAlgorithm.isEcKeysAlgorithm(publicKey.getAlgorithm())
-                && publicKey instanceof ECPublicKey ecPublicKey) {
+    /**
+     * Get capsules of the client certificate recipient by transaction ids. Capsules are found with one database
+     * query. Capsules that don't exist and capsules of other recipients are left out of the response the same way,
+     * invalid transaction ids are ignored.
+     * @param transactionIds capsule transaction ids
+     * @return found capsules, in the order of {@code transactionIds}
+     */
+    public ResponseEntity<List<FoundCapsule>> getCapsulesByTransactionIds(List<String> transactionIds) {
+        var clientIdentityOpt = this.getClientIdentityFromRequest();
+        if (clientIdentityOpt.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        }
+        var clientIdentity = clientIdentityOpt.get();
+        if (!clientIdentity.isSupported()) {
+            log.info("Unsupported client certificate public key (algorithm={})",
+                clientIdentity.certificate().getPublicKey().getAlgorithm());
+            return ResponseEntity.ok(List.of());
+        }
 
-                EllipticCurve curve = EllipticCurve.forName(capsule.getCapsuleType().name());
+        Set<UUID> ids = new LinkedHashSet<>();
+        for (String transactionId : transactionIds) {
+            TransactionId.parse(transactionId).ifPresentOrElse(
+                ids::add,
+                () -> log.info("Invalid transactionId {}", transactionId)
+            );
+        }
 
-                if (getCurve(ecPublicKey) == curve) {
-                    return Arrays.equals(
-                        capsule.getRecipient(),
-                        ECKeys.encodeEcPubKeyForTls(curve, ecPublicKey)
-                    );
-                }
+        Map<UUID, KeyCapsuleRecord> capsules = ids.isEmpty()
+            ? Map.of()
+            : this.capsuleReader.findAllByTransactionIdsAndRecipientFingerprint(
+                ids, clientIdentity.recipientFingerprint()
+            );
+
+        List<FoundCapsule> found = new ArrayList<>(capsules.size());
+        for (UUID id : ids) {
+            KeyCapsuleRecord capsule = capsules.get(id);
+            if (capsule != null && clientIdentity.isRecipient(capsule)) {
+                found.add(new FoundCapsule(
+                    TransactionId.toApiForm(id),
+                    CapsuleMapper.toDto(capsule),
+                    DateTimeFormatter.ISO_INSTANT.format(capsule.expiryTime()),
+                    capsule.expiryTimeAdjusted()
+                ));
             }
-            if (capsule.getCapsuleType() == KeyCapsuleDb.CapsuleType.RSA
-                    && KeyAlgorithm.isRsaKeysAlgorithm(publicKey.getAlgorithm())) {
-                return Arrays.equals(capsule.getRecipient(), RsaUtils.encodeRsaPubKey((RSAPublicKey) publicKey));
-            }
-        } catch (GeneralSecurityException exc) {
-            log.error("Error occurred while verifying recipient", exc);
         }
-        return false;
+        log.info("Found {} of {} requested capsules for client certificate", found.size(), transactionIds.size());
+        return ResponseEntity.ok(found);
     }
 
-    private static Capsule toDto(KeyCapsuleDb db) {
-        var dto = new Capsule();
-        dto.setRecipientId(db.getRecipient());
-        dto.setEphemeralKeyMaterial(db.getPayload());
-
-        switch (db.getCapsuleType()) {
-            case SECP256R1:
-                dto.setCapsuleType(Capsule.CapsuleTypeEnum.ECC_SECP256R1);
-                break;
-            case SECP384R1:
-                dto.setCapsuleType(Capsule.CapsuleTypeEnum.ECC_SECP384R1);
-                break;
-            case SECP521R1:
-                dto.setCapsuleType(Capsule.CapsuleTypeEnum.ECC_SECP521R1);
-                break;
-            case RSA:
-                dto.setCapsuleType(Capsule.CapsuleTypeEnum.RSA);
-                break;
-            default:
-                throw new IllegalArgumentException("Unsupported capsule type: " + db.getCapsuleType());
-        }
-        return dto;
+    @Override
+    public ResponseEntity<Void> createCapsule(Capsule capsule, LocalDateTime xExpiryTime) {
+        log.error("createCapsule() operation not supported on key capsule get server");
+        return new ResponseEntity<>(HttpStatus.METHOD_NOT_ALLOWED);
     }
 
-    private Optional<X509Certificate> getClientCertFromRequest() {
+    private Optional<ClientIdentity> getClientIdentityFromRequest() {
         HttpServletRequest req = this.nativeWebRequest.getNativeRequest(HttpServletRequest.class);
         X509Certificate[] certs = (req != null)
                 ? (X509Certificate[]) req.getAttribute("jakarta.servlet.request.X509Certificate")
@@ -149,9 +161,10 @@ public class GetKeyCapsuleApi implements KeyCapsulesApiDelegate {
         }
 
         if (certs.length > 0) {
-            var clientCert = certs[0];
-            log.info("Got client certificate(subject='{}')", getCertSubjectNameWithoutCN(clientCert));
-            return Optional.of(clientCert);
+            String sslSessionId = (String) req.getAttribute(SSL_SESSION_ID_ATTRIBUTE);
+            var clientIdentity = this.clientIdentityCache.get(sslSessionId, certs[0]);
+            log.info("Got client certificate(subject='{}')", clientIdentity.subjectWithoutCN());
+            return Optional.of(clientIdentity);
         } else {
             log.info("No client certificate in http request");
             return Optional.empty();
@@ -159,28 +172,22 @@ public class GetKeyCapsuleApi implements KeyCapsulesApiDelegate {
     }
 
     public static String getCertSubjectNameWithoutCN(X509Certificate certificate) {
-        return Optional.ofNullable(certificate.getSubjectX500Principal())
-            .map(X500Principal::getName)
-            // Remove the Common name from logs for privacy, it can contain name and id code
-            .map(GetKeyCapsuleApi::removeCN)
-            .orElse("");
+        return ClientIdentity.getCertSubjectNameWithoutCN(certificate);
     }
 
-    private static String removeCN(String distinguishedName) {
-        try {
-            LdapName ldapName = new LdapName(distinguishedName);
-            List<Rdn> rdns = ldapName.getRdns();
-
-            List<Rdn> filteredRdns = rdns.stream()
-                .filter(rdn -> !rdn.getType().equalsIgnoreCase("CN"))
-                .collect(Collectors.toList());
-
-            LdapName result = new LdapName(filteredRdns);
-            return result.toString();
-        } catch (InvalidNameException e) {
-            // If parsing fails, return empty string
-            return "";
-        }
+    /**
+     * Capsule found by transaction id
+     * @param transactionId capsule transaction id
+     * @param capsule capsule, its fields are written at the same level as other fields in JSON
+     * @param expiryTime capsule expiry time, in the same format as {@code x-expiry-time} header
+     * @param expiryTimeAdjusted same as {@code x-expiry-time-adjusted} header
+     */
+    public record FoundCapsule(
+        @JsonProperty("transaction_id") String transactionId,
+        @JsonUnwrapped Capsule capsule,
+        @JsonProperty("expiry_time") String expiryTime,
+        @JsonProperty("expiry_time_adjusted") boolean expiryTimeAdjusted
+    ) {
     }
 
 }
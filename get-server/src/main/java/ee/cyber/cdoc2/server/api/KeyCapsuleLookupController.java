@@ -0,0 +1,110 @@
+package ee.cyber.cdoc2.server.api;
+
+import ee.cyber.cdoc2.server.config.KeyCapsuleReadConfigProperties;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Nullable;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+
+/**
+ * Batch API for getting many CDOC2 key capsules of the client certificate recipient in one request. Not part of
+ * CDOC2 key capsules OpenAPI spec. Request body is JSON array of transaction ids, response body is JSON array of
+ * found capsules. Capsules that don't exist or belong to other recipient are not in the response.
+ * <pre>
+ * POST /key-capsules/lookup
+ * ["KC...", "KC..."]
+ *
+ * 200 OK
+ * [{"transaction_id": "KC...", "recipient_id": "...", "ephemeral_key_material": "...",
+ *   "capsule_type": "ecc_secp384r1", "expiry_time": "2029-01-01T00:00:00Z", "expiry_time_adjusted": false}]
+ * </pre>
+ * Request body is read as a stream: body over {@code key-capsule.read.max-body-size} is rejected with 413 and
+ * array with more than {@code key-capsule.read.max-batch-size} transaction ids with 400, without reading the rest
+ * of it.
+ */
+@RestController
+@Slf4j
+@RequiredArgsConstructor
+public class KeyCapsuleLookupController {
+
+    private final GetKeyCapsuleApi getKeyCapsuleApi;
+    private final KeyCapsuleReadConfigProperties config;
+    private final ObjectMapper objectMapper;
+
+    @PostMapping(
+        value = "/key-capsules/lookup",
+        consumes = MediaType.APPLICATION_JSON_VALUE,
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<List<GetKeyCapsuleApi.FoundCapsule>> getCapsules(HttpServletRequest request)
+        throws IOException {
+
+        long maxBodySize = this.config.maxBodySize().toBytes();
+        if (request.getContentLengthLong() > maxBodySize) {
+            log.info("Lookup request body too large: {} bytes, allowed {}", request.getContentLengthLong(),
+                maxBodySize);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+
+        List<String> transactionIds;
+        try (JsonParser parser = this.objectMapper.createParser(
+            new LimitedInputStream(request.getInputStream(), maxBodySize))
+        ) {
+            transactionIds = readTransactionIds(parser);
+        } catch (LimitedInputStream.BodyTooLargeException e) {
+            log.info("Lookup request body too large, allowed {} bytes", maxBodySize);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (JsonProcessingException e) {
+            log.info("Invalid lookup request body: {}", e.getOriginalMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        if (transactionIds == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return this.getKeyCapsuleApi.getCapsulesByTransactionIds(transactionIds);
+    }
+
+    /**
+     * @return transaction ids or {@code null}, when body is not an array of 1..maxBatchSize strings
+     */
+    @Nullable
+    private List<String> readTransactionIds(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            log.info("Invalid lookup request body, JSON array expected");
+            return null;
+        }
+        int maxBatchSize = this.config.maxBatchSize();
+        List<String> transactionIds = new ArrayList<>();
+        for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (transactionIds.size() == maxBatchSize) {
+                log.info("Invalid batch size, allowed 1..{}", maxBatchSize);
+                return null;
+            }
+            if (token != JsonToken.VALUE_STRING) {
+                log.info("Invalid transactionId[{}] in lookup request, JSON string expected", transactionIds.size());
+                return null;
+            }
+            transactionIds.add(parser.getText());
+        }
+        if (transactionIds.isEmpty() || parser.nextToken() != null) {
+            log.info("Invalid lookup request body, {} transaction ids", transactionIds.size());
+            return null;
+        }
+        return transactionIds;
+    }
+}
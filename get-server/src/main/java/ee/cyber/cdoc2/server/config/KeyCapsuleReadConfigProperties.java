@@ -0,0 +1,67 @@
+package ee.cyber.cdoc2.server.config;
+
+import ee.cyber.cdoc2.server.model.db.JdbcKeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.JpaKeyCapsuleReader;
+
+import java.time.Duration;
+import java.util.List;
+import jakarta.annotation.Nullable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+
+/**
+ * Configuration properties for reading key capsules from database.
+ *
+ * @param path read path used for getting key capsule by transaction id
+ * @param primary primary database connection for {@link Path#JDBC} reads, when not set then application data
+ *                source ({@code spring.datasource}) is used
+ * @param replicas read replica connections, capsule lookups are sent to replicas and retried on primary when
+ *                 capsule is not found on replica. Replicas are always read with {@link JdbcKeyCapsuleReader},
+ *                 expired capsules are not read from replicas
+ * @param maxReplicaLag replica is not used while its replication lag is bigger than this
+ * @param replicaReceiveTimeout replica is not used while it is not streaming WAL from primary or hasn't received
+ *                              anything from primary for this long, must be bigger than primary
+ *                              {@code wal_sender_timeout / 2} (keepalive interval)
+ * @param maxBatchSize max number of transaction ids in one {@code POST /key-capsules/lookup} request
+ * @param maxBodySize max size of {@code POST /key-capsules/lookup} request body, JSON of a transaction id is 37
+ *                    bytes
+ */
+@ConfigurationProperties(prefix = "key-capsule.read")
+public record KeyCapsuleReadConfigProperties(
+    @DefaultValue("JPA") Path path,
+    @Nullable Connection primary,
+    @DefaultValue List<Connection> replicas,
+    @DefaultValue("10s") Duration maxReplicaLag,
+    @DefaultValue("60s") Duration replicaReceiveTimeout,
+    @DefaultValue("100") int maxBatchSize,
+    @DefaultValue("16KB") DataSize maxBodySize
+) {
+
+    /** Key capsule read paths */
+    public enum Path {
+        /** {@link JdbcKeyCapsuleReader}, prepared statement mapped to immutable record */
+        JDBC,
+        /** {@link JpaKeyCapsuleReader}, JPA entity loaded through Spring Data repository */
+        JPA
+    }
+
+    /**
+     * Read-only database connection pool
+     * @param url JDBC url
+     * @param username database user
+     * @param password database password
+     * @param maxPoolSize max number of connections in the pool
+     * @param connectionTimeout max time to wait for connection from the pool
+     */
+    public record Connection(
+        String url,
+        String username,
+        String password,
+        @DefaultValue("10") int maxPoolSize,
+        @DefaultValue("5s") Duration connectionTimeout
+    ) {
+    }
+}
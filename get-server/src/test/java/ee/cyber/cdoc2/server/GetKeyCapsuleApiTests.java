@@ -9,6 +9,7 @@ import ee.cyber.cdoc2.config.KeyCapsuleClientConfiguration;
 import ee.cyber.cdoc2.exceptions.CDocUserException;
 import ee.cyber.cdoc2.server.api.GetKeyCapsuleApi;
 import ee.cyber.cdoc2.server.generated.model.Capsule;
+import ee.cyber.cdoc2.server.model.db.TransactionId;
 import ee.cyber.cdoc2.crypto.Crypto;
 import ee.cyber.cdoc2.crypto.ECKeys;
 import ee.cyber.cdoc2.crypto.EllipticCurve;
@@ -23,6 +24,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
@@ -33,15 +37,21 @@ import java.security.cert.X509Certificate;
 import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.naming.ldap.LdapName;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -84,7 +94,7 @@ class GetKeyCapsuleApiTests extends KeyCapsuleIntegrationTest {
         ECPublicKey senderPubKey = (ECPublicKey) senderKeyPair.getPublic();
         capsule.ephemeralKeyMaterial(ECKeys.encodeEcPubKeyForTls(senderPubKey));
 
-        String id = this.saveCapsule(capsule, EXPIRY_TIME).getTransactionId();
+        String id = TransactionId.toApiForm(this.saveCapsule(capsule, EXPIRY_TIME).getTransactionId());
 
         assertNotNull(id);
 
@@ -126,7 +136,7 @@ class GetKeyCapsuleApiTests extends KeyCapsuleIntegrationTest {
             .recipientId(ECKeys.encodeEcPubKeyForTls(curve, recipientPubKey))
             .capsuleType(Capsule.CapsuleTypeEnum.ECC_SECP384R1);
 
-        String transactionID = this.saveCapsule(capsule, EXPIRY_TIME).getTransactionId();
+        String transactionID = TransactionId.toApiForm(this.saveCapsule(capsule, EXPIRY_TIME).getTransactionId());
 
         assertNotNull(transactionID);
 
@@ -172,7 +182,7 @@ class GetKeyCapsuleApiTests extends KeyCapsuleIntegrationTest {
             .recipientId(RsaUtils.encodeRsaPubKey(senderPubKey))
             .capsuleType(Capsule.CapsuleTypeEnum.RSA);
 
-        String transactionID = this.saveCapsule(capsule, EXPIRY_TIME).getTransactionId();
+        String transactionID = TransactionId.toApiForm(this.saveCapsule(capsule, EXPIRY_TIME).getTransactionId());
 
         assertNotNull(transactionID);
 
@@ -244,7 +254,7 @@ class GetKeyCapsuleApiTests extends KeyCapsuleIntegrationTest {
                 .recipientId(ECKeys.encodeEcPubKeyForTls(curve, pubKey))
                 .capsuleType(Capsule.CapsuleTypeEnum.ECC_SECP384R1);
 
-            String id = this.saveCapsule(capsule, EXPIRY_TIME).getTransactionId();
+            String id = TransactionId.toApiForm(this.saveCapsule(capsule, EXPIRY_TIME).getTransactionId());
             assertNotNull(id);
 
             Optional<ECPublicKey> payload = new EcCapsuleClientImpl(client).getSenderKey(id);
@@ -257,7 +267,7 @@ class GetKeyCapsuleApiTests extends KeyCapsuleIntegrationTest {
                 .recipientId(RsaUtils.encodeRsaPubKey(pubKey))
                 .capsuleType(Capsule.CapsuleTypeEnum.RSA);
 
-            String id = this.saveCapsule(capsule, EXPIRY_TIME).getTransactionId();
+            String id = TransactionId.toApiForm(this.saveCapsule(capsule, EXPIRY_TIME).getTransactionId());
             assertNotNull(id);
 
             Optional<byte[]> payload = new RsaCapsuleClientImpl(client).getEncryptedKek(id);
@@ -332,7 +342,7 @@ class GetKeyCapsuleApiTests extends KeyCapsuleIntegrationTest {
             capsule.ephemeralKeyMaterial(senderPubKey.getEncoded());
         }
 
-        String id = this.saveCapsule(capsule, EXPIRY_TIME).getTransactionId();
+        String id = TransactionId.toApiForm(this.saveCapsule(capsule, EXPIRY_TIME).getTransactionId());
 
         assertNotNull(id);
 
@@ -360,7 +370,7 @@ class GetKeyCapsuleApiTests extends KeyCapsuleIntegrationTest {
             .ephemeralKeyMaterial(UUID.randomUUID().toString().getBytes())
             .recipientId(RsaUtils.encodeRsaPubKey((RSAPublicKey) recipientCert.getPublicKey()));
 
-        String txId = this.saveCapsule(rsaCapsule, EXPIRY_TIME).getTransactionId();
+        String txId = TransactionId.toApiForm(this.saveCapsule(rsaCapsule, EXPIRY_TIME).getTransactionId());
 
         ResponseEntity<Capsule> response = this.restClient
             .get()
@@ -383,6 +393,97 @@ class GetKeyCapsuleApiTests extends KeyCapsuleIntegrationTest {
         assertArrayEquals(rsaCapsule.getEphemeralKeyMaterial(), response.getBody().getEphemeralKeyMaterial());
     }
 
+    @Test
+    void shouldLookUpOnlyOwnCapsules() throws Exception {
+        // client certificate of restClient
+        var recipientCert = PemTools.loadCertificate(Files.newInputStream(
+            TestData.getKeysDirectory().resolve("rsa/client-rsa-2048-cert.pem")
+        ));
+        var otherCert = PemTools.loadCertificate(Files.newInputStream(
+            TestData.getKeysDirectory().resolve("rsa/client-rsa-4096-cert.pem")
+        ));
+        byte[] recipientId = RsaUtils.encodeRsaPubKey((RSAPublicKey) recipientCert.getPublicKey());
+        byte[] otherRecipientId = RsaUtils.encodeRsaPubKey((RSAPublicKey) otherCert.getPublicKey());
+
+        String first = saveRsaCapsule(recipientId);
+        String other = saveRsaCapsule(otherRecipientId);
+        String second = saveRsaCapsule(recipientId);
+        String unknown = TransactionId.toApiForm(UUID.randomUUID());
+
+        JsonNode response = this.restClient
+            .post()
+            .uri(this.capsuleApiUrl() + "/lookup")
+            .body(List.of(second, other, "KC123", unknown, first, second))
+            .retrieve()
+            .body(JsonNode.class);
+
+        // other recipient capsule is left out the same way as not existing capsule, duplicates are removed
+        assertNotNull(response);
+        assertEquals(2, response.size());
+        assertEquals(second, response.get(0).get("transaction_id").asText());
+        assertEquals(first, response.get(1).get("transaction_id").asText());
+        for (JsonNode capsule : response) {
+            assertArrayEquals(recipientId, capsule.get("recipient_id").binaryValue());
+            assertEquals("rsa", capsule.get("capsule_type").asText());
+            DateTimeFormatter.ISO_INSTANT.parse(capsule.get("expiry_time").asText());
+            assertFalse(capsule.get("expiry_time_adjusted").asBoolean());
+        }
+    }
+
+    @Test
+    void shouldMultiplexRequestsOverSingleAuthenticatedHttp2Connection() throws Exception {
+        var recipientCert = PemTools.loadCertificate(Files.newInputStream(
+            TestData.getKeysDirectory().resolve("rsa/client-rsa-2048-cert.pem")
+        ));
+        byte[] recipientId = RsaUtils.encodeRsaPubKey((RSAPublicKey) recipientCert.getPublicKey());
+        List<String> txIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            txIds.add(saveRsaCapsule(recipientId));
+        }
+
+        var recipient = new Http2TestClient(TestData.getKeysDirectory().resolve("rsa/client-rsa-2048.p12"));
+        var other = new Http2TestClient(TestData.getKeysDirectory().resolve("cdoc2client.p12"));
+
+        assertHttp2Responses(recipient, txIds, HttpStatus.OK);
+        assertEquals(1, recipient.connections());
+
+        // client certificate of the connection is checked for each request
+        assertHttp2Responses(other, txIds, HttpStatus.NOT_FOUND);
+        assertEquals(1, other.connections());
+    }
+
+    private void assertHttp2Responses(Http2TestClient client, List<String> txIds, HttpStatus expected)
+        throws Exception {
+
+        List<HttpRequest> requests = txIds.stream()
+            .map(txId -> HttpRequest.newBuilder(URI.create(this.capsuleApiUrl() + "/" + txId)).GET().build())
+            .toList();
+
+        // first request opens the connection, the rest are sent at once
+        List<HttpResponse<String>> responses = new ArrayList<>();
+        responses.add(client.httpClient().send(requests.get(0), HttpResponse.BodyHandlers.ofString()));
+        List<CompletableFuture<HttpResponse<String>>> concurrent = new ArrayList<>();
+        for (HttpRequest request : requests.subList(1, requests.size())) {
+            concurrent.add(client.httpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : concurrent) {
+            responses.add(response.get(1, TimeUnit.MINUTES));
+        }
+
+        for (HttpResponse<String> response : responses) {
+            assertEquals(HttpClient.Version.HTTP_2, response.version());
+            assertEquals(expected.value(), response.statusCode());
+        }
+    }
+
+    private String saveRsaCapsule(byte[] recipientId) {
+        var capsule = new Capsule()
+            .capsuleType(Capsule.CapsuleTypeEnum.RSA)
+            .ephemeralKeyMaterial(UUID.randomUUID().toString().getBytes())
+            .recipientId(recipientId);
+        return TransactionId.toApiForm(this.saveCapsule(capsule, EXPIRY_TIME).getTransactionId());
+    }
+
     @Test
     void shouldGetHttp400() throws Exception {
         // constraint errors should be converted to HTTP 400, see GlobalExceptionHandler
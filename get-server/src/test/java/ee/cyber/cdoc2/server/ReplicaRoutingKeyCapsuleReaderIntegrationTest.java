@@ -0,0 +1,275 @@
+package ee.cyber.cdoc2.server;
+
+import ee.cyber.cdoc2.server.ReplicaRoutingKeyCapsuleReader.Fallback;
+import ee.cyber.cdoc2.server.config.KeyCapsuleReadConfigProperties;
+import ee.cyber.cdoc2.server.model.db.GroupCommitKeyCapsuleWriter;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.TransactionId;
+import ee.cyber.cdoc2.server.model.db.TransactionIdGenerator;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+
+// Starts PostgreSQL primary and its streaming replica running on docker
+class ReplicaRoutingKeyCapsuleReaderIntegrationTest {
+
+    private static final String POSTGRES_IMAGE = "postgres:14.17";
+    private static final String DATABASE = "integration-tests-db";
+    private static final String USER = "sa";
+    private static final String PASSWORD = "sa";
+    private static final Duration MAX_LAG = Duration.ofSeconds(1);
+
+    private static Network network;
+    private static PostgreSQLContainer<?> primaryContainer;
+    private static GenericContainer<?> replicaContainer;
+    private static String primaryUrl;
+    private static String replicaUrl;
+    private static GroupCommitKeyCapsuleWriter writer;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ReplicaRoutingKeyCapsuleReader reader;
+
+    @BeforeAll
+    static void startPrimaryAndReplica() throws Exception {
+        network = Network.newNetwork();
+        primaryContainer = new PostgreSQLContainer<>(POSTGRES_IMAGE)
+            .withNetwork(network)
+            .withNetworkAliases("primary")
+            .withDatabaseName(DATABASE)
+            .withUsername(USER)
+            .withPassword(PASSWORD);
+        primaryContainer.start();
+        primaryContainer.execInContainer("bash", "-c",
+            "echo 'host replication all all scram-sha-256' >> \"$PGDATA/pg_hba.conf\"");
+        primaryUrl = primaryContainer.getJdbcUrl();
+        new JdbcTemplate(dataSource(primaryUrl)).execute("SELECT pg_reload_conf()");
+
+        // replica is cloned from primary with pg_basebackup and streams WAL from it
+        replicaContainer = new GenericContainer<>(POSTGRES_IMAGE)
+            .withNetwork(network)
+            .withExposedPorts(PostgreSQLContainer.POSTGRESQL_PORT)
+            .withEnv("PGPASSWORD", PASSWORD)
+            .withCreateContainerCmdModifier(cmd -> cmd.withUser("postgres").withEntrypoint("bash", "-c",
+                "pg_basebackup -h primary -U " + USER + " -D /tmp/replica -R -X stream"
+                    + " && chmod 700 /tmp/replica && exec postgres -D /tmp/replica"))
+            .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*", 1));
+        replicaContainer.start();
+        replicaUrl = "jdbc:postgresql://" + replicaContainer.getHost() + ":"
+            + replicaContainer.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + DATABASE;
+
+        createSchemaAndWriter();
+    }
+
+    private static void createSchemaAndWriter() throws Exception {
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource(primaryUrl));
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.yaml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+
+        writer = new GroupCommitKeyCapsuleWriter(
+            dataSource(primaryUrl),
+            Validation.buildDefaultValidatorFactory().getValidator(),
+            new TransactionIdGenerator(TransactionId.Layout.CREATION_TIME),
+            1,
+            Duration.ZERO,
+            Duration.ofSeconds(30)
+        );
+    }
+
+    @AfterAll
+    static void stopPrimaryAndReplica() throws Exception {
+        writer.close();
+        replicaContainer.stop();
+        primaryContainer.stop();
+        network.close();
+    }
+
+    @AfterEach
+    void resumeReplayAndCloseReader() throws Exception {
+        replica().execute("SELECT pg_wal_replay_resume()");
+        if (this.reader != null) {
+            this.reader.close();
+        }
+    }
+
+    @Test
+    void shouldReadReplicatedCapsuleFromReplica() throws Exception {
+        KeyCapsuleDb capsule = save();
+        this.reader = routingReader(replicaUrl);
+        await(this::isReplicaAvailable);
+        await(() -> replica().queryForObject("SELECT count(*) FROM cdoc2_capsule WHERE recipient_fingerprint = ?",
+            Long.class, (Object) capsule.getRecipientFingerprint()) == 1);
+
+        assertTrue(find(capsule));
+        assertEquals(1, this.reader.replicaReadCount());
+        assertEquals(0, this.reader.fallbackCount(Fallback.NOT_FOUND));
+        assertEquals(0, this.reader.fallbackCount(Fallback.NO_REPLICA));
+    }
+
+    @Test
+    void shouldReadCapsuleNotReplayedOnReplicaFromPrimary() throws Exception {
+        this.reader = routingReader(replicaUrl);
+        await(this::isReplicaAvailable);
+        pauseReplay();
+
+        // replica was available on last lag check, capsule created after that is not replayed on replica
+        KeyCapsuleDb capsule = save();
+        assertTrue(find(capsule));
+        assertEquals(0, this.reader.replicaReadCount());
+        assertEquals(1, this.reader.fallbackCount(Fallback.NOT_FOUND));
+        assertEquals(0, this.reader.primaryMissCount());
+
+        // unknown transaction id is looked up from both replica and primary
+        var capsules = this.reader.findAllByTransactionIdsAndRecipientFingerprint(
+            List.of(capsule.getTransactionId(), UUID.randomUUID()), capsule.getRecipientFingerprint()
+        );
+        assertEquals(List.of(capsule.getTransactionId()), List.copyOf(capsules.keySet()));
+        assertEquals(2, this.reader.fallbackCount(Fallback.NOT_FOUND));
+        assertEquals(1, this.reader.primaryMissCount());
+    }
+
+    @Test
+    void shouldNotUseReplicaLaggingBehindPrimary() throws Exception {
+        this.reader = routingReader(replicaUrl);
+        await(this::isReplicaAvailable);
+
+        // replica receives WAL, but doesn't replay it, lag grows over max lag
+        pauseReplay();
+        KeyCapsuleDb capsule = save();
+        TimeUnit.MILLISECONDS.sleep(MAX_LAG.toMillis() + 500);
+        save();
+        await(() -> !isReplicaAvailable());
+        assertTrue(replicaLag() > MAX_LAG.toMillis());
+
+        assertTrue(find(capsule));
+        assertEquals(1, this.reader.fallbackCount(Fallback.NO_REPLICA));
+
+        // replica catches up after replay is resumed
+        replica().execute("SELECT pg_wal_replay_resume()");
+        await(this::isReplicaAvailable);
+        assertTrue(find(capsule));
+        assertEquals(1, this.reader.replicaReadCount());
+    }
+
+    @Test
+    void shouldUseReadOnlyConnectionPools() throws Exception {
+        this.reader = routingReader(replicaUrl);
+
+        // primary and replica pools
+        assertEquals(2, this.reader.resources().size());
+        for (AutoCloseable pool : this.reader.resources()) {
+            var jdbcTemplate = new JdbcTemplate((HikariDataSource) pool);
+            assertThrows(DataAccessException.class,
+                () -> jdbcTemplate.update("DELETE FROM cdoc2_capsule WHERE false"));
+        }
+    }
+
+    @Test
+    void shouldReportZeroLagForPrimary() throws Exception {
+        this.reader = routingReader(primaryUrl);
+        this.reader.checkReplicaLag();
+
+        assertEquals(0, replicaLag());
+    }
+
+    private ReplicaRoutingKeyCapsuleReader routingReader(String replicaUrl) {
+        var config = new KeyCapsuleReadConfigProperties(
+            KeyCapsuleReadConfigProperties.Path.JDBC,
+            connection(primaryUrl),
+            List.of(connection(replicaUrl)),
+            MAX_LAG,
+            Duration.ofSeconds(60),
+            100,
+            DataSize.ofKilobytes(16)
+        );
+        var routingReader = ReplicaRoutingKeyCapsuleReader.create(config, null);
+        routingReader.bindTo(this.meterRegistry);
+        return routingReader;
+    }
+
+    private boolean isReplicaAvailable() {
+        this.reader.checkReplicaLag();
+        long lag = replicaLag();
+        return lag >= 0 && lag <= MAX_LAG.toMillis();
+    }
+
+    private long replicaLag() {
+        return (long) this.meterRegistry.get("cdoc2.db.replica.lag").gauge().value();
+    }
+
+    private boolean find(KeyCapsuleDb capsule) {
+        return this.reader.findByTransactionIdAndRecipientFingerprint(
+            capsule.getTransactionId(), capsule.getRecipientFingerprint()
+        ).isPresent();
+    }
+
+    private static void pauseReplay() throws InterruptedException {
+        replica().execute("SELECT pg_wal_replay_pause()");
+        await(() -> "paused".equals(replica().queryForObject("SELECT pg_get_wal_replay_pause_state()", String.class)));
+    }
+
+    private static KeyCapsuleDb save() {
+        return writer.save(new KeyCapsuleDb()
+            .setCapsuleType(KeyCapsuleDb.CapsuleType.SECP384R1)
+            .setRecipient(UUID.randomUUID().toString().getBytes())
+            .setPayload("345".getBytes())
+            .setExpiryTime(Instant.now().plusSeconds(86400))
+            .setExpiryTimeAdjusted(false));
+    }
+
+    private static JdbcTemplate replica() {
+        return new JdbcTemplate(dataSource(replicaUrl));
+    }
+
+    private static KeyCapsuleReadConfigProperties.Connection connection(String url) {
+        return new KeyCapsuleReadConfigProperties.Connection(url, USER, PASSWORD, 2, Duration.ofSeconds(5));
+    }
+
+    private static DataSource dataSource(String url) {
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setURL(url);
+        dataSource.setUser(USER);
+        dataSource.setPassword(PASSWORD);
+        return dataSource;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met within 30 seconds");
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+    }
+}
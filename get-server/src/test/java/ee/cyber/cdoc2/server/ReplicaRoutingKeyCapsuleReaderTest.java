@@ -0,0 +1,191 @@
+package ee.cyber.cdoc2.server;
+
+import ee.cyber.cdoc2.server.ReplicaRoutingKeyCapsuleReader.Fallback;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRecord;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class ReplicaRoutingKeyCapsuleReaderTest {
+
+    private static final Duration MAX_LAG = Duration.ofSeconds(10);
+    private static final byte[] FINGERPRINT = new byte[KeyCapsuleDb.RECIPIENT_FINGERPRINT_LENGTH];
+
+    private final UUID transactionId = UUID.randomUUID();
+    private final KeyCapsuleRecord capsule = new KeyCapsuleRecord(
+        new byte[] {1}, new byte[] {2}, KeyCapsuleDb.CapsuleType.SECP384R1, Instant.now(), false
+    );
+
+    @Test
+    void shouldReadFromReplica() {
+        CountingReader primary = new CountingReader(Map.of(this.transactionId, this.capsule));
+        CountingReader replica = new CountingReader(Map.of(this.transactionId, this.capsule));
+        var reader = routingReader(primary, replica(replica, () -> 0));
+        reader.checkReplicaLag();
+
+        assertSame(this.capsule, find(reader).orElseThrow());
+        assertEquals(1, replica.calls.get());
+        assertEquals(0, primary.calls.get());
+    }
+
+    @Test
+    void shouldRetryOnPrimaryWhenNotFoundOnReplica() {
+        // capsule created on primary, not yet replicated
+        CountingReader primary = new CountingReader(Map.of(this.transactionId, this.capsule));
+        CountingReader replica = new CountingReader(Map.of());
+        var reader = routingReader(primary, replica(replica, () -> 0));
+        reader.checkReplicaLag();
+
+        assertSame(this.capsule, find(reader).orElseThrow());
+        assertEquals(1, replica.calls.get());
+        assertEquals(1, primary.calls.get());
+        assertEquals(1, reader.fallbackCount(Fallback.NOT_FOUND));
+        assertEquals(0, reader.primaryMissCount());
+
+        // capsule that doesn't exist is looked up from both replica and primary
+        CountingReader emptyPrimary = new CountingReader(Map.of());
+        var notFoundReader = routingReader(emptyPrimary, replica(replica, () -> 0));
+        notFoundReader.checkReplicaLag();
+        assertTrue(find(notFoundReader).isEmpty());
+        assertEquals(1, emptyPrimary.calls.get());
+        assertEquals(1, notFoundReader.primaryMissCount());
+    }
+
+    @Test
+    void shouldNotUseReplicaWithUnknownOrBigLag() {
+        CountingReader primary = new CountingReader(Map.of(this.transactionId, this.capsule));
+        CountingReader replica = new CountingReader(Map.of(this.transactionId, this.capsule));
+        AtomicInteger lag = new AtomicInteger(0);
+        var reader = routingReader(primary, replica(replica, lag::get));
+
+        // lag not checked yet
+        find(reader);
+        assertEquals(0, replica.calls.get());
+
+        lag.set((int) MAX_LAG.toMillis() + 1);
+        reader.checkReplicaLag();
+        find(reader);
+        assertEquals(0, replica.calls.get());
+
+        lag.set((int) MAX_LAG.toMillis());
+        reader.checkReplicaLag();
+        find(reader);
+        assertEquals(1, replica.calls.get());
+
+        assertEquals(2, primary.calls.get());
+        assertEquals(2, reader.fallbackCount(Fallback.NO_REPLICA));
+    }
+
+    @Test
+    void shouldFallBackToPrimaryWhenReplicaFails() {
+        CountingReader primary = new CountingReader(Map.of(this.transactionId, this.capsule));
+        KeyCapsuleReader failingReplica = (id, fingerprint) -> {
+            throw new DataAccessResourceFailureException("replica down");
+        };
+        var reader = routingReader(primary, replica(failingReplica, () -> 0));
+        reader.checkReplicaLag();
+
+        assertSame(this.capsule, find(reader).orElseThrow());
+        assertEquals(1, reader.fallbackCount(Fallback.ERROR));
+
+        // failing lag check makes replica unavailable
+        var failingLagReader = routingReader(primary, replica(failingReplica, () -> {
+            throw new DataAccessResourceFailureException("replica down");
+        }));
+        failingLagReader.checkReplicaLag();
+        assertSame(this.capsule, find(failingLagReader).orElseThrow());
+        assertEquals(1, failingLagReader.fallbackCount(Fallback.NO_REPLICA));
+    }
+
+    @Test
+    void shouldUseReplicasInTurns() {
+        CountingReader primary = new CountingReader(Map.of());
+        CountingReader first = new CountingReader(Map.of(this.transactionId, this.capsule));
+        CountingReader second = new CountingReader(Map.of(this.transactionId, this.capsule));
+        var reader = routingReader(primary, replica(first, () -> 0), replica(second, () -> 0));
+        reader.checkReplicaLag();
+
+        for (int i = 0; i < 10; i++) {
+            find(reader);
+        }
+        assertEquals(5, first.calls.get());
+        assertEquals(5, second.calls.get());
+        assertEquals(0, primary.calls.get());
+    }
+
+    @Test
+    void shouldLookUpOnlyCapsulesNotFoundOnReplicaFromPrimary() {
+        UUID replicated = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        CountingReader primary = new CountingReader(Map.of(this.transactionId, this.capsule, replicated, this.capsule));
+        CountingReader replica = new CountingReader(Map.of(replicated, this.capsule));
+        var reader = routingReader(primary, replica(replica, () -> 0));
+        reader.checkReplicaLag();
+
+        var ids = List.of(this.transactionId, missing, replicated);
+        var capsules = reader.findAllByTransactionIdsAndRecipientFingerprint(ids, FINGERPRINT);
+        assertEquals(List.of(this.transactionId, replicated), List.copyOf(capsules.keySet()));
+        assertEquals(3, replica.calls.get());
+        // replicated capsule is not looked up from primary again
+        assertEquals(2, primary.calls.get());
+        assertEquals(1, reader.fallbackCount(Fallback.NOT_FOUND));
+        assertEquals(1, reader.primaryMissCount());
+
+        reader.findAllByTransactionIdsAndRecipientFingerprint(List.of(replicated), FINGERPRINT);
+        assertEquals(2, primary.calls.get());
+        assertEquals(1, reader.primaryMissCount());
+    }
+
+    private Optional<KeyCapsuleRecord> find(KeyCapsuleReader reader) {
+        return reader.findByTransactionIdAndRecipientFingerprint(this.transactionId, FINGERPRINT);
+    }
+
+    private static ReplicaRoutingKeyCapsuleReader routingReader(
+        KeyCapsuleReader primary,
+        ReplicaRoutingKeyCapsuleReader.Replica... replicas
+    ) {
+        return new ReplicaRoutingKeyCapsuleReader(primary, List.of(replicas), MAX_LAG, List.of());
+    }
+
+    private static ReplicaRoutingKeyCapsuleReader.Replica replica(
+        KeyCapsuleReader reader,
+        LongSupplier lagProbe
+    ) {
+        return new ReplicaRoutingKeyCapsuleReader.Replica("replica", reader, lagProbe);
+    }
+
+    private static final class CountingReader implements KeyCapsuleReader {
+        private final Map<UUID, KeyCapsuleRecord> capsules;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        CountingReader(Map<UUID, KeyCapsuleRecord> capsules) {
+            this.capsules = new HashMap<>(capsules);
+        }
+
+        @Override
+        public Optional<KeyCapsuleRecord> findByTransactionIdAndRecipientFingerprint(
+            UUID transactionId,
+            byte[] recipientFingerprint
+        ) {
+            this.calls.incrementAndGet();
+            return Optional.ofNullable(this.capsules.get(transactionId));
+        }
+    }
+}
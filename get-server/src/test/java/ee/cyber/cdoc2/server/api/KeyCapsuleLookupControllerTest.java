@@ -0,0 +1,116 @@
+package ee.cyber.cdoc2.server.api;
+
+import ee.cyber.cdoc2.server.config.KeyCapsuleReadConfigProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+class KeyCapsuleLookupControllerTest {
+
+    private static final int MAX_BATCH_SIZE = 3;
+    private static final DataSize MAX_BODY_SIZE = DataSize.ofBytes(512);
+    private static final String TRANSACTION_ID = "KC0123456789abcdef0123456789abcdef";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<List<String>> lookups = new ArrayList<>();
+
+    @Test
+    void shouldLookUpTransactionIds() throws Exception {
+        var response = controller().getCapsules(request(transactionIds(2)));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of(transactionIds(2)), this.lookups);
+    }
+
+    @Test
+    void shouldRejectTooManyTransactionIds() throws Exception {
+        var response = controller().getCapsules(request(transactionIds(MAX_BATCH_SIZE + 1)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(0, this.lookups.size());
+    }
+
+    @Test
+    void shouldRejectTooLargeBody() throws Exception {
+        // transaction id array is followed by whitespace, so that body is valid JSON
+        byte[] body = (this.objectMapper.writeValueAsString(transactionIds(1))
+            + " ".repeat((int) MAX_BODY_SIZE.toBytes())).getBytes();
+
+        var withLength = request(body);
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, controller().getCapsules(withLength).getStatusCode());
+
+        // chunked request without Content-Length is limited while reading
+        var chunked = new MockHttpServletRequest("POST", "/key-capsules/lookup") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        chunked.setContent(body);
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, controller().getCapsules(chunked).getStatusCode());
+        assertEquals(0, this.lookups.size());
+    }
+
+    @Test
+    void shouldRejectInvalidBody() throws Exception {
+        var controller = controller();
+        for (String body : List.of("", "{}", "[]", "[1]", "[null]", "[[\"KC\"]]", "[\"KC\"", "[\"KC\"] []")) {
+            assertEquals(HttpStatus.BAD_REQUEST, controller.getCapsules(request(body.getBytes())).getStatusCode(),
+                body);
+        }
+        assertEquals(0, this.lookups.size());
+    }
+
+    private KeyCapsuleLookupController controller() {
+        // records parsed transaction ids, capsule reader is not used
+        var api = new GetKeyCapsuleApi(
+            new ServletWebRequest(new MockHttpServletRequest()),
+            null,
+            new ClientIdentityCache()
+        ) {
+            @Override
+            public ResponseEntity<List<FoundCapsule>> getCapsulesByTransactionIds(List<String> transactionIds) {
+                lookups.add(transactionIds);
+                return ResponseEntity.ok(List.of());
+            }
+        };
+        return new KeyCapsuleLookupController(
+            api,
+            new KeyCapsuleReadConfigProperties(
+                KeyCapsuleReadConfigProperties.Path.JPA, null, List.of(), null, null, MAX_BATCH_SIZE, MAX_BODY_SIZE
+            ),
+            this.objectMapper
+        );
+    }
+
+    private MockHttpServletRequest request(List<String> transactionIds) throws Exception {
+        return request(this.objectMapper.writeValueAsBytes(transactionIds));
+    }
+
+    private static MockHttpServletRequest request(byte[] body) {
+        var request = new MockHttpServletRequest("POST", "/key-capsules/lookup");
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(body);
+        return request;
+    }
+
+    private static List<String> transactionIds(int count) {
+        List<String> transactionIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            transactionIds.add(TRANSACTION_ID.substring(0, TRANSACTION_ID.length() - 1) + i);
+        }
+        return transactionIds;
+    }
+}
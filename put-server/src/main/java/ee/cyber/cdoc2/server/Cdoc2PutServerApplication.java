@@ -11,12 +11,32 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.boot.info.BuildProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import ee.cyber.cdoc2.server.config.DbBulkheadConfigProperties;
 import ee.cyber.cdoc2.server.config.DbConnectionConfigProperties;
+import ee.cyber.cdoc2.server.config.AccessLogConfigProperties;
+import ee.cyber.cdoc2.server.config.CapsulePartitionConfigProperties;
 import ee.cyber.cdoc2.server.config.ConfigProperties;
+import ee.cyber.cdoc2.server.config.ExpiredCapsuleCleanUpConfigProperties;
+import ee.cyber.cdoc2.server.config.GroupCommitConfigProperties;
+import ee.cyber.cdoc2.server.config.KeyCapsuleBatchConfigProperties;
 import ee.cyber.cdoc2.server.config.KeyCapsuleConfigProperties;
+import ee.cyber.cdoc2.server.config.SecureRandomConfigProperties;
+import ee.cyber.cdoc2.server.model.db.GroupCommitKeyCapsuleWriter;
+import ee.cyber.cdoc2.server.model.db.JpaKeyCapsuleWriter;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRepository;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleWriter;
+import ee.cyber.cdoc2.server.model.db.TransactionId;
+import ee.cyber.cdoc2.server.model.db.TransactionIdGenerator;
+import ee.cyber.cdoc2.shared.crypto.Crypto;
+import ee.cyber.cdoc2.shared.crypto.SecureRandomPool;
+
+import jakarta.validation.Validator;
+import java.security.NoSuchAlgorithmException;
+import javax.sql.DataSource;
 
 
 @SpringBootApplication
@@ -25,9 +45,16 @@ import ee.cyber.cdoc2.server.config.KeyCapsuleConfigProperties;
 @Slf4j
 @RequiredArgsConstructor
 @EnableConfigurationProperties({
+    AccessLogConfigProperties.class,
+    CapsulePartitionConfigProperties.class,
     ConfigProperties.class,
+    DbBulkheadConfigProperties.class,
     DbConnectionConfigProperties.class,
-    KeyCapsuleConfigProperties.class
+    ExpiredCapsuleCleanUpConfigProperties.class,
+    GroupCommitConfigProperties.class,
+    KeyCapsuleBatchConfigProperties.class,
+    KeyCapsuleConfigProperties.class,
+    SecureRandomConfigProperties.class
 })
 @EnableScheduling
 public class Cdoc2PutServerApplication implements CommandLineRunner {
@@ -54,4 +81,52 @@ public class Cdoc2PutServerApplication implements CommandLineRunner {
         );
     }
 
+    @Bean
+    SecureRandomPool secureRandomPool(SecureRandomConfigProperties config) throws NoSuchAlgorithmException {
+        var pool = new SecureRandomPool(config.effectivePoolSize(), config.reseedPolicy(), config.reseedInterval());
+        // transaction ids are generated by JPA entity, that gets pool through Crypto
+        Crypto.setSecureRandomPool(pool);
+        return pool;
+    }
+
+    @Bean
+    TransactionIdGenerator transactionIdGenerator(CapsulePartitionMaintenanceJob partitionMaintenanceJob) {
+        // partitioned table expects expiry time in transaction id, see TransactionId.Layout.EXPIRY_TIME.
+        // Layout is checked again by partition maintenance job
+        TransactionId.Layout layout = TransactionId.Layout.CREATION_TIME;
+        try {
+            if (partitionMaintenanceJob.isTablePartitioned()) {
+                layout = TransactionId.Layout.EXPIRY_TIME;
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to check if key capsule table is partitioned", e);
+        }
+        log.info("Using {} transaction id layout", layout);
+        return new TransactionIdGenerator(layout);
+    }
+
+    @Bean
+    KeyCapsuleWriter keyCapsuleWriter(
+        GroupCommitConfigProperties config,
+        KeyCapsuleRepository capsuleRepository,
+        TransactionIdGenerator transactionIdGenerator,
+        DataSource dataSource,
+        Validator validator
+    ) {
+        if (!config.enabled()) {
+            return new JpaKeyCapsuleWriter(capsuleRepository, transactionIdGenerator);
+        }
+        log.info("Key capsule group commit enabled (max batch size {}, max wait {}, commit timeout {})",
+            config.maxBatchSize(), config.maxWait(), config.commitTimeout());
+        return new GroupCommitKeyCapsuleWriter(
+            dataSource, validator, transactionIdGenerator, config.maxBatchSize(), config.maxWait(),
+            config.commitTimeout()
+        );
+    }
+
+    @Bean
+    SecureRandomPoolMetrics secureRandomPoolMetrics(SecureRandomPool secureRandomPool) {
+        return new SecureRandomPoolMetrics(secureRandomPool);
+    }
+
 }
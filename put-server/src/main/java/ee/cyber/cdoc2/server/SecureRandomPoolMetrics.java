@@ -0,0 +1,48 @@
+package ee.cyber.cdoc2.server;
+
+import ee.cyber.cdoc2.shared.crypto.SecureRandomPool;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+
+/**
+ * Exposes {@link SecureRandomPool} statistics as metrics: random bytes generation latency, lock contention
+ * between threads striped to the same pool instance and number of explicit reseeds.
+ */
+public class SecureRandomPoolMetrics implements MeterBinder {
+
+    private final SecureRandomPool pool;
+
+    public SecureRandomPoolMetrics(SecureRandomPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionTimer.builder("cdoc2.secure.random.generate", this.pool,
+                p -> p.stats().generateCount(),
+                p -> p.stats().generateNanos(),
+                TimeUnit.NANOSECONDS)
+            .description("Random bytes generation requests")
+            .register(registry);
+
+        FunctionCounter.builder("cdoc2.secure.random.contended", this.pool, p -> p.stats().contendedCount())
+            .description("Generation requests that waited for another thread using the same DRBG instance")
+            .register(registry);
+
+        FunctionCounter.builder("cdoc2.secure.random.reseeds", this.pool, p -> p.stats().reseedCount())
+            .description("Explicit DRBG reseeds")
+            .register(registry);
+
+        Gauge.builder("cdoc2.secure.random.pool.size", this.pool, SecureRandomPool::size)
+            .tag("reseed.policy", this.pool.getReseedPolicy().name())
+            .description("Number of DRBG instances in the pool")
+            .register(registry);
+    }
+}
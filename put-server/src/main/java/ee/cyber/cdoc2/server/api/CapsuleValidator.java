@@ -10,71 +10,108 @@ import lombok.extern.slf4j.Slf4j;
 
 
 import java.security.GeneralSecurityException;
-import java.security.interfaces.ECPublicKey;
+import java.security.InvalidKeyException;
 
 import ee.cyber.cdoc2.server.generated.model.Capsule;
 
 import static ee.cyber.cdoc2.shared.crypto.EllipticCurve.*;
 
 /**
- * Utility class for validating capsules.
+ * Utility class for validating capsules. Each key in the capsule is decoded and validated exactly once,
+ * validation outcome is returned as {@link Result}.
  */
 @Slf4j
 public final class CapsuleValidator {
 
-    private CapsuleValidator() {
-        // utility class
+    /**
+     * Reason for the validation outcome
+     */
+    enum Reason {
+        VALID,
+        UNSUPPORTED_CAPSULE_TYPE,
+        MISSING_KEY_MATERIAL,
+        INVALID_KEY_LENGTH,
+        INVALID_RECIPIENT_KEY,
+        INVALID_EPHEMERAL_KEY
     }
 
-    static boolean isValid(Capsule capsule) {
-        return switch (capsule.getCapsuleType()) {
-            case ECC_SECP256R1, ECC_SECP384R1, ECC_SECP521R1 -> validateEcCapsule(capsule);
-            case RSA -> validateRSACapsule(capsule);
-            default ->
-                throw new IllegalArgumentException("Unexpected capsule type: " + capsule.getCapsuleType());
-        };
+    /**
+     * Capsule validation result
+     * @param reason {@link Reason#VALID} for valid capsule, otherwise reason why capsule is invalid
+     * @param elapsedNanos time spent on validation in nanoseconds
+     */
+    record Result(Reason reason, long elapsedNanos) {
+        boolean valid() {
+            return reason == Reason.VALID;
+        }
     }
 
-    private static boolean validateEcCapsule(Capsule capsule) {
+    private CapsuleValidator() {
+        // utility class
+    }
 
-        try {
-            EllipticCurve curve = switch (capsule.getCapsuleType()) {
-                case ECC_SECP256R1 -> SECP256R1;
-                case ECC_SECP384R1 -> SECP384R1;
-                case ECC_SECP521R1 -> SECP521R1;
-                default -> throw new IllegalArgumentException("Must be a elliptic curve capsule");
+    static Result validate(Capsule capsule) {
+        long start = System.nanoTime();
+        Reason reason;
+        if (capsule.getCapsuleType() == null) {
+            reason = Reason.UNSUPPORTED_CAPSULE_TYPE;
+        } else {
+            reason = switch (capsule.getCapsuleType()) {
+                case ECC_SECP256R1 -> validateEcCapsule(SECP256R1, capsule);
+                case ECC_SECP384R1 -> validateEcCapsule(SECP384R1, capsule);
+                case ECC_SECP521R1 -> validateEcCapsule(SECP521R1, capsule);
+                case RSA -> validateRSACapsule(capsule);
+                default -> Reason.UNSUPPORTED_CAPSULE_TYPE;
             };
+        }
+        return new Result(reason, System.nanoTime() - start);
+    }
 
-            int tlsEncodedKeyLen = 2 * curve.getKeyLength() + 1;
+    private static Reason validateEcCapsule(EllipticCurve curve, Capsule capsule) {
+        byte[] recipientKey = capsule.getRecipientId();
+        byte[] ephemeralKey = capsule.getEphemeralKeyMaterial();
 
-            if (capsule.getRecipientId() == null || capsule.getEphemeralKeyMaterial() == null) {
-                log.error("Recipient id or ephemeral key was null");
-                return false;
-            }
-            if (capsule.getRecipientId().length != tlsEncodedKeyLen
-                    || capsule.getEphemeralKeyMaterial().length != tlsEncodedKeyLen) {
-                log.error("Invalid {} curve key length", capsule.getCapsuleType());
-                return false;
-            }
+        if (recipientKey == null || ephemeralKey == null) {
+            return Reason.MISSING_KEY_MATERIAL;
+        }
 
-            ECPublicKey recipientPubKey = ECKeys.decodeEcPublicKeyFromTls(curve, capsule.getRecipientId());
-            ECPublicKey senderPubKey = ECKeys.decodeEcPublicKeyFromTls(curve, capsule.getEphemeralKeyMaterial());
+        int tlsEncodedKeyLen = curve.getTlsEncodedKeyLength();
+        if (recipientKey.length != tlsEncodedKeyLen || ephemeralKey.length != tlsEncodedKeyLen) {
+            return Reason.INVALID_KEY_LENGTH;
+        }
 
-            return (ECKeys.isValidPublicKey(curve, recipientPubKey) && ECKeys.isValidPublicKey(curve, senderPubKey));
-        } catch (GeneralSecurityException gse) {
-            log.error("Invalid {} EC key", capsule.getCapsuleType(), gse);
+        // decoding validates the point, ECPublicKey is not needed
+        if (!isValidEcKey(curve, recipientKey)) {
+            return Reason.INVALID_RECIPIENT_KEY;
         }
-        return false;
+        if (!isValidEcKey(curve, ephemeralKey)) {
+            return Reason.INVALID_EPHEMERAL_KEY;
+        }
+        return Reason.VALID;
     }
 
-    private static boolean validateRSACapsule(Capsule capsule) {
-
+    private static boolean isValidEcKey(EllipticCurve curve, byte[] tlsEncodedKey) {
         try {
-            RsaUtils.decodeRsaPubKey(capsule.getRecipientId());
+            ECKeys.decodeEcPointFromTls(curve, tlsEncodedKey);
             return true;
-        } catch (GeneralSecurityException | IOException exc) {
-            log.error("Failed to parse capsule recipient's RSA public key", exc);
+        } catch (InvalidKeyException ike) {
+            log.debug("Invalid {} EC key: {}", curve.getName(), ike.getMessage());
             return false;
         }
     }
+
+    private static Reason validateRSACapsule(Capsule capsule) {
+        if (capsule.getRecipientId() == null || capsule.getEphemeralKeyMaterial() == null) {
+            return Reason.MISSING_KEY_MATERIAL;
+        }
+
+        try {
+            // validates DER structure, modulus and exponent without creating RSAPublicKey
+            RsaUtils.decodeRsaPubKeySpec(capsule.getRecipientId());
+            return Reason.VALID;
+        } catch (GeneralSecurityException | IOException exc) {
+            log.debug("Failed to parse capsule recipient's RSA public key: {}", exc.toString());
+            return Reason.INVALID_RECIPIENT_KEY;
+        }
+    }
 }
@@ -1,47 +1,66 @@
 package ee.cyber.cdoc2.server.api;
 
+import ee.cyber.cdoc2.server.CapsuleTypeObservationConvention;
 import ee.cyber.cdoc2.server.Constants;
 import ee.cyber.cdoc2.server.config.KeyCapsuleConfigProperties;
 import ee.cyber.cdoc2.server.generated.model.Capsule;
 import ee.cyber.cdoc2.server.generated.api.KeyCapsulesApi;
 import ee.cyber.cdoc2.server.generated.api.KeyCapsulesApiDelegate;
-import ee.cyber.cdoc2.server.generated.api.KeyCapsulesApiController;
 import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
-import ee.cyber.cdoc2.server.model.db.KeyCapsuleRepository;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleWriter;
+import ee.cyber.cdoc2.server.model.db.TransactionId;
 import java.net.URI;
-import java.net.URISyntaxException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.annotation.Nullable;
-import lombok.RequiredArgsConstructor;
+import jakarta.servlet.ServletContext;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.context.request.NativeWebRequest;
 
-import static ee.cyber.cdoc2.server.Utils.getCapsuleExpirationTime;
-import static ee.cyber.cdoc2.server.Utils.getPathAndQueryPart;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
-
 
 /**
  * Implements API for creating CDOC2 key capsules {@link KeyCapsulesApi}
+ * <p>
+ * Expiration durations and Location path prefix are resolved once at startup, so that create path doesn't parse
+ * configuration or build links through the controller proxy for each request.
  */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class CreateKeyCapsuleApi implements KeyCapsulesApiDelegate {
 
+    private static final String KEY_CAPSULES_PATH = "/key-capsules/";
+
     private final NativeWebRequest nativeWebRequest;
-    private final KeyCapsuleConfigProperties configProperties;
-    private final KeyCapsuleRepository keyCapsuleRepository;
+    private final KeyCapsuleWriter keyCapsuleWriter;
+    private final Duration defaultExpirationDuration;
+    private final Duration maxExpirationDuration;
+    // Location of created capsule is this prefix followed by transaction id
+    private final String locationPrefix;
+
+    public CreateKeyCapsuleApi(
+        NativeWebRequest nativeWebRequest,
+        KeyCapsuleConfigProperties configProperties,
+        KeyCapsuleWriter keyCapsuleWriter,
+        ServletContext servletContext
+    ) {
+        this.nativeWebRequest = nativeWebRequest;
+        this.keyCapsuleWriter = keyCapsuleWriter;
+        this.defaultExpirationDuration = Duration.parse(configProperties.defaultExpirationDuration());
+        this.maxExpirationDuration = Duration.parse(configProperties.maxExpirationDuration());
+        this.locationPrefix = servletContext.getContextPath() + KEY_CAPSULES_PATH;
+    }
 
     @Override
     public Optional<NativeWebRequest> getRequest() {
@@ -53,33 +72,44 @@ public class CreateKeyCapsuleApi implements KeyCapsulesApiDelegate {
         Capsule capsule,
         @Nullable LocalDateTime xExpiryTime
     ) {
-        log.trace("createCapsule(type={}, recipientId={} bytes, ephemeralKey={} bytes)",
-            capsule.getCapsuleType(), capsule.getRecipientId().length,
-            capsule.getEphemeralKeyMaterial().length
-        );
+        // guarded, as varargs array and boxed values are created even when trace is disabled
+        if (log.isTraceEnabled()) {
+            log.trace("createCapsule(type={}, recipientId={} bytes, ephemeralKey={} bytes)",
+                capsule.getCapsuleType(), capsule.getRecipientId().length,
+                capsule.getEphemeralKeyMaterial().length
+            );
+        }
 
-        if (!CapsuleValidator.isValid(capsule)) {
+        CapsuleValidator.Result validation = CapsuleValidator.validate(capsule);
+        if (!validation.valid()) {
+            log.info("Invalid capsule(type={}): {}", capsule.getCapsuleType(), validation.reason());
             return ResponseEntity.badRequest().build();
         }
+        if (log.isTraceEnabled()) {
+            log.trace("Capsule validated in {} ns", validation.elapsedNanos());
+        }
 
+        KeyCapsuleDb.CapsuleType capsuleType = getDbCapsuleType(capsule.getCapsuleType());
+        CapsuleTypeObservationConvention.setCapsuleType(this.nativeWebRequest, capsuleType);
         ExpiryTimeData expiryTimeData = getExpiryTime(xExpiryTime);
 
         try {
-            var saved = this.keyCapsuleRepository.save(
+            var saved = this.keyCapsuleWriter.save(
                 new KeyCapsuleDb()
-                    .setCapsuleType(getDbCapsuleType(capsule.getCapsuleType()))
+                    .setCapsuleType(capsuleType)
                     .setRecipient(capsule.getRecipientId())
                     .setPayload(capsule.getEphemeralKeyMaterial())
-                    .setExpiryTime(expiryTimeData.xExpiryTime.toInstant())
+                    .setExpiryTime(expiryTimeData.expiryTime)
                     .setExpiryTimeAdjusted(expiryTimeData.expiryTimeAdjusted)
             );
 
+            String transactionId = TransactionId.toApiForm(saved.getTransactionId());
             log.info(
                 "Capsule(transactionId={}, type={}) created",
-                saved.getTransactionId(), saved.getCapsuleType()
+                transactionId, saved.getCapsuleType()
             );
 
-            URI created = getResourceLocation(saved.getTransactionId());
+            URI created = getResourceLocation(transactionId);
 
             return ResponseEntity
                 .created(created)
@@ -97,6 +127,66 @@ public class CreateKeyCapsuleApi implements KeyCapsulesApiDelegate {
         }
     }
 
+    /**
+     * Create key capsules in one transaction. Capsules are validated in the request thread, when any of them is
+     * invalid, none is created. Expiry time {@code xExpiryTime} is handled as in {@link #createCapsule} and applies to all
+     * capsules.
+     * @param capsules capsules to create
+     * @param xExpiryTime requested expiry time (optional)
+     * @return created capsules transaction ids and expiry times, in the same order as {@code capsules}
+     */
+    public ResponseEntity<List<CreatedCapsule>> createCapsules(
+        List<Capsule> capsules,
+        @Nullable LocalDateTime xExpiryTime
+    ) {
+        log.trace("createCapsules({} capsules)", capsules.size());
+
+        long start = System.nanoTime();
+        boolean valid = true;
+        for (int i = 0; i < capsules.size(); i++) {
+            CapsuleValidator.Result validation = CapsuleValidator.validate(capsules.get(i));
+            if (!validation.valid()) {
+                log.info("Invalid capsule[{}](type={}): {}", i, capsules.get(i).getCapsuleType(),
+                    validation.reason());
+                valid = false;
+            }
+        }
+        if (!valid) {
+            return ResponseEntity.badRequest().build();
+        }
+        log.trace("{} capsules validated in {} ns", capsules.size(), System.nanoTime() - start);
+
+        ExpiryTimeData expiryTimeData = getExpiryTime(xExpiryTime);
+
+        List<KeyCapsuleDb> dbCapsules = new ArrayList<>(capsules.size());
+        for (Capsule capsule : capsules) {
+            dbCapsules.add(new KeyCapsuleDb()
+                .setCapsuleType(getDbCapsuleType(capsule.getCapsuleType()))
+                .setRecipient(capsule.getRecipientId())
+                .setPayload(capsule.getEphemeralKeyMaterial())
+                .setExpiryTime(expiryTimeData.expiryTime)
+                .setExpiryTimeAdjusted(expiryTimeData.expiryTimeAdjusted)
+            );
+        }
+
+        try {
+            List<KeyCapsuleDb> saved = this.keyCapsuleWriter.saveAll(dbCapsules);
+
+            List<CreatedCapsule> created = new ArrayList<>(saved.size());
+            for (KeyCapsuleDb capsule : saved) {
+                created.add(new CreatedCapsule(
+                    TransactionId.toApiForm(capsule.getTransactionId()),
+                    DateTimeFormatter.ISO_INSTANT.format(capsule.getExpiryTime())
+                ));
+            }
+            log.info("{} capsules created", created.size());
+            return new ResponseEntity<>(created, HttpStatus.CREATED);
+        } catch (Exception e) {
+            log.error("Failed to save {} key capsules", capsules.size(), e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @Override
     public ResponseEntity<Capsule> getCapsuleByTransactionId(String transactionId) {
         log.error("getCapsuleByTransactionId() operation not supported on key capsule put server");
@@ -104,15 +194,13 @@ public class CreateKeyCapsuleApi implements KeyCapsulesApiDelegate {
     }
 
     /**
-     * Get URI for getting Key Capsule resource (Location).
+     * Get URI for getting Key Capsule resource (Location). Only path is returned as host and port might be
+     * different, when running behind load balancer.
      * @param id Capsule id example: KC9b7036de0c9fce889850c4bbb1e23482
-     * @return URI (path and query) example: /key-capsules/KC9b7036de0c9fce889850c4bbb1e23482
-     * @throws URISyntaxException if URI is invalid
+     * @return URI (path) example: /key-capsules/KC9b7036de0c9fce889850c4bbb1e23482
      */
-    private static URI getResourceLocation(String id) throws URISyntaxException {
-        return getPathAndQueryPart(
-            linkTo(methodOn(KeyCapsulesApiController.class).getCapsuleByTransactionId(id)).toUri()
-        );
+    public URI getResourceLocation(String id) {
+        return URI.create(this.locationPrefix + id);
     }
 
     private static KeyCapsuleDb.CapsuleType getDbCapsuleType(Capsule.CapsuleTypeEnum dtoType) {
@@ -126,28 +214,34 @@ public class CreateKeyCapsuleApi implements KeyCapsulesApiDelegate {
     }
 
     private ExpiryTimeData getExpiryTime(LocalDateTime xExpiryTime) {
-        OffsetDateTime xMaxExpiryTime = getCapsuleExpirationTime(configProperties.maxExpirationDuration());
+        Instant now = Instant.now();
 
         if (null != xExpiryTime) {
-            if (toOffsetDateTime(xExpiryTime).isAfter(xMaxExpiryTime)) {
-                return new ExpiryTimeData(xMaxExpiryTime, true);
+            Instant maxExpiryTime = now.plus(this.maxExpirationDuration);
+            Instant expiryTime = xExpiryTime.toInstant(ZoneOffset.UTC);
+            if (expiryTime.isAfter(maxExpiryTime)) {
+                return new ExpiryTimeData(maxExpiryTime, true);
             }
 
-            return new ExpiryTimeData(toOffsetDateTime(xExpiryTime), false);
+            return new ExpiryTimeData(expiryTime, false);
         } else {
-            return new ExpiryTimeData(
-                getCapsuleExpirationTime(configProperties.defaultExpirationDuration()),
-                false
-            );
+            return new ExpiryTimeData(now.plus(this.defaultExpirationDuration), false);
         }
     }
 
-    private OffsetDateTime toOffsetDateTime(LocalDateTime expiryTime) {
-        return OffsetDateTime.of(expiryTime, ZoneOffset.UTC);
+    /**
+     * Created key capsule
+     * @param transactionId capsule transaction id
+     * @param expiryTime capsule expiry time, in the same format as {@code x-expiry-time} header
+     */
+    public record CreatedCapsule(
+        @JsonProperty("transaction_id") String transactionId,
+        @JsonProperty("expiry_time") String expiryTime
+    ) {
     }
 
     private record ExpiryTimeData(
-        OffsetDateTime xExpiryTime,
+        Instant expiryTime,
         boolean expiryTimeAdjusted
     )  {
     }
@@ -0,0 +1,118 @@
+package ee.cyber.cdoc2.server.api;
+
+import ee.cyber.cdoc2.server.Constants;
+import ee.cyber.cdoc2.server.config.KeyCapsuleBatchConfigProperties;
+import ee.cyber.cdoc2.server.generated.model.Capsule;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Nullable;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+
+/**
+ * Batch API for creating many CDOC2 key capsules in one request, for example capsules for all recipients of a
+ * document. Not part of CDOC2 key capsules OpenAPI spec. Request body is JSON array of {@link Capsule} objects,
+ * response body is JSON array of created capsules ({@code transaction_id}, {@code expiry_time}) in the same order.
+ * <pre>
+ * POST /key-capsules/batch
+ * [{"recipient_id": "...", "ephemeral_key_material": "...", "capsule_type": "ecc_secp384r1"}, ...]
+ *
+ * 201 Created
+ * [{"transaction_id": "KC...", "expiry_time": "2029-01-01T00:00:00Z"}, ...]
+ * </pre>
+ * Request body is read as a stream: body over {@code key-capsule.batch.max-body-size} is rejected with 413 and
+ * array with more than {@code key-capsule.batch.max-size} capsules with 400, without reading the rest of it.
+ */
+@RestController
+@Slf4j
+@RequiredArgsConstructor
+public class KeyCapsuleBatchController {
+
+    private final CreateKeyCapsuleApi createKeyCapsuleApi;
+    private final KeyCapsuleBatchConfigProperties config;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @PostMapping(
+        value = "/key-capsules/batch",
+        consumes = MediaType.APPLICATION_JSON_VALUE,
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<List<CreateKeyCapsuleApi.CreatedCapsule>> createCapsules(
+        HttpServletRequest request,
+        @RequestHeader(value = Constants.X_EXPIRY_TIME_HEADER, required = false)
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) @Nullable LocalDateTime xExpiryTime
+    ) throws IOException {
+        long maxBodySize = this.config.maxBodySize().toBytes();
+        if (request.getContentLengthLong() > maxBodySize) {
+            log.info("Batch request body too large: {} bytes, allowed {}", request.getContentLengthLong(),
+                maxBodySize);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+
+        List<Capsule> capsules;
+        try (JsonParser parser = this.objectMapper.createParser(
+            new LimitedInputStream(request.getInputStream(), maxBodySize))
+        ) {
+            capsules = readCapsules(parser);
+        } catch (LimitedInputStream.BodyTooLargeException e) {
+            log.info("Batch request body too large, allowed {} bytes", maxBodySize);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (JsonProcessingException e) {
+            log.info("Invalid batch request body: {}", e.getOriginalMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        if (capsules == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return this.createKeyCapsuleApi.createCapsules(capsules, xExpiryTime);
+    }
+
+    /**
+     * @return capsules or {@code null}, when body is not an array of 1..maxSize valid capsules
+     */
+    @Nullable
+    private List<Capsule> readCapsules(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            log.info("Invalid batch request body, JSON array expected");
+            return null;
+        }
+        int maxSize = this.config.maxSize();
+        List<Capsule> capsules = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (capsules.size() == maxSize) {
+                log.info("Invalid batch size, allowed 1..{}", maxSize);
+                return null;
+            }
+            Capsule capsule = this.objectMapper.readValue(parser, Capsule.class);
+            if (capsule == null || !this.validator.validate(capsule).isEmpty()) {
+                log.info("Invalid capsule[{}] in batch", capsules.size());
+                return null;
+            }
+            capsules.add(capsule);
+        }
+        if (capsules.isEmpty() || parser.nextToken() != null) {
+            log.info("Invalid batch request body, {} capsules", capsules.size());
+            return null;
+        }
+        return capsules;
+    }
+}
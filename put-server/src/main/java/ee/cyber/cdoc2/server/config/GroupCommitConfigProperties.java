@@ -0,0 +1,27 @@
+package ee.cyber.cdoc2.server.config;
+
+import ee.cyber.cdoc2.server.model.db.GroupCommitKeyCapsuleWriter;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+
+/**
+ * Configuration properties for committing concurrent key capsule inserts together
+ * ({@link GroupCommitKeyCapsuleWriter}).
+ *
+ * @param enabled when false, each capsule is saved in its own transaction
+ * @param maxBatchSize max number of capsules inserted in one transaction
+ * @param maxWait max time the first capsule of a batch waits for other capsules
+ * @param commitTimeout max time a request waits for its capsule to be committed, before failing
+ */
+@ConfigurationProperties(prefix = "key-capsule.group-commit")
+public record GroupCommitConfigProperties(
+    @DefaultValue("false") boolean enabled,
+    @DefaultValue("100") int maxBatchSize,
+    @DefaultValue("500us") Duration maxWait,
+    @DefaultValue("10s") Duration commitTimeout
+) {
+}
@@ -0,0 +1,19 @@
+package ee.cyber.cdoc2.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+
+/**
+ * Configuration properties for creating key capsules in batch ({@code POST /key-capsules/batch}).
+ *
+ * @param maxSize max number of capsules in one batch request
+ * @param maxBodySize max size of batch request body, JSON of a capsule is up to ~6 KB
+ */
+@ConfigurationProperties(prefix = "key-capsule.batch")
+public record KeyCapsuleBatchConfigProperties(
+    @DefaultValue("100") int maxSize,
+    @DefaultValue("1MB") DataSize maxBodySize
+) {
+}
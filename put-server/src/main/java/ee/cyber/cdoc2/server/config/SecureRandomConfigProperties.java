@@ -0,0 +1,30 @@
+package ee.cyber.cdoc2.server.config;
+
+import ee.cyber.cdoc2.shared.crypto.SecureRandomPool;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+
+/**
+ * Configuration properties for {@link SecureRandomPool} used for generating transaction ids.
+ *
+ * @param poolSize number of DRBG instances, 0 means number of available processors
+ * @param reseedPolicy DRBG reseed policy
+ * @param reseedInterval number of generate requests between reseeds, used with
+ *                       {@link SecureRandomPool.ReseedPolicy#PERIODIC}
+ */
+@ConfigurationProperties(prefix = "secure-random")
+public record SecureRandomConfigProperties(
+    @DefaultValue("0") int poolSize,
+    @DefaultValue("PREDICTION_RESISTANCE") SecureRandomPool.ReseedPolicy reseedPolicy,
+    @DefaultValue("1024") long reseedInterval
+) {
+
+    /**
+     * @return configured pool size or number of available processors
+     */
+    public int effectivePoolSize() {
+        return (poolSize > 0) ? poolSize : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -6,18 +6,24 @@ import java.nio.file.Files;
 import java.security.KeyPair;
 import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 
 import lombok.extern.slf4j.Slf4j;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -31,7 +37,6 @@ import ee.cyber.cdoc2.server.generated.model.Capsule;
 import ee.cyber.cdoc2.server.config.KeyCapsuleConfigProperties;
 import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
 
-import static ee.cyber.cdoc2.server.Utils.getCapsuleExpirationTime;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -63,8 +68,7 @@ class CreateKeyCapsuleApiTest extends KeyCapsuleIntegrationTest {
 
         Instant expiryDate = expiryTime.truncatedTo(ChronoUnit.DAYS);
 
-        Instant expectedInstant
-            = getCapsuleExpirationTime(configProperties.defaultExpirationDuration()).toInstant();
+        Instant expectedInstant = Instant.now().plus(Duration.parse(configProperties.defaultExpirationDuration()));
         Instant expectedExpiryDate = expectedInstant.truncatedTo(ChronoUnit.DAYS);
 
         assertEquals(expectedExpiryDate, expiryDate);
@@ -111,6 +115,19 @@ class CreateKeyCapsuleApiTest extends KeyCapsuleIntegrationTest {
         assertMaxExpiryTimeIsAssignedToCapsule(rsaCapsule);
     }
 
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void shouldNotPinVirtualThreadsWhenCreatingCapsules() throws Exception {
+        List<Callable<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            var capsule = getEcCapsule();
+            tasks.add(() -> api.createCapsule(capsule, null));
+        }
+
+        assertEquals(List.of(), VirtualThreadPinning.findPinnedStackTraces(tasks));
+        assertEquals(50, this.capsuleRepository.count());
+    }
+
     private Capsule getRsaCapsule() throws Exception {
         var recipientCert = PemTools.loadCertificate(
             new ByteArrayInputStream(
@@ -170,8 +187,7 @@ class CreateKeyCapsuleApiTest extends KeyCapsuleIntegrationTest {
 
         Instant savedExpiryDate = savedExpiryTime.truncatedTo(ChronoUnit.DAYS);
 
-        Instant expectedInstant
-            = getCapsuleExpirationTime(configProperties.maxExpirationDuration()).toInstant();
+        Instant expectedInstant = Instant.now().plus(Duration.parse(configProperties.maxExpirationDuration()));
         Instant expectedExpiryDate = expectedInstant.truncatedTo(ChronoUnit.DAYS);
 
         assertEquals(expectedExpiryDate, savedExpiryDate);
@@ -14,14 +14,19 @@ import ee.cyber.cdoc2.crypto.PemTools;
 import ee.cyber.cdoc2.crypto.Pkcs11DeviceConfiguration;
 import ee.cyber.cdoc2.crypto.Pkcs11Tools;
 import ee.cyber.cdoc2.crypto.RsaUtils;
+import ee.cyber.cdoc2.server.api.CreateKeyCapsuleApi;
 import ee.cyber.cdoc2.server.generated.model.Capsule;
 import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.TransactionId;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
@@ -30,19 +35,27 @@ import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClient;
 
@@ -64,6 +77,9 @@ class CreateKeyCapsuleIntegrationTest extends KeyCapsuleIntegrationTest {
     @Autowired
     private RestClient restClient;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Test
     void shouldCreateEc256CapsuleUsingPKCS12Client() throws Exception {
         // Client public key TLS encoded and base64 encoded from ecc-256-client-certificate.pem
@@ -165,7 +181,7 @@ class CreateKeyCapsuleIntegrationTest extends KeyCapsuleIntegrationTest {
 
         assertNotNull(transactionID);
 
-        var dbCapsule = this.capsuleRepository.findById(transactionID);
+        var dbCapsule = this.capsuleRepository.findById(TransactionId.parse(transactionID).orElseThrow());
         assertTrue(dbCapsule.isPresent());
     }
 
@@ -205,7 +221,7 @@ class CreateKeyCapsuleIntegrationTest extends KeyCapsuleIntegrationTest {
 
         assertNotNull(transactionID);
 
-        var dbCapsule = this.capsuleRepository.findById(transactionID);
+        var dbCapsule = this.capsuleRepository.findById(TransactionId.parse(transactionID).orElseThrow());
         assertTrue(dbCapsule.isPresent());
 
         assertEquals(KeyCapsuleDb.CapsuleType.RSA, dbCapsule.get().getCapsuleType());
@@ -386,7 +402,7 @@ class CreateKeyCapsuleIntegrationTest extends KeyCapsuleIntegrationTest {
         byte[] expectedRecipient,
         byte[] expectedPayload
     ) {
-        var dbCapsuleOpt = this.capsuleRepository.findById(txId);
+        var dbCapsuleOpt = this.capsuleRepository.findById(TransactionId.parse(txId).orElseThrow());
         assertTrue(dbCapsuleOpt.isPresent());
         var dbCapsule = dbCapsuleOpt.get();
 
@@ -424,6 +440,83 @@ class CreateKeyCapsuleIntegrationTest extends KeyCapsuleIntegrationTest {
         ));
     }
 
+    @Test
+    void shouldCreateCapsulesInBatch() throws Exception {
+        File[] certs = {TestData.getKeysDirectory().resolve("ca_certs/client-certificate.pem").toFile()};
+        ECPublicKey recipientKey = ECKeys.loadCertKeys(certs).get(0);
+        byte[] recipientId = ECKeys.encodeEcPubKeyForTls(recipientKey);
+
+        List<Capsule> capsules = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ECPublicKey senderPubKey = (ECPublicKey) ECKeys.generateEcKeyPair(SECP384R1).getPublic();
+            capsules.add(new Capsule()
+                .capsuleType(Capsule.CapsuleTypeEnum.ECC_SECP384R1)
+                .recipientId(recipientId)
+                .ephemeralKeyMaterial(ECKeys.encodeEcPubKeyForTls(senderPubKey))
+            );
+        }
+
+        var response = this.restClient.post()
+            .uri(new URI(this.capsuleApiUrl() + "/batch"))
+            .body(capsules)
+            .retrieve()
+            .toEntity(new ParameterizedTypeReference<List<CreateKeyCapsuleApi.CreatedCapsule>>() { });
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        List<CreateKeyCapsuleApi.CreatedCapsule> created = response.getBody();
+        assertNotNull(created);
+        assertEquals(capsules.size(), created.size());
+        for (int i = 0; i < capsules.size(); i++) {
+            // response is in request order
+            checkCapsuleExistsInDb(
+                created.get(i).transactionId(),
+                KeyCapsuleDb.CapsuleType.SECP384R1,
+                recipientId,
+                capsules.get(i).getEphemeralKeyMaterial()
+            );
+            assertNotNull(DateTimeFormatter.ISO_INSTANT.parse(created.get(i).expiryTime()));
+        }
+    }
+
+    @Test
+    void shouldNotCreateAnyCapsuleWhenBatchHasInvalidCapsule() throws Exception {
+        File[] certs = {TestData.getKeysDirectory().resolve("ca_certs/client-certificate.pem").toFile()};
+        ECPublicKey recipientKey = ECKeys.loadCertKeys(certs).get(0);
+        ECPublicKey senderPubKey = (ECPublicKey) ECKeys.generateEcKeyPair(SECP384R1).getPublic();
+        byte[] ephemeralKey = ECKeys.encodeEcPubKeyForTls(senderPubKey);
+
+        var capsules = List.of(
+            new Capsule()
+                .capsuleType(Capsule.CapsuleTypeEnum.ECC_SECP384R1)
+                .recipientId(ECKeys.encodeEcPubKeyForTls(recipientKey))
+                .ephemeralKeyMaterial(ephemeralKey),
+            new Capsule()
+                .capsuleType(Capsule.CapsuleTypeEnum.ECC_SECP384R1)
+                .recipientId(UUID.randomUUID().toString().getBytes())
+                .ephemeralKeyMaterial(ephemeralKey)
+        );
+
+        assertThrows(
+            HttpClientErrorException.BadRequest.class,
+            () -> this.restClient.post()
+                .uri(new URI(this.capsuleApiUrl() + "/batch"))
+                .body(capsules)
+                .retrieve()
+                .toBodilessEntity()
+        );
+        assertTrue(this.capsuleRepository.findAll().stream()
+            .noneMatch(capsule -> Arrays.equals(ephemeralKey, capsule.getPayload())));
+
+        assertThrows(
+            HttpClientErrorException.BadRequest.class,
+            () -> this.restClient.post()
+                .uri(new URI(this.capsuleApiUrl() + "/batch"))
+                .body(List.of())
+                .retrieve()
+                .toBodilessEntity()
+        );
+    }
+
     @Test
     void shouldCreateRsaCapsule() throws Exception {
         var rsaCapsule = new Capsule()
@@ -457,6 +550,50 @@ class CreateKeyCapsuleIntegrationTest extends KeyCapsuleIntegrationTest {
         }
     }
 
+    @Test
+    void shouldCreateCapsulesConcurrentlyOverSingleHttp2Connection() throws Exception {
+        File[] certs = {TestData.getKeysDirectory().resolve("ca_certs/client-certificate.pem").toFile()};
+        ECPublicKey recipientKey = ECKeys.loadCertKeys(certs).get(0);
+        byte[] recipientId = ECKeys.encodeEcPubKeyForTls(recipientKey);
+
+        var client = new Http2TestClient(null);
+        List<byte[]> payloads = new ArrayList<>();
+        List<HttpRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 21; i++) {
+            ECPublicKey senderPubKey = (ECPublicKey) ECKeys.generateEcKeyPair(SECP384R1).getPublic();
+            var capsule = new Capsule()
+                .capsuleType(Capsule.CapsuleTypeEnum.ECC_SECP384R1)
+                .recipientId(recipientId)
+                .ephemeralKeyMaterial(ECKeys.encodeEcPubKeyForTls(senderPubKey));
+            payloads.add(capsule.getEphemeralKeyMaterial());
+            requests.add(HttpRequest.newBuilder(new URI(this.capsuleApiUrl()))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(this.objectMapper.writeValueAsString(capsule)))
+                .build());
+        }
+
+        // first request opens the connection, the rest are sent at once
+        List<HttpResponse<Void>> responses = new ArrayList<>();
+        responses.add(client.httpClient().send(requests.get(0), HttpResponse.BodyHandlers.discarding()));
+        List<CompletableFuture<HttpResponse<Void>>> concurrent = new ArrayList<>();
+        for (HttpRequest request : requests.subList(1, requests.size())) {
+            concurrent.add(client.httpClient().sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : concurrent) {
+            responses.add(response.get(1, TimeUnit.MINUTES));
+        }
+
+        for (int i = 0; i < responses.size(); i++) {
+            HttpResponse<Void> response = responses.get(i);
+            assertEquals(HttpClient.Version.HTTP_2, response.version());
+            assertEquals(HttpStatus.CREATED.value(), response.statusCode());
+            String location = response.headers().firstValue("Location").orElseThrow();
+            String txId = location.substring(location.lastIndexOf('/') + 1);
+            checkCapsuleExistsInDb(txId, KeyCapsuleDb.CapsuleType.SECP384R1, recipientId, payloads.get(i));
+        }
+        assertEquals(1, client.connections());
+    }
+
     private Cdoc2KeyCapsuleApiClient createClient() throws GeneralSecurityException {
         var builder = Cdoc2KeyCapsuleApiClient.builder();
         builder.withBaseUrl(this.baseUrl);
@@ -0,0 +1,76 @@
+package ee.cyber.cdoc2.server;
+
+import ee.cyber.cdoc2.shared.crypto.SecureRandomPool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class SecureRandomPoolMetricsTest {
+
+    private static final int THREADS = 8;
+    private static final int REQUESTS_PER_THREAD = 100;
+
+    @Test
+    void shouldCountGenerateRequestsAndReseeds() throws Exception {
+        var pool = new SecureRandomPool(2, SecureRandomPool.ReseedPolicy.PERIODIC, 10);
+        var registry = new SimpleMeterRegistry();
+        new SecureRandomPoolMetrics(pool).bindTo(registry);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < REQUESTS_PER_THREAD; j++) {
+                    byte[] bytes = new byte[16];
+                    pool.nextBytes(bytes);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        long requests = (long) THREADS * REQUESTS_PER_THREAD;
+        SecureRandomPool.Stats stats = pool.stats();
+        assertEquals(requests, stats.generateCount());
+        // every 10th request on each of 2 instances reseeds
+        assertTrue(stats.reseedCount() >= requests / 10 - 2, "reseeds " + stats.reseedCount());
+
+        FunctionTimer timer = registry.find("cdoc2.secure.random.generate").functionTimer();
+        assertNotNull(timer);
+        assertEquals(requests, (long) timer.count());
+        assertTrue(timer.totalTime(TimeUnit.NANOSECONDS) > 0);
+        assertEquals(stats.reseedCount(), (long) registry.get("cdoc2.secure.random.reseeds").functionCounter().count());
+        assertNotNull(registry.find("cdoc2.secure.random.contended").functionCounter());
+        assertEquals(2, registry.get("cdoc2.secure.random.pool.size").tag("reseed.policy", "PERIODIC").gauge().value());
+    }
+
+    @Test
+    void shouldGenerateDifferentBytesWithAllReseedPolicies() throws Exception {
+        for (SecureRandomPool.ReseedPolicy policy : SecureRandomPool.ReseedPolicy.values()) {
+            var pool = new SecureRandomPool(1, policy, 1);
+            byte[] first = new byte[16];
+            byte[] second = new byte[16];
+            pool.nextBytes(first);
+            pool.nextBytes(second);
+
+            assertFalse(Arrays.equals(first, second), policy.name());
+        }
+
+        assertThrows(IllegalArgumentException.class,
+            () -> new SecureRandomPool(0, SecureRandomPool.ReseedPolicy.NONE, 0));
+    }
+}
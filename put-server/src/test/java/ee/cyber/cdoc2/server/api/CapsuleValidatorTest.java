@@ -0,0 +1,109 @@
+package ee.cyber.cdoc2.server.api;
+
+import ee.cyber.cdoc2.server.generated.model.Capsule;
+import ee.cyber.cdoc2.shared.crypto.ECKeys;
+import ee.cyber.cdoc2.shared.crypto.EllipticCurve;
+import ee.cyber.cdoc2.shared.crypto.RsaUtils;
+
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class CapsuleValidatorTest {
+
+    @Test
+    void shouldAcceptValidEcCapsules() throws Exception {
+        var types = new Capsule.CapsuleTypeEnum[] {
+            Capsule.CapsuleTypeEnum.ECC_SECP256R1,
+            Capsule.CapsuleTypeEnum.ECC_SECP384R1,
+            Capsule.CapsuleTypeEnum.ECC_SECP521R1
+        };
+        var curves = new EllipticCurve[] {
+            EllipticCurve.SECP256R1, EllipticCurve.SECP384R1, EllipticCurve.SECP521R1
+        };
+
+        for (int i = 0; i < types.length; i++) {
+            CapsuleValidator.Result result = CapsuleValidator.validate(ecCapsule(types[i], curves[i]));
+
+            assertTrue(result.valid(), types[i] + " " + result.reason());
+            assertEquals(CapsuleValidator.Reason.VALID, result.reason());
+            assertTrue(result.elapsedNanos() >= 0);
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidEcKeys() throws Exception {
+        Capsule capsule = ecCapsule(Capsule.CapsuleTypeEnum.ECC_SECP384R1, EllipticCurve.SECP384R1);
+        byte[] ephemeralKey = capsule.getEphemeralKeyMaterial();
+        // point is not on curve anymore
+        ephemeralKey[ephemeralKey.length - 1] ^= 0x01;
+
+        assertEquals(CapsuleValidator.Reason.INVALID_EPHEMERAL_KEY, CapsuleValidator.validate(capsule).reason());
+
+        byte[] recipientKey = capsule.getRecipientId();
+        recipientKey[0] = 0x02; // compressed encoding is not supported
+        assertEquals(CapsuleValidator.Reason.INVALID_RECIPIENT_KEY, CapsuleValidator.validate(capsule).reason());
+    }
+
+    @Test
+    void shouldRejectWrongKeyLength() throws Exception {
+        // secp256r1 keys in secp384r1 capsule
+        Capsule capsule = ecCapsule(Capsule.CapsuleTypeEnum.ECC_SECP384R1, EllipticCurve.SECP256R1);
+
+        CapsuleValidator.Result result = CapsuleValidator.validate(capsule);
+        assertFalse(result.valid());
+        assertEquals(CapsuleValidator.Reason.INVALID_KEY_LENGTH, result.reason());
+    }
+
+    @Test
+    void shouldRejectInvalidRsaKeyAndMissingType() {
+        Capsule rsaCapsule = new Capsule()
+            .capsuleType(Capsule.CapsuleTypeEnum.RSA)
+            .recipientId(UUID.randomUUID().toString().getBytes())
+            .ephemeralKeyMaterial(UUID.randomUUID().toString().getBytes());
+
+        assertEquals(CapsuleValidator.Reason.INVALID_RECIPIENT_KEY, CapsuleValidator.validate(rsaCapsule).reason());
+        assertEquals(CapsuleValidator.Reason.UNSUPPORTED_CAPSULE_TYPE,
+            CapsuleValidator.validate(new Capsule()).reason());
+    }
+
+    @Test
+    void shouldValidateRsaCapsule() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        byte[] recipient = RsaUtils.encodeRsaPubKey((RSAPublicKey) generator.generateKeyPair().getPublic());
+
+        Capsule capsule = new Capsule()
+            .capsuleType(Capsule.CapsuleTypeEnum.RSA)
+            .recipientId(recipient)
+            .ephemeralKeyMaterial(new byte[256]);
+        assertEquals(CapsuleValidator.Reason.VALID, CapsuleValidator.validate(capsule).reason());
+
+        // trailing data after RSAPublicKey
+        capsule.recipientId(Arrays.copyOf(recipient, recipient.length + 1));
+        assertEquals(CapsuleValidator.Reason.INVALID_RECIPIENT_KEY, CapsuleValidator.validate(capsule).reason());
+
+        // oversized input is rejected before parsing
+        capsule.recipientId(new byte[64 * 1024]);
+        assertEquals(CapsuleValidator.Reason.INVALID_RECIPIENT_KEY, CapsuleValidator.validate(capsule).reason());
+    }
+
+    private static Capsule ecCapsule(Capsule.CapsuleTypeEnum type, EllipticCurve curve) throws Exception {
+        ECPublicKey recipient = (ECPublicKey) ECKeys.generateEcKeyPair(curve).getPublic();
+        ECPublicKey sender = (ECPublicKey) ECKeys.generateEcKeyPair(curve).getPublic();
+
+        return new Capsule()
+            .capsuleType(type)
+            .recipientId(ECKeys.encodeEcPubKeyForTls(curve, recipient))
+            .ephemeralKeyMaterial(ECKeys.encodeEcPubKeyForTls(curve, sender));
+    }
+}
@@ -0,0 +1,138 @@
+package ee.cyber.cdoc2.server.api;
+
+import ee.cyber.cdoc2.server.config.KeyCapsuleConfigProperties;
+import ee.cyber.cdoc2.server.generated.model.Capsule;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleWriter;
+import ee.cyber.cdoc2.shared.crypto.ECKeys;
+import ee.cyber.cdoc2.shared.crypto.EllipticCurve;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.security.interfaces.ECPublicKey;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+
+/**
+ * Allocation regression test for {@link CreateKeyCapsuleApi#createCapsule}. Garbage of the create path on top of
+ * capsule validation (key decoding) is measured without database and logging.
+ */
+class CreateKeyCapsuleApiAllocationTest {
+
+    // KeyCapsuleDb, expiry time, Location URI, response entity and headers take ~1.8 KB. Location built with
+    // HATEOAS link builder and expiration durations parsed for each request took ~14 KB
+    private static final long MAX_BYTES_PER_REQUEST = 3072;
+    private static final int WARMUP_CALLS = 20_000;
+    private static final int MEASURED_CALLS = 10_000;
+
+    private static final UUID TRANSACTION_ID = UUID.randomUUID();
+
+    private final Logger apiLogger = (Logger) LoggerFactory.getLogger(CreateKeyCapsuleApi.class);
+    private Level apiLogLevel;
+
+    @BeforeEach
+    void disableLogging() {
+        this.apiLogLevel = this.apiLogger.getLevel();
+        this.apiLogger.setLevel(Level.WARN);
+    }
+
+    @AfterEach
+    void restoreLogging() {
+        this.apiLogger.setLevel(this.apiLogLevel);
+    }
+
+    @Test
+    void shouldNotAllocateMuchOnTopOfValidation() throws Exception {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        CreateKeyCapsuleApi api = createApi(new MockServletContext());
+        Capsule capsule = ecCapsule();
+        LocalDateTime expiryTime = LocalDateTime.now().plusDays(30);
+
+        long validation = allocatedBytesPerCall(threads, () -> CapsuleValidator.validate(capsule));
+        long create = allocatedBytesPerCall(threads, () -> api.createCapsule(capsule, null));
+        long createWithExpiryTime = allocatedBytesPerCall(threads, () -> api.createCapsule(capsule, expiryTime));
+
+        assertTrue(create - validation <= MAX_BYTES_PER_REQUEST,
+            "createCapsule allocates " + (create - validation) + " bytes on top of validation");
+        assertTrue(createWithExpiryTime - validation <= MAX_BYTES_PER_REQUEST,
+            "createCapsule with expiry time allocates " + (createWithExpiryTime - validation)
+                + " bytes on top of validation");
+    }
+
+    @Test
+    void shouldReturnLocationUnderContextPath() throws Exception {
+        MockServletContext servletContext = new MockServletContext();
+        servletContext.setContextPath("/cdoc2");
+        Capsule capsule = ecCapsule();
+
+        var response = createApi(servletContext).createCapsule(capsule, null);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        String transactionId = "KC" + TRANSACTION_ID.toString().replace("-", "");
+        assertEquals(URI.create("/cdoc2/key-capsules/" + transactionId), response.getHeaders().getLocation());
+        assertEquals(URI.create("/key-capsules/" + transactionId),
+            createApi(new MockServletContext()).createCapsule(capsule, null).getHeaders().getLocation());
+    }
+
+    private static CreateKeyCapsuleApi createApi(MockServletContext servletContext) {
+        KeyCapsuleWriter writer = new KeyCapsuleWriter() {
+            @Override
+            public KeyCapsuleDb save(KeyCapsuleDb capsule) {
+                return capsule.setTransactionId(TRANSACTION_ID);
+            }
+
+            @Override
+            public List<KeyCapsuleDb> saveAll(List<KeyCapsuleDb> capsules) {
+                capsules.forEach(this::save);
+                return capsules;
+            }
+        };
+        return new CreateKeyCapsuleApi(
+            new ServletWebRequest(new MockHttpServletRequest(servletContext)),
+            new KeyCapsuleConfigProperties("P1095D", "P1825D"),
+            writer,
+            servletContext
+        );
+    }
+
+    private static Capsule ecCapsule() throws Exception {
+        EllipticCurve curve = EllipticCurve.SECP384R1;
+        var recipientKey = (ECPublicKey) ECKeys.generateEcKeyPair(curve).getPublic();
+        var ephemeralKey = (ECPublicKey) ECKeys.generateEcKeyPair(curve).getPublic();
+        return new Capsule()
+            .capsuleType(Capsule.CapsuleTypeEnum.ECC_SECP384R1)
+            .recipientId(ECKeys.encodeEcPubKeyForTls(curve, recipientKey))
+            .ephemeralKeyMaterial(ECKeys.encodeEcPubKeyForTls(curve, ephemeralKey));
+    }
+
+    private static long allocatedBytesPerCall(ThreadMXBean threads, Runnable call) {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            call.run();
+        }
+        long start = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            call.run();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - start) / MEASURED_CALLS;
+    }
+}
@@ -0,0 +1,148 @@
+package ee.cyber.cdoc2.server.api;
+
+import ee.cyber.cdoc2.server.config.KeyCapsuleBatchConfigProperties;
+import ee.cyber.cdoc2.server.config.KeyCapsuleConfigProperties;
+import ee.cyber.cdoc2.server.generated.model.Capsule;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleWriter;
+import ee.cyber.cdoc2.server.model.db.TransactionId;
+import ee.cyber.cdoc2.shared.crypto.ECKeys;
+import ee.cyber.cdoc2.shared.crypto.EllipticCurve;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.ECPublicKey;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+
+class KeyCapsuleBatchControllerTest {
+
+    private static final int MAX_SIZE = 3;
+    private static final DataSize MAX_BODY_SIZE = DataSize.ofKilobytes(8);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<KeyCapsuleDb> saved = new ArrayList<>();
+
+    @Test
+    void shouldCreateCapsules() throws Exception {
+        var response = controller().createCapsules(request(capsules(2)), null);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(2, response.getBody().size());
+        assertEquals(2, this.saved.size());
+        assertEquals(TransactionId.toApiForm(this.saved.get(0).getTransactionId()),
+            response.getBody().get(0).transactionId());
+    }
+
+    @Test
+    void shouldRejectTooManyCapsules() throws Exception {
+        var response = controller().createCapsules(request(capsules(MAX_SIZE + 1)), null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(0, this.saved.size());
+    }
+
+    @Test
+    void shouldRejectTooLargeBody() throws Exception {
+        // capsule array is followed by whitespace, so that body is valid JSON
+        byte[] body = (this.objectMapper.writeValueAsString(capsules(1))
+            + " ".repeat((int) MAX_BODY_SIZE.toBytes())).getBytes();
+
+        var withLength = request(body);
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, controller().createCapsules(withLength, null).getStatusCode());
+
+        // chunked request without Content-Length is limited while reading
+        var chunked = new MockHttpServletRequest("POST", "/key-capsules/batch") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        chunked.setContent(body);
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, controller().createCapsules(chunked, null).getStatusCode());
+        assertEquals(0, this.saved.size());
+    }
+
+    @Test
+    void shouldRejectInvalidBody() throws Exception {
+        var controller = controller();
+        for (String body : List.of("", "{}", "[]", "[{}]", "[1]", "[{\"capsule_type\": \"ecc_secp384r1\"}",
+            "[] []")) {
+            assertEquals(HttpStatus.BAD_REQUEST, controller.createCapsules(request(body.getBytes()), null)
+                .getStatusCode(), body);
+        }
+        assertEquals(0, this.saved.size());
+    }
+
+    private KeyCapsuleBatchController controller() {
+        var servletRequest = new MockHttpServletRequest();
+        var api = new CreateKeyCapsuleApi(
+            new ServletWebRequest(servletRequest),
+            new KeyCapsuleConfigProperties("P1D", "P1825D"),
+            new KeyCapsuleWriter() {
+                @Override
+                public KeyCapsuleDb save(KeyCapsuleDb capsule) {
+                    return saveAll(List.of(capsule)).get(0);
+                }
+
+                @Override
+                public List<KeyCapsuleDb> saveAll(List<KeyCapsuleDb> capsules) {
+                    for (KeyCapsuleDb capsule : capsules) {
+                        try {
+                            capsule.setTransactionId(TransactionId.generate());
+                        } catch (NoSuchAlgorithmException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                    saved.addAll(capsules);
+                    return capsules;
+                }
+            },
+            new MockServletContext()
+        );
+        return new KeyCapsuleBatchController(
+            api,
+            new KeyCapsuleBatchConfigProperties(MAX_SIZE, MAX_BODY_SIZE),
+            this.objectMapper,
+            Validation.buildDefaultValidatorFactory().getValidator()
+        );
+    }
+
+    private MockHttpServletRequest request(List<Capsule> capsules) throws Exception {
+        return request(this.objectMapper.writeValueAsBytes(capsules));
+    }
+
+    private static MockHttpServletRequest request(byte[] body) {
+        var request = new MockHttpServletRequest("POST", "/key-capsules/batch");
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(body);
+        return request;
+    }
+
+    private static List<Capsule> capsules(int count) throws Exception {
+        List<Capsule> capsules = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ECPublicKey recipient = (ECPublicKey) ECKeys.generateEcKeyPair(EllipticCurve.SECP384R1).getPublic();
+            ECPublicKey sender = (ECPublicKey) ECKeys.generateEcKeyPair(EllipticCurve.SECP384R1).getPublic();
+            capsules.add(new Capsule()
+                .capsuleType(Capsule.CapsuleTypeEnum.ECC_SECP384R1)
+                .recipientId(ECKeys.encodeEcPubKeyForTls(EllipticCurve.SECP384R1, recipient))
+                .ephemeralKeyMaterial(ECKeys.encodeEcPubKeyForTls(EllipticCurve.SECP384R1, sender)));
+        }
+        return capsules;
+    }
+}
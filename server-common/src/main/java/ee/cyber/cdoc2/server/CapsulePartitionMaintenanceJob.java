@@ -0,0 +1,82 @@
+package ee.cyber.cdoc2.server;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import ee.cyber.cdoc2.server.config.CapsulePartitionConfigProperties;
+import ee.cyber.cdoc2.server.exeptions.JobFailureException;
+import ee.cyber.cdoc2.server.model.db.TransactionId;
+import ee.cyber.cdoc2.server.model.db.TransactionIdGenerator;
+
+
+/**
+ * Maintenance job for partitioned CDOC2 key capsule table. Creates monthly partitions ahead and drops partitions,
+ * where all key capsules have expired. Expired capsules in current month partition are deleted by
+ * {@link ExpiredCapsuleCleanUpJob}.
+ * <p>
+ * Partition of a capsule is derived from its transaction id, put-server generates transaction ids with capsule
+ * expiry time, when table is partitioned. Job updates transaction id layout of put-server
+ * {@link TransactionIdGenerator}, so that table can be partitioned while put-server is running. Job does nothing
+ * else, when table is not partitioned.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public final class CapsulePartitionMaintenanceJob {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CapsulePartitionConfigProperties config;
+    // only in put-server
+    private final ObjectProvider<TransactionIdGenerator> transactionIdGenerator;
+
+    /**
+     * Executes the stored function {@code cdoc2_capsule_partition_maintenance(months_ahead)} in CDOC2 database,
+     * if key capsule table is partitioned
+     * @return number of dropped partitions
+     */
+    @Scheduled(cron = "${key-capsule.partition.maintenance-cron:0 15 * * * ?}")
+    public int maintainPartitions() {
+        try {
+            boolean partitioned = isTablePartitioned();
+            this.transactionIdGenerator.ifAvailable(generator -> generator.setLayout(
+                partitioned ? TransactionId.Layout.EXPIRY_TIME : TransactionId.Layout.CREATION_TIME
+            ));
+            if (!partitioned) {
+                log.debug("Key capsule table is not partitioned");
+                return 0;
+            }
+
+            Map<String, Object> result = jdbcTemplate.queryForMap(
+                "SELECT created, dropped FROM cdoc2_capsule_partition_maintenance(?)", config.monthsAhead()
+            );
+            int created = ((Number) result.get("created")).intValue();
+            int dropped = ((Number) result.get("dropped")).intValue();
+            if (created > 0 || dropped > 0) {
+                log.info("Key capsule table partitions created: {}, dropped expired: {}", created, dropped);
+            }
+            return dropped;
+        } catch (Exception e) {
+            String errorMsg = "Key capsule table partition maintenance has failed";
+            log.error(errorMsg, e);
+            throw new JobFailureException(errorMsg, e);
+        }
+    }
+
+    /**
+     * @return true if key capsule table is partitioned
+     */
+    public boolean isTablePartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+            "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('cdoc2_capsule'))",
+            Boolean.class
+        );
+        return Boolean.TRUE.equals(partitioned);
+    }
+}
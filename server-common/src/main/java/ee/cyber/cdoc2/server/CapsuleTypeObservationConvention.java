@@ -0,0 +1,42 @@
+package ee.cyber.cdoc2.server;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+
+
+/**
+ * Adds {@code capsule_type} tag to Spring Boot {@code http.server.requests} metric. Histogram buckets and
+ * percentiles are configured with {@code management.metrics.distribution.*.http.server.requests} properties.
+ */
+@Component
+public class CapsuleTypeObservationConvention extends DefaultServerRequestObservationConvention {
+
+    static final String CAPSULE_TYPE = "capsule_type";
+    static final String NONE = "none";
+
+    private static final String CAPSULE_TYPE_ATTRIBUTE =
+        CapsuleTypeObservationConvention.class.getName() + ".capsuleType";
+
+    /**
+     * Set {@code capsule_type} tag of current request
+     * @param capsuleType capsule type, enum so that tag has a fixed set of values
+     */
+    public static void setCapsuleType(NativeWebRequest request, Enum<?> capsuleType) {
+        request.setAttribute(CAPSULE_TYPE_ATTRIBUTE, capsuleType.name(), RequestAttributes.SCOPE_REQUEST);
+    }
+
+    @Override
+    public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+        return super.getLowCardinalityKeyValues(context).and(capsuleType(context));
+    }
+
+    private static KeyValue capsuleType(ServerRequestObservationContext context) {
+        Object capsuleType = context.getCarrier().getAttribute(CAPSULE_TYPE_ATTRIBUTE);
+        return KeyValue.of(CAPSULE_TYPE, (capsuleType instanceof String type) ? type : NONE);
+    }
+}
@@ -6,11 +6,13 @@ import lombok.extern.slf4j.Slf4j;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.Types;
+import java.util.concurrent.TimeUnit;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import ee.cyber.cdoc2.server.config.ExpiredCapsuleCleanUpConfigProperties;
 import ee.cyber.cdoc2.server.exeptions.JobFailureException;
 
 
@@ -22,36 +24,132 @@ import ee.cyber.cdoc2.server.exeptions.JobFailureException;
 @RequiredArgsConstructor
 public final class ExpiredCapsuleCleanUpJob {
 
+    // returned by clean-up function, when max_parallel batches are already running
+    private static final int ALL_SLOTS_TAKEN = -1;
+
     private final JdbcTemplate jdbcTemplate;
+    private final ExpiredCapsuleCleanUpConfigProperties config;
 
     /**
-     * Executes the stored function {@code expired_cdoc2_capsule_cleanup()} in CDOC2 database
+     * Executes the stored function {@code expired_cdoc2_capsule_cleanup(batch_size, max_parallel)} in CDOC2
+     * database. In {@link ExpiredCapsuleCleanUpConfigProperties.Mode#DRAIN} mode the function is called repeatedly,
+     * until a batch is not full or time budget is used up. Each batch is committed separately, batch size and pause
+     * between batches are adjusted by the observed batch latency, so that clean-up doesn't hold back inserts.
+     * <p>
+     * All server instances run the job on the same schedule. Batches skip rows locked by batches of other
+     * instances, so concurrent instances delete disjoint sets of expired capsules. When
+     * {@code max-parallel-batches} batches are already running in the cluster, this instance stops until next run.
+     * @return number of deleted key capsules
      */
     @Scheduled(cron = "${key-capsule.expired.clean-up.cron}")
     public int cleanUpExpiredCapsules() {
         log.debug("Executing expired key capsules deletion from database");
 
         try {
-            Integer deleted = jdbcTemplate.execute((Connection connection) -> {
-                String query = "{? = call expired_cdoc2_capsule_cleanup()}";
-                try (CallableStatement stmt = connection.prepareCall(query)) {
-                    stmt.registerOutParameter(1, Types.INTEGER);
-                    stmt.execute();
-                    return stmt.getInt(1);
-                }
-            });
-
-            if (deleted == null || deleted == 0) {
+            int deleted = (config.mode() == ExpiredCapsuleCleanUpConfigProperties.Mode.DRAIN)
+                ? drain()
+                : Math.max(0, deleteBatch(config.batchSize()));
+
+            if (deleted == 0) {
                 log.debug("No expired key capsules");
-                return 0;
             } else {
                 log.info("Total number of successfully deleted expired key capsules is {}", deleted);
-                return deleted;
             }
+            return deleted;
         } catch (Exception e) {
             String errorMsg = "Expired key capsules deletion has failed";
             log.error(errorMsg, e);
             throw new JobFailureException(errorMsg, e);
         }
     }
+
+    private int drain() {
+        long start = System.nanoTime();
+        long deadline = start + config.timeBudget().toNanos();
+        int batchSize = config.batchSize();
+        int total = 0;
+        int batches = 0;
+
+        while (true) {
+            long batchStart = System.nanoTime();
+            int deleted = deleteBatch(batchSize);
+            if (deleted == ALL_SLOTS_TAKEN) {
+                log.debug("Max number of parallel clean-up batches are running on other instances");
+                break;
+            }
+            long now = System.nanoTime();
+            long latency = now - batchStart;
+            total += deleted;
+            batches++;
+            log.trace("Deleted {} expired key capsules in {} ms (batch size {})",
+                deleted, TimeUnit.NANOSECONDS.toMillis(latency), batchSize);
+
+            if (deleted < batchSize) {
+                break;
+            }
+            long pause = pauseNanos(latency);
+            if (now + pause - deadline >= 0) {
+                log.info("Expired key capsules clean-up time budget {} used up after {} batches, "
+                    + "continuing on next run", config.timeBudget(), batches);
+                break;
+            }
+            batchSize = nextBatchSize(batchSize, latency);
+            if (!pause(pause)) {
+                break;
+            }
+        }
+
+        log.debug("Expired key capsules clean-up: {} deleted in {} batches, {} ms",
+            total, batches, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return total;
+    }
+
+    private int nextBatchSize(int batchSize, long latencyNanos) {
+        long target = config.targetBatchLatency().toNanos();
+        if (latencyNanos > target) {
+            return Math.max(1, batchSize / 2);
+        } else if (latencyNanos < target / 2) {
+            return (int) Math.min(config.maxBatchSize(), 2L * batchSize);
+        }
+        return batchSize;
+    }
+
+    private long pauseNanos(long latencyNanos) {
+        double dutyCycle = config.maxDutyCycle();
+        if (dutyCycle <= 0 || dutyCycle >= 1) {
+            return 0;
+        }
+        return (long) (latencyNanos * (1 - dutyCycle) / dutyCycle);
+    }
+
+    /**
+     * @return false, if thread was interrupted
+     */
+    private static boolean pause(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Expired key capsules clean-up interrupted");
+            return false;
+        }
+    }
+
+    /**
+     * @return number of deleted capsules or {@link #ALL_SLOTS_TAKEN}
+     */
+    private int deleteBatch(int batchSize) {
+        Integer deleted = jdbcTemplate.execute((Connection connection) -> {
+            String query = "{? = call expired_cdoc2_capsule_cleanup(?, ?)}";
+            try (CallableStatement stmt = connection.prepareCall(query)) {
+                stmt.registerOutParameter(1, Types.INTEGER);
+                stmt.setInt(2, batchSize);
+                stmt.setInt(3, config.maxParallelBatches());
+                stmt.execute();
+                return stmt.getInt(1);
+            }
+        });
+        return (deleted == null) ? 0 : deleted;
+    }
 }
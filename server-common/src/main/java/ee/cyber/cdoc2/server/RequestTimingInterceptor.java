@@ -1,43 +0,0 @@
-package ee.cyber.cdoc2.server;
-
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
-import lombok.NonNull;
-import lombok.extern.slf4j.Slf4j;
-
-import org.springframework.stereotype.Component;
-import org.springframework.web.servlet.HandlerInterceptor;
-
-@Slf4j
-@Component
-public class RequestTimingInterceptor implements HandlerInterceptor {
-
-    private static final String START_TIME = "startTime";
-
-    @Override
-    public boolean preHandle(
-        @NonNull HttpServletRequest request,
-        @NonNull HttpServletResponse response,
-        @NonNull Object handler
-    ) {
-        request.setAttribute(START_TIME, System.currentTimeMillis());
-        return true;
-    }
-
-    @Override
-    public void afterCompletion(
-        @NonNull HttpServletRequest request,
-        @NonNull HttpServletResponse response,
-        @NonNull Object handler,
-        Exception ex
-    ) {
-        long start = (long) request.getAttribute(START_TIME);
-        long duration = System.currentTimeMillis() - start;
-        log.info(
-            "{} {} completed in {} ms",
-            request.getMethod(),
-            request.getRequestURI(),
-            duration
-        );
-    }
-}
@@ -0,0 +1,31 @@
+package ee.cyber.cdoc2.server.api;
+
+import ee.cyber.cdoc2.server.generated.model.Capsule;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRecord;
+
+
+/**
+ * Maps key capsules read from database to API model. Shared by servlet and reactive get-servers.
+ */
+public final class CapsuleMapper {
+
+    private CapsuleMapper() {
+    }
+
+    /**
+     * @param db capsule read from database
+     * @return capsule returned to recipient
+     */
+    public static Capsule toDto(KeyCapsuleRecord db) {
+        var dto = new Capsule();
+        dto.setRecipientId(db.recipient());
+        dto.setEphemeralKeyMaterial(db.payload());
+        dto.setCapsuleType(switch (db.capsuleType()) {
+            case SECP256R1 -> Capsule.CapsuleTypeEnum.ECC_SECP256R1;
+            case SECP384R1 -> Capsule.CapsuleTypeEnum.ECC_SECP384R1;
+            case SECP521R1 -> Capsule.CapsuleTypeEnum.ECC_SECP521R1;
+            case RSA -> Capsule.CapsuleTypeEnum.RSA;
+        });
+        return dto;
+    }
+}
@@ -0,0 +1,125 @@
+package ee.cyber.cdoc2.server.api;
+
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRecord;
+import ee.cyber.cdoc2.shared.crypto.ECKeys;
+import ee.cyber.cdoc2.shared.crypto.EllipticCurve;
+import ee.cyber.cdoc2.shared.crypto.KeyAlgorithm;
+import ee.cyber.cdoc2.shared.crypto.RsaUtils;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.security.auth.x500.X500Principal;
+
+import jakarta.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Client identity derived from client certificate. Only depends on client certificate, so it is calculated
+ * once per TLS session (see {@link ClientIdentityCache}) and reused for all requests on that connection.
+ * Shared by servlet and reactive get-servers.
+ * @param certificate client certificate
+ * @param recipient client public key encoded as capsule recipient, {@code null} if key is not supported
+ * @param recipientFingerprint {@link KeyCapsuleDb#recipientFingerprint(byte[])} of {@code recipient}
+ * @param curve EC curve of client public key, {@code null} for RSA and unsupported keys
+ * @param subjectWithoutCN certificate subject without common name, for logging
+ */
+@Slf4j
+public record ClientIdentity(
+    X509Certificate certificate,
+    @Nullable byte[] recipient,
+    @Nullable byte[] recipientFingerprint,
+    @Nullable EllipticCurve curve,
+    String subjectWithoutCN
+) {
+
+    /**
+     * Derive client identity from client certificate
+     * @param certificate client certificate
+     * @return client identity, not supported if certificate public key can't be capsule recipient
+     */
+    public static ClientIdentity of(X509Certificate certificate) {
+        String subject = getCertSubjectNameWithoutCN(certificate);
+        PublicKey publicKey = certificate.getPublicKey();
+        try {
+            if (KeyAlgorithm.isEcKeysAlgorithm(publicKey.getAlgorithm())
+                && publicKey instanceof ECPublicKey ecPublicKey) {
+                EllipticCurve curve = ECKeys.getCurve(ecPublicKey);
+                byte[] recipient = ECKeys.encodeEcPubKeyForTls(curve, ecPublicKey);
+                return new ClientIdentity(
+                    certificate, recipient, KeyCapsuleDb.recipientFingerprint(recipient), curve, subject
+                );
+            }
+            if (KeyAlgorithm.isRsaKeysAlgorithm(publicKey.getAlgorithm())
+                && publicKey instanceof RSAPublicKey rsaPublicKey) {
+                byte[] recipient = RsaUtils.encodeRsaPubKey(rsaPublicKey);
+                return new ClientIdentity(
+                    certificate, recipient, KeyCapsuleDb.recipientFingerprint(recipient), null, subject
+                );
+            }
+        } catch (GeneralSecurityException exc) {
+            log.debug("Failed to encode client public key: {}", exc.toString());
+        }
+        return new ClientIdentity(certificate, null, null, null, subject);
+    }
+
+    /**
+     * @return true if client public key can be capsule recipient
+     */
+    public boolean isSupported() {
+        return recipient != null;
+    }
+
+    /**
+     * Check that client public key is recipient of capsule, capsule type must match client key type and curve
+     * @param capsule capsule found by {@link #recipientFingerprint()}
+     * @return true if capsule can be returned to the client
+     */
+    public boolean isRecipient(KeyCapsuleRecord capsule) {
+        if (capsule.capsuleType() == KeyCapsuleDb.CapsuleType.RSA) {
+            if (this.curve != null) {
+                return false;
+            }
+        } else if (this.curve == null || !this.curve.getName().equalsIgnoreCase(capsule.capsuleType().name())) {
+            return false;
+        }
+        // fingerprint match doesn't rule out SHA-256 collision, recipient is compared in full
+        return Arrays.equals(capsule.recipient(), this.recipient);
+    }
+
+    public static String getCertSubjectNameWithoutCN(X509Certificate certificate) {
+        return Optional.ofNullable(certificate.getSubjectX500Principal())
+            .map(X500Principal::getName)
+            // Remove the Common name from logs for privacy, it can contain name and id code
+            .map(ClientIdentity::removeCN)
+            .orElse("");
+    }
+
+    private static String removeCN(String distinguishedName) {
+        try {
+            LdapName ldapName = new LdapName(distinguishedName);
+            List<Rdn> rdns = ldapName.getRdns();
+
+            List<Rdn> filteredRdns = rdns.stream()
+                .filter(rdn -> !rdn.getType().equalsIgnoreCase("CN"))
+                .collect(Collectors.toList());
+
+            LdapName result = new LdapName(filteredRdns);
+            return result.toString();
+        } catch (InvalidNameException e) {
+            // If parsing fails, return empty string
+            return "";
+        }
+    }
+}
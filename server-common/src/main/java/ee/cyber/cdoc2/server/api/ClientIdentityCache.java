@@ -0,0 +1,136 @@
+package ee.cyber.cdoc2.server.api;
+
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.annotation.Nullable;
+
+
+/**
+ * Caches {@link ClientIdentity} by TLS session id, so that client identity is calculated once per TLS session
+ * and not for every request on keep-alive connection.
+ * <p>
+ * Cached identity is used only when request client certificate is equal to the certificate the identity was
+ * calculated from. Cache is bounded, least recently used identities are evicted when cache is full. Identity
+ * expires after TLS session timeout or when client certificate expires, whichever comes first, and is removed
+ * with {@link #evict(String)} when TLS connection is closed (reactive get-server). TLS session id is taken from
+ * servlet request attribute in get-server and from {@code SslInfo} in reactive get-server.
+ * <p>
+ * Lookups don't lock, so that request threads (virtual threads) don't contend on a monitor. LRU eviction is
+ * approximate: access order is updated without a lock and full cache is evicted in bulk by one thread at a time.
+ */
+public class ClientIdentityCache {
+
+    static final int DEFAULT_MAX_SIZE = 10_000;
+
+    /**
+     * JSSE default TLS session timeout ({@code SSLSessionContext.getSessionTimeout()})
+     */
+    static final Duration DEFAULT_MAX_AGE = Duration.ofHours(24);
+
+    private final int maxSize;
+    // size that full cache is evicted to, so that eviction runs once per maxSize / 10 new TLS sessions
+    private final int evictedSize;
+    private final Duration maxAge;
+    private final Clock clock;
+    private final Map<String, CachedIdentity> identities = new ConcurrentHashMap<>();
+    // access order of cached identities for LRU eviction
+    private final AtomicLong accessCounter = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    public ClientIdentityCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_AGE, Clock.systemUTC());
+    }
+
+    ClientIdentityCache(int maxSize, Duration maxAge, Clock clock) {
+        this.maxSize = maxSize;
+        this.evictedSize = maxSize - maxSize / 10;
+        this.maxAge = maxAge;
+        this.clock = clock;
+    }
+
+    /**
+     * Get client identity for TLS session
+     * @param sslSessionId TLS session id, if {@code null} then identity is calculated and not cached
+     * @param certificate client certificate from request
+     * @return client identity for {@code certificate}
+     */
+    public ClientIdentity get(@Nullable String sslSessionId, X509Certificate certificate) {
+        if (sslSessionId == null) {
+            return ClientIdentity.of(certificate);
+        }
+
+        Instant now = this.clock.instant();
+        CachedIdentity cached = this.identities.get(sslSessionId);
+        if (cached != null && now.isBefore(cached.expiresAt) && cached.identity.certificate().equals(certificate)) {
+            cached.lastAccess = this.accessCounter.incrementAndGet();
+            return cached.identity;
+        }
+
+        // concurrent requests of the same session may both calculate the identity
+        ClientIdentity identity = ClientIdentity.of(certificate);
+        Instant expiresAt = now.plus(this.maxAge);
+        Instant notAfter = certificate.getNotAfter().toInstant();
+        this.identities.put(sslSessionId, new CachedIdentity(
+            identity, expiresAt.isBefore(notAfter) ? expiresAt : notAfter, this.accessCounter.incrementAndGet()
+        ));
+        if (this.identities.size() > this.maxSize) {
+            evictLeastRecentlyUsed(now);
+        }
+        return identity;
+    }
+
+    /**
+     * Remove cached identity of TLS session, when TLS session or connection ends
+     * @param sslSessionId TLS session id
+     */
+    public void evict(String sslSessionId) {
+        this.identities.remove(sslSessionId);
+    }
+
+    int size() {
+        return this.identities.size();
+    }
+
+    /**
+     * Remove expired and then least recently used identities, until cache size is {@link #evictedSize}. Only one
+     * thread evicts at a time, other threads don't wait for it, so cache may be over max size for a moment.
+     */
+    private void evictLeastRecentlyUsed(Instant now) {
+        if (!this.evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            this.identities.values().removeIf(cached -> !now.isBefore(cached.expiresAt));
+            int excess = this.identities.size() - this.evictedSize;
+            if (excess > 0) {
+                this.identities.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+                    .limit(excess)
+                    .toList()
+                    .forEach(entry -> this.identities.remove(entry.getKey(), entry.getValue()));
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    private static final class CachedIdentity {
+        private final ClientIdentity identity;
+        private final Instant expiresAt;
+        private volatile long lastAccess;
+
+        CachedIdentity(ClientIdentity identity, Instant expiresAt, long lastAccess) {
+            this.identity = identity;
+            this.expiresAt = expiresAt;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ee.cyber.cdoc2.server.api;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Request body stream that fails with {@link BodyTooLargeException}, when stream has more than {@code limit} bytes.
+ * Used by batch APIs that read request body as a stream, so that too large body is not read to the end.
+ */
+public final class LimitedInputStream extends FilterInputStream {
+
+    private long remaining;
+
+    public LimitedInputStream(InputStream in, long limit) {
+        super(in);
+        this.remaining = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (limitReached()) {
+            return -1;
+        }
+        int b = super.read();
+        if (b >= 0) {
+            this.remaining--;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (limitReached()) {
+            return -1;
+        }
+        int n = super.read(b, off, (int) Math.min(len, this.remaining));
+        if (n > 0) {
+            this.remaining -= n;
+        }
+        return n;
+    }
+
+    /**
+     * @return true, when limit is reached at the end of stream
+     * @throws BodyTooLargeException when limit is reached and stream has more data
+     */
+    private boolean limitReached() throws IOException {
+        if (this.remaining > 0) {
+            return false;
+        }
+        if (super.read() >= 0) {
+            throw new BodyTooLargeException();
+        }
+        return true;
+    }
+
+    /**
+     * Thrown when stream has more than limit bytes
+     */
+    public static final class BodyTooLargeException extends IOException {
+        BodyTooLargeException() {
+            super("Request body too large");
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ee.cyber.cdoc2.server.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+
+/**
+ * Configuration properties for access log. Requests are recorded into a fixed size buffer and written to
+ * {@code access-log} logger by a background thread.
+ *
+ * @param enabled whether requests are logged
+ * @param sampleRate fraction (0.0 - 1.0) of successful requests logged, requests with error status
+ *                   (4xx, 5xx) are always logged
+ * @param bufferSize max number of requests waiting to be written (rounded up to power of two), requests are
+ *                   dropped when buffer is full
+ * @param batchSize max number of requests written in one go
+ * @param flushInterval how long writer waits, when buffer has less than {@code batchSize} requests
+ */
+@ConfigurationProperties(prefix = "access-log")
+public record AccessLogConfigProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("1.0") double sampleRate,
+    @DefaultValue("8192") int bufferSize,
+    @DefaultValue("256") int batchSize,
+    @DefaultValue("100ms") Duration flushInterval
+) {
+}
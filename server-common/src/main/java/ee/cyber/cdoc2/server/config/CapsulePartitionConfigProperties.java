@@ -0,0 +1,18 @@
+package ee.cyber.cdoc2.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+
+/**
+ * Configuration properties for partitioned key capsule table maintenance. Used only when {@code cdoc2_capsule}
+ * table is partitioned.
+ *
+ * @param monthsAhead number of monthly partitions created ahead of current month, must cover
+ *                    {@code key-capsule.max-expiration-duration}
+ */
+@ConfigurationProperties(prefix = "key-capsule.partition")
+public record CapsulePartitionConfigProperties(
+    @DefaultValue("62") int monthsAhead
+) {
+}
@@ -0,0 +1,24 @@
+package ee.cyber.cdoc2.server.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+
+/**
+ * Configuration properties for limiting number of key capsule requests accessing database at the same time.
+ * With virtual threads ({@code spring.threads.virtual.enabled=true}) Tomcat thread pool doesn't limit
+ * concurrency anymore, requests above the limit are rejected instead of queuing for database connections.
+ *
+ * @param maxConcurrent max number of key capsule requests processed at the same time. -1 means twice the
+ *                      database connection pool size when virtual threads are enabled and no limit otherwise,
+ *                      0 means no limit
+ * @param maxWait max time request waits for a free slot before it is rejected with 503
+ */
+@ConfigurationProperties(prefix = "key-capsule.db-bulkhead")
+public record DbBulkheadConfigProperties(
+    @DefaultValue("-1") int maxConcurrent,
+    @DefaultValue("0ms") Duration maxWait
+) {
+}
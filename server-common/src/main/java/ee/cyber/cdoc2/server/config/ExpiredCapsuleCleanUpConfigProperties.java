@@ -0,0 +1,43 @@
+package ee.cyber.cdoc2.server.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+
+/**
+ * Configuration properties for expired key capsules clean-up job.
+ *
+ * @param mode clean-up mode
+ * @param batchSize number of capsules deleted in the first batch of a job run
+ * @param maxBatchSize upper limit for the batch size, when it is increased after fast batches
+ * @param timeBudget max duration of a single job run in {@link Mode#DRAIN} mode
+ * @param targetBatchLatency batch size is halved when batch takes longer and doubled when batch
+ *                           takes less than half of it
+ * @param maxDutyCycle share of time [0..1] spent deleting, the rest is pause between batches
+ *                     proportional to the last batch latency. 1 means no pause
+ * @param maxParallelBatches max number of clean-up batches running at the same time in all server instances,
+ *                           0 means no limit. Parallel batches always delete disjoint sets of capsules
+ */
+@ConfigurationProperties(prefix = "key-capsule.expired.clean-up")
+public record ExpiredCapsuleCleanUpConfigProperties(
+    @DefaultValue("DRAIN") Mode mode,
+    @DefaultValue("1000") int batchSize,
+    @DefaultValue("10000") int maxBatchSize,
+    @DefaultValue("1m") Duration timeBudget,
+    @DefaultValue("200ms") Duration targetBatchLatency,
+    @DefaultValue("0.5") double maxDutyCycle,
+    @DefaultValue("2") int maxParallelBatches
+) {
+
+    /**
+     * Clean-up mode
+     */
+    public enum Mode {
+        /** Delete single batch of expired capsules per job run */
+        SINGLE_BATCH,
+        /** Delete expired capsules in batches until none are left or time budget is used up */
+        DRAIN
+    }
+}
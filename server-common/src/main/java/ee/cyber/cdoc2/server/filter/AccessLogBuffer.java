@@ -0,0 +1,103 @@
+package ee.cyber.cdoc2.server.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+
+/**
+ * Bounded lock-free ring buffer of preallocated {@link AccessLogEvent} slots with many producers (request threads)
+ * and a single consumer (writer thread).
+ * <p>
+ * Each slot has a sequence number: slot at position {@code p} is free for producer when its sequence is {@code p}
+ * and ready for consumer when its sequence is {@code p + 1}. Producers claim positions with CAS, fill the slot and
+ * publish it. When buffer is full, {@link #claim()} returns {@code null} right away instead of waiting.
+ */
+final class AccessLogBuffer {
+
+    private final AccessLogEvent[] events;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong producerPosition = new AtomicLong();
+    // used only by consumer thread
+    private long consumerPosition;
+
+    AccessLogBuffer(int minCapacity) {
+        if (minCapacity < 1 || minCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid access log buffer size " + minCapacity);
+        }
+        int capacity = (minCapacity == 1) ? 1 : Integer.highestOneBit(minCapacity - 1) << 1;
+        this.events = new AccessLogEvent[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            this.events[i] = new AccessLogEvent();
+            this.sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+    }
+
+    int capacity() {
+        return this.events.length;
+    }
+
+    /**
+     * Claim a free slot, slot must be filled and then passed to {@link #publish(AccessLogEvent)}
+     * @return claimed slot or {@code null}, when buffer is full
+     */
+    AccessLogEvent claim() {
+        long position = this.producerPosition.get();
+        while (true) {
+            int index = (int) position & this.mask;
+            long diff = this.sequences.get(index) - position;
+            if (diff == 0) {
+                if (this.producerPosition.compareAndSet(position, position + 1)) {
+                    AccessLogEvent event = this.events[index];
+                    event.position = position;
+                    return event;
+                }
+                position = this.producerPosition.get();
+            } else if (diff < 0) {
+                // slot not consumed yet since previous round
+                return null;
+            } else {
+                // other producer claimed the position
+                position = this.producerPosition.get();
+            }
+        }
+    }
+
+    /**
+     * Make claimed slot available to consumer
+     */
+    void publish(AccessLogEvent event) {
+        this.sequences.set((int) event.position & this.mask, event.position + 1);
+    }
+
+    /**
+     * Pass published events to consumer in order, must be called from a single thread. Stops at first slot that
+     * is claimed, but not published yet.
+     * @param consumer called for each event, event must not be used after consumer returns
+     * @param max max number of events
+     * @return number of events consumed
+     */
+    int drain(Consumer<AccessLogEvent> consumer, int max) {
+        int count = 0;
+        while (count < max) {
+            long position = this.consumerPosition;
+            int index = (int) position & this.mask;
+            if (this.sequences.get(index) != position + 1) {
+                break;
+            }
+            AccessLogEvent event = this.events[index];
+            try {
+                consumer.accept(event);
+            } finally {
+                event.clear();
+                this.sequences.set(index, position + this.events.length);
+                this.consumerPosition = position + 1;
+            }
+            count++;
+        }
+        return count;
+    }
+}
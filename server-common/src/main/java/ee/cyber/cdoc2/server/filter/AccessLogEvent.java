@@ -0,0 +1,133 @@
+package ee.cyber.cdoc2.server.filter;
+
+import java.time.Instant;
+
+
+/**
+ * Access log entry, slot of {@link AccessLogBuffer}. Slots are allocated once and reused, request thread only
+ * copies references to request strings here, all formatting is done by the writer thread.
+ */
+final class AccessLogEvent {
+
+    // position in buffer, set when slot is claimed
+    long position;
+
+    long startMillis;
+    long durationNanos;
+    String method;
+    String uri;
+    int status;
+    String contentType;
+    long contentLength;
+    String origin;
+    String forwardedFor;
+    String secFetchSite;
+    String secFetchMode;
+    String secFetchDest;
+    String secFetchUser;
+
+    /**
+     * Append event as one line JSON object
+     */
+    void appendJson(StringBuilder sb) {
+        sb.append('{');
+        appendField(sb, "time", Instant.ofEpochMilli(this.startMillis).toString());
+        sb.append(',');
+        appendField(sb, "method", this.method);
+        sb.append(',');
+        appendField(sb, "uri", this.uri);
+        sb.append(",\"status\":").append(this.status);
+        sb.append(",\"durationMicros\":").append(this.durationNanos / 1000);
+        if (this.contentType != null) {
+            sb.append(',');
+            appendField(sb, "contentType", this.contentType);
+        }
+        if (this.origin != null) {
+            sb.append(',');
+            appendField(sb, "origin", this.origin);
+        }
+        if (this.contentLength >= 0) {
+            sb.append(",\"contentLength\":").append(this.contentLength);
+        }
+        if (this.secFetchSite != null || this.secFetchMode != null
+            || this.secFetchDest != null || this.secFetchUser != null) {
+
+            sb.append(",\"secFetchHeaders\":{");
+            int start = sb.length();
+            appendSecFetch(sb, start, "sec-fetch-site", this.secFetchSite);
+            appendSecFetch(sb, start, "sec-fetch-mode", this.secFetchMode);
+            appendSecFetch(sb, start, "sec-fetch-dest", this.secFetchDest);
+            appendSecFetch(sb, start, "sec-fetch-user", this.secFetchUser);
+            sb.append('}');
+        }
+        String clientIp = clientIp(this.forwardedFor);
+        if (clientIp != null) {
+            sb.append(',');
+            appendField(sb, "clientIp", clientIp);
+        }
+        sb.append('}');
+    }
+
+    /**
+     * Release references to request strings
+     */
+    void clear() {
+        this.method = null;
+        this.uri = null;
+        this.contentType = null;
+        this.origin = null;
+        this.forwardedFor = null;
+        this.secFetchSite = null;
+        this.secFetchMode = null;
+        this.secFetchDest = null;
+        this.secFetchUser = null;
+    }
+
+    /**
+     * @return first address of {@code X-Forwarded-For} header
+     */
+    static String clientIp(String forwardedFor) {
+        if (forwardedFor == null || forwardedFor.isBlank()) {
+            return null;
+        }
+        int comma = forwardedFor.indexOf(',');
+        return ((comma != -1) ? forwardedFor.substring(0, comma) : forwardedFor).trim();
+    }
+
+    private static void appendSecFetch(StringBuilder sb, int start, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        if (sb.length() > start) {
+            sb.append(',');
+        }
+        appendField(sb, name, value);
+    }
+
+    private static void appendField(StringBuilder sb, String name, String value) {
+        sb.append('"').append(name).append("\":");
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
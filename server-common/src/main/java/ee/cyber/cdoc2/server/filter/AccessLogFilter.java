@@ -0,0 +1,187 @@
+package ee.cyber.cdoc2.server.filter;
+
+import ee.cyber.cdoc2.server.config.AccessLogConfigProperties;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Access log for requests. Request thread only copies method, uri, status, duration and a fixed set of headers
+ * into a preallocated {@link AccessLogBuffer} slot, events are formatted as one line JSON and written to
+ * {@code access-log} logger in batches by a background thread.
+ * <p>
+ * Successful requests are sampled with {@code access-log.sample-rate}, error responses are always logged. When the
+ * writer can't keep up and the buffer is full, new events are dropped and counted, request is never blocked.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class AccessLogFilter implements Filter, MeterBinder, AutoCloseable {
+
+    static final String ACCESS_LOG_LOGGER = "access-log";
+
+    private static final Logger ACCESS_LOG = LoggerFactory.getLogger(ACCESS_LOG_LOGGER);
+
+    private final double sampleRate;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final AccessLogBuffer buffer;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    public AccessLogFilter(AccessLogConfigProperties config) {
+        if (config.sampleRate() < 0.0 || config.sampleRate() > 1.0) {
+            throw new IllegalArgumentException("access-log.sample-rate must be between 0.0 and 1.0");
+        }
+        if (config.batchSize() < 1) {
+            throw new IllegalArgumentException("access-log.batch-size must be positive");
+        }
+        this.sampleRate = config.sampleRate();
+        this.batchSize = config.batchSize();
+        this.flushIntervalNanos = config.flushInterval().toNanos();
+        if (!config.enabled()) {
+            this.buffer = null;
+            this.writerThread = null;
+            return;
+        }
+        this.buffer = new AccessLogBuffer(config.bufferSize());
+        this.writerThread = new Thread(this::run, "access-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+        throws IOException, ServletException {
+
+        if (this.buffer == null
+            || !(request instanceof HttpServletRequest httpRequest)
+            || !(response instanceof HttpServletResponse httpResponse)
+            || !ACCESS_LOG.isInfoEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long startMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        try {
+            chain.doFilter(request, response);
+            status = httpResponse.getStatus();
+        } finally {
+            record(httpRequest, status, startMillis, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (this.buffer == null) {
+            return;
+        }
+        FunctionCounter.builder("cdoc2.access-log.written", this.written, LongAdder::sum)
+            .description("Access log events written")
+            .register(registry);
+
+        FunctionCounter.builder("cdoc2.access-log.dropped", this.dropped, LongAdder::sum)
+            .description("Access log events dropped, because access log buffer was full")
+            .register(registry);
+    }
+
+    /**
+     * Stop writer thread, events already in buffer are written
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (this.writerThread == null) {
+            return;
+        }
+        this.closed = true;
+        LockSupport.unpark(this.writerThread);
+        this.writerThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    long droppedCount() {
+        return this.dropped.sum();
+    }
+
+    private void record(HttpServletRequest request, int status, long startMillis, long durationNanos) {
+        if (status < HttpServletResponse.SC_BAD_REQUEST && this.sampleRate < 1.0
+            && ThreadLocalRandom.current().nextDouble() >= this.sampleRate) {
+            return;
+        }
+        AccessLogEvent event = this.buffer.claim();
+        if (event == null) {
+            this.dropped.increment();
+            return;
+        }
+        event.startMillis = startMillis;
+        event.durationNanos = durationNanos;
+        event.method = request.getMethod();
+        event.uri = request.getRequestURI();
+        event.status = status;
+        event.contentType = request.getHeader(HttpHeaders.CONTENT_TYPE);
+        event.contentLength = request.getContentLengthLong();
+        event.origin = request.getHeader(HttpHeaders.ORIGIN);
+        event.forwardedFor = request.getHeader("X-Forwarded-For");
+        event.secFetchSite = request.getHeader("Sec-Fetch-Site");
+        event.secFetchMode = request.getHeader("Sec-Fetch-Mode");
+        event.secFetchDest = request.getHeader("Sec-Fetch-Dest");
+        event.secFetchUser = request.getHeader("Sec-Fetch-User");
+        this.buffer.publish(event);
+    }
+
+    private void run() {
+        StringBuilder line = new StringBuilder(512);
+        long reportedDropped = 0;
+        while (!this.closed) {
+            int count = writeBatch(line);
+            long droppedNow = this.dropped.sum();
+            if (droppedNow != reportedDropped) {
+                log.warn("{} access log events dropped, access log buffer ({}) is full",
+                    droppedNow - reportedDropped, this.buffer.capacity());
+                reportedDropped = droppedNow;
+            }
+            if (count < this.batchSize) {
+                LockSupport.parkNanos(this.flushIntervalNanos);
+            }
+        }
+        while (writeBatch(line) > 0) {
+            // write events left in buffer
+        }
+        log.debug("Access log writer stopped");
+    }
+
+    private int writeBatch(StringBuilder line) {
+        int count = this.buffer.drain(event -> {
+            line.setLength(0);
+            event.appendJson(line);
+            ACCESS_LOG.info(line.toString());
+        }, this.batchSize);
+        this.written.add(count);
+        return count;
+    }
+}
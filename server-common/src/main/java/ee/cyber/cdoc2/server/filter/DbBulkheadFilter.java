@@ -0,0 +1,130 @@
+package ee.cyber.cdoc2.server.filter;
+
+import ee.cyber.cdoc2.server.config.DbBulkheadConfigProperties;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Limits number of key capsule requests processed at the same time, so that with virtual threads an unbounded
+ * number of requests doesn't queue up for database connections. Requests over the limit are rejected right away
+ * (or after {@code key-capsule.db-bulkhead.max-wait}) with 503 and {@code Retry-After} header.
+ * <p>
+ * Waiting is done with {@link Semaphore}, that doesn't pin virtual thread to its carrier thread.
+ */
+@Component
+@Slf4j
+public class DbBulkheadFilter implements Filter, MeterBinder {
+
+    static final String KEY_CAPSULES_PATH = "/key-capsules";
+    static final String RETRY_AFTER_SECONDS = "1";
+
+    // Hikari default maximum pool size
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    private final int maxConcurrent;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+    private final LongAdder rejected = new LongAdder();
+
+    public DbBulkheadFilter(DbBulkheadConfigProperties config, Environment env) {
+        this.maxConcurrent = maxConcurrent(config, env);
+        this.maxWaitNanos = config.maxWait().toNanos();
+        this.permits = (this.maxConcurrent > 0) ? new Semaphore(this.maxConcurrent) : null;
+        if (this.permits != null) {
+            log.info("Key capsule requests limited to {} concurrent requests", this.maxConcurrent);
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+        throws IOException, ServletException {
+
+        if (this.permits == null
+            || !(request instanceof HttpServletRequest httpRequest)
+            || !httpRequest.getRequestURI().startsWith(KEY_CAPSULES_PATH)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        if (!tryAcquire()) {
+            this.rejected.increment();
+            log.debug("Rejected {} {}, too many concurrent requests", httpRequest.getMethod(),
+                httpRequest.getRequestURI());
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            httpResponse.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            httpResponse.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (this.permits == null) {
+            return;
+        }
+        Gauge.builder("cdoc2.db.bulkhead.active", this.permits, p -> this.maxConcurrent - p.availablePermits())
+            .description("Key capsule requests being processed")
+            .register(registry);
+
+        FunctionCounter.builder("cdoc2.db.bulkhead.rejected", this.rejected, LongAdder::sum)
+            .description("Key capsule requests rejected, because too many requests were processed")
+            .register(registry);
+    }
+
+    int getMaxConcurrent() {
+        return this.maxConcurrent;
+    }
+
+    private boolean tryAcquire() {
+        if (this.maxWaitNanos <= 0) {
+            return this.permits.tryAcquire();
+        }
+        try {
+            return this.permits.tryAcquire(this.maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static int maxConcurrent(DbBulkheadConfigProperties config, Environment env) {
+        if (config.maxConcurrent() >= 0) {
+            return config.maxConcurrent();
+        }
+        // same check as Boot uses for request executor: spring.threads.virtual.enabled and Java 21 or newer
+        if (!Threading.VIRTUAL.isActive(env)) {
+            // platform threads are limited by server.tomcat.threads.max
+            return 0;
+        }
+        int poolSize = env.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class,
+            DEFAULT_POOL_SIZE);
+        return 2 * poolSize;
+    }
+}
@@ -0,0 +1,48 @@
+package ee.cyber.cdoc2.server;
+
+import io.micrometer.common.KeyValue;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class CapsuleTypeObservationConventionTest {
+
+    private enum CapsuleType { SECP384R1 }
+
+    private final CapsuleTypeObservationConvention convention = new CapsuleTypeObservationConvention();
+
+    @Test
+    void shouldAddCapsuleTypeToRequestTags() {
+        var request = new MockHttpServletRequest("GET", "/key-capsules/KC0123");
+        var context = new ServerRequestObservationContext(request, new MockHttpServletResponse());
+        context.setPathPattern("/key-capsules/{transactionId}");
+
+        CapsuleTypeObservationConvention.setCapsuleType(new ServletWebRequest(request), CapsuleType.SECP384R1);
+
+        var keyValues = this.convention.getLowCardinalityKeyValues(context);
+        assertTrue(keyValues.stream().anyMatch(
+            KeyValue.of(CapsuleTypeObservationConvention.CAPSULE_TYPE, "SECP384R1")::equals));
+        // standard tags are kept
+        assertTrue(keyValues.stream().anyMatch(KeyValue.of("uri", "/key-capsules/{transactionId}")::equals));
+        assertTrue(keyValues.stream().anyMatch(KeyValue.of("method", "GET")::equals));
+    }
+
+    @Test
+    void shouldUseNoneWhenCapsuleTypeIsNotSet() {
+        var context = new ServerRequestObservationContext(
+            new MockHttpServletRequest("POST", "/key-capsules/batch"), new MockHttpServletResponse()
+        );
+
+        var capsuleType = this.convention.getLowCardinalityKeyValues(context).stream()
+            .filter(keyValue -> keyValue.getKey().equals(CapsuleTypeObservationConvention.CAPSULE_TYPE))
+            .toList();
+        assertEquals(1, capsuleType.size());
+        assertEquals(CapsuleTypeObservationConvention.NONE, capsuleType.get(0).getValue());
+    }
+}
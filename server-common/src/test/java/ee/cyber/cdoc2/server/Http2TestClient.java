@@ -0,0 +1,135 @@
+package ee.cyber.cdoc2.server;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyManagementException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+
+
+/**
+ * HTTP/2 client for tests. Counts TLS connections (SSL engines) opened by the client, so that tests can check
+ * that concurrent requests were multiplexed over a single connection.
+ */
+final class Http2TestClient {
+
+    private final AtomicInteger connections = new AtomicInteger();
+    private final HttpClient httpClient;
+
+    /**
+     * @param clientKeyStore PKCS12 key store (password {@code passwd}) for client authentication, {@code null}
+     *                       for no client authentication
+     */
+    Http2TestClient(Path clientKeyStore) throws Exception {
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(TestData.loadKeyStore(
+            "JKS", TestData.getKeysDirectory().resolve("clienttruststore.jks"), "passwd"
+        ));
+        KeyManager[] keyManagers = null;
+        if (clientKeyStore != null) {
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            keyStore.load(Files.newInputStream(clientKeyStore), "passwd".toCharArray());
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(keyStore, "passwd".toCharArray());
+            keyManagers = kmf.getKeyManagers();
+        }
+        SSLContext sslContext = SSLContext.getInstance("TLSv1.3");
+        sslContext.init(keyManagers, tmf.getTrustManagers(), null);
+
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .sslContext(new CountingSslContext(sslContext, this.connections))
+            .build();
+    }
+
+    HttpClient httpClient() {
+        return this.httpClient;
+    }
+
+    /**
+     * @return number of TLS connections opened by the client
+     */
+    int connections() {
+        return this.connections.get();
+    }
+
+    /**
+     * SSL context that counts created client SSL engines, HttpClient creates one for each connection
+     */
+    private static final class CountingSslContext extends SSLContext {
+        CountingSslContext(SSLContext delegate, AtomicInteger engines) {
+            super(new CountingSpi(delegate, engines), delegate.getProvider(), delegate.getProtocol());
+        }
+    }
+
+    private static final class CountingSpi extends SSLContextSpi {
+        private final SSLContext delegate;
+        private final AtomicInteger engines;
+
+        CountingSpi(SSLContext delegate, AtomicInteger engines) {
+            this.delegate = delegate;
+            this.engines = engines;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom random)
+            throws KeyManagementException {
+            throw new KeyManagementException("Already initialized");
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return this.delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return this.delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            this.engines.incrementAndGet();
+            return this.delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            this.engines.incrementAndGet();
+            return this.delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return this.delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return this.delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return this.delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return this.delegate.getSupportedSSLParameters();
+        }
+    }
+}
@@ -3,15 +3,40 @@ package ee.cyber.cdoc2.server;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import ee.cyber.cdoc2.server.generated.model.Capsule;
+import ee.cyber.cdoc2.server.model.db.GroupCommitKeyCapsuleWriter;
+import ee.cyber.cdoc2.server.model.db.JdbcKeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.JpaKeyCapsuleReader;
 import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleReader;
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleRecord;
+import ee.cyber.cdoc2.server.model.db.TransactionId;
+import ee.cyber.cdoc2.server.model.db.TransactionIdGenerator;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -24,9 +49,18 @@ abstract class KeyCapsuleIntegrationTest extends BaseInitializationTest {
     // context path of the key capsule api
     protected static final String API_KEY_CAPSULES = "/key-capsules";
 
+    private static final TransactionIdGenerator TRANSACTION_ID_GENERATOR =
+        new TransactionIdGenerator(TransactionId.Layout.CREATION_TIME);
+
     @Autowired
     private ExpiredCapsuleCleanUpJob cleanUpJob;
 
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private Validator validator;
+
     @Test
     void testKeyCapsuleJpaConstraints() {
         KeyCapsuleDb model = new KeyCapsuleDb();
@@ -54,7 +88,7 @@ abstract class KeyCapsuleIntegrationTest extends BaseInitializationTest {
         KeyCapsuleDb saved = this.capsuleRepository.save(model);
 
         assertNotNull(saved);
-        String txId = saved.getTransactionId();
+        UUID txId = saved.getTransactionId();
         assertNotNull(txId);
         log.debug("Created {}", txId);
 
@@ -63,12 +97,190 @@ abstract class KeyCapsuleIntegrationTest extends BaseInitializationTest {
 
         var dbRecord = retrievedOpt.get();
         assertNotNull(dbRecord.getTransactionId()); // transactionId was generated
-        assertTrue(dbRecord.getTransactionId().startsWith("KC"));
+        assertTrue(TransactionId.toApiForm(dbRecord.getTransactionId()).startsWith("KC"));
         assertNotNull(dbRecord.getCreatedAt()); // createdAt field was filled
         assertEquals(dbRecord.getCapsuleType(), model.getCapsuleType());
         log.debug("Retrieved {}", dbRecord);
     }
 
+    @Test
+    void shouldFindKeyCapsuleByTransactionIdAndRecipientFingerprint() throws Exception {
+        KeyCapsuleDb model = new KeyCapsuleDb()
+            .setCapsuleType(KeyCapsuleDb.CapsuleType.SECP384R1)
+            .setRecipient("123".getBytes())
+            .setPayload("345".getBytes())
+            .setExpiryTime(EXPIRY_TIME)
+            .setExpiryTimeAdjusted(EXPIRY_TIME_ADJUSTED);
+        UUID txId = this.capsuleRepository.save(model).getTransactionId();
+
+        byte[] fingerprint = KeyCapsuleDb.recipientFingerprint("123".getBytes());
+        assertEquals(KeyCapsuleDb.RECIPIENT_FINGERPRINT_LENGTH, fingerprint.length);
+
+        Optional<KeyCapsuleDb> found = this.capsuleRepository.findByTransactionIdAndRecipientFingerprint(
+            txId, fingerprint
+        );
+        assertTrue(found.isPresent());
+        assertArrayEquals(fingerprint, found.get().getRecipientFingerprint());
+
+        assertTrue(this.capsuleRepository.findByTransactionIdAndRecipientFingerprint(
+            txId, KeyCapsuleDb.recipientFingerprint("124".getBytes())
+        ).isEmpty());
+    }
+
+    @Test
+    void shouldReadSameKeyCapsuleWithJdbcAndJpaReaders() throws Exception {
+        KeyCapsuleDb model = new KeyCapsuleDb()
+            .setCapsuleType(KeyCapsuleDb.CapsuleType.RSA)
+            .setRecipient("123".getBytes())
+            .setPayload("345".getBytes())
+            .setExpiryTime(EXPIRY_TIME)
+            .setExpiryTimeAdjusted(true);
+        UUID txId = this.capsuleRepository.save(model).getTransactionId();
+        byte[] fingerprint = KeyCapsuleDb.recipientFingerprint("123".getBytes());
+
+        KeyCapsuleReader jpaReader = new JpaKeyCapsuleReader(this.capsuleRepository);
+        KeyCapsuleReader jdbcReader = new JdbcKeyCapsuleReader(this.dataSource);
+
+        KeyCapsuleRecord expected = jpaReader.findByTransactionIdAndRecipientFingerprint(txId, fingerprint)
+            .orElseThrow();
+        KeyCapsuleRecord actual = jdbcReader.findByTransactionIdAndRecipientFingerprint(txId, fingerprint)
+            .orElseThrow();
+        assertArrayEquals(expected.recipient(), actual.recipient());
+        assertArrayEquals(expected.payload(), actual.payload());
+        assertEquals(expected.capsuleType(), actual.capsuleType());
+        assertEquals(expected.expiryTime(), actual.expiryTime());
+        assertTrue(actual.expiryTimeAdjusted());
+
+        byte[] otherFingerprint = KeyCapsuleDb.recipientFingerprint("124".getBytes());
+        assertTrue(jdbcReader.findByTransactionIdAndRecipientFingerprint(txId, otherFingerprint).isEmpty());
+        assertTrue(jdbcReader.findByTransactionIdAndRecipientFingerprint(UUID.randomUUID(), fingerprint).isEmpty());
+    }
+
+    @Test
+    void shouldFindSameKeyCapsulesWithJdbcAndJpaBatchLookup() throws Exception {
+        List<UUID> txIds = new ArrayList<>();
+        for (String recipient : List.of("123", "124", "123")) {
+            txIds.add(this.capsuleRepository.save(new KeyCapsuleDb()
+                .setCapsuleType(KeyCapsuleDb.CapsuleType.RSA)
+                .setRecipient(recipient.getBytes())
+                .setPayload(UUID.randomUUID().toString().getBytes())
+                .setExpiryTime(EXPIRY_TIME)
+                .setExpiryTimeAdjusted(false)
+            ).getTransactionId());
+        }
+        txIds.add(UUID.randomUUID());
+        byte[] fingerprint = KeyCapsuleDb.recipientFingerprint("123".getBytes());
+
+        var jpaCapsules = new JpaKeyCapsuleReader(this.capsuleRepository)
+            .findAllByTransactionIdsAndRecipientFingerprint(txIds, fingerprint);
+        var jdbcCapsules = new JdbcKeyCapsuleReader(this.dataSource)
+            .findAllByTransactionIdsAndRecipientFingerprint(txIds, fingerprint);
+
+        assertEquals(Set.of(txIds.get(0), txIds.get(2)), jdbcCapsules.keySet());
+        assertEquals(jpaCapsules.keySet(), jdbcCapsules.keySet());
+        for (UUID txId : jdbcCapsules.keySet()) {
+            assertArrayEquals(jpaCapsules.get(txId).payload(), jdbcCapsules.get(txId).payload());
+            assertEquals(jpaCapsules.get(txId).expiryTime(), jdbcCapsules.get(txId).expiryTime());
+        }
+    }
+
+    @Test
+    void shouldNotReadExpiredKeyCapsulesWhenExcludingExpired() throws Exception {
+        UUID expired = saveExpiringCapsule(Instant.now().minusSeconds(60)).getTransactionId();
+        UUID notExpired = saveExpiringCapsule(Instant.now().plusSeconds(3600)).getTransactionId();
+        byte[] fingerprint = KeyCapsuleDb.recipientFingerprint("123".getBytes());
+
+        KeyCapsuleReader reader = JdbcKeyCapsuleReader.excludingExpired(this.dataSource);
+        assertTrue(reader.findByTransactionIdAndRecipientFingerprint(expired, fingerprint).isEmpty());
+        assertTrue(reader.findByTransactionIdAndRecipientFingerprint(notExpired, fingerprint).isPresent());
+        assertEquals(Set.of(notExpired),
+            reader.findAllByTransactionIdsAndRecipientFingerprint(List.of(expired, notExpired), fingerprint).keySet());
+
+        // expired capsule is returned until clean-up job deletes it
+        assertTrue(new JdbcKeyCapsuleReader(this.dataSource)
+            .findByTransactionIdAndRecipientFingerprint(expired, fingerprint).isPresent());
+    }
+
+    @Test
+    void shouldStoreKeyCapsuleExpiryTimeInUtcWithNonUtcJvmTimeZone() throws Exception {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        try {
+            // UTC+14, expiry time stored as local time would not be expired for 14 hours
+            TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Kiritimati"));
+            Instant expiryTime = Instant.now().minusSeconds(60).truncatedTo(ChronoUnit.MILLIS);
+            UUID txId = saveExpiringCapsule(expiryTime).getTransactionId();
+            byte[] fingerprint = KeyCapsuleDb.recipientFingerprint("123".getBytes());
+
+            assertEquals(expiryTime, this.capsuleRepository.findById(txId).orElseThrow().getExpiryTime());
+            assertEquals(expiryTime, new JdbcKeyCapsuleReader(this.dataSource)
+                .findByTransactionIdAndRecipientFingerprint(txId, fingerprint).orElseThrow().expiryTime());
+            assertTrue(JdbcKeyCapsuleReader.excludingExpired(this.dataSource)
+                .findByTransactionIdAndRecipientFingerprint(txId, fingerprint).isEmpty());
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
+    @Test
+    void shouldSaveConcurrentKeyCapsulesWithGroupCommit() throws Exception {
+        int capsules = 20;
+        Instant expiryTime = Instant.now().plusSeconds(86400).truncatedTo(ChronoUnit.MILLIS);
+        ExecutorService executor = Executors.newFixedThreadPool(capsules);
+        try (var writer = new GroupCommitKeyCapsuleWriter(
+            this.dataSource, this.validator, TRANSACTION_ID_GENERATOR, 8, Duration.ofMillis(5),
+            Duration.ofSeconds(30)
+        )) {
+            List<Future<KeyCapsuleDb>> saves = new ArrayList<>();
+            for (int i = 0; i < capsules; i++) {
+                byte[] recipient = ("recipient-" + i).getBytes();
+                saves.add(executor.submit(() -> writer.save(new KeyCapsuleDb()
+                    .setCapsuleType(KeyCapsuleDb.CapsuleType.SECP384R1)
+                    .setRecipient(recipient)
+                    .setPayload("345".getBytes())
+                    .setExpiryTime(expiryTime)
+                    .setExpiryTimeAdjusted(EXPIRY_TIME_ADJUSTED)
+                )));
+            }
+
+            for (int i = 0; i < capsules; i++) {
+                KeyCapsuleDb saved = saves.get(i).get(1, TimeUnit.MINUTES);
+                KeyCapsuleDb found = this.capsuleRepository.findById(saved.getTransactionId()).orElseThrow();
+                assertArrayEquals(("recipient-" + i).getBytes(), found.getRecipient());
+                assertArrayEquals(KeyCapsuleDb.recipientFingerprint(found.getRecipient()),
+                    found.getRecipientFingerprint());
+                assertEquals(expiryTime, found.getExpiryTime());
+                assertNotNull(found.getCreatedAt());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldValidateKeyCapsulesWithGroupCommit() throws Exception {
+        long count = this.capsuleRepository.count();
+        try (var writer = new GroupCommitKeyCapsuleWriter(
+            this.dataSource, this.validator, TRANSACTION_ID_GENERATOR, 8, Duration.ofMillis(5),
+            Duration.ofSeconds(30)
+        )) {
+            KeyCapsuleDb tooLargePayload = new KeyCapsuleDb()
+                .setCapsuleType(KeyCapsuleDb.CapsuleType.SECP384R1)
+                .setRecipient("123".getBytes())
+                .setPayload(new byte[3001])
+                .setExpiryTime(Instant.now().plusSeconds(86400))
+                .setExpiryTimeAdjusted(EXPIRY_TIME_ADJUSTED);
+            assertThrows(ConstraintViolationException.class, () -> writer.save(tooLargePayload));
+
+            KeyCapsuleDb noRecipient = new KeyCapsuleDb()
+                .setCapsuleType(KeyCapsuleDb.CapsuleType.SECP384R1)
+                .setPayload("345".getBytes())
+                .setExpiryTime(Instant.now().plusSeconds(86400))
+                .setExpiryTimeAdjusted(EXPIRY_TIME_ADJUSTED);
+            assertThrows(ConstraintViolationException.class, () -> writer.saveAll(List.of(noRecipient)));
+        }
+        assertEquals(count, this.capsuleRepository.count());
+    }
+
     @Test
     void shouldCleanUpExpiredKeyCapsules() {
         // prepare database for testing
@@ -91,6 +303,103 @@ abstract class KeyCapsuleIntegrationTest extends BaseInitializationTest {
         assertEquals(0, count);
     }
 
+    @Test
+    void shouldDrainExpiredKeyCapsulesInBatches() {
+        this.capsuleRepository.deleteAll();
+
+        // test configuration has batch size 2, so that expired capsules are deleted in several batches
+        int expired = 11;
+        for (int i = 0; i < expired; i++) {
+            saveExpiringCapsule(Instant.now().minusSeconds(60 + i));
+        }
+        KeyCapsuleDb notExpired = saveExpiringCapsule(Instant.now().plusSeconds(3600));
+
+        assertEquals(expired, cleanUpJob.cleanUpExpiredCapsules());
+        assertEquals(1, this.capsuleRepository.count());
+        assertTrue(this.capsuleRepository.findById(notExpired.getTransactionId()).isPresent());
+
+        assertEquals(0, cleanUpJob.cleanUpExpiredCapsules());
+    }
+
+    @Test
+    void shouldDeleteEachExpiredKeyCapsuleOnceWhenCleanUpRunsConcurrently() throws Exception {
+        this.capsuleRepository.deleteAll();
+
+        int expired = 40;
+        for (int i = 0; i < expired; i++) {
+            saveExpiringCapsule(Instant.now().minusSeconds(60 + i));
+        }
+
+        // simulates clean-up job running at the same time on several server instances
+        int instances = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(instances);
+        try {
+            List<Future<Integer>> runs = new ArrayList<>();
+            for (int i = 0; i < instances; i++) {
+                runs.add(executor.submit(cleanUpJob::cleanUpExpiredCapsules));
+            }
+            int deleted = 0;
+            for (Future<Integer> run : runs) {
+                deleted += run.get(1, TimeUnit.MINUTES);
+            }
+            // runs that found all parallel batch slots taken stop early, the rest is deleted by next run
+            deleted += cleanUpJob.cleanUpExpiredCapsules();
+
+            assertEquals(expired, deleted);
+            assertEquals(0, this.capsuleRepository.count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void shouldNotPinVirtualThreadsWhenAccessingDatabase() throws Exception {
+        this.capsuleRepository.deleteAll();
+        KeyCapsuleReader jdbcReader = new JdbcKeyCapsuleReader(this.dataSource);
+        KeyCapsuleReader jpaReader = new JpaKeyCapsuleReader(this.capsuleRepository);
+
+        // more concurrent tasks than database connections, so that tasks wait for connections
+        int concurrency = 50;
+        try (var writer = new GroupCommitKeyCapsuleWriter(
+            this.dataSource, this.validator, TRANSACTION_ID_GENERATOR, 8, Duration.ofMillis(5),
+            Duration.ofSeconds(30)
+        )) {
+            List<Callable<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                byte[] recipient = ("recipient-" + i).getBytes();
+                byte[] fingerprint = KeyCapsuleDb.recipientFingerprint(recipient);
+                tasks.add(() -> {
+                    KeyCapsuleDb saved = writer.save(new KeyCapsuleDb()
+                        .setCapsuleType(KeyCapsuleDb.CapsuleType.SECP384R1)
+                        .setRecipient(recipient)
+                        .setPayload("345".getBytes())
+                        .setExpiryTime(Instant.now().plusSeconds(3600))
+                        .setExpiryTimeAdjusted(false)
+                    );
+                    UUID txId = saved.getTransactionId();
+                    assertTrue(jdbcReader.findByTransactionIdAndRecipientFingerprint(txId, fingerprint).isPresent());
+                    assertTrue(jpaReader.findByTransactionIdAndRecipientFingerprint(txId, fingerprint).isPresent());
+                    // deleted by concurrent clean-up job
+                    return saveExpiringCapsule(Instant.now().minusSeconds(60));
+                });
+            }
+            tasks.add(cleanUpJob::cleanUpExpiredCapsules);
+
+            assertEquals(List.of(), VirtualThreadPinning.findPinnedStackTraces(tasks));
+        }
+    }
+
+    private KeyCapsuleDb saveExpiringCapsule(Instant expiryTime) {
+        KeyCapsuleDb model = new KeyCapsuleDb();
+        model.setCapsuleType(KeyCapsuleDb.CapsuleType.SECP384R1);
+        model.setRecipient("123".getBytes());
+        model.setPayload("345".getBytes());
+        model.setExpiryTime(expiryTime);
+        model.setExpiryTimeAdjusted(false);
+        return this.capsuleRepository.save(model);
+    }
+
     /**
      * Saves the capsule in the database
      * @param dto the capsule dto
@@ -0,0 +1,68 @@
+package ee.cyber.cdoc2.server;
+
+import ee.cyber.cdoc2.server.model.db.TransactionId;
+import ee.cyber.cdoc2.server.model.db.TransactionIdGenerator;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionIdTest {
+
+    @Test
+    void shouldParseExistingTransactionId() {
+        String txId = "KC8f0659982eb50829662a9ee5d4ae87a0";
+
+        UUID id = TransactionId.parse(txId).orElseThrow();
+
+        assertEquals(UUID.fromString("8f065998-2eb5-0829-662a-9ee5d4ae87a0"), id);
+        assertEquals(txId, TransactionId.toApiForm(id));
+    }
+
+    @Test
+    void shouldRejectInvalidTransactionId() {
+        assertTrue(TransactionId.parse(null).isEmpty());
+        assertTrue(TransactionId.parse("KC12345678901234567890").isEmpty());
+        assertTrue(TransactionId.parse("KC8F0659982EB50829662A9EE5D4AE87A0").isEmpty());
+        assertTrue(TransactionId.parse("XX8f0659982eb50829662a9ee5d4ae87a0").isEmpty());
+        assertTrue(TransactionId.parse("KC8f0659982eb50829662a9ee5d4ae87ag").isEmpty());
+    }
+
+    @Test
+    void shouldGenerateTimeOrderedTransactionIds() throws Exception {
+        UUID first = TransactionId.generate();
+        Thread.sleep(2);
+        UUID second = TransactionId.generate();
+
+        assertEquals(7, first.version());
+        assertEquals(2, first.variant());
+        assertNotEquals(first, second);
+        // time prefix orders ids, API form is ordered the same way
+        assertTrue(TransactionId.toApiForm(first).compareTo(TransactionId.toApiForm(second)) < 0);
+        assertEquals(first, TransactionId.parse(TransactionId.toApiForm(first)).orElseThrow());
+        assertTrue(TransactionId.expiryTime(first).isEmpty());
+    }
+
+    @Test
+    void shouldEncodeExpiryTimeWithExpiryTimeLayout() throws Exception {
+        Instant expiryTime = Instant.now().plus(Duration.ofDays(365)).truncatedTo(ChronoUnit.MILLIS);
+        Instant past = Instant.now().minusSeconds(60);
+
+        TransactionIdGenerator generator = new TransactionIdGenerator(TransactionId.Layout.EXPIRY_TIME);
+        UUID id = generator.generate(expiryTime);
+        assertEquals(8, id.version());
+        assertEquals(2, id.variant());
+        assertEquals(expiryTime, TransactionId.expiryTime(id).orElseThrow());
+
+        // capsule with expiry time in the past goes to current partition
+        assertFalse(TransactionId.expiryTime(generator.generate(past)).orElseThrow().isBefore(past));
+
+        // layout is switched, when table partitioning changes
+        generator.setLayout(TransactionId.Layout.CREATION_TIME);
+        assertEquals(7, generator.generate(expiryTime).version());
+    }
+}
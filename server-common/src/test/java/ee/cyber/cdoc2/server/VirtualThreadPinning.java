@@ -0,0 +1,75 @@
+package ee.cyber.cdoc2.server;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+
+/**
+ * Detects virtual threads pinned to their carrier threads (blocking inside {@code synchronized} or native frames)
+ * with JFR {@code jdk.VirtualThreadPinned} events. Requires Java 21.
+ */
+final class VirtualThreadPinning {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private VirtualThreadPinning() {
+    }
+
+    /**
+     * Run tasks concurrently in virtual threads and record pinning
+     * @param tasks tasks to run
+     * @return stack traces of virtual threads that blocked while pinned, empty when none did
+     */
+    static List<String> findPinnedStackTraces(List<Callable<?>> tasks) throws Exception {
+        Path file = Files.createTempFile("cdoc2-pinned", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+
+            VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor("pinning-test-");
+            List<Future<?>> futures = new ArrayList<>();
+            for (Callable<?> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> PINNED_EVENT.equals(event.getEventType().getName()))
+                .map(VirtualThreadPinning::stackTrace)
+                .toList();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static String stackTrace(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "pinned for " + event.getDuration();
+        }
+        return event.getStackTrace().getFrames().stream()
+            .map(VirtualThreadPinning::frame)
+            .collect(Collectors.joining("\n\tat ", "pinned for " + event.getDuration() + "\n\tat ", ""));
+    }
+
+    private static String frame(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+            + ":" + frame.getLineNumber();
+    }
+}
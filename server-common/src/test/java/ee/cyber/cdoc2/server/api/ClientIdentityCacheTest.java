@@ -0,0 +1,188 @@
+package ee.cyber.cdoc2.server.api;
+
+import ee.cyber.cdoc2.server.model.db.KeyCapsuleDb;
+import ee.cyber.cdoc2.shared.crypto.ECKeys;
+import ee.cyber.cdoc2.shared.crypto.EllipticCurve;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class ClientIdentityCacheTest {
+
+    @Test
+    void shouldCalculateClientIdentityOncePerTlsSession() throws Exception {
+        KeyPair keyPair = ECKeys.generateEcKeyPair(EllipticCurve.SECP384R1);
+        X509Certificate cert = selfSignedCert(keyPair);
+
+        ClientIdentityCache cache = new ClientIdentityCache();
+        ClientIdentity identity = cache.get("01ab", cert);
+
+        assertTrue(identity.isSupported());
+        assertEquals(EllipticCurve.SECP384R1, identity.curve());
+        byte[] recipient = ECKeys.encodeEcPubKeyForTls(EllipticCurve.SECP384R1, (ECPublicKey) keyPair.getPublic());
+        assertArrayEquals(recipient, identity.recipient());
+        assertArrayEquals(KeyCapsuleDb.recipientFingerprint(recipient), identity.recipientFingerprint());
+        assertEquals("O=Test", identity.subjectWithoutCN());
+
+        assertSame(identity, cache.get("01ab", cert));
+        assertNotSame(identity, cache.get("02cd", cert));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void shouldNotReuseIdentityForDifferentCertificate() throws Exception {
+        X509Certificate cert = selfSignedCert(ECKeys.generateEcKeyPair(EllipticCurve.SECP256R1));
+        X509Certificate otherCert = selfSignedCert(ECKeys.generateEcKeyPair(EllipticCurve.SECP256R1));
+
+        ClientIdentityCache cache = new ClientIdentityCache();
+        ClientIdentity identity = cache.get("01ab", cert);
+        ClientIdentity other = cache.get("01ab", otherCert);
+
+        assertSame(otherCert, other.certificate());
+        assertFalse(Arrays.equals(identity.recipient(), other.recipient()));
+
+        // not cached without TLS session id
+        assertNotSame(cache.get(null, cert), cache.get(null, cert));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedIdentity() throws Exception {
+        X509Certificate cert = selfSignedCert(ECKeys.generateEcKeyPair(EllipticCurve.SECP256R1));
+
+        ClientIdentityCache cache = new ClientIdentityCache(2, Duration.ofHours(1), Clock.systemUTC());
+        ClientIdentity first = cache.get("01", cert);
+        ClientIdentity second = cache.get("02", cert);
+        // "01" is used after "02", so "02" is evicted
+        assertSame(first, cache.get("01", cert));
+        cache.get("03", cert);
+
+        assertEquals(2, cache.size());
+        assertSame(first, cache.get("01", cert));
+        assertNotSame(second, cache.get("02", cert));
+    }
+
+    @Test
+    void shouldEvictExpiredAndLeastRecentlyUsedIdentitiesWhenFull() throws Exception {
+        X509Certificate cert = selfSignedCert(ECKeys.generateEcKeyPair(EllipticCurve.SECP256R1));
+        MutableClock clock = new MutableClock(Instant.now());
+
+        ClientIdentityCache cache = new ClientIdentityCache(20, Duration.ofHours(1), clock);
+        cache.get("expired", cert);
+        clock.advance(Duration.ofMinutes(30));
+        for (int i = 0; i < 19; i++) {
+            cache.get(String.valueOf(i), cert);
+        }
+        clock.advance(Duration.ofMinutes(31));
+        ClientIdentity first = cache.get("0", cert);
+        assertEquals(20, cache.size());
+
+        // full cache is evicted to 18: expired identity and least recently used "1" and "2"
+        cache.get("new", cert);
+        assertEquals(18, cache.size());
+        assertSame(first, cache.get("0", cert));
+        assertEquals(18, cache.size());
+        cache.get("1", cert);
+        assertEquals(19, cache.size());
+    }
+
+    @Test
+    void shouldExpireIdentityAfterMaxAgeOrCertificateExpiry() throws Exception {
+        X509Certificate cert = selfSignedCert(ECKeys.generateEcKeyPair(EllipticCurve.SECP256R1));
+        MutableClock clock = new MutableClock(Instant.now());
+
+        ClientIdentityCache cache = new ClientIdentityCache(10, Duration.ofHours(1), clock);
+        ClientIdentity identity = cache.get("01ab", cert);
+        clock.advance(Duration.ofMinutes(59));
+        assertSame(identity, cache.get("01ab", cert));
+        clock.advance(Duration.ofMinutes(2));
+        assertNotSame(identity, cache.get("01ab", cert));
+
+        // certificate is valid for 1 day
+        ClientIdentityCache longMaxAge = new ClientIdentityCache(10, Duration.ofDays(7), clock);
+        identity = longMaxAge.get("01ab", cert);
+        clock.advance(Duration.ofDays(2));
+        assertNotSame(identity, longMaxAge.get("01ab", cert));
+    }
+
+    @Test
+    void shouldEvictTlsSession() throws Exception {
+        X509Certificate cert = selfSignedCert(ECKeys.generateEcKeyPair(EllipticCurve.SECP256R1));
+
+        ClientIdentityCache cache = new ClientIdentityCache();
+        ClientIdentity identity = cache.get("01ab", cert);
+        cache.evict("01ab");
+        cache.evict("02cd");
+
+        assertEquals(0, cache.size());
+        assertNotSame(identity, cache.get("01ab", cert));
+    }
+
+    private static X509Certificate selfSignedCert(KeyPair keyPair) throws Exception {
+        X500Name subject = new X500Name("CN=Test Client,O=Test");
+        Instant now = Instant.now();
+        var builder = new JcaX509v3CertificateBuilder(
+            subject,
+            BigInteger.valueOf(now.toEpochMilli()),
+            Date.from(now),
+            Date.from(now.plus(1, ChronoUnit.DAYS)),
+            subject,
+            keyPair.getPublic()
+        );
+        var signer = new JcaContentSignerBuilder("SHA256withECDSA").build(keyPair.getPrivate());
+        return new JcaX509CertificateConverter().getCertificate(builder.build(signer));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            this.instant = this.instant.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return this.instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            // only instant() is used by the cache
+            return this;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package ee.cyber.cdoc2.server.filter;
+
+import ee.cyber.cdoc2.server.config.AccessLogConfigProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class AccessLogFilterTest {
+
+    private final Logger accessLogger = (Logger) LoggerFactory.getLogger(AccessLogFilter.ACCESS_LOG_LOGGER);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private Level accessLogLevel;
+
+    @BeforeEach
+    void captureAccessLog() {
+        this.accessLogLevel = this.accessLogger.getLevel();
+        this.accessLogger.setLevel(Level.INFO);
+        this.appender.start();
+        this.accessLogger.addAppender(this.appender);
+    }
+
+    @AfterEach
+    void removeAppender() {
+        this.accessLogger.detachAppender(this.appender);
+        this.accessLogger.setLevel(this.accessLogLevel);
+    }
+
+    @Test
+    void shouldWriteRequestAsJsonLine() throws Exception {
+        var filter = new AccessLogFilter(config(1.0, 16));
+        var registry = new SimpleMeterRegistry();
+        filter.bindTo(registry);
+
+        var request = new MockHttpServletRequest("POST", "/key-capsules");
+        request.setContentType("application/json");
+        request.setContent(new byte[42]);
+        request.addHeader("Origin", "https://example.com");
+        request.addHeader("X-Forwarded-For", "203.0.113.7, 10.0.0.1");
+        request.addHeader("Sec-Fetch-Site", "cross-site");
+        request.addHeader("Sec-Fetch-Mode", "cors");
+        FilterChain created = (req, res) -> ((HttpServletResponse) res).setStatus(HttpServletResponse.SC_CREATED);
+        filter.doFilter(request, new MockHttpServletResponse(), created);
+        filter.close();
+
+        assertEquals(1, this.appender.list.size());
+        String line = this.appender.list.get(0).getFormattedMessage();
+        assertTrue(line.matches("\\{\"time\":\"[^\"]+Z\",\"method\":\"POST\",\"uri\":\"/key-capsules\","
+            + "\"status\":201,\"durationMicros\":\\d+,\"contentType\":\"application/json\","
+            + "\"origin\":\"https://example.com\",\"contentLength\":42,"
+            + "\"secFetchHeaders\":\\{\"sec-fetch-site\":\"cross-site\",\"sec-fetch-mode\":\"cors\"},"
+            + "\"clientIp\":\"203.0.113.7\"}"), line);
+        assertEquals(1.0, registry.get("cdoc2.access-log.written").functionCounter().count());
+    }
+
+    @Test
+    void shouldAlwaysLogErrorsWhenSampling() throws Exception {
+        var filter = new AccessLogFilter(config(0.0, 16));
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/key-capsules/KC1"), new MockHttpServletResponse(),
+            new MockFilterChain());
+        var notFound = new MockHttpServletResponse();
+        notFound.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        filter.doFilter(new MockHttpServletRequest("GET", "/key-capsules/KC2"), notFound, new MockFilterChain());
+        filter.close();
+
+        assertEquals(1, this.appender.list.size());
+        assertTrue(this.appender.list.get(0).getFormattedMessage().contains("\"uri\":\"/key-capsules/KC2\""));
+    }
+
+    @Test
+    void shouldDropEventsWhenBufferIsFull() {
+        var buffer = new AccessLogBuffer(3);
+        assertEquals(4, buffer.capacity());
+
+        List<AccessLogEvent> claimed = new ArrayList<>();
+        for (int i = 0; i < buffer.capacity(); i++) {
+            AccessLogEvent event = buffer.claim();
+            event.status = i;
+            claimed.add(event);
+        }
+        assertNull(buffer.claim());
+
+        // unpublished slot blocks consumer, so that events are consumed in order
+        buffer.publish(claimed.get(1));
+        assertEquals(0, buffer.drain(event -> { }, 10));
+
+        claimed.forEach(buffer::publish);
+        List<Integer> statuses = new ArrayList<>();
+        assertEquals(2, buffer.drain(event -> statuses.add(event.status), 2));
+        assertEquals(List.of(0, 1), statuses);
+
+        // consumed slots are reused
+        assertSame(claimed.get(0), buffer.claim());
+        assertSame(claimed.get(1), buffer.claim());
+        assertNull(buffer.claim());
+    }
+
+    @Test
+    void shouldNotLoseEventsOfConcurrentProducers() throws Exception {
+        int producers = 4;
+        int eventsPerProducer = 100_000;
+        var buffer = new AccessLogBuffer(64);
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                futures.add(executor.submit(() -> {
+                    int dropped = 0;
+                    for (int i = 0; i < eventsPerProducer; i++) {
+                        AccessLogEvent event = buffer.claim();
+                        if (event == null) {
+                            dropped++;
+                            continue;
+                        }
+                        event.status = producer;
+                        event.contentLength = i;
+                        buffer.publish(event);
+                    }
+                    return dropped;
+                }));
+            }
+
+            long[] lastSeen = new long[producers];
+            Arrays.fill(lastSeen, -1);
+            int consumed = 0;
+            int dropped = 0;
+            for (Future<Integer> future : futures) {
+                while (!future.isDone()) {
+                    int[] count = {0};
+                    buffer.drain(event -> {
+                        count[0]++;
+                        // events of one producer are consumed in the order they were published
+                        if (event.contentLength <= lastSeen[event.status]) {
+                            throw new AssertionError("Out of order event " + event.contentLength);
+                        }
+                        lastSeen[event.status] = event.contentLength;
+                    }, 1000);
+                    consumed += count[0];
+                }
+                dropped += future.get(1, TimeUnit.MINUTES);
+            }
+            int[] rest = {0};
+            buffer.drain(event -> rest[0]++, Integer.MAX_VALUE);
+            consumed += rest[0];
+
+            assertEquals(producers * eventsPerProducer, consumed + dropped);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldCountDroppedEvents() throws Exception {
+        var filter = new AccessLogFilter(config(1.0, 2));
+        var registry = new SimpleMeterRegistry();
+        filter.bindTo(registry);
+
+        // slow appender, writer thread is blocked while writing the first event
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AppenderBase<ILoggingEvent> slowAppender = new AppenderBase<>() {
+            @Override
+            protected void append(ILoggingEvent event) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        slowAppender.start();
+        this.accessLogger.addAppender(slowAppender);
+        try {
+            filter.doFilter(keyCapsuleRequest(0), new MockHttpServletResponse(), new MockFilterChain());
+            assertTrue(writing.await(1, TimeUnit.MINUTES));
+
+            // slot of the first event is released after it is written, one free slot left
+            for (int i = 1; i < 5; i++) {
+                filter.doFilter(keyCapsuleRequest(i), new MockHttpServletResponse(), new MockFilterChain());
+            }
+            assertEquals(3, filter.droppedCount());
+            assertEquals(3.0, registry.get("cdoc2.access-log.dropped").functionCounter().count());
+
+            release.countDown();
+            filter.close();
+        } finally {
+            release.countDown();
+            this.accessLogger.detachAppender(slowAppender);
+        }
+
+        assertEquals(2, this.appender.list.size());
+        assertTrue(this.appender.list.get(1).getFormattedMessage().contains("\"uri\":\"/key-capsules/KC1\""));
+        assertEquals(2.0, registry.get("cdoc2.access-log.written").functionCounter().count());
+    }
+
+    private static MockHttpServletRequest keyCapsuleRequest(int i) {
+        return new MockHttpServletRequest("GET", "/key-capsules/KC" + i);
+    }
+
+    private static AccessLogConfigProperties config(double sampleRate, int bufferSize) {
+        return new AccessLogConfigProperties(true, sampleRate, bufferSize, 256, Duration.ofMillis(10));
+    }
+}
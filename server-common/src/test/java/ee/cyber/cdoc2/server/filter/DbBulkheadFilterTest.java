@@ -0,0 +1,108 @@
+package ee.cyber.cdoc2.server.filter;
+
+import ee.cyber.cdoc2.server.config.DbBulkheadConfigProperties;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class DbBulkheadFilterTest {
+
+    @Test
+    void shouldRejectRequestsOverLimit() throws Exception {
+        var filter = new DbBulkheadFilter(new DbBulkheadConfigProperties(1, Duration.ZERO), new MockEnvironment());
+        var registry = new SimpleMeterRegistry();
+        filter.bindTo(registry);
+
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain blockingChain = (request, response) -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> first = executor.submit(() -> {
+                filter.doFilter(keyCapsuleRequest(), new MockHttpServletResponse(), blockingChain);
+                return null;
+            });
+            assertTrue(entered.await(1, TimeUnit.MINUTES));
+            assertEquals(1.0, registry.get("cdoc2.db.bulkhead.active").gauge().value());
+
+            var rejected = new MockHttpServletResponse();
+            filter.doFilter(keyCapsuleRequest(), rejected, new MockFilterChain());
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), rejected.getStatus());
+            assertEquals(DbBulkheadFilter.RETRY_AFTER_SECONDS, rejected.getHeader(HttpHeaders.RETRY_AFTER));
+            assertEquals(1.0, registry.get("cdoc2.db.bulkhead.rejected").functionCounter().count());
+
+            // other requests are not limited
+            var other = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), other, new MockFilterChain());
+            assertEquals(HttpStatus.OK.value(), other.getStatus());
+
+            release.countDown();
+            first.get(1, TimeUnit.MINUTES);
+            var accepted = new MockHttpServletResponse();
+            filter.doFilter(keyCapsuleRequest(), accepted, new MockFilterChain());
+            assertEquals(HttpStatus.OK.value(), accepted.getStatus());
+            assertEquals(0.0, registry.get("cdoc2.db.bulkhead.active").gauge().value());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void shouldLimitOnlyVirtualThreadsByDefault() {
+        var defaults = new DbBulkheadConfigProperties(-1, Duration.ZERO);
+        assertEquals(0, new DbBulkheadFilter(defaults, new MockEnvironment()).getMaxConcurrent());
+
+        var virtualThreads = new MockEnvironment()
+            .withProperty("spring.threads.virtual.enabled", "true")
+            .withProperty("spring.datasource.hikari.maximum-pool-size", "15");
+        assertEquals(30, new DbBulkheadFilter(defaults, virtualThreads).getMaxConcurrent());
+
+        var configured = new DbBulkheadConfigProperties(5, Duration.ZERO);
+        assertEquals(5, new DbBulkheadFilter(configured, virtualThreads).getMaxConcurrent());
+    }
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void shouldNotLimitWhenVirtualThreadsAreNotSupported() {
+        var virtualThreads = new MockEnvironment()
+            .withProperty("spring.threads.virtual.enabled", "true");
+        var defaults = new DbBulkheadConfigProperties(-1, Duration.ZERO);
+        assertEquals(0, new DbBulkheadFilter(defaults, virtualThreads).getMaxConcurrent());
+
+        var configured = new DbBulkheadConfigProperties(5, Duration.ZERO);
+        assertEquals(5, new DbBulkheadFilter(configured, virtualThreads).getMaxConcurrent());
+    }
+
+    private static MockHttpServletRequest keyCapsuleRequest() {
+        return new MockHttpServletRequest("GET", "/key-capsules/KC0123");
+    }
+}
@@ -0,0 +1,277 @@
+package ee.cyber.cdoc2.server.model.db;
+
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.sql.DataSource;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+
+/**
+ * {@link KeyCapsuleWriter} that commits concurrent inserts together. Capsules are queued and a single writer thread
+ * inserts them as one JDBC batch in one transaction. Batch is written, when {@code maxBatchSize} capsules are
+ * queued or {@code maxWait} has passed from the first queued capsule. While a batch is committed, next capsules
+ * are queued for the next batch, so under load batches grow without waiting.
+ * <p>
+ * {@link #save(KeyCapsuleDb)} returns only after the batch with the capsule has been committed, or fails when
+ * the batch isn't committed within {@code commitTimeout}. When batch insert fails, capsules of the batch are
+ * inserted one by one, so that a failing capsule doesn't fail others. Writer thread is restarted, when it has died.
+ * <p>
+ * {@link #saveAll(List)} doesn't wait for other capsules, capsules are inserted in the calling thread as one batch.
+ * <p>
+ * Capsules are inserted with plain JDBC, transaction id, recipient fingerprint and creation time are filled
+ * here instead of JPA callbacks. Then Bean Validation constraints of {@link KeyCapsuleDb} are checked before
+ * capsules are queued, {@link ConstraintViolationException} is thrown same as for JPA insert.
+ */
+@Slf4j
+public class GroupCommitKeyCapsuleWriter implements KeyCapsuleWriter, AutoCloseable {
+
+    static final String INSERT = "INSERT INTO cdoc2_capsule (transaction_id, recipient, recipient_fingerprint,"
+        + " payload, capsule_type, expiry_time, expiry_time_adjusted, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Duration commitTimeout;
+    private final BlockingQueue<PendingInsert> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock restartLock = new ReentrantLock();
+    private volatile Thread writerThread;
+    private volatile boolean closed;
+
+    public GroupCommitKeyCapsuleWriter(
+        DataSource dataSource,
+        Validator validator,
+        TransactionIdGenerator transactionIdGenerator,
+        int maxBatchSize,
+        Duration maxWait,
+        Duration commitTimeout
+    ) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        if (commitTimeout.isNegative() || commitTimeout.isZero()) {
+            throw new IllegalArgumentException("commitTimeout must be positive");
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.validator = validator;
+        this.transactionIdGenerator = transactionIdGenerator;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.commitTimeout = commitTimeout;
+        this.writerThread = startWriterThread();
+    }
+
+    @Override
+    public KeyCapsuleDb save(KeyCapsuleDb capsule) {
+        if (this.closed) {
+            throw new IllegalStateException("Key capsule writer is closed");
+        }
+        prepare(capsule);
+        validate(capsule);
+        ensureWriterRunning();
+
+        PendingInsert insert = new PendingInsert(capsule, new CompletableFuture<>());
+        this.queue.add(insert);
+        if (this.closed) {
+            // closed after the check above, writer thread may be gone already
+            failPending(List.of(insert));
+        }
+        try {
+            insert.committed.get(this.commitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            return capsule;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for key capsule insert", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            // when still queued, capsule is never inserted. Otherwise it's being inserted and may still be committed
+            boolean dequeued = this.queue.remove(insert);
+            log.warn("Key capsule insert not committed within {} (dequeued: {}, writer alive: {})",
+                this.commitTimeout, dequeued, this.writerThread.isAlive());
+            throw new DataAccessResourceFailureException(
+                "Key capsule insert not committed within " + this.commitTimeout, e);
+        }
+    }
+
+    @Override
+    public List<KeyCapsuleDb> saveAll(List<KeyCapsuleDb> capsules) {
+        capsules.forEach(this::prepare);
+        capsules.forEach(this::validate);
+        this.transactionTemplate.executeWithoutResult(status ->
+            this.jdbcTemplate.batchUpdate(INSERT, capsules, capsules.size(), GroupCommitKeyCapsuleWriter::setValues)
+        );
+        return capsules;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        this.closed = true;
+        this.writerThread.interrupt();
+        this.writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        List<PendingInsert> pending = new ArrayList<>();
+        this.queue.drainTo(pending);
+        failPending(pending);
+    }
+
+    private Thread startWriterThread() {
+        Thread thread = new Thread(this::run, "key-capsule-group-commit");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void ensureWriterRunning() {
+        // checked on every save without locking, lock is taken only to restart dead writer thread
+        if (this.closed || this.writerThread.isAlive()) {
+            return;
+        }
+        this.restartLock.lock();
+        try {
+            if (!this.closed && !this.writerThread.isAlive()) {
+                log.error("Key capsule group commit writer thread has died, restarting");
+                this.writerThread = startWriterThread();
+            }
+        } finally {
+            this.restartLock.unlock();
+        }
+    }
+
+    private void run() {
+        List<PendingInsert> batch = new ArrayList<>(this.maxBatchSize);
+        while (!this.closed) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                failPending(batch);
+                break;
+            }
+            try {
+                write(batch);
+            } catch (Error e) {
+                // don't leave callers waiting for a batch that was never written
+                batch.forEach(insert -> insert.committed.completeExceptionally(e));
+                throw e;
+            } finally {
+                batch.clear();
+            }
+        }
+        log.debug("Key capsule group commit writer stopped");
+    }
+
+    private void collectBatch(List<PendingInsert> batch) throws InterruptedException {
+        batch.add(this.queue.take());
+        this.queue.drainTo(batch, this.maxBatchSize - batch.size());
+
+        long deadline = System.nanoTime() + this.maxWaitNanos;
+        while (batch.size() < this.maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            PendingInsert next = (remaining > 0) ? this.queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            this.queue.drainTo(batch, this.maxBatchSize - batch.size());
+        }
+    }
+
+    private void write(List<PendingInsert> batch) {
+        long start = System.nanoTime();
+        try {
+            this.transactionTemplate.executeWithoutResult(status ->
+                this.jdbcTemplate.batchUpdate(INSERT, batch, batch.size(),
+                    (stmt, insert) -> setValues(stmt, insert.capsule))
+            );
+            batch.forEach(insert -> insert.committed.complete(null));
+            log.trace("Inserted {} key capsules in {} µs", batch.size(),
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        } catch (RuntimeException batchFailure) {
+            if (batch.size() == 1) {
+                batch.get(0).committed.completeExceptionally(batchFailure);
+                return;
+            }
+            log.warn("Batch insert of {} key capsules failed, inserting one by one: {}",
+                batch.size(), batchFailure.toString());
+            for (PendingInsert insert : batch) {
+                try {
+                    this.jdbcTemplate.update(INSERT, stmt -> setValues(stmt, insert.capsule));
+                    insert.committed.complete(null);
+                } catch (RuntimeException e) {
+                    insert.committed.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private void validate(KeyCapsuleDb capsule) {
+        Set<ConstraintViolation<KeyCapsuleDb>> violations = this.validator.validate(capsule);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+    }
+
+    private void prepare(KeyCapsuleDb capsule) {
+        try {
+            capsule.setTransactionId(this.transactionIdGenerator.generate(capsule.getExpiryTime()));
+            capsule.prePersist();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        capsule.setCreatedAt(Instant.now());
+    }
+
+    private static void setValues(PreparedStatement stmt, KeyCapsuleDb capsule) throws SQLException {
+        stmt.setObject(1, capsule.getTransactionId());
+        stmt.setBytes(2, capsule.getRecipient());
+        stmt.setBytes(3, capsule.getRecipientFingerprint());
+        stmt.setBytes(4, capsule.getPayload());
+        stmt.setString(5, capsule.getCapsuleType().name());
+        // expiry_time is timestamp without time zone, Hibernate stores Instant there as UTC date-time
+        Instant expiryTime = capsule.getExpiryTime();
+        stmt.setObject(6, (expiryTime != null) ? LocalDateTime.ofInstant(expiryTime, ZoneOffset.UTC) : null,
+            Types.TIMESTAMP);
+        stmt.setObject(7, capsule.getExpiryTimeAdjusted(), Types.BOOLEAN);
+        stmt.setObject(8, capsule.getCreatedAt().atOffset(ZoneOffset.UTC), Types.TIMESTAMP_WITH_TIMEZONE);
+    }
+
+    private static void failPending(Iterable<PendingInsert> pending) {
+        for (PendingInsert insert : pending) {
+            insert.committed.completeExceptionally(
+                new DataAccessResourceFailureException("Key capsule writer closed before insert")
+            );
+        }
+    }
+
+    private record PendingInsert(KeyCapsuleDb capsule, CompletableFuture<Void> committed) {
+    }
+}
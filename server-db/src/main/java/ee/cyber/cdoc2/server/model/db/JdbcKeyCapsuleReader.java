@@ -0,0 +1,144 @@
+package ee.cyber.cdoc2.server.model.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+
+/**
+ * {@link KeyCapsuleReader} that maps capsule row directly to {@link KeyCapsuleRecord} with a prepared statement,
+ * without JPA session, persistence context and entity listeners. Only the columns of {@link KeyCapsuleRecord} are
+ * selected. Query runs in a read-only transaction of its own {@link DataSourceTransactionManager}, so that
+ * application JPA transaction manager is not involved.
+ * <p>
+ * Reader created with {@link #excludingExpired(DataSource)} doesn't return capsules which expiry time has passed.
+ */
+public class JdbcKeyCapsuleReader implements KeyCapsuleReader {
+
+    // same conditions as KeyCapsuleRepository.findByTransactionIdAndRecipientFingerprint. Capsule is either in
+    // the partition of its transaction id or in the legacy partition (see 014-cdoc2_capsule_partition_key_func.sql)
+    static final String SELECT_BY_TRANSACTION_ID_AND_RECIPIENT_FINGERPRINT =
+        "SELECT recipient, payload, capsule_type, expiry_time, expiry_time_adjusted FROM cdoc2_capsule"
+            + " WHERE transaction_id = ?"
+            + " AND recipient_fingerprint = ?"
+            + " AND cdoc2_capsule_partition_key(transaction_id, created_at)"
+            + " IN (cdoc2_capsule_partition_key(?), '-infinity')";
+
+    // expiry_time is timestamp without time zone, compared to current UTC date-time parameter
+    static final String NOT_EXPIRED = " AND (expiry_time IS NULL OR expiry_time > ?)";
+
+    // Transaction ids are joined one by one (LIMIT prevents flattening the subquery into a hash join), so that
+    // for partitioned table each id is looked up only from its partition. Plain "transaction_id = ANY(?)" would
+    // look up every id from every partition, as PostgreSQL doesn't prune partitions by array parameter
+    static final String SELECT_BY_TRANSACTION_IDS_AND_RECIPIENT_FINGERPRINT =
+        "SELECT c.transaction_id, c.recipient, c.payload, c.capsule_type, c.expiry_time, c.expiry_time_adjusted"
+            + " FROM unnest(?) AS ids(id) CROSS JOIN LATERAL ("
+            + "SELECT transaction_id, recipient, payload, capsule_type, expiry_time, expiry_time_adjusted"
+            + " FROM cdoc2_capsule"
+            + " WHERE transaction_id = ids.id"
+            + " AND recipient_fingerprint = ?"
+            + " AND cdoc2_capsule_partition_key(transaction_id, created_at)"
+            + " IN (cdoc2_capsule_partition_key(ids.id), '-infinity')"
+            + "%s LIMIT 1) c";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean excludeExpired;
+    private final String selectByTransactionId;
+    private final String selectByTransactionIds;
+
+    public JdbcKeyCapsuleReader(DataSource dataSource) {
+        this(dataSource, false);
+    }
+
+    private JdbcKeyCapsuleReader(DataSource dataSource, boolean excludeExpired) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.readOnlyTransaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.readOnlyTransaction.setReadOnly(true);
+        this.excludeExpired = excludeExpired;
+        String notExpired = excludeExpired ? NOT_EXPIRED : "";
+        this.selectByTransactionId = SELECT_BY_TRANSACTION_ID_AND_RECIPIENT_FINGERPRINT + notExpired;
+        this.selectByTransactionIds = SELECT_BY_TRANSACTION_IDS_AND_RECIPIENT_FINGERPRINT.formatted(notExpired);
+    }
+
+    /**
+     * Create reader that doesn't return expired capsules, for reading from replica. Expired capsules are
+     * deleted on primary by clean-up job and replica may still have them, or clean-up job may not have run yet
+     * @param dataSource data source
+     * @return reader that returns only capsules that haven't expired
+     */
+    public static JdbcKeyCapsuleReader excludingExpired(DataSource dataSource) {
+        return new JdbcKeyCapsuleReader(dataSource, true);
+    }
+
+    @Override
+    public Optional<KeyCapsuleRecord> findByTransactionIdAndRecipientFingerprint(
+        UUID transactionId,
+        byte[] recipientFingerprint
+    ) {
+        return this.readOnlyTransaction.execute(status -> this.jdbcTemplate.query(
+            this.selectByTransactionId,
+            stmt -> {
+                stmt.setObject(1, transactionId);
+                stmt.setBytes(2, recipientFingerprint);
+                stmt.setObject(3, transactionId);
+                if (this.excludeExpired) {
+                    stmt.setObject(4, LocalDateTime.now(ZoneOffset.UTC));
+                }
+            },
+            (ResultSet rs) -> rs.next() ? Optional.of(toRecord(rs, 1)) : Optional.<KeyCapsuleRecord>empty()
+        ));
+    }
+
+    @Override
+    public Map<UUID, KeyCapsuleRecord> findAllByTransactionIdsAndRecipientFingerprint(
+        Collection<UUID> transactionIds,
+        byte[] recipientFingerprint
+    ) {
+        Map<UUID, KeyCapsuleRecord> capsules = new LinkedHashMap<>();
+        if (transactionIds.isEmpty()) {
+            return capsules;
+        }
+        this.readOnlyTransaction.executeWithoutResult(status -> this.jdbcTemplate.query(
+            this.selectByTransactionIds,
+            stmt -> {
+                stmt.setArray(1, stmt.getConnection().createArrayOf("uuid", transactionIds.toArray()));
+                stmt.setBytes(2, recipientFingerprint);
+                if (this.excludeExpired) {
+                    stmt.setObject(3, LocalDateTime.now(ZoneOffset.UTC));
+                }
+            },
+            (ResultSet rs) -> {
+                capsules.put(rs.getObject(1, UUID.class), toRecord(rs, 2));
+            }
+        ));
+        return capsules;
+    }
+
+    /**
+     * Map {@link KeyCapsuleRecord} columns starting from {@code column}
+     */
+    private static KeyCapsuleRecord toRecord(ResultSet rs, int column) throws SQLException {
+        // read expiry_time the same way as Hibernate reads Instant, so that both read paths return the same value
+        OffsetDateTime expiryTime = rs.getObject(column + 3, OffsetDateTime.class);
+        return new KeyCapsuleRecord(
+            rs.getBytes(column),
+            rs.getBytes(column + 1),
+            KeyCapsuleDb.CapsuleType.valueOf(rs.getString(column + 2)),
+            (expiryTime != null) ? expiryTime.toInstant() : null,
+            rs.getBoolean(column + 4)
+        );
+    }
+}
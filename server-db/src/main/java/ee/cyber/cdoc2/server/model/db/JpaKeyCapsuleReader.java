@@ -0,0 +1,41 @@
+package ee.cyber.cdoc2.server.model.db;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+
+
+/**
+ * {@link KeyCapsuleReader} that loads capsule as JPA entity through {@link KeyCapsuleRepository}
+ */
+@RequiredArgsConstructor
+public class JpaKeyCapsuleReader implements KeyCapsuleReader {
+
+    private final KeyCapsuleRepository capsuleRepository;
+
+    @Override
+    public Optional<KeyCapsuleRecord> findByTransactionIdAndRecipientFingerprint(
+        UUID transactionId,
+        byte[] recipientFingerprint
+    ) {
+        return this.capsuleRepository.findByTransactionIdAndRecipientFingerprint(transactionId, recipientFingerprint)
+            .map(KeyCapsuleRecord::of);
+    }
+
+    @Override
+    public Map<UUID, KeyCapsuleRecord> findAllByTransactionIdsAndRecipientFingerprint(
+        Collection<UUID> transactionIds,
+        byte[] recipientFingerprint
+    ) {
+        Map<UUID, KeyCapsuleRecord> capsules = new LinkedHashMap<>();
+        if (transactionIds.isEmpty()) {
+            return capsules;
+        }
+        this.capsuleRepository.findAllByTransactionIdInAndRecipientFingerprint(transactionIds, recipientFingerprint)
+            .forEach(capsule -> capsules.put(capsule.getTransactionId(), KeyCapsuleRecord.of(capsule)));
+        return capsules;
+    }
+}
@@ -0,0 +1,37 @@
+package ee.cyber.cdoc2.server.model.db;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import lombok.RequiredArgsConstructor;
+
+
+/**
+ * {@link KeyCapsuleWriter} that saves capsule (or list of capsules) in its own transaction through
+ * {@link KeyCapsuleRepository}
+ */
+@RequiredArgsConstructor
+public class JpaKeyCapsuleWriter implements KeyCapsuleWriter {
+
+    private final KeyCapsuleRepository capsuleRepository;
+    private final TransactionIdGenerator transactionIdGenerator;
+
+    @Override
+    public KeyCapsuleDb save(KeyCapsuleDb capsule) {
+        return this.capsuleRepository.save(assignTransactionId(capsule));
+    }
+
+    @Override
+    public List<KeyCapsuleDb> saveAll(List<KeyCapsuleDb> capsules) {
+        capsules.forEach(this::assignTransactionId);
+        return this.capsuleRepository.saveAll(capsules);
+    }
+
+    private KeyCapsuleDb assignTransactionId(KeyCapsuleDb capsule) {
+        try {
+            return capsule.setTransactionId(this.transactionIdGenerator.generate(capsule.getExpiryTime()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
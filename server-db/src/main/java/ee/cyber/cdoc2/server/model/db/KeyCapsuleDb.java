@@ -1,25 +1,34 @@
 package ee.cyber.cdoc2.server.model.db;
 
-import ee.cyber.cdoc2.shared.crypto.Crypto;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
-import java.util.HexFormat;
+import java.util.UUID;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.domain.Persistable;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 
@@ -32,7 +41,7 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 @Slf4j
 @EntityListeners(AuditingEntityListener.class)
 @Accessors(chain = true)
-public class KeyCapsuleDb {
+public class KeyCapsuleDb implements Persistable<UUID> {
 
     // key capsule type
     public enum CapsuleType {
@@ -42,17 +51,61 @@ public class KeyCapsuleDb {
         RSA
     }
 
+    public static final int RECIPIENT_FINGERPRINT_LENGTH = 32;
+
+    /**
+     * Calculate recipient fingerprint that is stored together with capsule and used for looking up
+     * capsule by transaction id and recipient without loading capsule payload.
+     * @param recipient recipient public key, encoded as in {@link #recipient}
+     * @return SHA-256 digest of recipient
+     */
+    public static byte[] recipientFingerprint(byte[] recipient) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256").digest(recipient);
+    }
+
+    // also called by GroupCommitKeyCapsuleWriter, that inserts capsules without JPA
     @PrePersist
-    private void generateTransactionId() throws NoSuchAlgorithmException {
-        byte[] sRnd = new byte[16];
-        Crypto.getSecureRandom().nextBytes(sRnd);
-        this.transactionId = String.format("KC%s", HexFormat.of().formatHex(sRnd));
+    void prePersist() throws NoSuchAlgorithmException {
+        if (this.transactionId == null) {
+            // KeyCapsuleWriter assigns transaction id with TransactionIdGenerator
+            this.transactionId = TransactionId.generate();
+        }
+        if (this.recipient != null) {
+            this.recipientFingerprint = recipientFingerprint(this.recipient);
+        }
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        this.persisted = true;
+    }
+
+    @Override
+    public UUID getId() {
+        return this.transactionId;
+    }
+
+    /**
+     * Transaction id is assigned before insert, so new entity can't be told apart by {@code null} id
+     */
+    @Override
+    public boolean isNew() {
+        return !this.persisted;
     }
 
+    /**
+     * Transaction id, see {@link TransactionId} for API form
+     */
     @Id
-    @Column(length = 34)
-    @Size(max = 34)
-    private String transactionId;
+    private UUID transactionId;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean persisted;
 
     /**
      * Depending on capsuleType:
@@ -65,6 +118,15 @@ public class KeyCapsuleDb {
     @JdbcTypeCode(SqlTypes.BINARY)
     private byte[] recipient;
 
+    /**
+     * SHA-256 digest of recipient, filled on insert. Capsules created before fingerprint was introduced
+     * are backfilled by DB migration.
+     */
+    @Column(nullable = false, length = RECIPIENT_FINGERPRINT_LENGTH)
+    @Size(max = RECIPIENT_FINGERPRINT_LENGTH)
+    @JdbcTypeCode(SqlTypes.BINARY)
+    private byte[] recipientFingerprint;
+
     @NotNull
     @Column(nullable = false)
     @Size(max = 3000)
@@ -0,0 +1,47 @@
+package ee.cyber.cdoc2.server.model.db;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+
+/**
+ * Read path for returning key capsule to recipient
+ */
+public interface KeyCapsuleReader {
+
+    /**
+     * Find capsule by transaction id and recipient fingerprint, see
+     * {@link KeyCapsuleRepository#findByTransactionIdAndRecipientFingerprint(UUID, byte[])}. Caller must verify
+     * recipient of the returned capsule.
+     * @param transactionId capsule transaction id
+     * @param recipientFingerprint {@link KeyCapsuleDb#recipientFingerprint(byte[])} of recipient
+     * @return capsule or empty, if capsule doesn't exist or recipient doesn't match
+     */
+    Optional<KeyCapsuleRecord> findByTransactionIdAndRecipientFingerprint(
+        UUID transactionId,
+        byte[] recipientFingerprint
+    );
+
+    /**
+     * Find capsules by transaction ids and recipient fingerprint. Same as
+     * {@link #findByTransactionIdAndRecipientFingerprint(UUID, byte[])} for each transaction id, implementations
+     * should find all capsules with one query. Caller must verify recipients of the returned capsules.
+     * @param transactionIds capsule transaction ids
+     * @param recipientFingerprint {@link KeyCapsuleDb#recipientFingerprint(byte[])} of recipient
+     * @return found capsules by transaction id, capsules that don't exist or with other recipient are missing
+     */
+    default Map<UUID, KeyCapsuleRecord> findAllByTransactionIdsAndRecipientFingerprint(
+        Collection<UUID> transactionIds,
+        byte[] recipientFingerprint
+    ) {
+        Map<UUID, KeyCapsuleRecord> capsules = new LinkedHashMap<>();
+        for (UUID transactionId : transactionIds) {
+            findByTransactionIdAndRecipientFingerprint(transactionId, recipientFingerprint)
+                .ifPresent(capsule -> capsules.put(transactionId, capsule));
+        }
+        return capsules;
+    }
+}
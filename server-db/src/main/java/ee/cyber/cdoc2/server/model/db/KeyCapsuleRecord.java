@@ -0,0 +1,31 @@
+package ee.cyber.cdoc2.server.model.db;
+
+import java.time.Instant;
+
+
+/**
+ * Read-only view of {@link KeyCapsuleDb} with columns needed for returning capsule to recipient.
+ * @param recipient recipient public key, see {@link KeyCapsuleDb#getRecipient()}
+ * @param payload capsule payload
+ * @param capsuleType capsule type
+ * @param expiryTime capsule expiry time
+ * @param expiryTimeAdjusted true if requested expiry time was adjusted by server
+ */
+public record KeyCapsuleRecord(
+    byte[] recipient,
+    byte[] payload,
+    KeyCapsuleDb.CapsuleType capsuleType,
+    Instant expiryTime,
+    boolean expiryTimeAdjusted
+) {
+
+    static KeyCapsuleRecord of(KeyCapsuleDb capsule) {
+        return new KeyCapsuleRecord(
+            capsule.getRecipient(),
+            capsule.getPayload(),
+            capsule.getCapsuleType(),
+            capsule.getExpiryTime(),
+            Boolean.TRUE.equals(capsule.getExpiryTimeAdjusted())
+        );
+    }
+}
@@ -1,11 +1,56 @@
 package ee.cyber.cdoc2.server.model.db;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface KeyCapsuleRepository extends JpaRepository<KeyCapsuleDb, String> {
+public interface KeyCapsuleRepository extends JpaRepository<KeyCapsuleDb, UUID> {
 
     Optional<KeyCapsuleDb> findByRecipient(byte[] recipient);
 
+    /**
+     * Find capsule by transaction id and recipient fingerprint. Capsule is not returned (and its payload is not
+     * loaded) when recipient doesn't match. Caller must verify recipient of the returned capsule.
+     * <p>
+     * Condition on {@code cdoc2_capsule_partition_key} lets PostgreSQL read only the partition of the capsule and
+     * the legacy partition, when {@code cdoc2_capsule} table is partitioned (see
+     * {@link TransactionId.Layout#EXPIRY_TIME}). For not partitioned table it is always true for the row found by
+     * transaction id. Native query, as JPQL can't compare function result to {@code '-infinity'} timestamp.
+     * @param transactionId capsule transaction id
+     * @param recipientFingerprint {@link KeyCapsuleDb#recipientFingerprint(byte[])} of recipient
+     * @return capsule or empty, if capsule doesn't exist or recipient doesn't match
+     */
+    @Query(value = "SELECT * FROM cdoc2_capsule WHERE transaction_id = :transactionId"
+        + " AND recipient_fingerprint = :recipientFingerprint"
+        + " AND cdoc2_capsule_partition_key(transaction_id, created_at)"
+        + " IN (cdoc2_capsule_partition_key(:transactionId), '-infinity')", nativeQuery = true)
+    Optional<KeyCapsuleDb> findByTransactionIdAndRecipientFingerprint(
+        @Param("transactionId") UUID transactionId,
+        @Param("recipientFingerprint") byte[] recipientFingerprint
+    );
+
+    /**
+     * Find capsules by transaction ids and recipient fingerprint, see
+     * {@link #findByTransactionIdAndRecipientFingerprint(UUID, byte[])}. Transaction ids are joined one by one
+     * (same query as {@code JdbcKeyCapsuleReader}), so that for partitioned table each id is looked up only from
+     * its partition and the legacy partition.
+     * @param transactionIds capsule transaction ids, not empty
+     * @param recipientFingerprint {@link KeyCapsuleDb#recipientFingerprint(byte[])} of recipient
+     * @return capsules that exist and whose recipient fingerprint matches
+     */
+    @Query(value = "SELECT c.* FROM unnest(ARRAY[:transactionIds]) AS ids(id) CROSS JOIN LATERAL ("
+        + "SELECT * FROM cdoc2_capsule WHERE transaction_id = ids.id"
+        + " AND recipient_fingerprint = :recipientFingerprint"
+        + " AND cdoc2_capsule_partition_key(transaction_id, created_at)"
+        + " IN (cdoc2_capsule_partition_key(ids.id), '-infinity') LIMIT 1) c", nativeQuery = true)
+    List<KeyCapsuleDb> findAllByTransactionIdInAndRecipientFingerprint(
+        @Param("transactionIds") Collection<UUID> transactionIds,
+        @Param("recipientFingerprint") byte[] recipientFingerprint
+    );
+
 }
@@ -0,0 +1,23 @@
+package ee.cyber.cdoc2.server.model.db;
+
+import java.util.List;
+
+/**
+ * Write path for creating key capsules
+ */
+public interface KeyCapsuleWriter {
+
+    /**
+     * Insert new key capsule. Transaction id and recipient fingerprint are generated.
+     * @param capsule capsule to insert
+     * @return inserted capsule, returned after the insert is committed
+     */
+    KeyCapsuleDb save(KeyCapsuleDb capsule);
+
+    /**
+     * Insert new key capsules in one transaction, either all capsules are inserted or none.
+     * @param capsules capsules to insert
+     * @return inserted capsules in the same order, returned after the insert is committed
+     */
+    List<KeyCapsuleDb> saveAll(List<KeyCapsuleDb> capsules);
+}
@@ -0,0 +1,119 @@
+package ee.cyber.cdoc2.server.model.db;
+
+import ee.cyber.cdoc2.shared.crypto.Crypto;
+
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+
+
+/**
+ * Key capsule transaction id. Transaction id is stored in DB as 16 byte {@link UUID} and converted to API form
+ * {@code "KC" + 32 lowercase hex chars} (example: KC9b7036de0c9fce889850c4bbb1e23482) only at the API edge.
+ * <p>
+ * New transaction ids are time-ordered (UUID version 7 layout: 48-bit Unix epoch milliseconds followed by
+ * 74 random bits), so that inserts go to the right edge of the primary key index instead of random index pages.
+ * Transaction ids generated before (128 random bits) are valid UUIDs as well.
+ * <p>
+ * With {@link Layout#EXPIRY_TIME} layout (used with partitioned {@code cdoc2_capsule} table) the 48-bit time
+ * prefix is capsule expiry time instead of creation time and UUID version is 8. Partition of the capsule is
+ * derived from transaction id by DB function {@code cdoc2_capsule_partition_key(uuid)}, so that lookup by
+ * transaction id reads single partition.
+ */
+public final class TransactionId {
+
+    /**
+     * Time prefix of generated transaction ids
+     */
+    public enum Layout {
+        /** UUID version 7, creation time */
+        CREATION_TIME,
+        /** UUID version 8, capsule expiry time */
+        EXPIRY_TIME
+    }
+
+    public static final String PREFIX = "KC";
+    public static final int LENGTH = PREFIX.length() + 32;
+
+    private static final int RANDOM_BYTES = 10;
+
+    private TransactionId() {
+    }
+
+    /**
+     * Generate new time-ordered transaction id
+     */
+    public static UUID generate() throws NoSuchAlgorithmException {
+        return generate(System.currentTimeMillis(), 7);
+    }
+
+    /**
+     * Generate new transaction id for capsule. Expiry time in the past is encoded as current time, so that capsule
+     * goes to existing partition.
+     * @param expiryTime capsule expiry time
+     * @param layout layout of transaction id, see {@link TransactionIdGenerator}
+     */
+    public static UUID generate(Instant expiryTime, Layout layout) throws NoSuchAlgorithmException {
+        if (layout != Layout.EXPIRY_TIME || expiryTime == null) {
+            return generate();
+        }
+        return generate(Math.max(expiryTime.toEpochMilli(), System.currentTimeMillis()), 8);
+    }
+
+    private static UUID generate(long millis, int version) throws NoSuchAlgorithmException {
+        byte[] rnd = new byte[RANDOM_BYTES];
+        Crypto.getSecureRandomPool().nextBytes(rnd);
+        ByteBuffer buf = ByteBuffer.wrap(rnd);
+
+        long randA = buf.getShort() & 0x0FFFL;
+        long randB = buf.getLong();
+
+        long msb = (millis << 16) | ((long) version << 12) | randA;
+        long lsb = (randB & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L; // IETF variant
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * @param id transaction id
+     * @return expiry time encoded in {@link Layout#EXPIRY_TIME} transaction id (millisecond precision) or empty
+     *         for other transaction ids
+     */
+    public static Optional<Instant> expiryTime(UUID id) {
+        return (id.version() == 8) ? Optional.of(Instant.ofEpochMilli(id.getMostSignificantBits() >>> 16))
+            : Optional.empty();
+    }
+
+    /**
+     * Convert transaction id to API form
+     * @param id transaction id
+     * @return transaction id in API form, example: KC9b7036de0c9fce889850c4bbb1e23482
+     */
+    public static String toApiForm(UUID id) {
+        HexFormat hex = HexFormat.of();
+        return PREFIX + hex.toHexDigits(id.getMostSignificantBits()) + hex.toHexDigits(id.getLeastSignificantBits());
+    }
+
+    /**
+     * Parse transaction id from API form
+     * @param apiForm transaction id in API form, example: KC9b7036de0c9fce889850c4bbb1e23482
+     * @return transaction id or empty, if {@code apiForm} is not a valid transaction id
+     */
+    public static Optional<UUID> parse(String apiForm) {
+        if (apiForm == null || apiForm.length() != LENGTH || !apiForm.startsWith(PREFIX)) {
+            return Optional.empty();
+        }
+        // transaction ids were compared as strings before, only lowercase hex is valid
+        for (int i = PREFIX.length(); i < LENGTH; i++) {
+            char c = apiForm.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return Optional.empty();
+            }
+        }
+        long msb = HexFormat.fromHexDigitsToLong(apiForm, PREFIX.length(), PREFIX.length() + 16);
+        long lsb = HexFormat.fromHexDigitsToLong(apiForm, PREFIX.length() + 16, LENGTH);
+        return Optional.of(new UUID(msb, lsb));
+    }
+}
@@ -0,0 +1,46 @@
+package ee.cyber.cdoc2.server.model.db;
+
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.UUID;
+
+import jakarta.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Generates transaction ids for new key capsules, see {@link TransactionId}. Layout is
+ * {@link TransactionId.Layout#EXPIRY_TIME} while {@code cdoc2_capsule} table is partitioned and is updated, when
+ * the table is partitioned (or un-partitioned) while server is running.
+ */
+@Slf4j
+public class TransactionIdGenerator {
+
+    private volatile TransactionId.Layout layout;
+
+    public TransactionIdGenerator(TransactionId.Layout layout) {
+        this.layout = layout;
+    }
+
+    public TransactionId.Layout getLayout() {
+        return this.layout;
+    }
+
+    /**
+     * Set layout of generated transaction ids
+     */
+    public void setLayout(TransactionId.Layout layout) {
+        if (this.layout != layout) {
+            log.info("Switching transaction id layout from {} to {}", this.layout, layout);
+            this.layout = layout;
+        }
+    }
+
+    /**
+     * Generate new transaction id for capsule
+     * @param expiryTime capsule expiry time, used with {@link TransactionId.Layout#EXPIRY_TIME} layout
+     */
+    public UUID generate(@Nullable Instant expiryTime) throws NoSuchAlgorithmException {
+        return TransactionId.generate(expiryTime, this.layout);
+    }
+}
@@ -0,0 +1,20 @@
+-- liquibase formatted sql
+-- changeset cdoc2_capsule_add_column_recipient_fingerprint:7 splitStatements:false
+-- nullable column without default, doesn't rewrite the table
+ALTER TABLE cdoc2_capsule
+ADD recipient_fingerprint bytea;
+
+-- Fills recipient_fingerprint for rows inserted by servers of the previous version during the backfill (008), until
+-- the trigger is dropped in 10.5
+CREATE FUNCTION cdoc2_capsule_recipient_fingerprint() RETURNS trigger
+AS $$
+BEGIN
+    NEW.recipient_fingerprint := sha256(NEW.recipient);
+    RETURN NEW;
+END
+$$
+LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_cdoc2_capsule_recipient_fingerprint
+BEFORE INSERT OR UPDATE OF recipient ON cdoc2_capsule
+FOR EACH ROW EXECUTE FUNCTION cdoc2_capsule_recipient_fingerprint();
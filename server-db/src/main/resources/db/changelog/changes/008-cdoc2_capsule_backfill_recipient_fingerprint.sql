@@ -0,0 +1,25 @@
+-- liquibase formatted sql
+-- changeset cdoc2_capsule_backfill_recipient_fingerprint:8 runInTransaction:false splitStatements:false
+-- Backfill recipient_fingerprint (SHA-256 of recipient) for existing rows. Rows are walked in primary key order
+-- in batches of 1000 (keyset on transaction_id, each batch is a primary key index range scan) and each batch is
+-- committed separately, so row locks are held only briefly and inserts are not blocked. Update waits for rows
+-- locked by concurrent transactions (expired capsule cleanup), so that no row is left without
+-- recipient_fingerprint. New rows get fingerprint from the trigger (007).
+DO '
+DECLARE
+    last_id VARCHAR(34) := '''';
+    batch_last_id VARCHAR(34);
+BEGIN
+    LOOP
+        SELECT max(transaction_id) INTO batch_last_id FROM
+            (SELECT transaction_id FROM cdoc2_capsule WHERE transaction_id > last_id
+             ORDER BY transaction_id LIMIT 1000) batch;
+        EXIT WHEN batch_last_id IS NULL;
+
+        UPDATE cdoc2_capsule SET recipient_fingerprint = sha256(recipient)
+        WHERE transaction_id > last_id AND transaction_id <= batch_last_id AND recipient_fingerprint IS NULL;
+        COMMIT;
+        last_id := batch_last_id;
+    END LOOP;
+END
+';
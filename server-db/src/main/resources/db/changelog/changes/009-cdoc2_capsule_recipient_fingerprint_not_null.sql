@@ -0,0 +1,22 @@
+-- liquibase formatted sql
+-- changeset cdoc2_capsule_add_check_recipient_fingerprint:9 splitStatements:false
+-- Capsules are looked up by primary key and recipient_fingerprint is checked on the found row, so it is not
+-- indexed. Validated CHECK constraint lets SET NOT NULL skip the table scan. NOT VALID constraint is a catalog
+-- change only, fails instead of queueing up other queries behind ACCESS EXCLUSIVE lock.
+SET LOCAL lock_timeout = '5s';
+
+ALTER TABLE cdoc2_capsule
+ADD CONSTRAINT chk_cdoc2_capsule_recipient_fingerprint_not_null CHECK (recipient_fingerprint IS NOT NULL) NOT VALID;
+
+-- changeset cdoc2_capsule_validate_recipient_fingerprint:9.1
+-- Separate transaction from 9, so that ACCESS EXCLUSIVE lock of ADD CONSTRAINT is not held during validation.
+-- Validation scans the table, but holds only SHARE UPDATE EXCLUSIVE lock, reads and writes are not blocked.
+ALTER TABLE cdoc2_capsule
+VALIDATE CONSTRAINT chk_cdoc2_capsule_recipient_fingerprint_not_null;
+
+-- changeset cdoc2_capsule_recipient_fingerprint_not_null:9.2 splitStatements:false
+-- Catalog change only, fails instead of queueing up other queries behind ACCESS EXCLUSIVE lock
+SET LOCAL lock_timeout = '5s';
+
+ALTER TABLE cdoc2_capsule ALTER COLUMN recipient_fingerprint SET NOT NULL;
+ALTER TABLE cdoc2_capsule DROP CONSTRAINT chk_cdoc2_capsule_recipient_fingerprint_not_null;
@@ -0,0 +1,85 @@
+-- liquibase formatted sql
+-- changeset cdoc2_capsule_transaction_id_uuid:10 splitStatements:false
+-- Store transaction id ('KC' + 32 hex chars) as 16 byte uuid, 'KC' form is used only in API.
+-- Expand/contract, so that the table is not rewritten under ACCESS EXCLUSIVE lock: uuid is written to a new
+-- column (by trigger for rows inserted by servers of the previous version), existing rows are backfilled in
+-- batches and the columns are switched in 10.5 without a table scan.
+-- Nullable column without default, doesn't rewrite the table.
+ALTER TABLE cdoc2_capsule
+ADD transaction_uuid uuid;
+
+CREATE FUNCTION cdoc2_capsule_transaction_uuid() RETURNS trigger
+AS $$
+BEGIN
+    NEW.transaction_uuid := CAST(substring(NEW.transaction_id FROM 3) AS uuid);
+    RETURN NEW;
+END
+$$
+LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_cdoc2_capsule_transaction_uuid
+BEFORE INSERT OR UPDATE OF transaction_id ON cdoc2_capsule
+FOR EACH ROW EXECUTE FUNCTION cdoc2_capsule_transaction_uuid();
+
+-- changeset cdoc2_capsule_backfill_transaction_id_uuid:10.1 runInTransaction:false splitStatements:false
+-- Backfill transaction_uuid in primary key ranges, each batch is committed separately (see 008).
+DO '
+DECLARE
+    last_id VARCHAR(34) := '''';
+    batch_last_id VARCHAR(34);
+BEGIN
+    LOOP
+        SELECT max(transaction_id) INTO batch_last_id FROM
+            (SELECT transaction_id FROM cdoc2_capsule WHERE transaction_id > last_id
+             ORDER BY transaction_id LIMIT 1000) batch;
+        EXIT WHEN batch_last_id IS NULL;
+
+        UPDATE cdoc2_capsule SET transaction_uuid = CAST(substring(transaction_id FROM 3) AS uuid)
+        WHERE transaction_id > last_id AND transaction_id <= batch_last_id AND transaction_uuid IS NULL;
+        COMMIT;
+        last_id := batch_last_id;
+    END LOOP;
+END
+';
+
+-- changeset cdoc2_capsule_create_index_transaction_id_uuid:10.2 runInTransaction:false
+-- Becomes primary key index in 10.5
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS idx_cdoc2_capsule_transaction_uuid
+ON cdoc2_capsule (transaction_uuid);
+
+-- changeset cdoc2_capsule_add_check_transaction_id_uuid:10.3 splitStatements:false
+-- Validated CHECK constraint lets SET NOT NULL skip the table scan. NOT VALID constraint is a catalog change only,
+-- fails instead of queueing up other queries behind ACCESS EXCLUSIVE lock.
+SET LOCAL lock_timeout = '5s';
+
+ALTER TABLE cdoc2_capsule
+ADD CONSTRAINT chk_cdoc2_capsule_transaction_uuid_not_null CHECK (transaction_uuid IS NOT NULL) NOT VALID;
+
+-- changeset cdoc2_capsule_validate_transaction_id_uuid:10.4
+-- Separate transaction from 10.3, validation scans the table, but holds only SHARE UPDATE EXCLUSIVE lock, reads
+-- and writes are not blocked.
+ALTER TABLE cdoc2_capsule
+VALIDATE CONSTRAINT chk_cdoc2_capsule_transaction_uuid_not_null;
+
+-- changeset cdoc2_capsule_switch_transaction_id_uuid:10.5 splitStatements:false
+-- Switch to uuid column. Catalog changes only, ACCESS EXCLUSIVE lock is held briefly. Fails instead of queueing
+-- up other queries behind the lock, when the table is in use by long running queries (re-run the update).
+-- Servers of the previous version can't insert or read capsules after this.
+-- Space of the dropped column is reclaimed, when rows are updated or deleted.
+SET LOCAL lock_timeout = '5s';
+
+ALTER TABLE cdoc2_capsule ALTER COLUMN transaction_uuid SET NOT NULL;
+ALTER TABLE cdoc2_capsule DROP CONSTRAINT chk_cdoc2_capsule_transaction_uuid_not_null;
+
+DROP TRIGGER trg_cdoc2_capsule_transaction_uuid ON cdoc2_capsule;
+DROP FUNCTION cdoc2_capsule_transaction_uuid();
+-- current servers fill recipient_fingerprint themselves (see 007)
+DROP TRIGGER trg_cdoc2_capsule_recipient_fingerprint ON cdoc2_capsule;
+DROP FUNCTION cdoc2_capsule_recipient_fingerprint();
+
+-- drops pk_cdoc2_capsule
+ALTER TABLE cdoc2_capsule DROP COLUMN transaction_id;
+ALTER TABLE cdoc2_capsule RENAME COLUMN transaction_uuid TO transaction_id;
+
+ALTER TABLE cdoc2_capsule
+ADD CONSTRAINT pk_cdoc2_capsule PRIMARY KEY USING INDEX idx_cdoc2_capsule_transaction_uuid;
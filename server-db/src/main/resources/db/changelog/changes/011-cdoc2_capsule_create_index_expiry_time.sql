@@ -0,0 +1,5 @@
+-- liquibase formatted sql
+-- changeset cdoc2_capsule_create_index_expiry_time:11 runInTransaction:false
+-- Lets expired capsule clean-up find expired rows without a sequential scan of the table
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_cdoc2_capsule_expiry_time
+ON cdoc2_capsule (expiry_time);
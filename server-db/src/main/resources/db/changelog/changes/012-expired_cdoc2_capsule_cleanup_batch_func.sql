@@ -0,0 +1,16 @@
+-- liquibase formatted sql
+-- changeset expired_cdoc2_capsule_cleanup_batch_func:12 runOnChange:true
+-- Deletes up to batch_size oldest expired capsules, rows are found by idx_cdoc2_capsule_expiry_time range scan
+CREATE OR REPLACE FUNCTION expired_cdoc2_capsule_cleanup(batch_size INTEGER)
+    RETURNS INTEGER
+AS '
+    DECLARE deleted INTEGER := 0;
+BEGIN
+	DELETE FROM cdoc2_capsule WHERE transaction_id IN
+		(SELECT transaction_id FROM cdoc2_capsule WHERE expiry_time < CURRENT_TIMESTAMP
+			ORDER BY expiry_time LIMIT batch_size);
+	GET DIAGNOSTICS deleted = ROW_COUNT;
+	RETURN deleted;
+END
+'
+LANGUAGE plpgsql;
@@ -0,0 +1,34 @@
+-- liquibase formatted sql
+-- changeset expired_cdoc2_capsule_cleanup_skip_locked_func:13
+-- Clean-up batches are claimed with FOR UPDATE SKIP LOCKED, so that concurrent calls from several server instances
+-- delete disjoint sets of expired rows instead of waiting for row locks held by other instances.
+-- max_parallel > 0 limits the number of concurrently running batches in the cluster: batch takes one of
+-- max_parallel transaction level advisory lock slots and returns -1 without deleting anything when all are taken.
+-- Not run on change, partitioned table (015) redefines the function. Versions from 005 and 012 are replaced.
+DROP FUNCTION IF EXISTS expired_cdoc2_capsule_cleanup();
+DROP FUNCTION IF EXISTS expired_cdoc2_capsule_cleanup(INTEGER);
+
+CREATE OR REPLACE FUNCTION expired_cdoc2_capsule_cleanup(batch_size INTEGER, max_parallel INTEGER)
+    RETURNS INTEGER
+AS '
+    DECLARE deleted INTEGER := 0;
+    DECLARE slot INTEGER := 0;
+BEGIN
+	IF max_parallel > 0 THEN
+		-- 1667523378 is advisory lock class id for cdoc2 capsule clean-up
+		WHILE slot < max_parallel AND NOT pg_try_advisory_xact_lock(1667523378, slot) LOOP
+			slot := slot + 1;
+		END LOOP;
+		IF slot = max_parallel THEN
+			RETURN -1;
+		END IF;
+	END IF;
+
+	DELETE FROM cdoc2_capsule WHERE transaction_id IN
+		(SELECT transaction_id FROM cdoc2_capsule WHERE expiry_time < CURRENT_TIMESTAMP
+			ORDER BY expiry_time LIMIT batch_size FOR UPDATE SKIP LOCKED);
+	GET DIAGNOSTICS deleted = ROW_COUNT;
+	RETURN deleted;
+END
+'
+LANGUAGE plpgsql;
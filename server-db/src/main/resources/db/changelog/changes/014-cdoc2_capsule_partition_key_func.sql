@@ -0,0 +1,39 @@
+-- liquibase formatted sql
+-- changeset cdoc2_capsule_partition_key_func:14 splitStatements:false
+-- Partition key derived from transaction id, so that lookup by transaction id can be pruned to single partition.
+-- Transaction ids with version 8 layout have capsule expiry time (Unix epoch milliseconds) in the first 48 bits,
+-- for other transaction ids (version 7) partition key is -infinity.
+-- Used by capsule lookup queries for the transaction id parameter.
+CREATE OR REPLACE FUNCTION cdoc2_capsule_partition_key(transaction_id uuid)
+    RETURNS TIMESTAMP WITH TIME ZONE
+    LANGUAGE sql IMMUTABLE STRICT PARALLEL SAFE
+AS '
+    SELECT CASE WHEN substr(transaction_id::text, 15, 1) = ''8''
+        THEN to_timestamp(
+            (''x'' || substr(replace(transaction_id::text, ''-'', ''''), 1, 12))::bit(48)::bigint / 1000.0
+        )
+        ELSE ''-infinity''::timestamptz
+    END
+';
+
+-- Partition key of cdoc2_capsule row (see 015). Random transaction ids of capsules created before 010 have '8' at
+-- the version position in 1 of 16 ids, these must stay in the legacy partition. Version 8 ids are generated only
+-- after 015, so rows created before this migration (with one day margin for server clock skew) have partition key
+-- -infinity. Cutoff is fixed when this changeset runs, changing it would invalidate existing partition constraints.
+DO $$
+BEGIN
+    EXECUTE format($f$
+        CREATE OR REPLACE FUNCTION cdoc2_capsule_partition_key(transaction_id uuid, created_at timestamptz)
+            RETURNS TIMESTAMP WITH TIME ZONE
+            LANGUAGE sql IMMUTABLE STRICT PARALLEL SAFE
+        AS $b$
+            SELECT CASE WHEN created_at < %L::timestamptz
+                THEN '-infinity'::timestamptz
+                ELSE cdoc2_capsule_partition_key(transaction_id)
+            END
+        $b$
+        $f$,
+        CURRENT_TIMESTAMP + interval '1 day'
+    );
+END
+$$;
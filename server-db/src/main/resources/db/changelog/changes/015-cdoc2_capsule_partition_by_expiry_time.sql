@@ -0,0 +1,124 @@
+-- liquibase formatted sql
+-- changeset cdoc2_capsule_partition_by_expiry_time:15 splitStatements:false
+-- preconditions onFail:CONTINUE
+-- precondition-sql-check expectedResult:1 SELECT CASE WHEN '${cdoc2.capsule.partitioned}' = 'true' THEN 1 ELSE 0 END
+--
+-- Optional: runs only with changelog property cdoc2.capsule.partitioned=true, is skipped (and checked again on next
+-- update) otherwise.
+--
+-- Range partitions cdoc2_capsule by cdoc2_capsule_partition_key(transaction_id, created_at), that is capsule expiry
+-- time for transaction ids generated by servers with partitioned table (see 014). Expired capsules are removed by dropping whole
+-- monthly partitions, row by row deletes are needed only in the current month partition and in legacy partition.
+-- Existing table becomes the legacy partition (rows are not copied, partition constraint is validated by scanning
+-- the table once). Table is locked for the duration of the migration.
+--
+-- PostgreSQL doesn't support primary key with expression partition key, each partition has its own primary key
+-- on transaction_id instead. Transaction ids are unique across partitions as well: partition key is derived from
+-- transaction_id, ids of rows in legacy partition are random or version 7 and don't collide with version 8 ids.
+ALTER TABLE cdoc2_capsule RENAME TO cdoc2_capsule_legacy;
+
+CREATE TABLE cdoc2_capsule (LIKE cdoc2_capsule_legacy INCLUDING DEFAULTS)
+PARTITION BY RANGE (cdoc2_capsule_partition_key(transaction_id, created_at));
+
+DO $$
+BEGIN
+    EXECUTE format(
+        'ALTER TABLE cdoc2_capsule ATTACH PARTITION cdoc2_capsule_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+        date_trunc('month', CURRENT_TIMESTAMP AT TIME ZONE 'UTC') AT TIME ZONE 'UTC'
+    );
+END
+$$;
+
+-- existing index of legacy partition is attached to this
+CREATE INDEX idx_cdoc2_capsule_part_expiry_time ON cdoc2_capsule (expiry_time);
+
+-- Creates monthly partitions from current month to months_ahead months ahead and drops partitions, where all
+-- capsules have expired. Partition keys have millisecond precision and capsule expiry time is not before partition
+-- key, so all capsules in partition have expired 1 ms after partition upper bound.
+-- Only one caller at a time does the maintenance, others return immediately.
+CREATE OR REPLACE FUNCTION cdoc2_capsule_partition_maintenance(
+    months_ahead INTEGER,
+    OUT created INTEGER,
+    OUT dropped INTEGER
+)
+AS $$
+DECLARE
+    month_start TIMESTAMP := date_trunc('month', CURRENT_TIMESTAMP AT TIME ZONE 'UTC');
+    part_start TIMESTAMP;
+    part_name TEXT;
+    part RECORD;
+BEGIN
+    created := 0;
+    dropped := 0;
+    -- advisory lock class id 1667523378 is shared with expired_cdoc2_capsule_cleanup, slots are >= 0
+    IF NOT pg_try_advisory_xact_lock(1667523378, -1) THEN
+        RETURN;
+    END IF;
+    -- don't queue up inserts behind partition DDL
+    SET LOCAL lock_timeout = '5s';
+
+    FOR i IN 0..months_ahead LOOP
+        part_start := month_start + make_interval(months => i);
+        part_name := 'cdoc2_capsule_p' || to_char(part_start, 'YYYYMM');
+        IF to_regclass(part_name) IS NULL THEN
+            EXECUTE format(
+                'CREATE TABLE %I PARTITION OF cdoc2_capsule FOR VALUES FROM (%L) TO (%L)',
+                part_name, part_start AT TIME ZONE 'UTC', (part_start + interval '1 month') AT TIME ZONE 'UTC'
+            );
+            EXECUTE format('ALTER TABLE %I ADD PRIMARY KEY (transaction_id)', part_name);
+            created := created + 1;
+        END IF;
+    END LOOP;
+
+    FOR part IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'cdoc2_capsule'::regclass AND c.relname ~ '^cdoc2_capsule_p[0-9]{6}$'
+        ORDER BY c.relname
+    LOOP
+        IF (to_timestamp(right(part.relname, 6), 'YYYYMM')::TIMESTAMP + interval '1 month') AT TIME ZONE 'UTC'
+            < CURRENT_TIMESTAMP - interval '1 second'
+        THEN
+            BEGIN
+                EXECUTE format('DROP TABLE %I', part.relname);
+                dropped := dropped + 1;
+            EXCEPTION WHEN lock_not_available THEN
+                RAISE NOTICE 'Partition % is in use, dropping it on next run', part.relname;
+            END;
+        END IF;
+    END LOOP;
+END
+$$
+LANGUAGE plpgsql;
+
+-- Same as expired_cdoc2_capsule_cleanup in 013, partition key conditions limit row by row delete to partitions,
+-- that can contain expired capsules (current month and legacy partition, older ones are dropped)
+CREATE OR REPLACE FUNCTION expired_cdoc2_capsule_cleanup(batch_size INTEGER, max_parallel INTEGER)
+    RETURNS INTEGER
+AS $$
+DECLARE
+    deleted INTEGER := 0;
+    slot INTEGER := 0;
+BEGIN
+    IF max_parallel > 0 THEN
+        WHILE slot < max_parallel AND NOT pg_try_advisory_xact_lock(1667523378, slot) LOOP
+            slot := slot + 1;
+        END LOOP;
+        IF slot = max_parallel THEN
+            RETURN -1;
+        END IF;
+    END IF;
+
+    DELETE FROM cdoc2_capsule
+    WHERE cdoc2_capsule_partition_key(transaction_id, created_at) < CURRENT_TIMESTAMP
+        AND transaction_id IN
+            (SELECT transaction_id FROM cdoc2_capsule
+                WHERE cdoc2_capsule_partition_key(transaction_id, created_at) < CURRENT_TIMESTAMP
+                    AND expiry_time < CURRENT_TIMESTAMP
+                ORDER BY expiry_time LIMIT batch_size FOR UPDATE SKIP LOCKED);
+    GET DIAGNOSTICS deleted = ROW_COUNT;
+    RETURN deleted;
+END
+$$
+LANGUAGE plpgsql;
+
+SELECT * FROM cdoc2_capsule_partition_maintenance(${cdoc2.capsule.partition.months-ahead});